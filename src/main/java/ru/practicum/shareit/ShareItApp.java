@@ -2,8 +2,10 @@ package ru.practicum.shareit;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
 
-@SpringBootApplication
+// R2DBC только для потокового чтения, пул создает ReactiveReadConfig
+@SpringBootApplication(exclude = R2dbcAutoConfiguration.class)
 public class ShareItApp {
 
 	public static void main(String[] args) {
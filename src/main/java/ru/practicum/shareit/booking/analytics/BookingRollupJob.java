@@ -0,0 +1,190 @@
+package ru.practicum.shareit.booking.analytics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.sharding.Shards;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Досчитывает посуточные итоги booking_daily_rollup от отметки booking_rollup_watermark до вчерашнего дня.
+ * Каждый запуск заново считает последние settleDays дней, остальная история не пересчитывается. Порция
+ * читает по индексам только бронирования, начавшиеся в ее днях или закончившиеся после ее начала, поэтому
+ * стоимость запуска зависит от порции и числа будущих бронирований, а не от всей истории bookings.
+ * Дни обрабатываются порциями по chunkDays в отдельных транзакциях: порция целиком заменяет свои строки,
+ * повтор после сбоя дает тот же результат.
+ */
+@Slf4j
+@Component
+@Profile("!inmemory")
+@EnableConfigurationProperties(BookingRollupProperties.class)
+@ConditionalOnProperty(prefix = "shareit.booking-rollup", name = "enabled", havingValue = "true")
+public class BookingRollupJob {
+
+    private final BookingRollupProperties properties;
+    private final BookingRollupRepository rollupRepository;
+    private final Shards shards;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter days;
+    private final Timer runs;
+
+    private ScheduledExecutorService scheduler;
+
+    public BookingRollupJob(BookingRollupProperties properties, BookingRollupRepository rollupRepository,
+                            Shards shards, PlatformTransactionManager transactionManager, MeterRegistry registry) {
+        this.properties = properties;
+        this.rollupRepository = rollupRepository;
+        this.shards = shards;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.days = Counter.builder("shareit.bookings.rollup.days")
+                .description("Дни, посчитанные задачей посуточных итогов бронирований")
+                .register(registry);
+        this.runs = Timer.builder("shareit.bookings.rollup.run")
+                .description("Длительность одного запуска задачи посуточных итогов бронирований")
+                .register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        long interval = properties.getInterval().toMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "booking-rollup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::rollupSafely, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Один запуск: на каждом шарде не больше maxChunksPerRun порций, у каждого шарда свои итоги и отметка.
+     * Возвращает число посчитанных дней.
+     */
+    public int rollup() {
+        return runs.record(() -> shards.sumOverShards(this::rollupShard));
+    }
+
+    private int rollupShard() {
+        LocalDate until = LocalDate.now();
+        Optional<LocalDate> rolledUntil = rollupRepository.findRolledUntil();
+        Optional<LocalDate> start = rolledUntil.isPresent()
+                ? rolledUntil.map(date -> date.minusDays(properties.getSettleDays()))
+                : rollupRepository.findFirstBookingDate();
+        if (start.isEmpty()) {
+            return 0;
+        }
+        LocalDate from = start.get();
+        int total = 0;
+        for (int chunk = 0; chunk < properties.getMaxChunksPerRun() && from.isBefore(until); chunk++) {
+            LocalDate chunkFrom = from;
+            LocalDate chunkTo = min(from.plusDays(properties.getChunkDays()), until);
+            transactionTemplate.executeWithoutResult(status -> {
+                rollupRepository.replaceDays(chunkFrom, chunkTo, collect(chunkFrom, chunkTo));
+                rollupRepository.advanceRolledUntil(chunkTo);
+            });
+            int rolled = (int) ChronoUnit.DAYS.between(chunkFrom, chunkTo);
+            days.increment(rolled);
+            total += rolled;
+            from = chunkTo;
+        }
+        log.atDebug().addArgument(total).addArgument(from)
+                .log("Посуточные итоги бронирований посчитаны за {} дней, до {}");
+        return total;
+    }
+
+    private List<BookingRollupRepository.Day> collect(LocalDate from, LocalDate to) {
+        Map<DayKey, DayTotals> totals = new HashMap<>();
+        for (BookingRollupRepository.Occupancy booking : rollupRepository.findApprovedOverlapping(from, to)) {
+            LocalDate first = max(booking.start().toLocalDate(), from);
+            // окончание ровно в полночь следующий день не занимает
+            LocalDate last = booking.end().toLocalTime().equals(LocalTime.MIDNIGHT)
+                    ? booking.end().toLocalDate().minusDays(1)
+                    : booking.end().toLocalDate();
+            for (LocalDate date = first; !date.isAfter(last) && date.isBefore(to); date = date.plusDays(1)) {
+                totals.computeIfAbsent(new DayKey(booking.itemId(), date), key -> new DayTotals(booking.ownerId()))
+                        .booked = true;
+            }
+        }
+        for (BookingRollupRepository.Start booking : rollupRepository.findStarting(from, to)) {
+            DayTotals day = totals.computeIfAbsent(new DayKey(booking.itemId(), booking.start().toLocalDate()),
+                    key -> new DayTotals(booking.ownerId()));
+            day.bookings++;
+            if (BookingStatus.APPROVED.name().equals(booking.status())) {
+                day.approved++;
+            } else if (BookingStatus.REJECTED.name().equals(booking.status())) {
+                day.rejected++;
+            }
+            // у бронирований, созданных до появления колонки created, срок заблаговременности неизвестен
+            if (booking.created() != null) {
+                day.leadSeconds += Math.max(0, Duration.between(booking.created(), booking.start()).toSeconds());
+                day.leadCount++;
+            }
+        }
+        return totals.entrySet().stream()
+                .map(entry -> new BookingRollupRepository.Day(entry.getKey().itemId(), entry.getValue().ownerId,
+                        entry.getKey().date(), entry.getValue().booked, entry.getValue().bookings,
+                        entry.getValue().approved, entry.getValue().rejected, entry.getValue().leadSeconds,
+                        entry.getValue().leadCount))
+                .toList();
+    }
+
+    private void rollupSafely() {
+        try {
+            rollup();
+        } catch (RuntimeException e) {
+            log.error("Ошибка при подсчете посуточных итогов бронирований", e);
+        }
+    }
+
+    private static LocalDate min(LocalDate first, LocalDate second) {
+        return first.isBefore(second) ? first : second;
+    }
+
+    private static LocalDate max(LocalDate first, LocalDate second) {
+        return first.isAfter(second) ? first : second;
+    }
+
+    private record DayKey(long itemId, LocalDate date) {
+    }
+
+    private static class DayTotals {
+
+        private final long ownerId;
+        private boolean booked;
+        private int bookings;
+        private int approved;
+        private int rejected;
+        private long leadSeconds;
+        private int leadCount;
+
+        DayTotals(long ownerId) {
+            this.ownerId = ownerId;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package ru.practicum.shareit.booking.analytics;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "shareit.booking-rollup")
+public class BookingRollupProperties {
+
+    private boolean enabled = false;
+
+    private Duration interval = Duration.ofHours(1);
+
+    // последние дни пересчитываются заново: владелец мог отклонить бронирование уже после того, как день посчитан
+    private int settleDays = 2;
+
+    // дней в одной транзакции
+    private int chunkDays = 31;
+
+    // ограничение работы за один запуск, первый проход по всей истории растягивается на несколько запусков
+    private int maxChunksPerRun = 12;
+}
@@ -0,0 +1,128 @@
+package ru.practicum.shareit.booking.analytics;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Таблицы booking_daily_rollup и booking_rollup_watermark. Запись - посуточные итоги из bookings,
+ * чтение - отчеты владельцев: помесячные суммы и простои между занятыми днями через оконную функцию LAG.
+ */
+@Repository
+@Profile("!inmemory")
+@RequiredArgsConstructor
+class BookingRollupRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    Optional<LocalDate> findRolledUntil() {
+        return jdbcTemplate.query("SELECT rolled_until FROM booking_rollup_watermark WHERE id = 1",
+                (rs, rowNum) -> rs.getDate(1).toLocalDate()).stream().findFirst();
+    }
+
+    void advanceRolledUntil(LocalDate until) {
+        if (jdbcTemplate.update("UPDATE booking_rollup_watermark SET rolled_until = GREATEST(rolled_until, ?) " +
+                "WHERE id = 1", Date.valueOf(until)) == 0) {
+            jdbcTemplate.update("INSERT INTO booking_rollup_watermark (id, rolled_until) VALUES (1, ?)",
+                    Date.valueOf(until));
+        }
+    }
+
+    Optional<LocalDate> findFirstBookingDate() {
+        Timestamp first = jdbcTemplate.queryForObject("SELECT MIN(start_date) FROM bookings", Timestamp.class);
+        return Optional.ofNullable(first).map(start -> start.toLocalDateTime().toLocalDate());
+    }
+
+    // подтвержденные бронирования, которые занимают хотя бы часть дней из [from, to): диапазон по
+    // ix_bookings_status_end, прошлые бронирования, закончившиеся до from, не читаются
+    List<Occupancy> findApprovedOverlapping(LocalDate from, LocalDate to) {
+        return jdbcTemplate.query("SELECT item_id, owner_id, start_date, end_date FROM bookings " +
+                        "WHERE status = 'APPROVED' AND end_date > ? AND start_date < ?",
+                (rs, rowNum) -> new Occupancy(rs.getLong(1), rs.getLong(2),
+                        rs.getTimestamp(3).toLocalDateTime(), rs.getTimestamp(4).toLocalDateTime()),
+                Timestamp.valueOf(from.atStartOfDay()), Timestamp.valueOf(to.atStartOfDay()));
+    }
+
+    List<Start> findStarting(LocalDate from, LocalDate to) {
+        return jdbcTemplate.query("SELECT item_id, owner_id, start_date, status, created FROM bookings " +
+                        "WHERE start_date >= ? AND start_date < ?",
+                (rs, rowNum) -> {
+                    Timestamp created = rs.getTimestamp(5);
+                    return new Start(rs.getLong(1), rs.getLong(2), rs.getTimestamp(3).toLocalDateTime(),
+                            rs.getString(4), created == null ? null : created.toLocalDateTime());
+                },
+                Timestamp.valueOf(from.atStartOfDay()), Timestamp.valueOf(to.atStartOfDay()));
+    }
+
+    void replaceDays(LocalDate from, LocalDate to, Collection<Day> days) {
+        jdbcTemplate.update("DELETE FROM booking_daily_rollup WHERE usage_date >= ? AND usage_date < ?",
+                Date.valueOf(from), Date.valueOf(to));
+        jdbcTemplate.batchUpdate("INSERT INTO booking_daily_rollup (item_id, owner_id, usage_date, booked, " +
+                        "bookings, approved, rejected, lead_seconds, lead_count) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                days.stream().map(day -> new Object[]{day.itemId(), day.ownerId(), Date.valueOf(day.date()),
+                        day.booked(), day.bookings(), day.approved(), day.rejected(), day.leadSeconds(),
+                        day.leadCount()}).toList());
+    }
+
+    List<ItemName> findItems(Long ownerId) {
+        return jdbcTemplate.query("SELECT id, name FROM items WHERE owner_id = ? ORDER BY id",
+                (rs, rowNum) -> new ItemName(rs.getLong(1), rs.getString(2)), ownerId);
+    }
+
+    List<Month> findMonths(Long ownerId, LocalDate from, LocalDate to) {
+        return jdbcTemplate.query("SELECT item_id, EXTRACT(YEAR FROM usage_date) AS y, " +
+                        "EXTRACT(MONTH FROM usage_date) AS m, SUM(CASE WHEN booked THEN 1 ELSE 0 END), " +
+                        "SUM(bookings), SUM(approved), SUM(rejected), SUM(lead_seconds), SUM(lead_count) " +
+                        "FROM booking_daily_rollup " +
+                        "WHERE owner_id = ? AND usage_date >= ? AND usage_date <= ? " +
+                        "GROUP BY item_id, EXTRACT(YEAR FROM usage_date), EXTRACT(MONTH FROM usage_date) " +
+                        "ORDER BY item_id, y, m",
+                (rs, rowNum) -> new Month(rs.getLong(1), YearMonth.of(rs.getInt(2), rs.getInt(3)),
+                        rs.getInt(4), rs.getInt(5), rs.getInt(6), rs.getInt(7), rs.getLong(8), rs.getInt(9)),
+                ownerId, Date.valueOf(from), Date.valueOf(to));
+    }
+
+    // простой - свободные дни между двумя соседними занятыми днями одной вещи
+    List<Gaps> findGaps(Long ownerId, LocalDate from, LocalDate to) {
+        return jdbcTemplate.query("SELECT item_id, COUNT(*), SUM(gap), MAX(gap) FROM (" +
+                        "SELECT item_id, (CAST(EXTRACT(EPOCH FROM usage_date) AS BIGINT) - " +
+                        "CAST(EXTRACT(EPOCH FROM previous_date) AS BIGINT)) / 86400 - 1 AS gap FROM (" +
+                        "SELECT item_id, usage_date, " +
+                        "LAG(usage_date) OVER (PARTITION BY item_id ORDER BY usage_date) AS previous_date " +
+                        "FROM booking_daily_rollup " +
+                        "WHERE owner_id = ? AND booked AND usage_date >= ? AND usage_date <= ?) d) g " +
+                        "WHERE gap > 0 GROUP BY item_id",
+                (rs, rowNum) -> new Gaps(rs.getLong(1), rs.getInt(2), rs.getLong(3), rs.getInt(4)),
+                ownerId, Date.valueOf(from), Date.valueOf(to));
+    }
+
+    record Occupancy(long itemId, long ownerId, LocalDateTime start, LocalDateTime end) {
+    }
+
+    record Start(long itemId, long ownerId, LocalDateTime start, String status, LocalDateTime created) {
+    }
+
+    record Day(long itemId, long ownerId, LocalDate date, boolean booked, int bookings, int approved, int rejected,
+               long leadSeconds, int leadCount) {
+    }
+
+    record ItemName(long id, String name) {
+    }
+
+    record Month(long itemId, YearMonth month, int bookedDays, int bookings, int approved, int rejected,
+                 long leadSeconds, int leadCount) {
+    }
+
+    record Gaps(long itemId, int count, long days, int max) {
+    }
+}
@@ -0,0 +1,117 @@
+package ru.practicum.shareit.booking.analytics;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.booking.dto.ItemUtilizationDto;
+import ru.practicum.shareit.booking.dto.MonthUtilizationDto;
+import ru.practicum.shareit.booking.dto.UtilizationReportDto;
+import ru.practicum.shareit.exceptions.DataNotFoundException;
+import ru.practicum.shareit.exceptions.WrongDateValidationException;
+import ru.practicum.shareit.sharding.Shards;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Отчеты о загрузке вещей строятся только по посуточным итогам booking_daily_rollup: объем чтения зависит
+ * от длины периода и числа вещей владельца, а не от всей истории бронирований.
+ */
+@Slf4j
+@Service
+@Profile("!inmemory")
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class UtilizationService {
+
+    private final BookingRollupRepository rollupRepository;
+    private final UserRepository userRepository;
+    private final Shards shards;
+
+    public UtilizationReportDto getOwnerUtilization(Long ownerId, LocalDate from, LocalDate to) {
+        shards.bindUser(ownerId);
+        log.debug("Проверяем, что пользователь с ownerId {} существует", ownerId);
+        if (!userRepository.existsActiveById(ownerId)) {
+            throw new DataNotFoundException("Пользователь c ownerId " + ownerId + " не найден");
+        }
+        LocalDate end = to != null ? to : LocalDate.now().minusDays(1);
+        LocalDate start = from != null ? from : end.withDayOfMonth(1).minusMonths(11);
+        if (start.isAfter(end)) {
+            throw new WrongDateValidationException("Начало периода отчета не может быть позже его окончания");
+        }
+        Optional<LocalDate> rolledUpTo = rollupRepository.findRolledUntil().map(date -> date.minusDays(1));
+        LocalDate covered = rolledUpTo.filter(date -> date.isBefore(end)).orElse(end);
+        boolean hasData = rolledUpTo.isPresent() && !covered.isBefore(start);
+        log.atDebug().addArgument(ownerId).addArgument(start).addArgument(end).addArgument(rolledUpTo.orElse(null))
+                .log("Отчет о загрузке вещей владельца {} за {} - {}, итоги посчитаны по {}");
+
+        Map<Long, List<BookingRollupRepository.Month>> months = hasData
+                ? rollupRepository.findMonths(ownerId, start, covered).stream()
+                .collect(Collectors.groupingBy(BookingRollupRepository.Month::itemId))
+                : Map.of();
+        Map<Long, BookingRollupRepository.Gaps> gaps = hasData
+                ? rollupRepository.findGaps(ownerId, start, covered).stream()
+                .collect(Collectors.toMap(BookingRollupRepository.Gaps::itemId, Function.identity()))
+                : Map.of();
+        long periodDays = hasData ? ChronoUnit.DAYS.between(start, covered) + 1 : 0;
+
+        List<ItemUtilizationDto> items = rollupRepository.findItems(ownerId).stream()
+                .map(item -> toItemUtilization(item, months.getOrDefault(item.id(), List.of()), gaps.get(item.id()),
+                        periodDays))
+                .toList();
+        return UtilizationReportDto.builder()
+                .from(start)
+                .to(end)
+                .rolledUpTo(rolledUpTo.orElse(null))
+                .items(items)
+                .build();
+    }
+
+    private ItemUtilizationDto toItemUtilization(BookingRollupRepository.ItemName item,
+                                                 List<BookingRollupRepository.Month> months,
+                                                 BookingRollupRepository.Gaps gaps, long periodDays) {
+        int bookedDays = 0;
+        int bookings = 0;
+        int approved = 0;
+        int rejected = 0;
+        long leadSeconds = 0;
+        int leadCount = 0;
+        for (BookingRollupRepository.Month month : months) {
+            bookedDays += month.bookedDays();
+            bookings += month.bookings();
+            approved += month.approved();
+            rejected += month.rejected();
+            leadSeconds += month.leadSeconds();
+            leadCount += month.leadCount();
+        }
+        return ItemUtilizationDto.builder()
+                .itemId(item.id())
+                .name(item.name())
+                .bookedDays(bookedDays)
+                .utilization(periodDays == 0 ? 0 : (double) bookedDays / periodDays)
+                .bookings(bookings)
+                .rejectionRate(approved + rejected == 0 ? null : (double) rejected / (approved + rejected))
+                .averageLeadTimeHours(leadCount == 0 ? null : leadSeconds / 3600.0 / leadCount)
+                .gaps(gaps == null ? 0 : gaps.count())
+                .averageGapDays(gaps == null ? null : (double) gaps.days() / gaps.count())
+                .maxGapDays(gaps == null ? null : gaps.max())
+                .months(months.stream()
+                        .map(month -> MonthUtilizationDto.builder()
+                                .month(month.month())
+                                .bookedDays(month.bookedDays())
+                                .bookings(month.bookings())
+                                .approved(month.approved())
+                                .rejected(month.rejected())
+                                .build())
+                        .toList())
+                .build();
+    }
+}
@@ -0,0 +1,36 @@
+package ru.practicum.shareit.booking.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import ru.practicum.shareit.booking.analytics.UtilizationService;
+import ru.practicum.shareit.booking.dto.UtilizationReportDto;
+
+import java.time.LocalDate;
+
+@Slf4j
+@RestController
+@Profile("!inmemory")
+@RequestMapping(path = "/bookings/owner")
+@RequiredArgsConstructor
+public class BookingAnalyticsController {
+
+    private final UtilizationService utilizationService;
+
+    @GetMapping("/utilization")
+    public UtilizationReportDto getOwnerUtilization(@RequestHeader("X-Sharer-User-Id") Long userId,
+                                                    @RequestParam(required = false)
+                                                    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                    @RequestParam(required = false)
+                                                    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        log.atDebug().addArgument(userId).addArgument(from).addArgument(to)
+                .log("Начат отчет о загрузке вещей пользователя с id {} за период {} - {}");
+        return utilizationService.getOwnerUtilization(userId, from, to);
+    }
+}
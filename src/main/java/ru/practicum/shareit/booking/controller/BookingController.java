@@ -1,14 +1,19 @@
 package ru.practicum.shareit.booking.controller;
 
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Positive;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
+import ru.practicum.shareit.booking.dto.BookingChangesDto;
 import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.dto.BookingSummaryDto;
 import ru.practicum.shareit.booking.dto.CreateBookingDto;
+import ru.practicum.shareit.booking.model.BookingField;
 import ru.practicum.shareit.booking.model.BookingState;
 import ru.practicum.shareit.booking.service.BookingService;
+import ru.practicum.shareit.idempotency.IdempotentRequests;
 
 import java.util.List;
 
@@ -22,44 +27,77 @@ import java.util.List;
 public class BookingController {
 
     private final BookingService bookingService;
+    private final IdempotentRequests idempotentRequests;
 
     @PostMapping
     public BookingDto addBooking(@RequestHeader("X-Sharer-User-Id") Long userId,
+                                 @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
                                  @Valid @RequestBody CreateBookingDto bookingDto) {
-        log.debug("Начато создание объекта бронирования предмета. Получен объект {} от пользователя {}", bookingDto,
-                userId);
-        return bookingService.addBooking(userId, bookingDto);
+        log.atDebug().addArgument(bookingDto).addArgument(userId)
+                .log("Начато создание объекта бронирования предмета. Получен объект {} от пользователя {}");
+        return idempotentRequests.execute(idempotencyKey, userId, "POST /bookings", bookingDto, BookingDto.class,
+                () -> bookingService.addBooking(userId, bookingDto));
     }
 
     @PatchMapping("/{bookingId}")
     public BookingDto approvingOfBooking(@RequestHeader("X-Sharer-User-Id") Long userId,
                                          @PathVariable @Positive Long bookingId,
                                          @RequestParam Boolean approved) {
-        log.debug("Начато подтверждение или отказ [{}] букинга с id {} пользователем {}",
-                approved, bookingId, userId);
+        log.atDebug().addArgument(approved).addArgument(bookingId).addArgument(userId)
+                .log("Начато подтверждение или отказ [{}] букинга с id {} пользователем {}");
         return bookingService.approvingOfBooking(userId, bookingId, approved);
     }
 
     @GetMapping("/{bookingId}")
     public BookingDto getBooking(@RequestHeader("X-Sharer-User-Id") Long userId,
                                  @PathVariable @Positive Long bookingId) {
-        log.debug("Начат просмотр букинга с id {} пользователем с id {}", bookingId, userId);
+        log.atDebug().addArgument(bookingId).addArgument(userId)
+                .log("Начат просмотр букинга с id {} пользователем с id {}");
         return bookingService.getBooking(userId, bookingId);
     }
 
     @GetMapping
     public List<BookingDto> getBookingsByUserAndState(@RequestHeader("X-Sharer-User-Id") Long userId,
-                                                      @RequestParam(defaultValue = "ALL") BookingState state) {
-        log.debug("Начат возврат списка всех бронирований, созданных текущим пользователем id {} " +
-                "в зависимости от состояния state = {}", userId, state);
-        return bookingService.getBookingsByUserAndState(userId, state);
+                                                      @RequestParam(defaultValue = "ALL") BookingState state,
+                                                      @RequestParam(required = false) List<String> fields) {
+        log.atDebug().addArgument(userId).addArgument(state)
+                .log("Начат возврат списка всех бронирований, созданных текущим пользователем id {} " +
+                        "в зависимости от состояния state = {}");
+        return bookingService.getBookingsByUserAndState(userId, state, BookingField.parse(fields));
     }
 
     @GetMapping("/owner")
     public List<BookingDto> getBookingsForAllItemsOfOwner(@RequestHeader("X-Sharer-User-Id") Long userId,
-                                                          @RequestParam(defaultValue = "ALL") BookingState state) {
-        log.debug("Начат возврат списка всех бронирований на вещи пользователя с id {} " +
-                "в зависимости от состояния state = {}", userId, state);
-        return bookingService.getBookingsForAllItemsOfOwner(userId, state);
+                                                          @RequestParam(defaultValue = "ALL") BookingState state,
+                                                          @RequestParam(required = false) List<String> fields) {
+        log.atDebug().addArgument(userId).addArgument(state)
+                .log("Начат возврат списка всех бронирований на вещи пользователя с id {} " +
+                        "в зависимости от состояния state = {}");
+        return bookingService.getBookingsForAllItemsOfOwner(userId, state, BookingField.parse(fields));
+    }
+
+    @GetMapping("/summary")
+    public BookingSummaryDto getBookingsSummaryByUser(@RequestHeader("X-Sharer-User-Id") Long userId) {
+        log.debug("Начат подсчет бронирований пользователя с id {} по всем состояниям", userId);
+        return bookingService.getBookingsSummaryByUser(userId);
+    }
+
+    /**
+     * Лента изменений для синхронизации: бронирования пользователя как арендатора и как владельца,
+     * измененные после водяного знака since, и id удаленных. Без since - с самого начала.
+     */
+    @GetMapping("/changes")
+    public BookingChangesDto getBookingChanges(@RequestHeader("X-Sharer-User-Id") Long userId,
+                                               @RequestParam(required = false) String since,
+                                               @RequestParam(defaultValue = "100") @Positive @Max(500) int size) {
+        log.atDebug().addArgument(size).addArgument(userId).addArgument(since)
+                .log("Начат возврат {} изменений бронирований пользователя с id {} после {}");
+        return bookingService.getBookingChanges(userId, since, size);
+    }
+
+    @GetMapping("/owner/summary")
+    public BookingSummaryDto getBookingsSummaryForAllItemsOfOwner(@RequestHeader("X-Sharer-User-Id") Long userId) {
+        log.debug("Начат подсчет бронирований на вещи пользователя с id {} по всем состояниям", userId);
+        return bookingService.getBookingsSummaryForAllItemsOfOwner(userId);
     }
 }
@@ -0,0 +1,33 @@
+package ru.practicum.shareit.booking.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.practicum.shareit.booking.events.BookingEvents;
+import ru.practicum.shareit.user.service.UserService;
+
+/**
+ * Поток событий created, approved и rejected по бронированиям, где пользователь - владелец вещи или арендатор.
+ * Заменяет периодический опрос GET /bookings/owner?state=WAITING и GET /bookings/{bookingId}.
+ */
+@Slf4j
+@RestController
+@RequestMapping(path = "/bookings")
+@RequiredArgsConstructor
+public class BookingEventController {
+
+    private final UserService userService;
+    private final BookingEvents bookingEvents;
+
+    @GetMapping(path = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribe(@RequestHeader("X-Sharer-User-Id") Long userId) {
+        log.debug("Открывается поток событий бронирований для пользователя {}", userId);
+        userService.getUser(userId);
+        return bookingEvents.subscribe(userId);
+    }
+}
@@ -0,0 +1,41 @@
+package ru.practicum.shareit.booking.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.model.BookingState;
+import ru.practicum.shareit.booking.service.BookingReactiveService;
+
+/**
+ * Те же списки, что в BookingController, но потоком NDJSON: клиент с Accept: application/x-ndjson
+ * получает бронирования по одному по мере чтения из базы.
+ */
+@Slf4j
+@RestController
+@RequestMapping(path = "/bookings", produces = MediaType.APPLICATION_NDJSON_VALUE)
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "shareit.reactive", name = "enabled")
+public class BookingStreamController {
+
+    private final BookingReactiveService bookingReactiveService;
+
+    @GetMapping
+    public Flux<BookingDto> streamBookingsByUserAndState(@RequestHeader("X-Sharer-User-Id") Long userId,
+                                                         @RequestParam(defaultValue = "ALL") BookingState state) {
+        log.atDebug().addArgument(userId).addArgument(state)
+                .log("Начата потоковая выдача бронирований пользователя id {} в состоянии state = {}");
+        return bookingReactiveService.getBookingsByUserAndState(userId, state);
+    }
+
+    @GetMapping("/owner")
+    public Flux<BookingDto> streamBookingsForAllItemsOfOwner(@RequestHeader("X-Sharer-User-Id") Long userId,
+                                                             @RequestParam(defaultValue = "ALL") BookingState state) {
+        log.atDebug().addArgument(userId).addArgument(state)
+                .log("Начата потоковая выдача бронирований на вещи пользователя id {} в состоянии state = {}");
+        return bookingReactiveService.getBookingsForAllItemsOfOwner(userId, state);
+    }
+}
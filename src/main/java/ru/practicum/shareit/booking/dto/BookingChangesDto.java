@@ -0,0 +1,22 @@
+package ru.practicum.shareit.booking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Страница ленты изменений бронирований, где пользователь арендатор или владелец вещи.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookingChangesDto {
+    private List<BookingDto> bookings;
+    private List<Long> deletedBookings;
+    private String watermark;
+    private boolean hasMore;
+}
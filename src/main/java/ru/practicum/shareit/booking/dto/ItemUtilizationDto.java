@@ -0,0 +1,32 @@
+package ru.practicum.shareit.booking.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ItemUtilizationDto {
+    private Long itemId;
+    private String name;
+    private int bookedDays;
+    // доля занятых дней в периоде
+    private double utilization;
+    private int bookings;
+    // доля отклоненных среди подтвержденных и отклоненных, пусто - решений не было
+    private Double rejectionRate;
+    // среднее время от создания бронирования до его начала
+    private Double averageLeadTimeHours;
+    // простои - свободные дни между занятыми
+    private int gaps;
+    private Double averageGapDays;
+    private Integer maxGapDays;
+    private List<MonthUtilizationDto> months;
+}
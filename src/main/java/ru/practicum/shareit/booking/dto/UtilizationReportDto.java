@@ -0,0 +1,26 @@
+package ru.practicum.shareit.booking.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Отчет владельца о загрузке вещей за период [from, to]. rolledUpTo - последний день, за который уже есть
+ * посуточные итоги: более поздние дни периода в отчет еще не попали.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UtilizationReportDto {
+    private LocalDate from;
+    private LocalDate to;
+    private LocalDate rolledUpTo;
+    private List<ItemUtilizationDto> items;
+}
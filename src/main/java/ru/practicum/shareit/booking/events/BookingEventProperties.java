@@ -0,0 +1,26 @@
+package ru.practicum.shareit.booking.events;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "shareit.booking-events")
+public class BookingEventProperties {
+
+    // событий в очереди одного подписчика; переполненный поток закрывается, клиент переподключается
+    private int bufferSize = 64;
+
+    // комментарий в пустой поток, чтобы прокси не закрыли соединение и отвалившийся клиент был замечен
+    private Duration heartbeatInterval = Duration.ofSeconds(15);
+
+    // срок жизни одного потока, после него EventSource переподключается сам
+    private Duration timeout = Duration.ofMinutes(30);
+
+    // при превышении закрывается самый старый поток пользователя
+    private int maxStreamsPerUser = 4;
+
+    // пересылка событий подписчикам других узлов через LISTEN/NOTIFY, только для Postgres
+    private boolean relayEnabled = false;
+}
@@ -0,0 +1,170 @@
+package ru.practicum.shareit.booking.events;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.sharding.ShardDataSources;
+import ru.practicum.shareit.sharding.Shards;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пересылка событий бронирований между узлами через LISTEN/NOTIFY Postgres. Узел, зафиксировавший изменение,
+ * раскладывает событие своим подписчикам сам и после фиксации отправляет его в канал booking_events;
+ * остальные узлы получают его по своему соединению с LISTEN, свои уведомления узел пропускает по id.
+ * Канал живет в базе шарда 0, без шардирования - в единственной. Соединение LISTEN постоянно занимает одно
+ * соединение пула. Пока оно переподключается, события с других узлов теряются, как и при обрыве потока SSE:
+ * клиента выручает событие ready.
+ */
+@Slf4j
+@Component
+@Profile("!inmemory")
+@ConditionalOnProperty(prefix = "shareit.booking-events", name = "relay-enabled", havingValue = "true")
+public class BookingEventRelay {
+
+    private static final String CHANNEL = "booking_events";
+    private static final int POLL_MILLIS = 1000;
+
+    private final String node = UUID.randomUUID().toString();
+    private final BookingEvents events;
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    // NOTIFY вне потока запроса и вне его завершенной транзакции, в порядке фиксаций этого узла
+    private final ExecutorService notifier = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "booking-events-notify");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Counter sent;
+    private final Counter received;
+
+    private volatile boolean running;
+    private Thread listener;
+
+    public BookingEventRelay(BookingEvents events, ObjectProvider<ShardDataSources> shardDataSources,
+                             DataSource dataSource, ObjectMapper objectMapper, MeterRegistry registry) {
+        ShardDataSources shards = shardDataSources.getIfAvailable();
+        this.events = events;
+        this.dataSource = shards == null ? dataSource : shards.get(Shards.DIRECTORY);
+        this.jdbcTemplate = new JdbcTemplate(this.dataSource);
+        this.objectMapper = objectMapper;
+        this.sent = Counter.builder("shareit.bookings.events.relay.sent")
+                .description("События бронирований, отправленные другим узлам")
+                .register(registry);
+        this.received = Counter.builder("shareit.bookings.events.relay.received")
+                .description("События бронирований, полученные от других узлов")
+                .register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        String database = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        if (!"PostgreSQL".equals(database)) {
+            throw new IllegalStateException("Пересылка событий бронирований работает только с Postgres, а не с "
+                    + database + ": выключите shareit.booking-events.relay-enabled");
+        }
+        running = true;
+        listener = new Thread(this::listen, "booking-events-listen");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        notifier.shutdown();
+        notifier.awaitTermination(10, TimeUnit.SECONDS);
+        listener.join(POLL_MILLIS * 2L);
+    }
+
+    void send(BookingEventType type, BookingDto booking, Set<Long> recipients) {
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(new Message(node, type, recipients,
+                    objectMapper.valueToTree(booking)));
+        } catch (JsonProcessingException e) {
+            log.error("Не удалось сериализовать событие бронирования {}", booking.getId(), e);
+            return;
+        }
+        notifier.execute(() -> {
+            try {
+                jdbcTemplate.queryForList("SELECT pg_notify(?, ?)", CHANNEL, payload);
+                sent.increment();
+            } catch (RuntimeException e) {
+                log.error("Не удалось отправить событие бронирования другим узлам", e);
+            }
+        });
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.execute("LISTEN " + CHANNEL);
+                PGConnection notifications = connection.unwrap(PGConnection.class);
+                log.info("Узел {} слушает события бронирований других узлов", node);
+                while (running) {
+                    PGNotification[] batch = notifications.getNotifications(POLL_MILLIS);
+                    if (batch != null) {
+                        for (PGNotification notification : batch) {
+                            receive(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (running) {
+                    log.warn("Соединение LISTEN для событий бронирований потеряно: {}", e.getMessage());
+                    pause();
+                }
+            }
+        }
+    }
+
+    private void receive(String payload) {
+        try {
+            Message message = objectMapper.readValue(payload, Message.class);
+            if (!node.equals(message.node())) {
+                received.increment();
+                events.publish(message.type(), message.booking(), message.recipients());
+            }
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.error("Не удалось разобрать событие бронирования с другого узла", e);
+        }
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(POLL_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    private record Message(String node, BookingEventType type, Set<Long> recipients, JsonNode booking) {
+    }
+}
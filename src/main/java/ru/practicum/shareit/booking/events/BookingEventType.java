@@ -0,0 +1,8 @@
+package ru.practicum.shareit.booking.events;
+
+public enum BookingEventType {
+    CREATED,
+    APPROVED,
+    REJECTED,
+    EXPIRED
+}
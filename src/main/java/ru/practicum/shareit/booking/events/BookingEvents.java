@@ -0,0 +1,248 @@
+package ru.practicum.shareit.booking.events;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.practicum.shareit.booking.dto.BookingDto;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Потоки SSE с событиями бронирований для владельца вещи и арендатора. События публикуются после фиксации
+ * addBooking и approvingOfBooking и раскладываются по ограниченным очередям подписчиков: медленный клиент
+ * не задерживает публикацию и других подписчиков, а при переполнении очереди его поток закрывается.
+ * Отправка идет в виртуальных потоках, по одному на подписчика с непустой очередью.
+ * Подписчикам других узлов событие пересылает BookingEventRelay, если он включен. События не хранятся:
+ * после (пере)подключения клиент получает событие ready и один раз перечитывает списки бронирований,
+ * дальше достаточно событий.
+ */
+@Slf4j
+@Component
+@EnableConfigurationProperties(BookingEventProperties.class)
+public class BookingEvents {
+
+    private static final Outgoing HEARTBEAT = new Outgoing(null, null, null);
+
+    private final BookingEventProperties properties;
+    private final ObjectProvider<BookingEventRelay> relay;
+    private final Map<Long, List<Stream>> streams = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final ExecutorService sender = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("booking-events-", 0).factory());
+    private final Counter published;
+    private final Counter overflows;
+
+    private ScheduledExecutorService heartbeats;
+
+    public BookingEvents(BookingEventProperties properties, ObjectProvider<BookingEventRelay> relay,
+                         MeterRegistry registry) {
+        this.properties = properties;
+        this.relay = relay;
+        this.published = Counter.builder("shareit.bookings.events.published")
+                .description("События бронирований, поставленные в очереди подписчиков")
+                .register(registry);
+        this.overflows = Counter.builder("shareit.bookings.events.overflows")
+                .description("Потоки событий, закрытые из-за переполнения очереди подписчика")
+                .register(registry);
+        Gauge.builder("shareit.bookings.events.streams", streams,
+                        map -> map.values().stream().mapToInt(List::size).sum())
+                .description("Открытые потоки событий бронирований")
+                .register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        long interval = properties.getHeartbeatInterval().toMillis();
+        heartbeats = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "booking-events-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeats.scheduleWithFixedDelay(this::heartbeat, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeats.shutdownNow();
+        streams.values().forEach(list -> list.forEach(Stream::close));
+        sender.shutdownNow();
+    }
+
+    public SseEmitter subscribe(Long userId) {
+        Stream stream = new Stream(userId, new SseEmitter(properties.getTimeout().toMillis()));
+        stream.emitter.onCompletion(() -> remove(stream));
+        stream.emitter.onTimeout(stream::close);
+        stream.emitter.onError(error -> stream.close());
+        List<Stream> evicted = new ArrayList<>();
+        streams.compute(userId, (id, current) -> {
+            List<Stream> next = current == null ? new ArrayList<>() : new ArrayList<>(current);
+            next.add(stream);
+            while (next.size() > properties.getMaxStreamsPerUser()) {
+                evicted.add(next.remove(0));
+            }
+            return List.copyOf(next);
+        });
+        evicted.forEach(Stream::close);
+        log.debug("Пользователь {} подписался на события бронирований", userId);
+        stream.offer(new Outgoing(null, "ready", Map.of("userId", userId)));
+        return stream.emitter;
+    }
+
+    /**
+     * Публикует событие владельцу вещи и автору бронирования после фиксации текущей транзакции,
+     * без транзакции - сразу.
+     */
+    public void publishAfterCommit(BookingEventType type, BookingDto booking, Long ownerId) {
+        Set<Long> recipients = new LinkedHashSet<>();
+        recipients.add(ownerId);
+        if (booking.getBooker() != null) {
+            recipients.add(booking.getBooker().getId());
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publishEverywhere(type, booking, recipients);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publishEverywhere(type, booking, recipients);
+            }
+        });
+    }
+
+    private void publishEverywhere(BookingEventType type, BookingDto booking, Set<Long> recipients) {
+        publish(type, booking, recipients);
+        relay.ifAvailable(other -> other.send(type, booking, recipients));
+    }
+
+    /**
+     * Раскладывает событие подписчикам этого узла. Для событий с других узлов booking - уже разобранный JSON.
+     */
+    void publish(BookingEventType type, Object booking, Set<Long> recipients) {
+        Outgoing event = new Outgoing(sequence.incrementAndGet(), type.name().toLowerCase(), booking);
+        for (Long userId : recipients) {
+            for (Stream stream : streams.getOrDefault(userId, List.of())) {
+                if (stream.offer(event)) {
+                    published.increment();
+                }
+            }
+        }
+    }
+
+    private void heartbeat() {
+        try {
+            streams.values().forEach(list -> list.stream()
+                    .filter(stream -> stream.queue.isEmpty())
+                    .forEach(stream -> stream.offer(HEARTBEAT)));
+        } catch (RuntimeException e) {
+            log.error("Ошибка при отправке heartbeat в потоки событий бронирований", e);
+        }
+    }
+
+    private void remove(Stream stream) {
+        streams.computeIfPresent(stream.userId, (id, current) -> {
+            List<Stream> next = current.stream().filter(other -> other != stream).toList();
+            return next.isEmpty() ? null : next;
+        });
+    }
+
+    private record Outgoing(Long id, String name, Object data) {
+    }
+
+    private final class Stream {
+
+        private final Long userId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<Outgoing> queue = new ArrayBlockingQueue<>(properties.getBufferSize());
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean closed;
+
+        private Stream(Long userId, SseEmitter emitter) {
+            this.userId = userId;
+            this.emitter = emitter;
+        }
+
+        boolean offer(Outgoing event) {
+            if (closed) {
+                return false;
+            }
+            if (!queue.offer(event)) {
+                log.debug("Подписчик {} не успевает читать события бронирований, поток закрыт", userId);
+                overflows.increment();
+                close();
+                return false;
+            }
+            schedule();
+            return true;
+        }
+
+        private void schedule() {
+            if (draining.compareAndSet(false, true)) {
+                sender.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                Outgoing event;
+                while (!closed && (event = queue.poll()) != null) {
+                    emitter.send(toSse(event));
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.atDebug().addArgument(userId).addArgument(e.getMessage())
+                        .log("Поток событий бронирований пользователя {} оборван: {}");
+                close();
+            } finally {
+                draining.set(false);
+                // событие могло прийти между последним poll и сбросом флага
+                if (!closed && !queue.isEmpty()) {
+                    schedule();
+                }
+            }
+        }
+
+        void close() {
+            closed = true;
+            queue.clear();
+            remove(this);
+            try {
+                emitter.complete();
+            } catch (IllegalStateException e) {
+                log.debug("Поток событий пользователя {} уже завершен", userId);
+            }
+        }
+
+        private SseEmitter.SseEventBuilder toSse(Outgoing event) {
+            if (event == HEARTBEAT) {
+                return SseEmitter.event().comment("heartbeat");
+            }
+            SseEmitter.SseEventBuilder builder = SseEmitter.event().name(event.name())
+                    .data(event.data(), MediaType.APPLICATION_JSON);
+            return event.id() == null ? builder : builder.id(String.valueOf(event.id()));
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package ru.practicum.shareit.booking.expiry;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.events.BookingEventType;
+import ru.practicum.shareit.booking.events.BookingEvents;
+import ru.practicum.shareit.booking.mapper.BookingMapper;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.repository.BookingRepository;
+import ru.practicum.shareit.sharding.Shards;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Переводит в EXPIRED бронирования, которые остались в WAITING после начала или дольше срока подтверждения.
+ * Работает порциями по chunkSize строк: каждая порция - короткая транзакция из выборки id и одного UPDATE,
+ * поэтому блокировки не копятся, а подтверждения владельцами между порциями проходят без ожидания.
+ * Владелец и арендатор получают событие expired после фиксации порции, как и при подтверждении.
+ */
+@Slf4j
+@Component
+@Profile("!inmemory")
+@EnableConfigurationProperties(BookingExpiryProperties.class)
+@ConditionalOnProperty(prefix = "shareit.booking-expiry", name = "enabled", havingValue = "true")
+public class BookingExpiryJob {
+
+    private final BookingExpiryProperties properties;
+    private final BookingRepository bookingRepository;
+    private final BookingEvents bookingEvents;
+    private final Shards shards;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter expired;
+    private final Counter chunks;
+    private final Timer runs;
+
+    private ScheduledExecutorService scheduler;
+
+    public BookingExpiryJob(BookingExpiryProperties properties, BookingRepository bookingRepository,
+                            BookingEvents bookingEvents, Shards shards, PlatformTransactionManager transactionManager,
+                            MeterRegistry registry) {
+        this.properties = properties;
+        this.bookingRepository = bookingRepository;
+        this.bookingEvents = bookingEvents;
+        this.shards = shards;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.expired = Counter.builder("shareit.bookings.expired")
+                .description("Бронирования, переведенные из WAITING в EXPIRED")
+                .register(registry);
+        this.chunks = Counter.builder("shareit.bookings.expiry.chunks")
+                .description("Порции, обработанные задачей истечения бронирований")
+                .register(registry);
+        this.runs = Timer.builder("shareit.bookings.expiry.run")
+                .description("Длительность одного запуска задачи истечения бронирований")
+                .register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        long interval = properties.getInterval().toMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "booking-expiry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::expireSafely, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Один запуск: на каждом шарде не больше maxChunksPerRun порций. Возвращает число переведенных в EXPIRED
+     * бронирований.
+     */
+    public int expire() {
+        return runs.record(() -> shards.sumOverShards(this::expireShard));
+    }
+
+    private int expireShard() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime createdBefore = now.minus(properties.getApprovalTimeout());
+        int total = 0;
+        for (int chunk = 0; chunk < properties.getMaxChunksPerRun(); chunk++) {
+            Integer updated = transactionTemplate.execute(status -> {
+                List<Long> ids = bookingRepository.findIdsOfStale(BookingStatus.WAITING, now, createdBefore,
+                        PageRequest.of(0, properties.getChunkSize()));
+                if (ids.isEmpty()) {
+                    return -1;
+                }
+                int count = bookingRepository.updateStatus(ids, BookingStatus.WAITING, BookingStatus.EXPIRED,
+                        LocalDateTime.now().truncatedTo(ChronoUnit.MICROS));
+                for (Booking booking : bookingRepository.findAllByIdInAndStatus(ids, BookingStatus.EXPIRED)) {
+                    bookingEvents.publishAfterCommit(BookingEventType.EXPIRED, BookingMapper.toBookingDto(booking),
+                            booking.getOwnerId());
+                }
+                return count;
+            });
+            if (updated == null || updated < 0) {
+                break;
+            }
+            chunks.increment();
+            expired.increment(updated);
+            total += updated;
+        }
+        if (total > 0) {
+            log.info("Истекло {} бронирований в статусе WAITING", total);
+        }
+        return total;
+    }
+
+    private void expireSafely() {
+        try {
+            expire();
+        } catch (RuntimeException e) {
+            log.error("Ошибка при истечении бронирований в статусе WAITING", e);
+        }
+    }
+}
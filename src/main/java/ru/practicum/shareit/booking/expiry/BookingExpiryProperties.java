@@ -0,0 +1,24 @@
+package ru.practicum.shareit.booking.expiry;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "shareit.booking-expiry")
+public class BookingExpiryProperties {
+
+    private boolean enabled = false;
+
+    private Duration interval = Duration.ofMinutes(1);
+
+    // WAITING дольше этого срока истекает, даже если начало бронирования еще не наступило
+    private Duration approvalTimeout = Duration.ofDays(2);
+
+    // строк в одной транзакции
+    private int chunkSize = 500;
+
+    // ограничение работы за один запуск, остаток обработается в следующий
+    private int maxChunksPerRun = 100;
+}
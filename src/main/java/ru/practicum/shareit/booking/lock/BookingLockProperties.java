@@ -0,0 +1,17 @@
+package ru.practicum.shareit.booking.lock;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "shareit.booking-locks")
+public class BookingLockProperties {
+
+    // число блокировок, между которыми распределяются вещи; округляется вверх до степени двойки
+    private int stripes = 1024;
+
+    // сколько запрос ждет очереди к вещи, прежде чем получить 503
+    private Duration timeout = Duration.ofSeconds(5);
+}
@@ -0,0 +1,76 @@
+package ru.practicum.shareit.booking.lock;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.shareit.exceptions.DeadlineExceededException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Блокировки подтверждения бронирований, разбитые на полосы по id вещи. Запросы к одной вещи выстраиваются
+ * в очередь внутри процесса, а запросы к другим вещам почти никогда не попадают в ту же полосу и не ждут.
+ * Полоса берется до начала транзакции и отпускается после ее фиксации: ожидающий запрос не держит соединение
+ * из пула, а следующий за ним видит уже зафиксированное бронирование.
+ * Между узлами то же самое обеспечивает блокировка строки вещи в базе (ItemRepository.findByIdForUpdate),
+ * полоса лишь не дает запросам одного узла копиться в очереди на эту строку.
+ */
+@Component
+@Profile("!inmemory")
+@EnableConfigurationProperties(BookingLockProperties.class)
+public class ItemLocks {
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+    private final long timeoutNanos;
+
+    public ItemLocks(BookingLockProperties properties) {
+        int size = Integer.highestOneBit(Math.max(1, properties.getStripes() - 1)) << 1;
+        stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        mask = size - 1;
+        timeoutNanos = properties.getTimeout().toNanos();
+    }
+
+    /**
+     * Выполняет action под полосой вещи. action сам открывает и фиксирует транзакцию. Если вызывающий уже
+     * открыл свою (запись ответа Idempotency-Key в той же транзакции), соединение у него уже взято,
+     * и полоса держится до ее завершения.
+     */
+    public <T> T callLocked(Long itemId, Supplier<T> action) {
+        ReentrantLock lock = stripe(itemId);
+        try {
+            if (!lock.tryLock(timeoutNanos, TimeUnit.NANOSECONDS)) {
+                throw new DeadlineExceededException("Слишком много одновременных бронирований вещи, повторите позже");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DeadlineExceededException("Ожидание блокировки вещи прервано");
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    lock.unlock();
+                }
+            });
+            return action.get();
+        }
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    ReentrantLock stripe(Long itemId) {
+        long hash = itemId * 0x9E3779B97F4A7C15L;
+        return stripes[(int) (hash ^ (hash >>> 32)) & mask];
+    }
+}
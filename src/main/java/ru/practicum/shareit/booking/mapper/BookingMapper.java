@@ -1,11 +1,21 @@
 package ru.practicum.shareit.booking.mapper;
 
+import ru.practicum.shareit.booking.dto.BookingChangesDto;
 import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.dto.BookingSummaryDto;
 import ru.practicum.shareit.booking.dto.CreateBookingDto;
 import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingField;
+import ru.practicum.shareit.booking.model.BookingShort;
+import ru.practicum.shareit.booking.model.BookingStateCounts;
 import ru.practicum.shareit.item.mapper.ItemMapper;
+import ru.practicum.shareit.sync.ChangeKind;
+import ru.practicum.shareit.sync.ChangePage;
 import ru.practicum.shareit.user.mapper.UserMapper;
 
+import java.util.List;
+import java.util.Set;
+
 public class BookingMapper {
     public static BookingDto toBookingDto(Booking booking) {
         return BookingDto.builder()
@@ -18,6 +28,26 @@ public class BookingMapper {
                 .build();
     }
 
+    public static BookingDto toBookingDto(Booking booking, Set<BookingField> fields) {
+        return BookingDto.builder()
+                .id(fields.contains(BookingField.ID) ? booking.getId() : null)
+                .start(fields.contains(BookingField.START) ? booking.getStart() : null)
+                .end(fields.contains(BookingField.END) ? booking.getEnd() : null)
+                .status(fields.contains(BookingField.STATUS) ? booking.getStatus() : null)
+                .booker(fields.contains(BookingField.BOOKER) ? UserMapper.toUserDto(booking.getBooker()) : null)
+                .item(fields.contains(BookingField.ITEM) ? ItemMapper.toItemDto(booking.getItem()) : null)
+                .build();
+    }
+
+    public static BookingDto toBookingDto(BookingShort booking, Set<BookingField> fields) {
+        return BookingDto.builder()
+                .id(fields.contains(BookingField.ID) ? booking.getId() : null)
+                .start(fields.contains(BookingField.START) ? booking.getStart() : null)
+                .end(fields.contains(BookingField.END) ? booking.getEnd() : null)
+                .status(fields.contains(BookingField.STATUS) ? booking.getStatus() : null)
+                .build();
+    }
+
     public static Booking toBookingCreate(CreateBookingDto bookingDto) {
         return Booking.builder()
                 .start(bookingDto.getStart())
@@ -25,4 +55,37 @@ public class BookingMapper {
                 .build();
 
     }
+
+    public static BookingSummaryDto toBookingSummaryDto(BookingStateCounts counts) {
+        return BookingSummaryDto.builder()
+                .all(counts.getAllCount())
+                .current(counts.getCurrentCount())
+                .past(counts.getPastCount())
+                .future(counts.getFutureCount())
+                .waiting(counts.getWaitingCount())
+                .rejected(counts.getRejectedCount())
+                .build();
+    }
+
+    public static BookingSummaryDto toBookingSummaryDto(List<BookingStateCounts> counts) {
+        return BookingSummaryDto.builder()
+                .all(counts.stream().mapToLong(BookingStateCounts::getAllCount).sum())
+                .current(counts.stream().mapToLong(BookingStateCounts::getCurrentCount).sum())
+                .past(counts.stream().mapToLong(BookingStateCounts::getPastCount).sum())
+                .future(counts.stream().mapToLong(BookingStateCounts::getFutureCount).sum())
+                .waiting(counts.stream().mapToLong(BookingStateCounts::getWaitingCount).sum())
+                .rejected(counts.stream().mapToLong(BookingStateCounts::getRejectedCount).sum())
+                .build();
+    }
+
+    public static BookingChangesDto toBookingChangesDto(ChangePage page) {
+        return BookingChangesDto.builder()
+                .bookings(page.rows(ChangeKind.BOOKING, Booking.class).stream()
+                        .map(BookingMapper::toBookingDto)
+                        .toList())
+                .deletedBookings(page.ids(ChangeKind.BOOKING_DELETED))
+                .watermark(page.watermark())
+                .hasMore(page.hasMore())
+                .build();
+    }
 }
@@ -0,0 +1,131 @@
+package ru.practicum.shareit.booking.migration;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.sharding.Shards;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разовая миграция bookings.owner_id для баз, созданных до появления колонки; schema.sql только добавляет
+ * колонку. Шард проходится по первичному ключу порциями по chunkSize строк, каждая - короткая транзакция
+ * из одного UPDATE, поэтому таблица не блокируется целиком. После обхода колонка становится NOT NULL
+ * и получает внешний ключ fk_bookings_owner_to_users, если их еще нет. Если за время обхода узел старой версии
+ * вставил строки без владельца, обход шарда начинается заново. Когда все шарды готовы, задача останавливается;
+ * на новых базах это видно по схеме сразу при первом запуске.
+ */
+@Slf4j
+@Component
+@Profile("!inmemory")
+@EnableConfigurationProperties(BookingOwnerBackfillProperties.class)
+@ConditionalOnProperty(prefix = "shareit.booking-owner-backfill", name = "enabled", havingValue = "true")
+public class BookingOwnerBackfillJob {
+
+    private final BookingOwnerBackfillProperties properties;
+    private final BookingOwnerBackfillRepository repository;
+    private final Shards shards;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter filled;
+    // последний пройденный id на каждом шарде
+    private final long[] cursors;
+
+    private ScheduledExecutorService scheduler;
+
+    public BookingOwnerBackfillJob(BookingOwnerBackfillProperties properties, BookingOwnerBackfillRepository repository,
+                                   Shards shards, PlatformTransactionManager transactionManager,
+                                   MeterRegistry registry) {
+        this.properties = properties;
+        this.repository = repository;
+        this.shards = shards;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.filled = Counter.builder("shareit.bookings.owner-backfill.filled")
+                .description("Бронирования, получившие owner_id при миграции")
+                .register(registry);
+        this.cursors = new long[shards.count()];
+    }
+
+    @PostConstruct
+    public void start() {
+        long interval = properties.getInterval().toMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "booking-owner-backfill");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::runSafely, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Один запуск: на каждом шарде не больше maxChunksPerRun порций. Возвращает true, если миграция завершена
+     * на всех шардах.
+     */
+    public synchronized boolean run() {
+        boolean completed = true;
+        for (int shard = 0; shard < shards.count(); shard++) {
+            int target = shard;
+            completed &= shards.on(shard, () -> migrateShard(target));
+        }
+        return completed;
+    }
+
+    private boolean migrateShard(int shard) {
+        if (!repository.isOwnerNullable() && repository.hasOwnerForeignKey()) {
+            return true;
+        }
+        for (int chunk = 0; chunk < properties.getMaxChunksPerRun(); chunk++) {
+            long after = cursors[shard];
+            Long end = repository.findChunkEnd(after, properties.getChunkSize());
+            if (end == null) {
+                return complete(shard);
+            }
+            Integer updated = transactionTemplate.execute(status -> repository.fillOwners(after, end));
+            filled.increment(updated == null ? 0 : updated);
+            cursors[shard] = end;
+        }
+        return false;
+    }
+
+    private boolean complete(int shard) {
+        cursors[shard] = 0;
+        if (repository.hasMissingOwners()) {
+            log.info("На шарде {} появились бронирования без owner_id, обход начинается заново", shard);
+            return false;
+        }
+        if (repository.isOwnerNullable()) {
+            repository.makeOwnerNotNull();
+        }
+        if (!repository.hasOwnerForeignKey()) {
+            repository.addOwnerForeignKey();
+        }
+        log.info("Миграция bookings.owner_id на шарде {} завершена", shard);
+        return true;
+    }
+
+    private void runSafely() {
+        try {
+            if (run()) {
+                scheduler.shutdown();
+            }
+        } catch (RuntimeException e) {
+            // например, внешний ключ одновременно добавил другой узел: следующий запуск увидит его в схеме
+            log.error("Ошибка миграции bookings.owner_id", e);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package ru.practicum.shareit.booking.migration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "shareit.booking-owner-backfill")
+public class BookingOwnerBackfillProperties {
+
+    private boolean enabled = false;
+
+    private Duration interval = Duration.ofSeconds(10);
+
+    // строк в одной транзакции
+    private int chunkSize = 1000;
+
+    // ограничение работы за один запуск, остаток обработается в следующий
+    private int maxChunksPerRun = 100;
+}
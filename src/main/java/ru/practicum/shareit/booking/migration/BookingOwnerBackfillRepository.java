@@ -0,0 +1,58 @@
+package ru.practicum.shareit.booking.migration;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Заполнение bookings.owner_id в базах, созданных до появления колонки. Порции идут по первичному ключу
+ * после курсора, проверки схемы - через information_schema текущей схемы (H2 хранит имена в верхнем регистре).
+ * Запросы идут на шард, к которому привязан текущий поток.
+ */
+@Repository
+@Profile("!inmemory")
+@RequiredArgsConstructor
+public class BookingOwnerBackfillRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    boolean isOwnerNullable() {
+        String nullable = jdbcTemplate.queryForObject("SELECT is_nullable FROM information_schema.columns " +
+                "WHERE table_schema = CURRENT_SCHEMA AND LOWER(table_name) = 'bookings' " +
+                "AND LOWER(column_name) = 'owner_id'", String.class);
+        return "YES".equalsIgnoreCase(nullable);
+    }
+
+    boolean hasOwnerForeignKey() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.table_constraints " +
+                "WHERE table_schema = CURRENT_SCHEMA AND LOWER(table_name) = 'bookings' " +
+                "AND LOWER(constraint_name) = 'fk_bookings_owner_to_users'", Long.class) > 0;
+    }
+
+    // верхний id порции из limit строк после afterId; null, если строк дальше нет
+    Long findChunkEnd(long afterId, int limit) {
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM (SELECT id FROM bookings WHERE id > ? " +
+                "ORDER BY id LIMIT ?) chunk", Long.class, afterId, limit);
+    }
+
+    int fillOwners(long afterId, long toId) {
+        return jdbcTemplate.update("UPDATE bookings SET owner_id = (SELECT i.owner_id FROM items i " +
+                "WHERE i.id = bookings.item_id) WHERE id > ? AND id <= ? AND owner_id IS NULL", afterId, toId);
+    }
+
+    // строки без владельца после обхода мог вставить узел старой версии
+    boolean hasMissingOwners() {
+        return !jdbcTemplate.queryForList("SELECT id FROM bookings WHERE owner_id IS NULL LIMIT 1", Long.class)
+                .isEmpty();
+    }
+
+    void makeOwnerNotNull() {
+        jdbcTemplate.execute("ALTER TABLE bookings ALTER COLUMN owner_id SET NOT NULL");
+    }
+
+    void addOwnerForeignKey() {
+        jdbcTemplate.execute("ALTER TABLE bookings ADD CONSTRAINT fk_bookings_owner_to_users " +
+                "FOREIGN KEY (owner_id) REFERENCES users (id)");
+    }
+}
@@ -6,6 +6,7 @@ import ru.practicum.shareit.item.model.Item;
 import ru.practicum.shareit.user.model.User;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 
 /**
  * TODO Sprint add-bookings.
@@ -35,6 +36,10 @@ public class Booking {
     @ToString.Exclude
     private Item item;
 
+    @Column(name = "owner_id", nullable = false)
+    private Long ownerId;
+    //владелец вещи, копия items.owner_id: списки бронирований владельца читаются из bookings без соединения с items
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "booker_id", nullable = false)
     @ToString.Exclude
@@ -45,4 +50,18 @@ public class Booking {
     @Column(name = "status", nullable = false)
     @Builder.Default
     private BookingStatus status = BookingStatus.WAITING;
+
+    @Column(name = "created")
+    private LocalDateTime created;
+    //момент создания: от него отсчитывается срок ожидания подтверждения владельцем
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    //последнее изменение для ленты /bookings/changes; массовые UPDATE ставят его сами
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        updatedAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    }
 }
@@ -0,0 +1,46 @@
+package ru.practicum.shareit.booking.model;
+
+import ru.practicum.shareit.exceptions.MissedSmthException;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+
+public enum BookingField {
+    ID("id"),
+    START("start"),
+    END("end"),
+    STATUS("status"),
+    BOOKER("booker"),
+    ITEM("item");
+
+    private final String name;
+
+    BookingField(String name) {
+        this.name = name;
+    }
+
+    public static Set<BookingField> parse(Collection<String> names) {
+        if (names == null || names.isEmpty()) {
+            return EnumSet.allOf(BookingField.class);
+        }
+        Set<BookingField> fields = EnumSet.noneOf(BookingField.class);
+        for (String name : names) {
+            fields.add(of(name));
+        }
+        return fields;
+    }
+
+    private static BookingField of(String name) {
+        for (BookingField field : values()) {
+            if (field.name.equalsIgnoreCase(name.trim())) {
+                return field;
+            }
+        }
+        throw new MissedSmthException("Неизвестное поле бронирования: " + name);
+    }
+
+    public static boolean needsEntity(Set<BookingField> fields) {
+        return fields.contains(BOOKER) || fields.contains(ITEM);
+    }
+}
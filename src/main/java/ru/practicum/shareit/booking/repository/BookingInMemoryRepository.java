@@ -0,0 +1,184 @@
+package ru.practicum.shareit.booking.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.exceptions.AccessNotAllowedException;
+import ru.practicum.shareit.exceptions.DataNotFoundException;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.storage.JournalRecord;
+import ru.practicum.shareit.storage.StorageJournal;
+import ru.practicum.shareit.user.model.User;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Потокобезопасное хранилище бронирований для профиля inmemory.
+ * Индексы по автору, владельцу и вещи уже отсортированы по дате начала (новые первыми),
+ * поэтому выборка по состоянию - это проход по одному индексу без сортировки.
+ */
+@Slf4j
+@Repository
+@Profile("inmemory")
+@RequiredArgsConstructor
+public class BookingInMemoryRepository {
+
+    private static final String SEQUENCE = "bookings";
+
+    private static final Comparator<BookingRef> START_DESC = Comparator
+            .comparing(BookingRef::start).reversed()
+            .thenComparing(Comparator.comparingLong(BookingRef::id).reversed());
+
+    private final Map<Long, Booking> bookingStorage = new ConcurrentHashMap<>();
+
+    private final Map<Long, NavigableSet<BookingRef>> bookerIndex = new ConcurrentHashMap<>();
+
+    private final Map<Long, NavigableSet<BookingRef>> ownerIndex = new ConcurrentHashMap<>();
+
+    private final Map<Long, NavigableSet<BookingRef>> itemIndex = new ConcurrentHashMap<>();
+
+    private final AtomicLong generatedId = new AtomicLong();
+
+    private final StorageJournal journal;
+
+
+    public Booking addBooking(Booking booking) {
+        long id = generatedId.incrementAndGet();
+        journal.write(id, () -> {
+            booking.setId(id);
+            put(booking);
+            return booking;
+        }, this::toRecord);
+        log.debug("Бронирование добавлено в хранилище");
+        return booking;
+    }
+
+    public Booking getBooking(Long bookingId) {
+        Booking booking = bookingId == null ? null : bookingStorage.get(bookingId);
+        if (booking == null) {
+            throw new DataNotFoundException("Бронирования с таким id не найдено");
+        }
+        return booking;
+    }
+
+    public Booking changeStatus(Long bookingId, BookingStatus expected, BookingStatus status) {
+        return journal.write(bookingId, () -> doChangeStatus(bookingId, expected, status), this::toRecord);
+    }
+
+    private Booking doChangeStatus(Long bookingId, BookingStatus expected, BookingStatus status) {
+        Booking updated = bookingStorage.computeIfPresent(bookingId, (id, booking) -> {
+            if (booking.getStatus() != expected) {
+                throw new AccessNotAllowedException("Для изменения статуса бронирования статус вещи должен быть " +
+                        expected);
+            }
+            return Booking.builder()
+                    .id(booking.getId())
+                    .start(booking.getStart())
+                    .end(booking.getEnd())
+                    .item(booking.getItem())
+                    .ownerId(booking.getOwnerId())
+                    .booker(booking.getBooker())
+                    .status(status)
+                    .created(booking.getCreated())
+                    .build();
+        });
+        if (updated == null) {
+            throw new DataNotFoundException("Бронирования с таким id не найдено");
+        }
+        log.atDebug().addArgument(bookingId).addArgument(status)
+                .log("Статус бронирования {} изменен на {}");
+        return updated;
+    }
+
+    public List<Booking> findByBooker(Long bookerId, Predicate<Booking> filter) {
+        return find(bookerIndex, bookerId, filter);
+    }
+
+    public List<Booking> findByOwner(Long ownerId, Predicate<Booking> filter) {
+        return find(ownerIndex, ownerId, filter);
+    }
+
+    public List<Booking> findByItem(Long itemId) {
+        return find(itemIndex, itemId, booking -> true);
+    }
+
+    public boolean existsFinishedBooking(Long bookerId, Long itemId, BookingStatus status, LocalDateTime end) {
+        return !findByBooker(bookerId, booking -> booking.getItem().getId().equals(itemId) &&
+                booking.getStatus() == status &&
+                booking.getEnd().isBefore(end)).isEmpty();
+    }
+
+    public void restore(JournalRecord record) {
+        switch (record) {
+            case JournalRecord.BookingPut put -> {
+                User owner = User.builder().id(put.ownerId()).build();
+                put(Booking.builder()
+                        .id(put.id())
+                        .start(put.start())
+                        .end(put.end())
+                        .item(Item.builder().id(put.itemId()).owner(owner).build())
+                        .ownerId(put.ownerId())
+                        .booker(User.builder().id(put.bookerId()).build())
+                        .status(put.status())
+                        .build());
+                generatedId.accumulateAndGet(put.id(), Math::max);
+            }
+            case JournalRecord.SequenceValue sequence -> {
+                if (SEQUENCE.equals(sequence.name())) {
+                    generatedId.accumulateAndGet(sequence.value(), Math::max);
+                }
+            }
+            default -> throw new IllegalArgumentException("Запись журнала не относится к бронированиям: " + record);
+        }
+    }
+
+    public void snapshot(Consumer<JournalRecord> consumer) {
+        consumer.accept(new JournalRecord.SequenceValue(SEQUENCE, generatedId.get()));
+        bookingStorage.values().forEach(booking -> consumer.accept(toRecord(booking)));
+    }
+
+    private void put(Booking booking) {
+        if (bookingStorage.put(booking.getId(), booking) != null) {
+            return;
+        }
+        BookingRef ref = new BookingRef(booking.getStart(), booking.getId());
+        bookerIndex.computeIfAbsent(booking.getBooker().getId(), id -> newIndex()).add(ref);
+        ownerIndex.computeIfAbsent(booking.getItem().getOwner().getId(), id -> newIndex()).add(ref);
+        itemIndex.computeIfAbsent(booking.getItem().getId(), id -> newIndex()).add(ref);
+    }
+
+    private JournalRecord toRecord(Booking booking) {
+        return new JournalRecord.BookingPut(booking.getId(), booking.getStart(), booking.getEnd(),
+                booking.getItem().getId(), booking.getItem().getOwner().getId(), booking.getBooker().getId(),
+                booking.getStatus());
+    }
+
+    private List<Booking> find(Map<Long, NavigableSet<BookingRef>> index, Long key, Predicate<Booking> filter) {
+        return index.getOrDefault(key, Collections.emptyNavigableSet()).stream()
+                .map(ref -> bookingStorage.get(ref.id()))
+                .filter(Objects::nonNull)
+                .filter(filter)
+                .toList();
+    }
+
+    private NavigableSet<BookingRef> newIndex() {
+        return new ConcurrentSkipListSet<>(START_DESC);
+    }
+
+    private record BookingRef(LocalDateTime start, long id) {
+    }
+}
@@ -0,0 +1,81 @@
+package ru.practicum.shareit.booking.repository;
+
+import io.r2dbc.spi.Readable;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.model.BookingState;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.user.dto.UserDto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Потоковое чтение бронирований с теми же условиями по BookingState, что и в BookingRepository.
+ * Строки отдаются по мере запроса подписчика, весь список в памяти не собирается.
+ */
+@Repository
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "shareit.reactive", name = "enabled")
+public class BookingReactiveRepository {
+
+    private static final String SELECT = "SELECT b.id, b.start_date, b.end_date, b.status, " +
+            "u.id AS booker_id, u.name AS booker_name, u.email AS booker_email, " +
+            "i.id AS item_id, i.name AS item_name, i.description AS item_description, " +
+            "i.is_available AS item_available " +
+            "FROM bookings b " +
+            "JOIN items i ON i.id = b.item_id " +
+            "JOIN users u ON u.id = b.booker_id ";
+
+    private final DatabaseClient reactiveDatabaseClient;
+
+    public Flux<BookingDto> findAllByBookerIdAndState(Long bookerId, BookingState state) {
+        return find("b.booker_id = :userId", bookerId, state);
+    }
+
+    public Flux<BookingDto> findAllByOwnerIdAndState(Long ownerId, BookingState state) {
+        return find("b.owner_id = :userId", ownerId, state);
+    }
+
+    private Flux<BookingDto> find(String userCondition, Long userId, BookingState state) {
+        String stateCondition = switch (state) {
+            case ALL -> "";
+            case CURRENT -> " AND b.start_date <= :now AND b.end_date >= :now";
+            case PAST -> " AND b.end_date < :now";
+            case FUTURE -> " AND b.start_date > :now";
+            // имя статуса подставляется литералом: в H2 колонка может быть ENUM, а строковый параметр уходит как CLOB
+            case WAITING, REJECTED -> " AND b.status = '" + state.name() + "'";
+        };
+        DatabaseClient.GenericExecuteSpec spec = reactiveDatabaseClient
+                .sql(SELECT + "WHERE " + userCondition + stateCondition + " ORDER BY b.start_date DESC")
+                .bind("userId", userId);
+        if (stateCondition.contains(":now")) {
+            spec = spec.bind("now", LocalDateTime.now());
+        }
+        return spec.map(BookingReactiveRepository::toBookingDto).all();
+    }
+
+    private static BookingDto toBookingDto(Readable row) {
+        return BookingDto.builder()
+                .id(row.get("id", Long.class))
+                .start(row.get("start_date", LocalDateTime.class))
+                .end(row.get("end_date", LocalDateTime.class))
+                .status(BookingStatus.valueOf(row.get("status", String.class)))
+                .booker(UserDto.builder()
+                        .id(row.get("booker_id", Long.class))
+                        .name(row.get("booker_name", String.class))
+                        .email(row.get("booker_email", String.class))
+                        .build())
+                .item(ItemDto.builder()
+                        .id(row.get("item_id", Long.class))
+                        .name(row.get("item_name", String.class))
+                        .description(row.get("item_description", String.class))
+                        .available(row.get("item_available", Boolean.class))
+                        .build())
+                .build();
+    }
+}
@@ -1,47 +1,118 @@
 package ru.practicum.shareit.booking.repository;
 
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import ru.practicum.shareit.booking.model.Booking;
 import ru.practicum.shareit.booking.model.BookingOnlyDates;
+import ru.practicum.shareit.booking.model.BookingShort;
+import ru.practicum.shareit.booking.model.BookingStateCounts;
 import ru.practicum.shareit.booking.model.BookingStatus;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface BookingRepository extends JpaRepository<Booking, Long> {
+    @Override
+    @EntityGraph(attributePaths = {"item", "booker"})
+    Optional<Booking> findById(Long id);
+
+    // полоса вещи при подтверждении берется до транзакции, поэтому id вещи читается отдельно
+    @Query("select b.item.id from Booking b where b.id = ?1")
+    Long findItemIdById(Long id);
+
+    @EntityGraph(attributePaths = {"item", "booker"})
     List<Booking> findAllByBookerIdOrderByStartDesc(Long bookerId);
 
-    @Query("SELECT b FROM Booking b " +
-            "WHERE b.booker.id = :bookerId AND b.start <= :now AND b.end >= :now " +
-            "ORDER BY b.start DESC")
-    List<Booking> findAllByBookerIdAndCurrentTime(@Param("bookerId") Long bookerId,
-                                                  @Param("now") LocalDateTime now);
+    @EntityGraph(attributePaths = {"item", "booker"})
+    List<Booking> findAllByBookerIdAndStartLessThanEqualAndEndGreaterThanEqualOrderByStartDesc(
+            Long bookerId, LocalDateTime start, LocalDateTime end);
 
+    @EntityGraph(attributePaths = {"item", "booker"})
     List<Booking> findAllByBookerIdAndEndBeforeOrderByStartDesc(Long bookerId, LocalDateTime end);
 
+    @EntityGraph(attributePaths = {"item", "booker"})
     List<Booking> findAllByBookerIdAndStartAfterOrderByStartDesc(Long bookerId, LocalDateTime start);
 
+    @EntityGraph(attributePaths = {"item", "booker"})
     List<Booking> findAllByBookerIdAndStatusOrderByStartDesc(Long bookerId, BookingStatus status);
 
-    List<Booking> findAllByItemOwnerIdOrderByStartDesc(Long bookerId);
+    @EntityGraph(attributePaths = {"item", "booker"})
+    List<Booking> findAllByOwnerIdOrderByStartDesc(Long ownerId);
 
-    @Query("SELECT b FROM Booking b " +
-            "WHERE b.item.owner.id = :ownerId AND b.start <= :now AND b.end >= :now " +
-            "ORDER BY b.start DESC")
-    List<Booking> findAllByOwnerIdAndCurrentTime(@Param("ownerId") Long ownerId,
-                                                 @Param("now") LocalDateTime now);
+    @EntityGraph(attributePaths = {"item", "booker"})
+    List<Booking> findAllByOwnerIdAndStartLessThanEqualAndEndGreaterThanEqualOrderByStartDesc(
+            Long ownerId, LocalDateTime start, LocalDateTime end);
+
+    @EntityGraph(attributePaths = {"item", "booker"})
+    List<Booking> findAllByOwnerIdAndEndBeforeOrderByStartDesc(Long ownerId, LocalDateTime end);
+
+    @EntityGraph(attributePaths = {"item", "booker"})
+    List<Booking> findAllByOwnerIdAndStartAfterOrderByStartDesc(Long ownerId, LocalDateTime start);
+
+    @EntityGraph(attributePaths = {"item", "booker"})
+    List<Booking> findAllByOwnerIdAndStatusOrderByStartDesc(Long ownerId, BookingStatus status);
+
+    // те же выборки только по колонкам бронирования: без графа сущности, иначе проекция тоже соединялась бы
+    // с items и users
+    List<BookingShort> findShortByBookerIdOrderByStartDesc(Long bookerId);
+
+    List<BookingShort> findShortByBookerIdAndStartLessThanEqualAndEndGreaterThanEqualOrderByStartDesc(
+            Long bookerId, LocalDateTime start, LocalDateTime end);
+
+    List<BookingShort> findShortByBookerIdAndEndBeforeOrderByStartDesc(Long bookerId, LocalDateTime end);
+
+    List<BookingShort> findShortByBookerIdAndStartAfterOrderByStartDesc(Long bookerId, LocalDateTime start);
 
-    List<Booking> findAllByItemOwnerIdAndEndBeforeOrderByStartDesc(Long bookerId, LocalDateTime end);
+    List<BookingShort> findShortByBookerIdAndStatusOrderByStartDesc(Long bookerId, BookingStatus status);
 
-    List<Booking> findAllByItemOwnerIdAndStartAfterOrderByStartDesc(Long bookerId, LocalDateTime start);
+    List<BookingShort> findShortByOwnerIdOrderByStartDesc(Long ownerId);
 
-    List<Booking> findAllByItemOwnerIdAndStatusOrderByStartDesc(Long bookerId, BookingStatus status);
+    List<BookingShort> findShortByOwnerIdAndStartLessThanEqualAndEndGreaterThanEqualOrderByStartDesc(
+            Long ownerId, LocalDateTime start, LocalDateTime end);
+
+    List<BookingShort> findShortByOwnerIdAndEndBeforeOrderByStartDesc(Long ownerId, LocalDateTime end);
+
+    List<BookingShort> findShortByOwnerIdAndStartAfterOrderByStartDesc(Long ownerId, LocalDateTime start);
+
+    List<BookingShort> findShortByOwnerIdAndStatusOrderByStartDesc(Long ownerId, BookingStatus status);
+
+    // все состояния за один проход, условия те же, что у выборок по state в BookingServiceImpl
+    @Query("SELECT COUNT(b) as allCount, " +
+            "COALESCE(SUM(CASE WHEN b.start <= :now AND b.end >= :now THEN 1 ELSE 0 END), 0) as currentCount, " +
+            "COALESCE(SUM(CASE WHEN b.end < :now THEN 1 ELSE 0 END), 0) as pastCount, " +
+            "COALESCE(SUM(CASE WHEN b.start > :now THEN 1 ELSE 0 END), 0) as futureCount, " +
+            "COALESCE(SUM(CASE WHEN b.status = :waiting THEN 1 ELSE 0 END), 0) as waitingCount, " +
+            "COALESCE(SUM(CASE WHEN b.status = :rejected THEN 1 ELSE 0 END), 0) as rejectedCount " +
+            "FROM Booking b " +
+            "WHERE b.booker.id = :bookerId")
+    BookingStateCounts countByBookerIdPerState(@Param("bookerId") Long bookerId,
+                                               @Param("now") LocalDateTime now,
+                                               @Param("waiting") BookingStatus waiting,
+                                               @Param("rejected") BookingStatus rejected);
+
+    @Query("SELECT COUNT(b) as allCount, " +
+            "COALESCE(SUM(CASE WHEN b.start <= :now AND b.end >= :now THEN 1 ELSE 0 END), 0) as currentCount, " +
+            "COALESCE(SUM(CASE WHEN b.end < :now THEN 1 ELSE 0 END), 0) as pastCount, " +
+            "COALESCE(SUM(CASE WHEN b.start > :now THEN 1 ELSE 0 END), 0) as futureCount, " +
+            "COALESCE(SUM(CASE WHEN b.status = :waiting THEN 1 ELSE 0 END), 0) as waitingCount, " +
+            "COALESCE(SUM(CASE WHEN b.status = :rejected THEN 1 ELSE 0 END), 0) as rejectedCount " +
+            "FROM Booking b " +
+            "WHERE b.ownerId = :ownerId")
+    BookingStateCounts countByOwnerIdPerState(@Param("ownerId") Long ownerId,
+                                              @Param("now") LocalDateTime now,
+                                              @Param("waiting") BookingStatus waiting,
+                                              @Param("rejected") BookingStatus rejected);
 
     @Query("SELECT b.item.id as itemId, b.start as start, b.end as end " +
             "FROM Booking b " +
-            "WHERE b.item.owner.id = :ownerId " +
+            "WHERE b.ownerId = :ownerId " +
             "ORDER BY b.item.id, b.start ASC")
     List<BookingOnlyDates> findAllBookingsByOwnerId(@Param("ownerId") Long ownerId);
 
@@ -57,6 +128,56 @@ public interface BookingRepository extends JpaRepository<Booking, Long> {
             @Param("status") BookingStatus status,
             @Param("end") LocalDateTime end);
 
-    List<BookingOnlyDates> findAllBookingsByItemId(Long itemId);
+    @Query("SELECT CASE WHEN COUNT(b) > 0 THEN true ELSE false END " +
+            "FROM Booking b " +
+            "WHERE b.item.id = :itemId AND b.status = :status AND b.start < :end AND b.end > :start")
+    boolean existsOverlapping(@Param("itemId") Long itemId,
+                              @Param("status") BookingStatus status,
+                              @Param("start") LocalDateTime start,
+                              @Param("end") LocalDateTime end);
+
+    @Query("SELECT b.id FROM Booking b " +
+            "WHERE b.status = :status AND (b.start <= :now OR b.created <= :createdBefore) " +
+            "ORDER BY b.id")
+    List<Long> findIdsOfStale(@Param("status") BookingStatus status,
+                              @Param("now") LocalDateTime now,
+                              @Param("createdBefore") LocalDateTime createdBefore,
+                              Pageable pageable);
+
+    // переведенные задачей истечения бронирования для событий подписчикам
+    @EntityGraph(attributePaths = {"item", "booker"})
+    List<Booking> findAllByIdInAndStatus(Collection<Long> ids, BookingStatus status);
+
+    // статус в условии защищает от одновременного подтверждения владельцем: такие строки не меняются
+    @Modifying
+    @Query("UPDATE Booking b SET b.status = :to, b.updatedAt = :now WHERE b.id IN :ids AND b.status = :from")
+    int updateStatus(@Param("ids") Collection<Long> ids,
+                     @Param("from") BookingStatus from,
+                     @Param("to") BookingStatus to,
+                     @Param("now") LocalDateTime now);
+
+    // ленты изменений: ключ (updated_at, id) после водяного знака, см. SyncCursor
+    @EntityGraph(attributePaths = {"item", "booker"})
+    @Query("SELECT b FROM Booking b " +
+            "WHERE b.booker.id = :userId AND (b.updatedAt, b.id) > (:since, :afterId) AND b.updatedAt < :until " +
+            "ORDER BY b.updatedAt, b.id")
+    List<Booking> findBookerChanges(@Param("userId") Long userId,
+                                    @Param("since") LocalDateTime since,
+                                    @Param("afterId") long afterId,
+                                    @Param("until") LocalDateTime until,
+                                    Limit limit);
+
+    @EntityGraph(attributePaths = {"item", "booker"})
+    @Query("SELECT b FROM Booking b " +
+            "WHERE b.ownerId = :userId AND (b.updatedAt, b.id) > (:since, :afterId) AND b.updatedAt < :until " +
+            "ORDER BY b.updatedAt, b.id")
+    List<Booking> findOwnerChanges(@Param("userId") Long userId,
+                                   @Param("since") LocalDateTime since,
+                                   @Param("afterId") long afterId,
+                                   @Param("until") LocalDateTime until,
+                                   Limit limit);
+
+    // пустой список, если вещь принадлежит другому пользователю: даты бронирований видит только владелец
+    List<BookingOnlyDates> findAllBookingsByItemIdAndOwnerIdOrderByStartAsc(Long itemId, Long ownerId);
 
 }
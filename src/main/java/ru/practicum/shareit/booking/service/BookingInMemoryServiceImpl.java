@@ -0,0 +1,174 @@
+package ru.practicum.shareit.booking.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import ru.practicum.shareit.booking.dto.BookingChangesDto;
+import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.dto.BookingSummaryDto;
+import ru.practicum.shareit.booking.dto.CreateBookingDto;
+import ru.practicum.shareit.booking.events.BookingEventType;
+import ru.practicum.shareit.booking.events.BookingEvents;
+import ru.practicum.shareit.booking.mapper.BookingMapper;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingField;
+import ru.practicum.shareit.booking.model.BookingState;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.repository.BookingInMemoryRepository;
+import ru.practicum.shareit.exceptions.AccessNotAllowedException;
+import ru.practicum.shareit.exceptions.DataNotFoundException;
+import ru.practicum.shareit.exceptions.MissedSmthException;
+import ru.practicum.shareit.exceptions.WrongDateValidationException;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemInMemoryRepository;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserInMemoryRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+@Slf4j
+@Service
+@Profile("inmemory")
+@RequiredArgsConstructor
+public class BookingInMemoryServiceImpl implements BookingService {
+
+    private final BookingInMemoryRepository bookingRepository;
+    private final UserInMemoryRepository userRepository;
+    private final ItemInMemoryRepository itemRepository;
+    private final BookingEvents bookingEvents;
+
+    @Override
+    public BookingDto addBooking(Long userId, CreateBookingDto bookingDto) {
+        log.debug("Проверяем, что пользователь с userId {} существует", userId);
+        User user = userRepository.getUser(userId);
+        log.debug("Проверяем, что предмет для букинга с id {} существует", bookingDto.getItemId());
+        Item item = itemRepository.getItem(bookingDto.getItemId());
+        if (!item.getAvailable()) {
+            throw new WrongDateValidationException("Предмет не доступен для бронирования");
+        }
+        LocalDateTime now = LocalDateTime.now().minusSeconds(5);
+        if (bookingDto.getStart().equals(bookingDto.getEnd()) ||
+                bookingDto.getStart().isBefore(now) ||
+                bookingDto.getEnd().isBefore(now) ||
+                bookingDto.getEnd().isBefore(bookingDto.getStart())) {
+            throw new WrongDateValidationException("Ошибка в датах начала и конца бронирования: даты не могут быть " +
+                    "одинаковыми, не могут быть прошедшими или дата окончания не может быть раньше старта");
+        }
+        Booking booking = BookingMapper.toBookingCreate(bookingDto);
+        booking.setBooker(user);
+        booking.setItem(item);
+        booking.setOwnerId(item.getOwner().getId());
+        log.debug("Отправляем новый букинг в хранилище");
+        BookingDto saved = BookingMapper.toBookingDto(bookingRepository.addBooking(booking));
+        bookingEvents.publishAfterCommit(BookingEventType.CREATED, saved, booking.getOwnerId());
+        return saved;
+    }
+
+    @Override
+    public BookingDto approvingOfBooking(Long userId, Long bookingId, Boolean approved) {
+        Booking booking = bookingRepository.getBooking(bookingId);
+        if (!booking.getItem().getOwner().getId().equals(userId)) {
+            throw new AccessNotAllowedException("Пользователь не является владельцем вещи и не может менять ее статус");
+        }
+        BookingStatus status = approved ? BookingStatus.APPROVED : BookingStatus.REJECTED;
+        BookingDto saved = BookingMapper.toBookingDto(actual(bookingRepository.changeStatus(bookingId,
+                BookingStatus.WAITING, status)));
+        bookingEvents.publishAfterCommit(approved ? BookingEventType.APPROVED : BookingEventType.REJECTED, saved,
+                booking.getOwnerId());
+        return saved;
+    }
+
+    @Override
+    public BookingDto getBooking(Long userId, Long bookingId) {
+        Booking booking = bookingRepository.getBooking(bookingId);
+        if (!booking.getBooker().getId().equals(userId) && !booking.getItem().getOwner().getId().equals(userId)) {
+            throw new AccessNotAllowedException("Пользователь не является ни владельцем вещи," +
+                    "ни автором букинга, поэтому не может просматривать бронирование");
+        }
+        return BookingMapper.toBookingDto(actual(booking));
+    }
+
+    @Override
+    public List<BookingDto> getBookingsByUserAndState(Long userId, BookingState state, Set<BookingField> fields) {
+        if (!userRepository.exists(userId)) {
+            throw new DataNotFoundException("Пользователь c userId " + userId + " не найден");
+        }
+        return bookingRepository.findByBooker(userId, byState(state)).stream()
+                .map(booking -> BookingMapper.toBookingDto(actual(booking), fields))
+                .toList();
+    }
+
+    @Override
+    public List<BookingDto> getBookingsForAllItemsOfOwner(Long ownerId, BookingState state, Set<BookingField> fields) {
+        if (!userRepository.exists(ownerId)) {
+            throw new DataNotFoundException("Пользователь c ownerId " + ownerId + " не найден");
+        }
+        return bookingRepository.findByOwner(ownerId, byState(state)).stream()
+                .map(booking -> BookingMapper.toBookingDto(actual(booking), fields))
+                .toList();
+    }
+
+    @Override
+    public BookingSummaryDto getBookingsSummaryByUser(Long userId) {
+        if (!userRepository.exists(userId)) {
+            throw new DataNotFoundException("Пользователь c userId " + userId + " не найден");
+        }
+        return summary(bookingRepository.findByBooker(userId, booking -> true));
+    }
+
+    @Override
+    public BookingSummaryDto getBookingsSummaryForAllItemsOfOwner(Long ownerId) {
+        if (!userRepository.exists(ownerId)) {
+            throw new DataNotFoundException("Пользователь c ownerId " + ownerId + " не найден");
+        }
+        return summary(bookingRepository.findByOwner(ownerId, booking -> true));
+    }
+
+    @Override
+    public BookingChangesDto getBookingChanges(Long userId, String since, int size) {
+        throw new MissedSmthException("Синхронизация изменений доступна только при хранении данных в базе");
+    }
+
+    private BookingSummaryDto summary(List<Booking> bookings) {
+        return BookingSummaryDto.builder()
+                .all(bookings.size())
+                .current(bookings.stream().filter(byState(BookingState.CURRENT)).count())
+                .past(bookings.stream().filter(byState(BookingState.PAST)).count())
+                .future(bookings.stream().filter(byState(BookingState.FUTURE)).count())
+                .waiting(bookings.stream().filter(byState(BookingState.WAITING)).count())
+                .rejected(bookings.stream().filter(byState(BookingState.REJECTED)).count())
+                .build();
+    }
+
+    private Predicate<Booking> byState(BookingState state) {
+        LocalDateTime now = LocalDateTime.now();
+        return switch (state) {
+            case ALL -> booking -> true;
+            case CURRENT -> booking -> !booking.getStart().isAfter(now) && !booking.getEnd().isBefore(now);
+            case PAST -> booking -> booking.getEnd().isBefore(now);
+            case FUTURE -> booking -> booking.getStart().isAfter(now);
+            case WAITING -> booking -> booking.getStatus() == BookingStatus.WAITING;
+            case REJECTED -> booking -> booking.getStatus() == BookingStatus.REJECTED;
+        };
+    }
+
+    // в хранилище бронирование ссылается на копии вещи и автора на момент создания - подставляем актуальные
+    private Booking actual(Booking booking) {
+        Item item = itemRepository.getItem(booking.getItem().getId());
+        User booker = userRepository.exists(booking.getBooker().getId())
+                ? userRepository.getUser(booking.getBooker().getId())
+                : booking.getBooker();
+        return Booking.builder()
+                .id(booking.getId())
+                .start(booking.getStart())
+                .end(booking.getEnd())
+                .status(booking.getStatus())
+                .item(item)
+                .booker(booker)
+                .build();
+    }
+}
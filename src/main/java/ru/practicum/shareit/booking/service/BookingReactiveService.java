@@ -0,0 +1,38 @@
+package ru.practicum.shareit.booking.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.model.BookingState;
+import ru.practicum.shareit.booking.repository.BookingReactiveRepository;
+import ru.practicum.shareit.exceptions.DataNotFoundException;
+import ru.practicum.shareit.user.repository.UserReactiveRepository;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "shareit.reactive", name = "enabled")
+public class BookingReactiveService {
+
+    private final BookingReactiveRepository bookingReactiveRepository;
+    private final UserReactiveRepository userReactiveRepository;
+
+    public Flux<BookingDto> getBookingsByUserAndState(Long userId, BookingState state) {
+        log.debug("Проверяем, что пользователь с userId {} существует", userId);
+        return userReactiveRepository.existsById(userId)
+                .flatMapMany(exists -> exists
+                        ? bookingReactiveRepository.findAllByBookerIdAndState(userId, state)
+                        : Flux.error(new DataNotFoundException("Пользователь c userId " + userId + " не найден")));
+    }
+
+    public Flux<BookingDto> getBookingsForAllItemsOfOwner(Long ownerId, BookingState state) {
+        log.debug("Проверяем, что пользователь с ownerId {} существует", ownerId);
+        return userReactiveRepository.existsById(ownerId)
+                .flatMapMany(exists -> exists
+                        ? bookingReactiveRepository.findAllByOwnerIdAndState(ownerId, state)
+                        : Flux.error(new DataNotFoundException("Пользователь c ownerId " + ownerId + " не найден")));
+    }
+}
@@ -1,10 +1,14 @@
 package ru.practicum.shareit.booking.service;
 
+import ru.practicum.shareit.booking.dto.BookingChangesDto;
 import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.dto.BookingSummaryDto;
 import ru.practicum.shareit.booking.dto.CreateBookingDto;
+import ru.practicum.shareit.booking.model.BookingField;
 import ru.practicum.shareit.booking.model.BookingState;
 
 import java.util.List;
+import java.util.Set;
 
 public interface BookingService {
 
@@ -14,8 +18,14 @@ public interface BookingService {
 
     BookingDto getBooking(Long userId, Long bookingId);
 
-    List<BookingDto> getBookingsByUserAndState(Long userId, BookingState state);
+    List<BookingDto> getBookingsByUserAndState(Long userId, BookingState state, Set<BookingField> fields);
 
-    List<BookingDto> getBookingsForAllItemsOfOwner(Long userId, BookingState state);
+    List<BookingDto> getBookingsForAllItemsOfOwner(Long userId, BookingState state, Set<BookingField> fields);
+
+    BookingSummaryDto getBookingsSummaryByUser(Long userId);
+
+    BookingSummaryDto getBookingsSummaryForAllItemsOfOwner(Long ownerId);
+
+    BookingChangesDto getBookingChanges(Long userId, String since, int size);
 
 }
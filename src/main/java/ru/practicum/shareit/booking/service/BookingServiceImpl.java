@@ -3,12 +3,24 @@ package ru.practicum.shareit.booking.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.booking.dto.BookingChangesDto;
 import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.dto.BookingSummaryDto;
+import ru.practicum.shareit.booking.lock.ItemLocks;
 import ru.practicum.shareit.booking.dto.CreateBookingDto;
+import ru.practicum.shareit.booking.events.BookingEventType;
+import ru.practicum.shareit.booking.events.BookingEvents;
 import ru.practicum.shareit.booking.mapper.BookingMapper;
 import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingField;
+import ru.practicum.shareit.booking.model.BookingShort;
 import ru.practicum.shareit.booking.model.BookingState;
 import ru.practicum.shareit.booking.model.BookingStatus;
 import ru.practicum.shareit.booking.repository.BookingRepository;
@@ -16,16 +28,26 @@ import ru.practicum.shareit.exceptions.AccessNotAllowedException;
 import ru.practicum.shareit.exceptions.DataNotFoundException;
 import ru.practicum.shareit.exceptions.WrongDateValidationException;
 import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.popularity.ItemPopularityTracker;
 import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.sharding.Shards;
+import ru.practicum.shareit.sync.Change;
+import ru.practicum.shareit.sync.ChangeFeed;
+import ru.practicum.shareit.sync.ChangeKind;
+import ru.practicum.shareit.sync.ChangePage;
+import ru.practicum.shareit.sync.SyncCursor;
 import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.repository.UserRepository;
 
 import java.time.LocalDateTime;
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
 
 @Slf4j
 @Service
+@Profile("!inmemory")
 @RequiredArgsConstructor
 @Transactional(readOnly = true)
 public class BookingServiceImpl implements BookingService {
@@ -33,15 +55,23 @@ public class BookingServiceImpl implements BookingService {
     private final BookingRepository bookingRepository;
     private final UserRepository userRepository;
     private final ItemRepository itemRepository;
+    private final ItemLocks itemLocks;
+    private final ItemPopularityTracker popularityTracker;
+    private final Shards shards;
+    private final BookingEvents bookingEvents;
+    private final ChangeFeed changeFeed;
+    private final PlatformTransactionManager transactionManager;
 
+    // создание не блокирует вещь: пересекающиеся заявки допустимы, пересечение проверяет подтверждение
     @Override
     @Transactional
     public BookingDto addBooking(Long userId, CreateBookingDto bookingDto) {
+        shards.bindId(bookingDto.getItemId());
         log.debug("Проверяем, что пользователь с userId {} существует", userId);
-        User user = userRepository.findById(userId).orElseThrow(
+        User user = userRepository.findActiveById(userId).orElseThrow(
                 () -> new DataNotFoundException("Пользователь c userId " + userId + " не найден"));
         log.debug("Проверяем, что предмет для букинга с id {} существует", bookingDto.getItemId());
-        Item item = itemRepository.findById(bookingDto.getItemId()).orElseThrow(
+        Item item = itemRepository.findActiveById(bookingDto.getItemId()).orElseThrow(
                 () -> new DataNotFoundException("Предмет с id " + bookingDto.getItemId() + " не найден"));
         log.debug("Проверяем, что предмет доступен для букинга");
         if (!item.getAvailable()) {
@@ -63,13 +93,29 @@ public class BookingServiceImpl implements BookingService {
         Booking booking = BookingMapper.toBookingCreate(bookingDto);
         booking.setBooker(user);
         booking.setItem(item);
+        booking.setOwnerId(item.getOwner().getId());
+        booking.setCreated(LocalDateTime.now());
         log.debug("Отправляем новый букинг в репозиторий");
-        return BookingMapper.toBookingDto(bookingRepository.save(booking));
+        BookingDto saved = BookingMapper.toBookingDto(bookingRepository.save(booking));
+        bookingEvents.publishAfterCommit(BookingEventType.CREATED, saved, booking.getOwnerId());
+        return saved;
     }
 
     @Override
-    @Transactional
+    @Transactional(propagation = Propagation.SUPPORTS)
     public BookingDto approvingOfBooking(Long userId, Long bookingId, Boolean approved) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        Long itemId = approved ? shards.on(shards.ofId(bookingId), () -> bookingRepository.findItemIdById(bookingId))
+                : null;
+        if (itemId == null) {
+            return transactionTemplate.execute(status -> approve(userId, bookingId, approved));
+        }
+        return itemLocks.callLocked(itemId,
+                () -> transactionTemplate.execute(status -> approve(userId, bookingId, approved)));
+    }
+
+    private BookingDto approve(Long userId, Long bookingId, Boolean approved) {
+        shards.bindId(bookingId);
         log.debug("Проверяем, что пользователь {}, собирающийся установить статус букинга вещи," +
                 "является ее владельцем", userId);
         Booking booking = getBookingById(bookingId);
@@ -80,15 +126,25 @@ public class BookingServiceImpl implements BookingService {
             throw new AccessNotAllowedException("Для изменения статуса бронирования статус вещи должен быть WAITING");
         }
         if (approved) {
+            itemRepository.findByIdForUpdate(booking.getItem().getId());
+            if (bookingRepository.existsOverlapping(booking.getItem().getId(), BookingStatus.APPROVED,
+                    booking.getStart(), booking.getEnd())) {
+                throw new WrongDateValidationException("Вещь уже забронирована на эти даты другим пользователем");
+            }
             booking.setStatus(BookingStatus.APPROVED);
+            popularityTracker.recordApprovedBooking(booking.getItem().getId());
         } else {
             booking.setStatus(BookingStatus.REJECTED);
         }
-        return BookingMapper.toBookingDto(bookingRepository.save(booking));
+        BookingDto saved = BookingMapper.toBookingDto(bookingRepository.save(booking));
+        bookingEvents.publishAfterCommit(approved ? BookingEventType.APPROVED : BookingEventType.REJECTED, saved,
+                booking.getOwnerId());
+        return saved;
     }
 
     @Override
     public BookingDto getBooking(Long userId, Long bookingId) {
+        shards.bindId(bookingId);
         log.debug("Проверяем, что пользователь с userId {}, собирающийся просмотреть букинг на вещь," +
                 "является либо ее владельцем, либо автором бронирования", userId);
         Booking booking = getBookingById(bookingId);
@@ -99,76 +155,175 @@ public class BookingServiceImpl implements BookingService {
         return BookingMapper.toBookingDto(booking);
     }
 
+    /**
+     * Бронирования арендатора лежат на шардах владельцев вещей: каждый шард отдает свои, слияние по start.
+     */
     @Override
-    public List<BookingDto> getBookingsByUserAndState(Long userId, BookingState state) {
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<BookingDto> getBookingsByUserAndState(Long userId, BookingState state, Set<BookingField> fields) {
         log.debug("Проверяем, что пользователь с userId {} существует", userId);
-        if (!userRepository.existsById(userId)) {
+        if (!userRepository.existsActiveById(userId)) {
             throw new DataNotFoundException("Пользователь c userId " + userId + " не найден");
         }
         log.debug("Выдадим список букингов в зависимости от запрошенного состояния = {}", state);
-        List<Booking> bookings;
-        switch (state) {
-            case BookingState.ALL:
-                bookings = bookingRepository.findAllByBookerIdOrderByStartDesc(userId);
-                break;
-            case BookingState.CURRENT:
-                bookings = bookingRepository.findAllByBookerIdAndCurrentTime(userId, LocalDateTime.now());
-                break;
-            case BookingState.PAST:
-                bookings = bookingRepository.findAllByBookerIdAndEndBeforeOrderByStartDesc(userId, LocalDateTime.now());
-                break;
-            case BookingState.FUTURE:
-                bookings = bookingRepository.findAllByBookerIdAndStartAfterOrderByStartDesc(userId, LocalDateTime.now());
-                break;
-            case BookingState.WAITING:
-                bookings = bookingRepository.findAllByBookerIdAndStatusOrderByStartDesc(userId, BookingStatus.WAITING);
-                break;
-            case BookingState.REJECTED:
-                bookings = bookingRepository.findAllByBookerIdAndStatusOrderByStartDesc(userId, BookingStatus.REJECTED);
-                break;
-            default:
-                bookings = Collections.emptyList();
+        List<BookingDto> bookings;
+        if (BookingField.needsEntity(fields)) {
+            bookings = shards.scatter(() -> findBookerBookings(userId, state),
+                            Comparator.comparing(Booking::getStart).reversed()).stream()
+                    .map(booking -> BookingMapper.toBookingDto(booking, fields))
+                    .toList();
+        } else {
+            log.debug("Связанные вещь и автор не запрошены - читаем только колонки бронирования");
+            bookings = shards.scatter(() -> findBookerBookingsShort(userId, state),
+                            Comparator.comparing(BookingShort::getStart).reversed()).stream()
+                    .map(booking -> BookingMapper.toBookingDto(booking, fields))
+                    .toList();
         }
-        log.debug("Найдено {} бронирований для состояния {}", bookings.size(), state);
-        return bookings.stream()
-                .map(BookingMapper::toBookingDto)
-                .toList();
+        log.atDebug().addArgument(bookings.size()).addArgument(state)
+                .log("Найдено {} бронирований для состояния {}");
+        return bookings;
     }
 
     @Override
-    public List<BookingDto> getBookingsForAllItemsOfOwner(Long ownerId, BookingState state) {
+    public List<BookingDto> getBookingsForAllItemsOfOwner(Long ownerId, BookingState state, Set<BookingField> fields) {
+        shards.bindUser(ownerId);
         log.debug("Проверяем, что пользователь с ownerId {} существует", ownerId);
-        if (!userRepository.existsById(ownerId)) {
+        if (!userRepository.existsActiveById(ownerId)) {
             throw new DataNotFoundException("Пользователь c ownerId " + ownerId + " не найден");
         }
         log.debug("Выдадим список букингов на вещь в зависимости от запрошенного состояния = {}", state);
-        List<Booking> bookings;
-        switch (state) {
-            case BookingState.ALL:
-                bookings = bookingRepository.findAllByItemOwnerIdOrderByStartDesc(ownerId);
-                break;
-            case BookingState.CURRENT:
-                bookings = bookingRepository.findAllByOwnerIdAndCurrentTime(ownerId, LocalDateTime.now());
-                break;
-            case BookingState.PAST:
-                bookings = bookingRepository.findAllByItemOwnerIdAndEndBeforeOrderByStartDesc(ownerId, LocalDateTime.now());
-                break;
-            case BookingState.FUTURE:
-                bookings = bookingRepository.findAllByItemOwnerIdAndStartAfterOrderByStartDesc(ownerId, LocalDateTime.now());
-                break;
-            case BookingState.WAITING:
-                bookings = bookingRepository.findAllByItemOwnerIdAndStatusOrderByStartDesc(ownerId, BookingStatus.WAITING);
-                break;
-            case BookingState.REJECTED:
-                bookings = bookingRepository.findAllByItemOwnerIdAndStatusOrderByStartDesc(ownerId, BookingStatus.REJECTED);
-                break;
-            default:
-                bookings = Collections.emptyList();
+        List<BookingDto> bookings;
+        if (BookingField.needsEntity(fields)) {
+            bookings = findOwnerBookings(ownerId, state).stream()
+                    .map(booking -> BookingMapper.toBookingDto(booking, fields))
+                    .toList();
+        } else {
+            log.debug("Связанные вещь и автор не запрошены - читаем только колонки бронирования");
+            bookings = findOwnerBookingsShort(ownerId, state).stream()
+                    .map(booking -> BookingMapper.toBookingDto(booking, fields))
+                    .toList();
+        }
+        log.atDebug().addArgument(bookings.size()).addArgument(state)
+                .log("Найдено {} бронирований для состояния {}");
+        return bookings;
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public BookingSummaryDto getBookingsSummaryByUser(Long userId) {
+        log.debug("Проверяем, что пользователь с userId {} существует", userId);
+        if (!userRepository.existsActiveById(userId)) {
+            throw new DataNotFoundException("Пользователь c userId " + userId + " не найден");
+        }
+        log.debug("Считаем бронирования пользователя {} по всем состояниям одним запросом", userId);
+        LocalDateTime now = LocalDateTime.now();
+        return BookingMapper.toBookingSummaryDto(shards.scatter(() -> List.of(bookingRepository
+                .countByBookerIdPerState(userId, now, BookingStatus.WAITING, BookingStatus.REJECTED)), null));
+    }
+
+    @Override
+    public BookingSummaryDto getBookingsSummaryForAllItemsOfOwner(Long ownerId) {
+        shards.bindUser(ownerId);
+        log.debug("Проверяем, что пользователь с ownerId {} существует", ownerId);
+        if (!userRepository.existsActiveById(ownerId)) {
+            throw new DataNotFoundException("Пользователь c ownerId " + ownerId + " не найден");
+        }
+        log.debug("Считаем бронирования на вещи владельца {} по всем состояниям одним запросом", ownerId);
+        return BookingMapper.toBookingSummaryDto(bookingRepository.countByOwnerIdPerState(ownerId,
+                LocalDateTime.now(), BookingStatus.WAITING, BookingStatus.REJECTED));
+    }
+
+    /**
+     * Бронирования, где пользователь арендатор или владелец вещи, измененные после водяного знака since.
+     * Каждый шард отдает не больше size + 1 строк из каждой выборки, страница собирается слиянием.
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public BookingChangesDto getBookingChanges(Long userId, String since, int size) {
+        log.debug("Проверяем, что пользователь с userId {} существует", userId);
+        if (!userRepository.existsActiveById(userId)) {
+            throw new DataNotFoundException("Пользователь c userId " + userId + " не найден");
         }
-        log.debug("Найдено {} бронирований для состояния {}", bookings.size(), state);
-        return bookings.stream()
-                .map(BookingMapper::toBookingDto)
-                .toList();
+        SyncCursor after = changeFeed.cursor(since);
+        LocalDateTime until = changeFeed.until();
+        Limit limit = Limit.of(size + 1);
+        long afterId = after.afterId(ChangeKind.BOOKING);
+        List<Change> changes = shards.scatter(() -> {
+            List<Booking> bookings = new ArrayList<>(bookingRepository.findBookerChanges(userId, after.since(),
+                    afterId, until, limit));
+            bookings.addAll(bookingRepository.findOwnerChanges(userId, after.since(), afterId, until, limit));
+            List<Change> found = new ArrayList<>();
+            for (Booking booking : bookings) {
+                found.add(new Change(booking.getUpdatedAt(), ChangeKind.BOOKING, booking.getId(), booking));
+            }
+            found.addAll(changeFeed.deletedForBooker(userId, ChangeKind.BOOKING_DELETED, after, until, limit));
+            found.addAll(changeFeed.deletedForOwner(userId, ChangeKind.BOOKING_DELETED, after, until, limit));
+            return found;
+        }, null);
+        ChangePage page = ChangePage.of(changes, size, after, until);
+        log.atDebug().addArgument(userId).addArgument(since).addArgument(page.changes().size())
+                .log("В ленте бронирований пользователя {} после {} выдано {} изменений");
+        return BookingMapper.toBookingChangesDto(page);
+    }
+
+    private List<Booking> findBookerBookings(Long userId, BookingState state) {
+        LocalDateTime now = LocalDateTime.now();
+        return switch (state) {
+            case ALL -> bookingRepository.findAllByBookerIdOrderByStartDesc(userId);
+            case CURRENT -> bookingRepository
+                    .findAllByBookerIdAndStartLessThanEqualAndEndGreaterThanEqualOrderByStartDesc(userId, now, now);
+            case PAST -> bookingRepository.findAllByBookerIdAndEndBeforeOrderByStartDesc(userId, now);
+            case FUTURE -> bookingRepository.findAllByBookerIdAndStartAfterOrderByStartDesc(userId, now);
+            case WAITING -> bookingRepository
+                    .findAllByBookerIdAndStatusOrderByStartDesc(userId, BookingStatus.WAITING);
+            case REJECTED -> bookingRepository
+                    .findAllByBookerIdAndStatusOrderByStartDesc(userId, BookingStatus.REJECTED);
+        };
+    }
+
+    private List<Booking> findOwnerBookings(Long ownerId, BookingState state) {
+        LocalDateTime now = LocalDateTime.now();
+        return switch (state) {
+            case ALL -> bookingRepository.findAllByOwnerIdOrderByStartDesc(ownerId);
+            case CURRENT -> bookingRepository
+                    .findAllByOwnerIdAndStartLessThanEqualAndEndGreaterThanEqualOrderByStartDesc(ownerId, now, now);
+            case PAST -> bookingRepository.findAllByOwnerIdAndEndBeforeOrderByStartDesc(ownerId, now);
+            case FUTURE -> bookingRepository.findAllByOwnerIdAndStartAfterOrderByStartDesc(ownerId, now);
+            case WAITING -> bookingRepository
+                    .findAllByOwnerIdAndStatusOrderByStartDesc(ownerId, BookingStatus.WAITING);
+            case REJECTED -> bookingRepository
+                    .findAllByOwnerIdAndStatusOrderByStartDesc(ownerId, BookingStatus.REJECTED);
+        };
+    }
+
+    private List<BookingShort> findBookerBookingsShort(Long userId, BookingState state) {
+        LocalDateTime now = LocalDateTime.now();
+        return switch (state) {
+            case ALL -> bookingRepository.findShortByBookerIdOrderByStartDesc(userId);
+            case CURRENT -> bookingRepository
+                    .findShortByBookerIdAndStartLessThanEqualAndEndGreaterThanEqualOrderByStartDesc(userId, now, now);
+            case PAST -> bookingRepository.findShortByBookerIdAndEndBeforeOrderByStartDesc(userId, now);
+            case FUTURE -> bookingRepository.findShortByBookerIdAndStartAfterOrderByStartDesc(userId, now);
+            case WAITING -> bookingRepository
+                    .findShortByBookerIdAndStatusOrderByStartDesc(userId, BookingStatus.WAITING);
+            case REJECTED -> bookingRepository
+                    .findShortByBookerIdAndStatusOrderByStartDesc(userId, BookingStatus.REJECTED);
+        };
+    }
+
+    private List<BookingShort> findOwnerBookingsShort(Long ownerId, BookingState state) {
+        LocalDateTime now = LocalDateTime.now();
+        return switch (state) {
+            case ALL -> bookingRepository.findShortByOwnerIdOrderByStartDesc(ownerId);
+            case CURRENT -> bookingRepository
+                    .findShortByOwnerIdAndStartLessThanEqualAndEndGreaterThanEqualOrderByStartDesc(ownerId, now, now);
+            case PAST -> bookingRepository.findShortByOwnerIdAndEndBeforeOrderByStartDesc(ownerId, now);
+            case FUTURE -> bookingRepository.findShortByOwnerIdAndStartAfterOrderByStartDesc(ownerId, now);
+            case WAITING -> bookingRepository
+                    .findShortByOwnerIdAndStatusOrderByStartDesc(ownerId, BookingStatus.WAITING);
+            case REJECTED -> bookingRepository
+                    .findShortByOwnerIdAndStatusOrderByStartDesc(ownerId, BookingStatus.REJECTED);
+        };
     }
 
     private Booking getBookingById(Long bookingId) {
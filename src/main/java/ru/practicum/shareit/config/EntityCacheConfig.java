@@ -0,0 +1,91 @@
+package ru.practicum.shareit.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Кэш второго уровня Hibernate для редко меняющихся сущностей User и Item.
+ * Регионы ограничены по размеру, стратегия READ_WRITE сама обновляет запись при save/delete через Hibernate,
+ * поэтому изменения из UserServiceImpl и ItemServiceImpl не оставляют устаревших данных на этом узле.
+ * Записи через JDBC (копии на шарды, удаление данных пользователя) вытесняют свои строки сами.
+ * Кэш локален для узла: изменение, сделанное на другом узле, здесь видно не позже expire-after-write,
+ * до тех пор узел может отдать прежние available, владельца или еще не удаленного пользователя. Поэтому
+ * срок короткий; если и такое отставание недопустимо, на нескольких узлах кэш выключается через
+ * shareit.cache.enabled=false.
+ * У каждого контекста свой менеджер JCache со случайным URI: общий менеджер JVM по умолчанию закрылся бы
+ * вместе с первым контекстом и унес регионы остальных (например, соседних контекстов в тестах).
+ */
+@Slf4j
+@Configuration
+@EnableConfigurationProperties(EntityCacheProperties.class)
+public class EntityCacheConfig {
+
+    public static final String USERS_REGION = "users";
+    public static final String ITEMS_REGION = "items";
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "shareit.cache", name = "enabled", matchIfMissing = true)
+    public CacheManager entityCacheManager(EntityCacheProperties properties) {
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("shareit-" + UUID.randomUUID()), getClass().getClassLoader());
+        createRegion(cacheManager, USERS_REGION, properties.getUsersMaxSize(), properties);
+        createRegion(cacheManager, ITEMS_REGION, properties.getItemsMaxSize(), properties);
+        return cacheManager;
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "shareit.cache", name = "enabled", matchIfMissing = true)
+    public HibernatePropertiesCustomizer entityCacheCustomizer(CacheManager entityCacheManager) {
+        return hibernateProperties -> {
+            hibernateProperties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+            hibernateProperties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            hibernateProperties.put(ConfigSettings.CACHE_MANAGER, entityCacheManager);
+            hibernateProperties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+        };
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "shareit.cache", name = "enabled", matchIfMissing = true)
+    public MeterBinder entityCacheMetrics(CacheManager entityCacheManager) {
+        return registry -> {
+            for (String region : List.of(USERS_REGION, ITEMS_REGION)) {
+                JCacheMetrics.monitor(registry, entityCacheManager.getCache(region));
+            }
+        };
+    }
+
+    // hibernate-jcache в classpath включает кэш сам по себе, поэтому выключать его нужно явно
+    @Bean
+    @ConditionalOnProperty(prefix = "shareit.cache", name = "enabled", havingValue = "false")
+    public HibernatePropertiesCustomizer disabledEntityCacheCustomizer() {
+        return hibernateProperties -> hibernateProperties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, false);
+    }
+
+    private void createRegion(CacheManager cacheManager, String region, long maxSize,
+                              EntityCacheProperties properties) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(maxSize));
+        configuration.setExpireAfterWrite(OptionalLong.of(properties.getExpireAfterWrite().toNanos()));
+        configuration.setStatisticsEnabled(true);
+        cacheManager.createCache(region, configuration);
+        log.atDebug().addArgument(region).addArgument(maxSize)
+                .log("Создан регион кэша {} на {} записей");
+    }
+}
@@ -0,0 +1,22 @@
+package ru.practicum.shareit.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "shareit.cache")
+public class EntityCacheProperties {
+
+    private boolean enabled = true;
+
+    // максимальное число записей в регионе пользователей
+    private long usersMaxSize = 10_000;
+
+    // максимальное число записей в регионе вещей
+    private long itemsMaxSize = 50_000;
+
+    // на нескольких узлах - наибольшее время, которое узел отдает строку, измененную другим узлом
+    private Duration expireAfterWrite = Duration.ofMinutes(1);
+}
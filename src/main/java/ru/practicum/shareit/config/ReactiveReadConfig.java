@@ -0,0 +1,59 @@
+package ru.practicum.shareit.config;
+
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.r2dbc.core.DatabaseClient;
+
+/**
+ * Неблокирующее чтение через R2DBC для потоковых эндпоинтов (application/x-ndjson).
+ * Пул соединений не публикуется как бин ConnectionFactory, чтобы автоконфигурация Spring Boot
+ * не подняла второй менеджер транзакций и повторную инициализацию схемы: запись остается на JPA.
+ * Пул смотрит в одну базу и не знает о шардах, поэтому вместе с shareit.sharding.enabled приложение не стартует.
+ */
+@Slf4j
+@Configuration
+@EnableConfigurationProperties(ReactiveReadProperties.class)
+@ConditionalOnProperty(prefix = "shareit.reactive", name = "enabled")
+public class ReactiveReadConfig {
+
+    private ConnectionPool pool;
+
+    @Bean
+    public DatabaseClient reactiveDatabaseClient(ReactiveReadProperties properties,
+                                                 @Value("${shareit.sharding.enabled:false}") boolean sharding) {
+        if (sharding) {
+            throw new IllegalStateException("Реактивное чтение не поддерживает шардирование: " +
+                    "выключите shareit.reactive.enabled или shareit.sharding.enabled");
+        }
+        ConnectionFactoryOptions.Builder options = ConnectionFactoryOptions.parse(properties.getUrl()).mutate();
+        if (properties.getUsername() != null) {
+            options.option(ConnectionFactoryOptions.USER, properties.getUsername());
+        }
+        if (properties.getPassword() != null) {
+            options.option(ConnectionFactoryOptions.PASSWORD, properties.getPassword());
+        }
+        pool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options.build()))
+                .name("shareit-reactive")
+                .maxSize(properties.getMaxPoolSize())
+                .maxIdleTime(properties.getMaxIdleTime())
+                .build());
+        log.info("Реактивное чтение включено, пул до {} соединений", properties.getMaxPoolSize());
+        return DatabaseClient.create(pool);
+    }
+
+    @PreDestroy
+    public void closePool() {
+        if (pool != null) {
+            pool.dispose();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package ru.practicum.shareit.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "shareit.reactive")
+public class ReactiveReadProperties {
+
+    private boolean enabled = false;
+
+    // r2dbc:postgresql://... или r2dbc:h2:mem:///... для тестов
+    private String url;
+
+    private String username;
+
+    private String password;
+
+    private int maxPoolSize = 10;
+
+    private Duration maxIdleTime = Duration.ofMinutes(30);
+}
@@ -0,0 +1,195 @@
+package ru.practicum.shareit.datagen;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.booking.model.BookingStatus;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Заливает в базу синтетический набор данных для нагрузочных прогонов и бенчмарков запросов.
+ * Строки пишутся пачками через JDBC batch, минуя REST и JPA, поэтому миллионы бронирований грузятся за минуты.
+ * Владельцы, вещи и арендаторы выбираются по Zipf: получаются владельцы с сотнями вещей,
+ * горячие вещи с длинной историей бронирований и активные арендаторы.
+ */
+@Slf4j
+@Component
+@Profile("!inmemory")
+@EnableConfigurationProperties(DatasetProperties.class)
+@ConditionalOnProperty(prefix = "shareit.datagen", name = "enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class DatasetGenerator implements ApplicationRunner {
+
+    private static final int HOURS_PER_DAY = 24;
+    private static final int MAX_BOOKING_HOURS = 14 * HOURS_PER_DAY;
+
+    private final DatasetProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        generate();
+    }
+
+    public void generate() {
+        long started = System.nanoTime();
+        SplittableRandom random = new SplittableRandom(properties.getSeed());
+        LocalDateTime anchor = properties.getAnchor() != null ? properties.getAnchor() : LocalDate.now().atStartOfDay();
+        log.info("Генерация набора данных: seed {}, пользователей {}, вещей {}, бронирований {}",
+                properties.getSeed(), properties.getUsers(), properties.getItems(), properties.getBookings());
+
+        long[] userIds = insertUsers();
+        long[] requestIds = insertRequests(random, userIds, anchor);
+        int[] itemOwners = new int[properties.getItems()];
+        long[] itemIds = insertItems(random, userIds, requestIds, itemOwners);
+        int comments = insertBookingsAndComments(random, userIds, itemIds, itemOwners, anchor);
+        jdbcTemplate.execute("ANALYZE");
+
+        log.info("Набор данных сгенерирован за {} мс: пользователей {}, запросов {}, вещей {}, бронирований {}, " +
+                        "комментариев {}", (System.nanoTime() - started) / 1_000_000, userIds.length,
+                requestIds.length, itemIds.length, properties.getBookings(), comments);
+    }
+
+    private long[] insertUsers() {
+        long before = maxId("users");
+        List<Object[]> batch = new ArrayList<>(properties.getBatchSize());
+        for (int i = 0; i < properties.getUsers(); i++) {
+            // префикс из последнего id позволяет запускать генератор повторно без конфликтов email
+            batch.add(new Object[]{"User " + i, "gen" + before + "-" + i + "@shareit.test"});
+            flushIfFull("INSERT INTO users (name, email) VALUES (?, ?)", batch);
+        }
+        flush("INSERT INTO users (name, email) VALUES (?, ?)", batch);
+        return idsAfter("users", before);
+    }
+
+    private long[] insertRequests(SplittableRandom random, long[] userIds, LocalDateTime anchor) {
+        String sql = "INSERT INTO requests (description, requestor_id, created) VALUES (?, ?, ?)";
+        long before = maxId("requests");
+        List<Object[]> batch = new ArrayList<>(properties.getBatchSize());
+        for (int i = 0; i < properties.getRequests(); i++) {
+            batch.add(new Object[]{"Нужна вещь номер " + i, userIds[random.nextInt(userIds.length)],
+                    Timestamp.valueOf(anchor.minusHours(random.nextInt(properties.getHistoryDays() * HOURS_PER_DAY)))});
+            flushIfFull(sql, batch);
+        }
+        flush(sql, batch);
+        return idsAfter("requests", before);
+    }
+
+    private long[] insertItems(SplittableRandom random, long[] userIds, long[] requestIds, int[] itemOwners) {
+        String sql = "INSERT INTO items (name, description, is_available, owner_id, request_id) VALUES (?, ?, ?, ?, ?)";
+        SkewedSampler owners = new SkewedSampler(userIds.length, properties.getOwnerSkew());
+        long before = maxId("items");
+        List<Object[]> batch = new ArrayList<>(properties.getBatchSize());
+        for (int i = 0; i < properties.getItems(); i++) {
+            itemOwners[i] = owners.next(random);
+            // на один запрос может ответить несколько вещей
+            Long requestId = requestIds.length > 0 && random.nextDouble() < properties.getRequestAnswerShare()
+                    ? requestIds[random.nextInt(requestIds.length)] : null;
+            batch.add(new Object[]{"Вещь " + i, "Описание вещи " + i + " для аренды", random.nextInt(10) != 0,
+                    userIds[itemOwners[i]], requestId});
+            flushIfFull(sql, batch);
+        }
+        flush(sql, batch);
+        return idsAfter("items", before);
+    }
+
+    private int insertBookingsAndComments(SplittableRandom random, long[] userIds, long[] itemIds, int[] itemOwners,
+                                          LocalDateTime anchor) {
+        String bookingSql = "INSERT INTO bookings (start_date, end_date, item_id, owner_id, booker_id, status) " +
+                "VALUES (?, ?, ?, ?, ?, ?)";
+        String commentSql = "INSERT INTO comments (text, item_id, author_id, created) VALUES (?, ?, ?, ?)";
+        if (userIds.length < 2 || itemIds.length == 0) {
+            log.warn("Для бронирований нужны вещи и хотя бы два пользователя - бронирования не генерируются");
+            return 0;
+        }
+        SkewedSampler items = new SkewedSampler(itemIds.length, properties.getItemSkew());
+        SkewedSampler bookers = new SkewedSampler(userIds.length, properties.getBookerSkew());
+        int historyHours = properties.getHistoryDays() * HOURS_PER_DAY;
+        int spanHours = historyHours + properties.getFutureDays() * HOURS_PER_DAY;
+        // комментарии оставляют только к завершенным подтвержденным бронированиям, их примерно 80% от прошлых
+        double finishedShare = 0.8 * historyHours / spanHours;
+        double commentProbability = Math.min(1, properties.getComments() / (properties.getBookings() * finishedShare));
+
+        List<Object[]> bookings = new ArrayList<>(properties.getBatchSize());
+        List<Object[]> comments = new ArrayList<>(properties.getBatchSize());
+        int commentCount = 0;
+        for (int i = 0; i < properties.getBookings(); i++) {
+            int item = items.next(random);
+            // активные арендаторы сдвинуты относительно крупных владельцев, чтобы это были разные люди
+            int booker = (bookers.next(random) + userIds.length / 2) % userIds.length;
+            if (booker == itemOwners[item]) {
+                booker = (booker + 1) % userIds.length;
+            }
+            LocalDateTime start = anchor.minusHours(historyHours).plusHours(random.nextInt(spanHours));
+            LocalDateTime end = start.plusHours(1 + random.nextInt(MAX_BOOKING_HOURS));
+            BookingStatus status = status(random, start, end, anchor);
+            bookings.add(new Object[]{Timestamp.valueOf(start), Timestamp.valueOf(end), itemIds[item],
+                    userIds[itemOwners[item]], userIds[booker], status.name()});
+            flushIfFull(bookingSql, bookings);
+
+            if (status == BookingStatus.APPROVED && end.isBefore(anchor) && commentCount < properties.getComments() &&
+                    random.nextDouble() < commentProbability) {
+                comments.add(new Object[]{"Отзыв " + commentCount, itemIds[item], userIds[booker],
+                        Timestamp.valueOf(end.plusHours(1 + random.nextInt(HOURS_PER_DAY * 7)))});
+                commentCount++;
+                flushIfFull(commentSql, comments);
+            }
+            if ((i + 1) % 1_000_000 == 0) {
+                log.info("Сгенерировано {} бронирований", i + 1);
+            }
+        }
+        flush(bookingSql, bookings);
+        flush(commentSql, comments);
+        return commentCount;
+    }
+
+    private BookingStatus status(SplittableRandom random, LocalDateTime start, LocalDateTime end,
+                                 LocalDateTime anchor) {
+        int roll = random.nextInt(10);
+        if (end.isBefore(anchor)) {
+            return roll < 8 ? BookingStatus.APPROVED : roll < 9 ? BookingStatus.REJECTED : BookingStatus.CANCELED;
+        }
+        if (start.isAfter(anchor)) {
+            return roll < 5 ? BookingStatus.WAITING : roll < 9 ? BookingStatus.APPROVED : BookingStatus.REJECTED;
+        }
+        return BookingStatus.APPROVED;
+    }
+
+    private void flushIfFull(String sql, List<Object[]> batch) {
+        if (batch.size() >= properties.getBatchSize()) {
+            flush(sql, batch);
+        }
+    }
+
+    private void flush(String sql, List<Object[]> batch) {
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, batch);
+            batch.clear();
+        }
+    }
+
+    private long maxId(String table) {
+        Long max = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + table, Long.class);
+        return max == null ? 0 : max;
+    }
+
+    // id выдает база (GENERATED ALWAYS), при вставке в один поток они растут в порядке вставки
+    private long[] idsAfter(String table, long before) {
+        return jdbcTemplate.queryForList("SELECT id FROM " + table + " WHERE id > ? ORDER BY id", Long.class, before)
+                .stream()
+                .mapToLong(Long::longValue)
+                .toArray();
+    }
+}
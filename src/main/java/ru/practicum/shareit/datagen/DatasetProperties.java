@@ -0,0 +1,46 @@
+package ru.practicum.shareit.datagen;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.LocalDateTime;
+
+@Data
+@ConfigurationProperties(prefix = "shareit.datagen")
+public class DatasetProperties {
+
+    private boolean enabled = false;
+
+    // одинаковый seed на одинаковой исходной базе дает один и тот же набор данных
+    private long seed = 42;
+
+    private int users = 1_000;
+
+    private int requests = 200;
+
+    private int items = 5_000;
+
+    private int bookings = 50_000;
+
+    private int comments = 10_000;
+
+    // показатели Zipf: 0 - равномерно, чем больше, тем сильнее перекос в пользу первых
+    private double ownerSkew = 1.2;
+
+    private double itemSkew = 1.1;
+
+    private double bookerSkew = 0.8;
+
+    // доля вещей, созданных в ответ на запрос
+    private double requestAnswerShare = 0.2;
+
+    // на сколько дней назад и вперед от точки отсчета раскидываются бронирования
+    private int historyDays = 730;
+
+    private int futureDays = 60;
+
+    // точка отсчета для дат, если не задана - начало текущего дня
+    private LocalDateTime anchor;
+
+    private int batchSize = 1_000;
+}
@@ -0,0 +1,34 @@
+package ru.practicum.shareit.datagen;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Выбор индекса из [0, size) по закону Zipf: вероятность индекса k пропорциональна 1 / (k + 1)^exponent.
+ * Функция распределения считается один раз, дальше каждый выбор - бинарный поиск.
+ */
+public class SkewedSampler {
+
+    private final double[] cumulative;
+
+    public SkewedSampler(int size, double exponent) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Размер выборки должен быть положительным: " + size);
+        }
+        cumulative = new double[size];
+        double sum = 0;
+        for (int k = 0; k < size; k++) {
+            sum += 1 / Math.pow(k + 1, exponent);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < size; k++) {
+            cumulative[k] /= sum;
+        }
+    }
+
+    public int next(SplittableRandom random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        int position = index >= 0 ? index : -index - 1;
+        return Math.min(position, cumulative.length - 1);
+    }
+}
@@ -0,0 +1,7 @@
+package ru.practicum.shareit.exceptions;
+
+public class DeadlineExceededException extends RuntimeException {
+    public DeadlineExceededException(String message) {
+        super(message);
+    }
+}
@@ -20,6 +20,12 @@ public class ExceptionController {
         return new ErrorResponse(e.getMessage());
     }
 
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.CONFLICT) // Error 409
+    public ErrorResponse handlerIdempotencyConflictException(IdempotencyConflictException e) {
+        return new ErrorResponse(e.getMessage());
+    }
+
     @ExceptionHandler
     @ResponseStatus(HttpStatus.BAD_REQUEST) // Error 400
     public ErrorResponse handlerMissedSmthException(MissedSmthException e) {
@@ -37,4 +43,16 @@ public class ExceptionController {
     public ErrorResponse handlerAccessNotAllowedException(AccessNotAllowedException e) {
         return new ErrorResponse(e.getMessage());
     }
+
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE) // Error 503
+    public ErrorResponse handlerDeadlineExceededException(DeadlineExceededException e) {
+        return new ErrorResponse(e.getMessage());
+    }
+
+    @ExceptionHandler
+    @ResponseStatus(HttpStatus.GONE) // Error 410
+    public ErrorResponse handlerSyncWatermarkExpiredException(SyncWatermarkExpiredException e) {
+        return new ErrorResponse(e.getMessage());
+    }
 }
@@ -0,0 +1,7 @@
+package ru.practicum.shareit.exceptions;
+
+public class IdempotencyConflictException extends RuntimeException {
+    public IdempotencyConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,30 @@
+package ru.practicum.shareit.exceptions;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import ru.practicum.shareit.booking.controller.BookingEventController;
+import ru.practicum.shareit.booking.controller.BookingStreamController;
+import ru.practicum.shareit.item.controller.ItemStreamController;
+
+/**
+ * Ошибки потоковых эндпоинтов приходят из Flux до первой строки, когда ответ еще не начат.
+ * Клиент ждет application/x-ndjson или text/event-stream, поэтому тип ответа задается явно,
+ * иначе ErrorResponse не сериализуется.
+ */
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@RestControllerAdvice(assignableTypes = {BookingStreamController.class, ItemStreamController.class,
+        BookingEventController.class})
+public class StreamExceptionController {
+
+    @ExceptionHandler
+    public ResponseEntity<ErrorResponse> handlerDataNotFoundException(DataNotFoundException e) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND) // Error 404
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(new ErrorResponse(e.getMessage()));
+    }
+}
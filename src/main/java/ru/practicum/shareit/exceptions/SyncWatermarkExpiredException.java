@@ -0,0 +1,7 @@
+package ru.practicum.shareit.exceptions;
+
+public class SyncWatermarkExpiredException extends RuntimeException {
+    public SyncWatermarkExpiredException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,20 @@
+package ru.practicum.shareit.fanout;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "shareit.fan-out")
+public class FanOutProperties {
+
+    // false - запросы выполняются по очереди в вызывающем потоке, для сравнения и отладки
+    private boolean enabled = true;
+
+    // общий срок на все параллельные запросы одного вызова
+    private Duration deadline = Duration.ofSeconds(2);
+
+    // сколько запросов всех вызовов держат соединение одновременно; 0 - половина пула соединений
+    private int maxConnections = 0;
+}
@@ -0,0 +1,229 @@
+package ru.practicum.shareit.fanout;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.exceptions.DeadlineExceededException;
+import ru.practicum.shareit.monitoring.RequestStatements;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Параллельное выполнение независимых запросов на чтение, по образцу StructuredTaskScope (в Java 21 еще preview).
+ * Каждый запрос идет в виртуальном потоке в своей read-only транзакции, то есть со своим соединением из пула.
+ * Все запросы ограничены общим сроком: по его истечении незавершенные отменяются, а вызов завершается
+ * DeadlineExceededException. Вызывающий метод не должен держать свою транзакцию, иначе на запрос
+ * уходит на одно соединение больше.
+ * <p>
+ * Соединения запросов всех вызовов ограничены общим числом max-connections, по умолчанию половиной пула
+ * (меньшего из spring.datasource.hikari.maximum-pool-size и shareit.sharding.max-pool-size): вторая половина
+ * остается транзакциям записи и вызывающим. Запрос, не получивший разрешения до срока, завершает вызов
+ * DeadlineExceededException. Запрос, запущенный изнутри другого запроса, выполняется сразу в его потоке
+ * и разрешения не ждет: иначе вложенные запросы ждали бы соединений, занятых их же родителями.
+ */
+@Slf4j
+@Component
+@Profile("!inmemory")
+@EnableConfigurationProperties(FanOutProperties.class)
+public class ReadOnlyFanOut {
+
+    private static final ThreadLocal<Boolean> IN_FORK = new ThreadLocal<>();
+
+    private final FanOutProperties properties;
+    private final TransactionTemplate readOnlyTransaction;
+    private final Semaphore connections;
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("fan-out-", 0).factory());
+
+    public ReadOnlyFanOut(FanOutProperties properties, PlatformTransactionManager transactionManager,
+                          Environment environment) {
+        this.properties = properties;
+        int maxConnections = properties.getMaxConnections();
+        if (maxConnections <= 0) {
+            int poolSize = environment.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, 10);
+            if (environment.getProperty("shareit.sharding.enabled", Boolean.class, false)) {
+                poolSize = Math.min(poolSize,
+                        environment.getProperty("shareit.sharding.max-pool-size", Integer.class, 10));
+            }
+            maxConnections = Math.max(1, poolSize / 2);
+        }
+        connections = new Semaphore(maxConnections);
+        log.info("Параллельные запросы на чтение держат не больше {} соединений", maxConnections);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        readOnlyTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        // таймаут транзакции становится таймаутом JDBC-запросов, чтобы отмененный запрос не доработал в базе
+        readOnlyTransaction.setTimeout((int) Math.ceil(properties.getDeadline().toMillis() / 1000.0));
+    }
+
+    public Scope open() {
+        return new Scope(System.nanoTime() + properties.getDeadline().toNanos());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public class Scope implements AutoCloseable {
+
+        private final long deadline;
+        private final List<Future<?>> futures = new ArrayList<>();
+        private final List<Fork> forks = new ArrayList<>();
+        private final RequestStatements requestStatements = RequestStatements.current();
+        private final Queue<RequestStatements> forkedStatements = new ConcurrentLinkedQueue<>();
+
+        private Scope(long deadline) {
+            this.deadline = deadline;
+        }
+
+        /**
+         * Запускает запрос. Результат доступен через возвращенный Supplier только после join().
+         */
+        public <T> Supplier<T> fork(Supplier<T> query) {
+            Future<T> future;
+            if (properties.isEnabled() && IN_FORK.get() == null) {
+                Fork fork = new Fork();
+                forks.add(fork);
+                future = executor.submit(fork.wrap(trackStatements(() -> withConnection(
+                        () -> readOnlyTransaction.execute(status -> query.get())))));
+            } else {
+                FutureTask<T> task = new FutureTask<>(() -> readOnlyTransaction.execute(status -> query.get()));
+                task.run();
+                future = task;
+            }
+            futures.add(future);
+            return future::resultNow;
+        }
+
+        /**
+         * Ждет все запросы в порядке запуска и пробрасывает первую ошибку в этом порядке,
+         * поэтому результат не зависит от того, какой запрос закончился раньше.
+         */
+        public void join() {
+            try {
+                for (Future<?> future : futures) {
+                    future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                }
+            } catch (TimeoutException e) {
+                throw new DeadlineExceededException("Запросы не уложились в " + properties.getDeadline());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DeadlineExceededException("Ожидание параллельных запросов прервано");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                if (e.getCause() instanceof Error error) {
+                    throw error;
+                }
+                throw new IllegalStateException(e.getCause());
+            } finally {
+                mergeStatements();
+            }
+        }
+
+        /**
+         * Отменяет незавершенные запросы и ждет, пока уже начатые выйдут из транзакции, чтобы их SQL
+         * попал в статистику HTTP-запроса: медленные запросы иначе выпадали бы из нее первыми.
+         */
+        @Override
+        public void close() {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+            long waitUntil = System.nanoTime() + properties.getDeadline().toNanos();
+            try {
+                for (Fork fork : forks) {
+                    fork.awaitFinished(waitUntil);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            mergeStatements();
+        }
+
+        private <T> T withConnection(Supplier<T> call) throws InterruptedException {
+            if (!connections.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                throw new DeadlineExceededException("Не дождались соединения для запроса за " +
+                        properties.getDeadline());
+            }
+            try {
+                return call.get();
+            } finally {
+                connections.release();
+            }
+        }
+
+        // SQL из виртуальных потоков учитывается в статистике HTTP-запроса, который их запустил
+        private <T> Callable<T> trackStatements(Callable<T> call) {
+            if (requestStatements == null) {
+                return call;
+            }
+            return () -> {
+                RequestStatements.begin(requestStatements.getHandler());
+                try {
+                    return call.call();
+                } finally {
+                    forkedStatements.add(RequestStatements.end());
+                }
+            };
+        }
+
+        // запрос, отмененный до начала, не запускается; начатый отмечает свое завершение
+        private static class Fork {
+
+            private final AtomicBoolean claimed = new AtomicBoolean();
+            private final CountDownLatch finished = new CountDownLatch(1);
+
+            <T> Callable<T> wrap(Callable<T> call) {
+                return () -> {
+                    if (!claimed.compareAndSet(false, true)) {
+                        return null;
+                    }
+                    IN_FORK.set(true);
+                    try {
+                        return call.call();
+                    } finally {
+                        IN_FORK.remove();
+                        finished.countDown();
+                    }
+                };
+            }
+
+            void awaitFinished(long waitUntil) throws InterruptedException {
+                if (!claimed.compareAndSet(false, true)) {
+                    finished.await(Math.max(0, waitUntil - System.nanoTime()), TimeUnit.NANOSECONDS);
+                }
+            }
+        }
+
+        private void mergeStatements() {
+            RequestStatements forked;
+            while ((forked = forkedStatements.poll()) != null) {
+                requestStatements.merge(forked);
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package ru.practicum.shareit.idempotency;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "shareit.idempotency")
+public class IdempotencyProperties {
+
+    // сколько хранится ответ на запрос с Idempotency-Key
+    private Duration ttl = Duration.ofHours(24);
+
+    // ключей в памяти процесса, остальные читаются из таблицы
+    private long localMaxEntries = 10_000;
+
+    // сколько повтор ждет завершения первого запроса с тем же ключом
+    private Duration waitTimeout = Duration.ofSeconds(10);
+
+    // запись IN_PROGRESS старше этого срока считается брошенной упавшим узлом и перехватывается
+    private Duration inProgressTimeout = Duration.ofMinutes(1);
+
+    private Duration cleanupInterval = Duration.ofMinutes(10);
+}
@@ -0,0 +1,69 @@
+package ru.practicum.shareit.idempotency;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Таблица idempotency_keys: общий для всех узлов источник правды о ключах.
+ * Вставка записи IN_PROGRESS - захват ключа, первичный ключ гарантирует, что захватит только один запрос.
+ */
+class IdempotencyStore {
+
+    static final String IN_PROGRESS = "IN_PROGRESS";
+    static final String COMPLETED = "COMPLETED";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    IdempotencyStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    Optional<Row> find(String id, LocalDateTime now) {
+        List<Row> rows = jdbcTemplate.query("SELECT request_hash, status, response, created FROM idempotency_keys " +
+                        "WHERE id = ? AND expires_at > ?",
+                (rs, rowNum) -> new Row(rs.getString(1), rs.getString(2), rs.getString(3),
+                        rs.getTimestamp(4).toLocalDateTime()),
+                id, Timestamp.valueOf(now));
+        return rows.stream().findFirst();
+    }
+
+    boolean claim(String id, String requestHash, LocalDateTime now, LocalDateTime expiresAt) {
+        jdbcTemplate.update("DELETE FROM idempotency_keys WHERE id = ? AND expires_at <= ?",
+                id, Timestamp.valueOf(now));
+        try {
+            jdbcTemplate.update("INSERT INTO idempotency_keys (id, request_hash, status, created, expires_at) " +
+                            "VALUES (?, ?, ?, ?, ?)",
+                    id, requestHash, IN_PROGRESS, Timestamp.valueOf(now), Timestamp.valueOf(expiresAt));
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    boolean takeOver(String id, String requestHash, LocalDateTime now, LocalDateTime staleBefore) {
+        return jdbcTemplate.update("UPDATE idempotency_keys SET request_hash = ?, created = ? " +
+                        "WHERE id = ? AND status = ? AND created < ?",
+                requestHash, Timestamp.valueOf(now), id, IN_PROGRESS, Timestamp.valueOf(staleBefore)) == 1;
+    }
+
+    void complete(String id, String response) {
+        jdbcTemplate.update("UPDATE idempotency_keys SET status = ?, response = ? WHERE id = ?",
+                COMPLETED, response, id);
+    }
+
+    void release(String id) {
+        jdbcTemplate.update("DELETE FROM idempotency_keys WHERE id = ? AND status = ?", id, IN_PROGRESS);
+    }
+
+    int deleteExpired(LocalDateTime now) {
+        return jdbcTemplate.update("DELETE FROM idempotency_keys WHERE expires_at <= ?", Timestamp.valueOf(now));
+    }
+
+    record Row(String requestHash, String status, String response, LocalDateTime created) {
+    }
+}
@@ -0,0 +1,257 @@
+package ru.practicum.shareit.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.exceptions.IdempotencyConflictException;
+import ru.practicum.shareit.exceptions.MissedSmthException;
+import ru.practicum.shareit.sharding.Shards;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Повторы запросов создания с заголовком Idempotency-Key получают исходный ответ без повторного выполнения.
+ * Ключ действует в пределах пользователя и операции. Перед таблицей idempotency_keys стоит ограниченная
+ * карта в памяти: одновременные дубликаты на одном узле ждут первый запрос, не обращаясь к базе,
+ * а между узлами их разводит захват ключа в таблице. Ответ записывается в таблицу в одной транзакции
+ * с созданием сущности, поэтому сбой не может оставить созданную сущность без сохраненного ответа.
+ * При шардировании ключи лежат на шарде 0, а сущность - на шарде владельца, и общей транзакции нет:
+ * ответ записывается сразу после фиксации сущности, и сбой между ними приведет к повторному выполнению.
+ * В профиле inmemory базы нет, и ключи хранятся только в памяти.
+ */
+@Slf4j
+@Component
+@EnableConfigurationProperties(IdempotencyProperties.class)
+public class IdempotentRequests {
+
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final long POLL_MILLIS = 50;
+
+    private final IdempotencyProperties properties;
+    private final ObjectMapper objectMapper;
+    private final IdempotencyStore store;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean sharded;
+    private final Cache<String, CompletableFuture<Response>> local;
+
+    private ScheduledExecutorService scheduler;
+
+    public IdempotentRequests(IdempotencyProperties properties, ObjectMapper objectMapper,
+                              ObjectProvider<JdbcTemplate> jdbcTemplate,
+                              ObjectProvider<PlatformTransactionManager> transactionManager,
+                              ObjectProvider<Shards> shards) {
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        JdbcTemplate jdbc = jdbcTemplate.getIfAvailable();
+        PlatformTransactionManager manager = transactionManager.getIfAvailable();
+        this.store = jdbc == null || manager == null ? null : new IdempotencyStore(jdbc);
+        this.transactionTemplate = manager == null ? null : new TransactionTemplate(manager);
+        Shards sharding = shards.getIfAvailable();
+        this.sharded = sharding != null && sharding.count() > 1;
+        this.local = Caffeine.newBuilder()
+                .maximumSize(properties.getLocalMaxEntries())
+                .expireAfterWrite(properties.getTtl())
+                .build();
+    }
+
+    @PostConstruct
+    public void start() {
+        if (store == null) {
+            return;
+        }
+        long interval = properties.getCleanupInterval().toMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "idempotency-cleanup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::deleteExpired, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Выполняет action один раз на ключ. Без ключа просто выполняет action.
+     */
+    public <T> T execute(String key, Long userId, String operation, Object request, Class<T> responseType,
+                         Supplier<T> action) {
+        if (key == null) {
+            return action.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new MissedSmthException("Idempotency-Key должен быть непустым и не длиннее " + MAX_KEY_LENGTH +
+                    " символов");
+        }
+        String id = userId + ":" + operation + ":" + key;
+        String requestHash = hash(request);
+
+        CompletableFuture<Response> own = new CompletableFuture<>();
+        CompletableFuture<Response> first = local.asMap().putIfAbsent(id, own);
+        if (first != null) {
+            log.debug("Повтор запроса с Idempotency-Key {}, ждем исходный ответ", key);
+            return replay(await(first), requestHash, responseType);
+        }
+        try {
+            Result<T> result = store == null
+                    ? run(requestHash, action, null)
+                    : runOnce(id, requestHash, responseType, action);
+            own.complete(result.response());
+            return result.value();
+        } catch (RuntimeException e) {
+            // неудачный запрос не запоминается: повтор с тем же ключом выполнится заново
+            local.asMap().remove(id, own);
+            own.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    int deleteExpired() {
+        try {
+            int deleted = store.deleteExpired(LocalDateTime.now());
+            if (deleted > 0) {
+                log.debug("Удалено {} просроченных Idempotency-Key", deleted);
+            }
+            return deleted;
+        } catch (RuntimeException e) {
+            log.error("Ошибка при удалении просроченных Idempotency-Key", e);
+            return 0;
+        }
+    }
+
+    public void clearLocal() {
+        local.invalidateAll();
+    }
+
+    private <T> Result<T> runOnce(String id, String requestHash, Class<T> responseType, Supplier<T> action) {
+        long deadline = System.nanoTime() + properties.getWaitTimeout().toNanos();
+        while (true) {
+            LocalDateTime now = LocalDateTime.now();
+            Optional<IdempotencyStore.Row> row = store.find(id, now);
+            if (row.isEmpty()) {
+                if (store.claim(id, requestHash, now, now.plus(properties.getTtl()))) {
+                    return runClaimed(id, requestHash, action);
+                }
+            } else if (IdempotencyStore.COMPLETED.equals(row.get().status())) {
+                Response response = new Response(row.get().requestHash(), row.get().response());
+                return new Result<>(replay(response, requestHash, responseType), response);
+            } else if (store.takeOver(id, requestHash, now, now.minus(properties.getInProgressTimeout()))) {
+                log.warn("Запрос с ключом {} не завершился за {}, выполняем заново", id,
+                        properties.getInProgressTimeout());
+                return runClaimed(id, requestHash, action);
+            }
+            if (System.nanoTime() > deadline) {
+                throw new IdempotencyConflictException("Запрос с этим Idempotency-Key еще выполняется");
+            }
+            sleep();
+        }
+    }
+
+    private <T> Result<T> runClaimed(String id, String requestHash, Supplier<T> action) {
+        try {
+            if (sharded) {
+                Result<T> result = run(requestHash, action, null);
+                store.complete(id, result.response().body());
+                return result;
+            }
+            return transactionTemplate.execute(status -> run(requestHash, action, id));
+        } catch (RuntimeException e) {
+            store.release(id);
+            throw e;
+        }
+    }
+
+    private <T> Result<T> run(String requestHash, Supplier<T> action, String storeId) {
+        T value = action.get();
+        String body = toJson(value);
+        if (storeId != null) {
+            store.complete(storeId, body);
+        }
+        return new Result<>(value, new Response(requestHash, body));
+    }
+
+    private Response await(CompletableFuture<Response> first) {
+        try {
+            return first.get(properties.getWaitTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IdempotencyConflictException("Запрос с этим Idempotency-Key еще выполняется");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyConflictException("Ожидание запроса с этим Idempotency-Key прервано");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private <T> T replay(Response response, String requestHash, Class<T> responseType) {
+        if (!response.requestHash().equals(requestHash)) {
+            throw new IdempotencyConflictException("Idempotency-Key уже использован с другим телом запроса");
+        }
+        try {
+            return objectMapper.readValue(response.body(), responseType);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось прочитать сохраненный ответ", e);
+        }
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Не удалось сохранить ответ", e);
+        }
+    }
+
+    private String hash(Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(toJson(request).getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(POLL_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyConflictException("Ожидание запроса с этим Idempotency-Key прервано");
+        }
+    }
+
+    private record Response(String requestHash, String body) {
+    }
+
+    private record Result<T>(T value, Response response) {
+    }
+}
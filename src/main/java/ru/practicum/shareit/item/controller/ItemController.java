@@ -1,11 +1,17 @@
 package ru.practicum.shareit.item.controller;
 
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
+import ru.practicum.shareit.idempotency.IdempotentRequests;
 import ru.practicum.shareit.item.dto.*;
+import ru.practicum.shareit.item.model.ItemField;
 import ru.practicum.shareit.item.service.ItemService;
 
 import java.util.List;
@@ -20,20 +26,23 @@ import java.util.List;
 public class ItemController {
 
     private final ItemService itemService;
+    private final IdempotentRequests idempotentRequests;
 
     @PostMapping
     public ItemDto addNewItem(@RequestHeader("X-Sharer-User-Id") Long userId,
+                              @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
                               @Valid @RequestBody CreateItemDto item) {
         log.debug("Начато создание объекта предмета. Получен объект {}", item);
-        return itemService.addNewItem(userId, item);
+        return idempotentRequests.execute(idempotencyKey, userId, "POST /items", item, ItemDto.class,
+                () -> itemService.addNewItem(userId, item));
     }
 
     @PatchMapping("/{itemId}")
     public ItemDto updateItem(@RequestHeader("X-Sharer-User-Id") Long userId,
                               @PathVariable @Positive Long itemId,
                               @Valid @RequestBody UpdateItemDto item) {
-        log.debug("Начато обновление объекта вещи. Получен объект {} c id {}, принадлежащий пользователю" +
-                "с id {}", item, itemId, userId);
+        log.atDebug().addArgument(item).addArgument(itemId).addArgument(userId)
+                .log("Начато обновление объекта вещи. Получен объект {} c id {}, принадлежащий пользователю с id {}");
         item.setId(itemId);
         return itemService.updateItem(userId, item);
     }
@@ -41,29 +50,63 @@ public class ItemController {
     @GetMapping("/{itemId}")
     public ItemWithBookingDto getItem(@RequestHeader("X-Sharer-User-Id") Long userId,
                                       @PathVariable @Positive Long itemId) {
-        log.debug("Начат просмотр предмета с id {} пользователем с id {}", itemId, userId);
+        log.atDebug().addArgument(itemId).addArgument(userId)
+                .log("Начат просмотр предмета с id {} пользователем с id {}");
         return itemService.getItem(userId, itemId);
     }
 
     @GetMapping
-    public List<ItemWithBookingDto> getItems(@RequestHeader("X-Sharer-User-Id") Long userId) {
+    public List<ItemWithBookingDto> getItems(@RequestHeader("X-Sharer-User-Id") Long userId,
+                                             @RequestParam(required = false) List<String> fields) {
         log.debug("Начат возврат списка всех предметов пользователя id {}", userId);
-        return itemService.getItems(userId);
+        return itemService.getItems(userId, ItemField.parse(fields));
     }
 
     @GetMapping("/search")
     public List<ItemDto> findItems(@RequestHeader("X-Sharer-User-Id") Long userId,
                                    @RequestParam String text) {
-        log.debug("Начат возврат списка предметов, содержащих в названии или описании текст {}, " +
-                "поиск осуществляет пользователь с id {}", text, userId);
+        log.atDebug().addArgument(text).addArgument(userId)
+                .log("Начат возврат списка предметов, содержащих в названии или описании текст {}, " +
+                        "поиск осуществляет пользователь с id {}");
         return itemService.findItems(userId, text);
     }
 
+    /**
+     * Поиск рядом: доступные вещи в радиусе radius км от точки, от ближних к дальним. Текст необязателен.
+     */
+    @GetMapping(value = "/search", params = {"lat", "lon"})
+    public List<ItemDto> findItemsNearby(@RequestHeader("X-Sharer-User-Id") Long userId,
+                                         @RequestParam(required = false) String text,
+                                         @RequestParam @DecimalMin("-90") @DecimalMax("90") double lat,
+                                         @RequestParam @DecimalMin("-180") @DecimalMax("180") double lon,
+                                         @RequestParam(defaultValue = "5") @Positive double radius,
+                                         @RequestParam(defaultValue = "0") @PositiveOrZero int from,
+                                         @RequestParam(defaultValue = "20") @Positive @Max(100) int size) {
+        log.atDebug().addArgument(radius).addArgument(lat).addArgument(lon).addArgument(text).addArgument(userId)
+                .log("Начат поиск вещей в радиусе {} км от ({}, {}) с текстом {}, поиск осуществляет пользователь " +
+                        "с id {}");
+        return itemService.findItemsNearby(userId, text, lat, lon, radius, from, size);
+    }
+
+    /**
+     * Лента изменений для синхронизации: вещи пользователя, комментарии к ним и id удаленных после водяного
+     * знака since. Следующая страница, пока hasMore, и следующая синхронизация - с watermark из ответа.
+     */
+    @GetMapping("/changes")
+    public ItemChangesDto getItemChanges(@RequestHeader("X-Sharer-User-Id") Long userId,
+                                         @RequestParam(required = false) String since,
+                                         @RequestParam(defaultValue = "100") @Positive @Max(500) int size) {
+        log.atDebug().addArgument(size).addArgument(userId).addArgument(since)
+                .log("Начат возврат {} изменений вещей пользователя с id {} после {}");
+        return itemService.getItemChanges(userId, since, size);
+    }
+
     @PostMapping("/{itemId}/comment")
     public CommentDto addComment(@RequestHeader("X-Sharer-User-Id") Long userId,
                                  @PathVariable @Positive Long itemId,
                                  @Valid @RequestBody CreateCommentDto comment) {
-        log.debug("Начато создание комментария пользователем {} к предмету {}. Получен объект {}", userId, itemId, comment);
+        log.atDebug().addArgument(userId).addArgument(itemId).addArgument(comment)
+                .log("Начато создание комментария пользователем {} к предмету {}. Получен объект {}");
         return itemService.addComment(userId, itemId, comment);
     }
 
@@ -0,0 +1,29 @@
+package ru.practicum.shareit.item.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import ru.practicum.shareit.item.dto.ItemWithBookingDto;
+import ru.practicum.shareit.item.service.ItemReactiveService;
+
+/**
+ * Потоковая выдача вещей владельца в NDJSON для клиентов с Accept: application/x-ndjson.
+ */
+@Slf4j
+@RestController
+@RequestMapping(path = "/items", produces = MediaType.APPLICATION_NDJSON_VALUE)
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "shareit.reactive", name = "enabled")
+public class ItemStreamController {
+
+    private final ItemReactiveService itemReactiveService;
+
+    @GetMapping
+    public Flux<ItemWithBookingDto> streamItems(@RequestHeader("X-Sharer-User-Id") Long userId) {
+        log.debug("Начата потоковая выдача вещей пользователя с id {}", userId);
+        return itemReactiveService.getItems(userId);
+    }
+}
@@ -1,5 +1,6 @@
 package ru.practicum.shareit.item.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -17,4 +18,8 @@ public class CommentDto {
     private String text;
     private String authorName;
     private LocalDateTime created;
+
+    // только в ленте изменений, где комментарии идут отдельно от вещей
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long itemId;
 }
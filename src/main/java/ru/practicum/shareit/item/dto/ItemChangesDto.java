@@ -0,0 +1,25 @@
+package ru.practicum.shareit.item.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Страница ленты изменений вещей владельца и комментариев к ним. Следующая страница и следующая
+ * синхронизация - с watermark в since.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ItemChangesDto {
+    private List<ItemDto> items;
+    private List<CommentDto> comments;
+    private List<Long> deletedItems;
+    private List<Long> deletedComments;
+    private String watermark;
+    private boolean hasMore;
+}
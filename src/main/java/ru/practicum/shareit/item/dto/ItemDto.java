@@ -1,5 +1,6 @@
 package ru.practicum.shareit.item.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -15,4 +16,14 @@ public class ItemDto {
     private String name;
     private String description;
     private Boolean available;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double latitude;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double longitude;
+
+    // только в результатах поиска рядом
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double distanceKm;
 }
@@ -1,5 +1,6 @@
 package ru.practicum.shareit.item.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -15,11 +16,18 @@ import java.util.List;
 @AllArgsConstructor
 public class ItemWithBookingDto {
 
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private Long id;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private String name;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private String description;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private Boolean available;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private LocalDateTime lastBooking;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private LocalDateTime nextBooking;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private List<CommentDto> comments = new ArrayList<>();
 }
@@ -0,0 +1,22 @@
+package ru.practicum.shareit.item.geo;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "shareit.geo")
+public class GeoIndexProperties {
+
+    // сторона ячейки сетки в градусах: 0.05 - около 5.5 км по широте
+    private double cellDegrees = 0.05;
+
+    // полная перезагрузка индекса из базы подхватывает изменения, сделанные на других узлах
+    private Duration refreshInterval = Duration.ofMinutes(5);
+
+    private double maxRadiusKm = 50;
+
+    // вещей с координатами в одной выборке при загрузке индекса
+    private int loadBatchSize = 5000;
+}
@@ -0,0 +1,241 @@
+package ru.practicum.shareit.item.geo;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.shareit.item.model.ItemLocation;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.sharding.Shards;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пространственный индекс вещей с координатами: равномерная сетка по широте и долготе, ячейка хранит id вещей.
+ * Поиск рядом просматривает только ячейки, попадающие в квадрат вокруг точки, и точно отсекает лишнее по
+ * расстоянию. Записи этого узла попадают в индекс после фиксации транзакции, записи других узлов - при
+ * периодической перезагрузке из базы.
+ */
+@Slf4j
+@Component
+@Profile("!inmemory")
+@EnableConfigurationProperties(GeoIndexProperties.class)
+public class ItemGeoIndex {
+
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+    private static final double KM_PER_DEGREE = Math.PI * EARTH_RADIUS_KM / 180;
+
+    private final GeoIndexProperties properties;
+    private final ItemRepository itemRepository;
+    private final Shards shards;
+    private final int lonCells;
+
+    private volatile Grid grid = new Grid();
+    // пока идет перезагрузка, свежие записи попадают и в строящуюся сетку
+    private volatile Grid loading;
+    private ScheduledExecutorService scheduler;
+
+    public ItemGeoIndex(GeoIndexProperties properties, ItemRepository itemRepository, Shards shards) {
+        this.properties = properties;
+        this.itemRepository = itemRepository;
+        this.shards = shards;
+        this.lonCells = (int) Math.ceil(360 / properties.getCellDegrees());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        reloadSafely();
+        long interval = properties.getRefreshInterval().toMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "item-geo-index");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::reloadSafely, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * Обновляет координаты вещи после успешной фиксации текущей транзакции; вне транзакции - сразу.
+     */
+    public void putAfterCommit(Long itemId, double latitude, double longitude) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            put(itemId, latitude, longitude);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                put(itemId, latitude, longitude);
+            }
+        });
+    }
+
+    void put(Long itemId, double latitude, double longitude) {
+        Point point = new Point(latitude, longitude, cell(latitude, longitude));
+        grid.put(itemId, point, true);
+        Grid next = loading;
+        if (next != null) {
+            next.put(itemId, point, true);
+        }
+    }
+
+    /**
+     * Вещи в радиусе radiusKm от точки, от ближних к дальним.
+     */
+    public List<Nearby> within(double latitude, double longitude, double radiusKm) {
+        Grid current = grid;
+        double step = properties.getCellDegrees();
+        double latDelta = radiusKm / KM_PER_DEGREE;
+        double cos = Math.cos(Math.toRadians(latitude));
+        double lonDelta = cos < 1e-6 ? 180 : radiusKm / (KM_PER_DEGREE * cos);
+        int latFrom = latIndex(Math.max(-90, latitude - latDelta));
+        int latTo = latIndex(Math.min(90, latitude + latDelta));
+        int lonFrom = (int) Math.floor((longitude - lonDelta + 180) / step);
+        int lonTo = (int) Math.floor((longitude + lonDelta + 180) / step);
+        if (lonTo - lonFrom + 1 >= lonCells) {
+            lonFrom = 0;
+            lonTo = lonCells - 1;
+        }
+
+        List<Nearby> result = new ArrayList<>();
+        for (int latCell = latFrom; latCell <= latTo; latCell++) {
+            for (int lonCell = lonFrom; lonCell <= lonTo; lonCell++) {
+                // через антимеридиан номер ячейки долготы заворачивается
+                Set<Long> ids = current.cells.get(key(latCell, Math.floorMod(lonCell, lonCells)));
+                if (ids == null) {
+                    continue;
+                }
+                for (Long id : ids) {
+                    Point point = current.points.get(id);
+                    if (point == null) {
+                        continue;
+                    }
+                    double distance = distanceKm(latitude, longitude, point.latitude(), point.longitude());
+                    if (distance <= radiusKm) {
+                        result.add(new Nearby(id, distance));
+                    }
+                }
+            }
+        }
+        result.sort(Comparator.comparingDouble(Nearby::distanceKm).thenComparing(Nearby::itemId));
+        return result;
+    }
+
+    public int size() {
+        return grid.points.size();
+    }
+
+    /**
+     * Строит сетку заново по базе порциями по id, шард за шардом, и подменяет текущую целиком.
+     */
+    public void reload() {
+        Grid next = new Grid();
+        loading = next;
+        try {
+            shards.sumOverShards(() -> load(next));
+            grid = next;
+        } finally {
+            loading = null;
+        }
+        log.debug("Пространственный индекс вещей перезагружен, вещей с координатами: {}", next.points.size());
+    }
+
+    private int load(Grid next) {
+        long afterId = 0;
+        int loaded = 0;
+        List<ItemLocation> batch;
+        do {
+            batch = itemRepository.findLocatedAfter(afterId, Limit.of(properties.getLoadBatchSize()));
+            for (ItemLocation location : batch) {
+                // запись, пришедшая во время загрузки, свежее прочитанной строки
+                next.put(location.getId(), new Point(location.getLatitude(), location.getLongitude(),
+                        cell(location.getLatitude(), location.getLongitude())), false);
+                afterId = location.getId();
+            }
+            loaded += batch.size();
+        } while (batch.size() == properties.getLoadBatchSize());
+        return loaded;
+    }
+
+    public static double distanceKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) + Math.cos(Math.toRadians(lat1))
+                * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    private void reloadSafely() {
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            log.error("Ошибка при загрузке пространственного индекса вещей", e);
+        }
+    }
+
+    private long cell(double latitude, double longitude) {
+        int lonCell = Math.floorMod((int) Math.floor((longitude + 180) / properties.getCellDegrees()), lonCells);
+        return key(latIndex(latitude), lonCell);
+    }
+
+    private int latIndex(double latitude) {
+        return (int) Math.floor((latitude + 90) / properties.getCellDegrees());
+    }
+
+    private static long key(int latCell, int lonCell) {
+        return ((long) latCell << 32) | (lonCell & 0xffffffffL);
+    }
+
+    public record Nearby(Long itemId, double distanceKm) {
+    }
+
+    private record Point(double latitude, double longitude, long cell) {
+    }
+
+    private static final class Grid {
+        private final Map<Long, Point> points = new ConcurrentHashMap<>();
+        private final Map<Long, Set<Long>> cells = new ConcurrentHashMap<>();
+
+        void put(Long itemId, Point point, boolean replace) {
+            points.compute(itemId, (id, old) -> {
+                if (old != null && !replace) {
+                    return old;
+                }
+                if (old != null && old.cell() != point.cell()) {
+                    cells.computeIfPresent(old.cell(), (cell, ids) -> {
+                        ids.remove(id);
+                        return ids.isEmpty() ? null : ids;
+                    });
+                }
+                cells.compute(point.cell(), (cell, ids) -> {
+                    Set<Long> target = ids != null ? ids : ConcurrentHashMap.newKeySet();
+                    target.add(id);
+                    return target;
+                });
+                return point;
+            });
+        }
+    }
+}
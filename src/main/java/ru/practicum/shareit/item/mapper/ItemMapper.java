@@ -3,9 +3,14 @@ package ru.practicum.shareit.item.mapper;
 import ru.practicum.shareit.item.dto.*;
 import ru.practicum.shareit.item.model.Comment;
 import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.model.ItemField;
+import ru.practicum.shareit.item.model.ItemShort;
+import ru.practicum.shareit.sync.ChangeKind;
+import ru.practicum.shareit.sync.ChangePage;
 import ru.practicum.shareit.user.model.User;
 
 import java.time.LocalDateTime;
+import java.util.Set;
 
 public class ItemMapper {
 
@@ -14,6 +19,8 @@ public class ItemMapper {
                 .name(createItemDto.getName())
                 .description(createItemDto.getDescription())
                 .available(createItemDto.getAvailable())
+                .latitude(createItemDto.getLatitude())
+                .longitude(createItemDto.getLongitude())
                 .build();
     }
 
@@ -23,6 +30,8 @@ public class ItemMapper {
                 .name(updateItemDto.getName())
                 .description(updateItemDto.getDescription())
                 .available(updateItemDto.getAvailable())
+                .latitude(updateItemDto.getLatitude())
+                .longitude(updateItemDto.getLongitude())
                 .build();
     }
 
@@ -32,9 +41,17 @@ public class ItemMapper {
                 .name(item.getName())
                 .description(item.getDescription())
                 .available(item.getAvailable())
+                .latitude(item.getLatitude())
+                .longitude(item.getLongitude())
                 .build();
     }
 
+    public static ItemDto toItemDto(Item item, double distanceKm) {
+        ItemDto dto = toItemDto(item);
+        dto.setDistanceKm(distanceKm);
+        return dto;
+    }
+
     public static ItemWithBookingDto toItemWithBookingDto(Item item, LocalDateTime lastBooking,LocalDateTime nextBooking) {
         return ItemWithBookingDto.builder()
                 .id(item.getId())
@@ -46,6 +63,30 @@ public class ItemMapper {
                 .build();
     }
 
+    public static ItemWithBookingDto toItemWithBookingDto(Item item, LocalDateTime lastBooking,
+                                                          LocalDateTime nextBooking, Set<ItemField> fields) {
+        return ItemWithBookingDto.builder()
+                .id(fields.contains(ItemField.ID) ? item.getId() : null)
+                .name(fields.contains(ItemField.NAME) ? item.getName() : null)
+                .description(fields.contains(ItemField.DESCRIPTION) ? item.getDescription() : null)
+                .available(fields.contains(ItemField.AVAILABLE) ? item.getAvailable() : null)
+                .lastBooking(fields.contains(ItemField.LAST_BOOKING) ? lastBooking : null)
+                .nextBooking(fields.contains(ItemField.NEXT_BOOKING) ? nextBooking : null)
+                .build();
+    }
+
+    public static ItemWithBookingDto toItemWithBookingDto(ItemShort item, LocalDateTime lastBooking,
+                                                          LocalDateTime nextBooking, Set<ItemField> fields) {
+        return ItemWithBookingDto.builder()
+                .id(fields.contains(ItemField.ID) ? item.getId() : null)
+                .name(fields.contains(ItemField.NAME) ? item.getName() : null)
+                .description(fields.contains(ItemField.DESCRIPTION) ? item.getDescription() : null)
+                .available(fields.contains(ItemField.AVAILABLE) ? item.getAvailable() : null)
+                .lastBooking(fields.contains(ItemField.LAST_BOOKING) ? lastBooking : null)
+                .nextBooking(fields.contains(ItemField.NEXT_BOOKING) ? nextBooking : null)
+                .build();
+    }
+
     public static CommentDto toCommentDto(Comment comment) {
         return CommentDto.builder()
                 .id(comment.getId())
@@ -55,6 +96,25 @@ public class ItemMapper {
                 .build();
     }
 
+    public static ItemChangesDto toItemChangesDto(ChangePage page) {
+        return ItemChangesDto.builder()
+                .items(page.rows(ChangeKind.ITEM, Item.class).stream()
+                        .map(ItemMapper::toItemDto)
+                        .toList())
+                .comments(page.rows(ChangeKind.COMMENT, Comment.class).stream()
+                        .map(comment -> {
+                            CommentDto dto = toCommentDto(comment);
+                            dto.setItemId(comment.getItem().getId());
+                            return dto;
+                        })
+                        .toList())
+                .deletedItems(page.ids(ChangeKind.ITEM_DELETED))
+                .deletedComments(page.ids(ChangeKind.COMMENT_DELETED))
+                .watermark(page.watermark())
+                .hasMore(page.hasMore())
+                .build();
+    }
+
     public static Comment toComment(CreateCommentDto comment, Item commentItem, User user) {
         return Comment.builder()
                 .text(comment.getText())
@@ -2,14 +2,21 @@ package ru.practicum.shareit.item.model;
 
 import jakarta.persistence.*;
 import lombok.*;
-import ru.practicum.shareit.request.ItemRequest;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import ru.practicum.shareit.config.EntityCacheConfig;
+import ru.practicum.shareit.request.model.ItemRequest;
 import ru.practicum.shareit.user.model.User;
 
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
 /**
  * TODO Sprint add-controllers.
  */
 
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = EntityCacheConfig.ITEMS_REGION)
 @Table(name = "items")
 @Data
 @NoArgsConstructor
@@ -31,15 +38,33 @@ public class Item {
     @Column(name = "is_available", nullable = false)
     private Boolean available;
 
+    // координаты для поиска рядом, задаются обе или ни одной
+    @Column(name = "latitude")
+    private Double latitude;
+
+    @Column(name = "longitude")
+    private Double longitude;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "owner_id", nullable = false)
     @ToString.Exclude
     private User owner;
 
-    @OneToOne(fetch = FetchType.LAZY)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "request_id")
     @ToString.Exclude
     private ItemRequest request = null;
     //если вещь была создана по запросу другого пользователя, то в этом
-    //поле будет храниться ссылка на соответствующий запрос.
+    //поле будет храниться ссылка на соответствующий запрос. На один запрос могут ответить несколько вещей.
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    //момент последнего изменения строки для лент синхронизации, ставится при каждой записи сущности
+
+    @PrePersist
+    @PreUpdate
+    void touch() {
+        // в базе хранятся микросекунды: водяной знак из прочитанной строки должен совпадать со значением в памяти
+        updatedAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    }
 }
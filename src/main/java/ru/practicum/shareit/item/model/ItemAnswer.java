@@ -0,0 +1,14 @@
+package ru.practicum.shareit.item.model;
+
+/**
+ * Вещь, созданная в ответ на запрос: только то, что показывается в списке ответов.
+ */
+public interface ItemAnswer {
+    Long getId();
+
+    String getName();
+
+    Long getOwnerId();
+
+    Long getRequestId();
+}
@@ -0,0 +1,51 @@
+package ru.practicum.shareit.item.model;
+
+import ru.practicum.shareit.exceptions.MissedSmthException;
+
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.Set;
+
+public enum ItemField {
+    ID("id"),
+    NAME("name"),
+    DESCRIPTION("description"),
+    AVAILABLE("available"),
+    LAST_BOOKING("lastBooking"),
+    NEXT_BOOKING("nextBooking"),
+    COMMENTS("comments");
+
+    private final String name;
+
+    ItemField(String name) {
+        this.name = name;
+    }
+
+    public static Set<ItemField> parse(Collection<String> names) {
+        if (names == null || names.isEmpty()) {
+            return EnumSet.allOf(ItemField.class);
+        }
+        Set<ItemField> fields = EnumSet.noneOf(ItemField.class);
+        for (String name : names) {
+            fields.add(of(name));
+        }
+        return fields;
+    }
+
+    private static ItemField of(String name) {
+        for (ItemField field : values()) {
+            if (field.name.equalsIgnoreCase(name.trim())) {
+                return field;
+            }
+        }
+        throw new MissedSmthException("Неизвестное поле предмета: " + name);
+    }
+
+    public static boolean needsColumns(Set<ItemField> fields) {
+        return fields.contains(NAME) || fields.contains(DESCRIPTION) || fields.contains(AVAILABLE);
+    }
+
+    public static boolean needsBookings(Set<ItemField> fields) {
+        return fields.contains(LAST_BOOKING) || fields.contains(NEXT_BOOKING);
+    }
+}
@@ -0,0 +1,12 @@
+package ru.practicum.shareit.item.model;
+
+/**
+ * Координаты вещи для загрузки пространственного индекса.
+ */
+public interface ItemLocation {
+    Long getId();
+
+    Double getLatitude();
+
+    Double getLongitude();
+}
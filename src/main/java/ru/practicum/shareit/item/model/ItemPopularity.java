@@ -0,0 +1,25 @@
+package ru.practicum.shareit.item.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+/**
+ * Рейтинг популярности вещи. Пишется только через ItemPopularityTracker, здесь - для сортировки в JPQL.
+ */
+@Entity
+@Table(name = "item_popularity")
+@Getter
+@NoArgsConstructor
+public class ItemPopularity {
+
+    @Id
+    @Column(name = "item_id")
+    private Long itemId;
+
+    @Column(name = "score", nullable = false)
+    private Double score;
+}
@@ -0,0 +1,7 @@
+package ru.practicum.shareit.item.model;
+
+/**
+ * Вещь из текстового поиска вместе с рейтингом популярности: по нему сливаются ответы разных шардов.
+ */
+public record ItemSearchHit(Item item, Double score) {
+}
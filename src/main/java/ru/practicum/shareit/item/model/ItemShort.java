@@ -0,0 +1,14 @@
+package ru.practicum.shareit.item.model;
+
+/**
+ * Колонки вещи для списка вещей владельца: без координат, ссылок на владельца и запрос.
+ */
+public interface ItemShort {
+    Long getId();
+
+    String getName();
+
+    String getDescription();
+
+    Boolean getAvailable();
+}
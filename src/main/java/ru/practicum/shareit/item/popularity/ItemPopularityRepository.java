@@ -0,0 +1,68 @@
+package ru.practicum.shareit.item.popularity;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Таблица item_popularity: накопленный рейтинг вещи, приведенный к общей точке отсчета времени.
+ */
+@Repository
+@Profile("!inmemory")
+@RequiredArgsConstructor
+class ItemPopularityRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Прибавляет приращения пачкой UPDATE, отсутствующие строки досоздает. Строку, вставленную
+     * параллельно другим узлом, дописывает обычным UPDATE.
+     */
+    void addScores(Map<Long, Double> deltas) {
+        List<Map.Entry<Long, Double>> entries = new ArrayList<>(deltas.entrySet());
+        int[] updated = jdbcTemplate.batchUpdate("UPDATE item_popularity SET score = score + ? WHERE item_id = ?",
+                entries.stream().map(entry -> new Object[]{entry.getValue(), entry.getKey()}).toList());
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] != 0) {
+                continue;
+            }
+            Map.Entry<Long, Double> entry = entries.get(i);
+            try {
+                jdbcTemplate.update("INSERT INTO item_popularity (item_id, score) VALUES (?, ?)",
+                        entry.getKey(), entry.getValue());
+            } catch (DuplicateKeyException e) {
+                jdbcTemplate.update("UPDATE item_popularity SET score = score + ? WHERE item_id = ?",
+                        entry.getValue(), entry.getKey());
+            } catch (DataIntegrityViolationException e) {
+                // вещь удалена вместе с владельцем, приращение ей больше не нужно
+            }
+        }
+    }
+
+    boolean isEmpty() {
+        return jdbcTemplate.queryForList("SELECT item_id FROM item_popularity LIMIT 1", Long.class).isEmpty();
+    }
+
+    /**
+     * Пересчет по всей истории: подтвержденные бронирования на момент создания, комментарии на момент написания.
+     * EXTRACT приводится к DOUBLE PRECISION, иначе H2 считает показатель степени в NUMERIC без дробной части.
+     */
+    int rebuild(double epochSeconds, double halfLifeSeconds, double bookingWeight, double commentWeight) {
+        return jdbcTemplate.update("INSERT INTO item_popularity (item_id, score) " +
+                        "SELECT item_id, SUM(weight) FROM (" +
+                        "  SELECT item_id, ? * POWER(2, (CAST(EXTRACT(EPOCH FROM COALESCE(created, start_date)) " +
+                        "    AS DOUBLE PRECISION) - ?) / ?) AS weight FROM bookings WHERE status = 'APPROVED' " +
+                        "  UNION ALL " +
+                        "  SELECT item_id, ? * POWER(2, (CAST(EXTRACT(EPOCH FROM created) AS DOUBLE PRECISION) - ?) " +
+                        "    / ?) AS weight FROM comments WHERE created IS NOT NULL" +
+                        ") events GROUP BY item_id",
+                bookingWeight, epochSeconds, halfLifeSeconds, commentWeight, epochSeconds, halfLifeSeconds);
+    }
+}
@@ -0,0 +1,177 @@
+package ru.practicum.shareit.item.popularity;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.shareit.sharding.Shards;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Рейтинг популярности вещей с экспоненциальным затуханием: подтвержденное бронирование и комментарий добавляют
+ * вес, который вдвое уменьшается за halfLife. Вместо того чтобы уменьшать все рейтинги со временем, вес события
+ * сразу умножается на 2^((t - EPOCH) / halfLife): у всех вещей рейтинг затухает одинаково, поэтому порядок
+ * по хранимому значению совпадает с порядком по текущему. Поиск сортирует по готовому столбцу без агрегации.
+ * Приращения копятся в памяти после фиксации транзакции и пишутся в базу пачкой раз в flushInterval.
+ * Рейтинг лежит на шарде вещи, поэтому пачка делится по шардам.
+ */
+@Slf4j
+@Component
+@Profile("!inmemory")
+@EnableConfigurationProperties(PopularityProperties.class)
+public class ItemPopularityTracker {
+
+    // точка отсчета весов: при halfLife в 30 дней double не переполнится примерно до 2100 года
+    static final LocalDateTime EPOCH = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private final PopularityProperties properties;
+    private final ItemPopularityRepository repository;
+    private final Shards shards;
+    private final Counter flushed;
+    private final Map<Long, Double> pending = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    public ItemPopularityTracker(PopularityProperties properties, ItemPopularityRepository repository,
+                                 Shards shards, MeterRegistry registry) {
+        this.properties = properties;
+        this.repository = repository;
+        this.shards = shards;
+        this.flushed = Counter.builder("shareit.items.popularity.flushed")
+                .description("Вещи, чей рейтинг популярности записан в базу")
+                .register(registry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        rebuildIfEmpty();
+        long interval = properties.getFlushInterval().toMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "item-popularity");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushSafely, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        flushSafely();
+    }
+
+    public void recordApprovedBooking(Long itemId) {
+        recordAfterCommit(itemId, properties.getBookingWeight());
+    }
+
+    public void recordComment(Long itemId) {
+        recordAfterCommit(itemId, properties.getCommentWeight());
+    }
+
+    /**
+     * Пишет накопленные приращения в базу. Возвращает число обновленных вещей.
+     */
+    public int flush() {
+        Map<Long, Double> batch = new HashMap<>();
+        for (Long itemId : pending.keySet()) {
+            Double delta = pending.remove(itemId);
+            if (delta != null) {
+                batch.put(itemId, delta);
+            }
+        }
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        Map<Integer, Map<Long, Double>> byShard = batch.entrySet().stream()
+                .collect(Collectors.groupingBy(entry -> shards.ofId(entry.getKey()),
+                        Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)));
+        int written = 0;
+        RuntimeException failure = null;
+        for (Map.Entry<Integer, Map<Long, Double>> shard : byShard.entrySet()) {
+            try {
+                shards.on(shard.getKey(), () -> {
+                    repository.addScores(shard.getValue());
+                    return null;
+                });
+                written += shard.getValue().size();
+            } catch (RuntimeException e) {
+                // не потерять приращения: вернуть их в очередь до следующей попытки
+                shard.getValue().forEach((itemId, delta) -> pending.merge(itemId, delta, Double::sum));
+                failure = failure == null ? e : failure;
+            }
+        }
+        flushed.increment(written);
+        if (failure != null) {
+            throw failure;
+        }
+        return written;
+    }
+
+    /**
+     * Заполняет пустую таблицу рейтингов по истории бронирований и комментариев.
+     */
+    public void rebuildIfEmpty() {
+        shards.sumOverShards(this::rebuildShardIfEmpty);
+    }
+
+    private int rebuildShardIfEmpty() {
+        try {
+            if (repository.isEmpty()) {
+                int items = repository.rebuild(EPOCH.toEpochSecond(ZoneOffset.UTC),
+                        properties.getHalfLife().toSeconds(), properties.getBookingWeight(),
+                        properties.getCommentWeight());
+                log.info("Рейтинг популярности пересчитан по истории для {} вещей", items);
+                return items;
+            }
+        } catch (DuplicateKeyException e) {
+            log.debug("Рейтинг популярности уже пересчитывает другой узел");
+        } catch (DataAccessException e) {
+            log.error("Ошибка при пересчете рейтинга популярности вещей", e);
+        }
+        return 0;
+    }
+
+    private void recordAfterCommit(Long itemId, double weight) {
+        double delta = weight * Math.pow(2, (double) (LocalDateTime.now().toEpochSecond(ZoneOffset.UTC)
+                - EPOCH.toEpochSecond(ZoneOffset.UTC)) / properties.getHalfLife().toSeconds());
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            pending.merge(itemId, delta, Double::sum);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                pending.merge(itemId, delta, Double::sum);
+            }
+        });
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.error("Ошибка при записи рейтинга популярности вещей", e);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package ru.practicum.shareit.item.popularity;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "shareit.popularity")
+public class PopularityProperties {
+
+    // вклад события в рейтинг вдвое меньше через каждый такой срок; после изменения очистить item_popularity,
+    // при старте таблица пересчитается по истории
+    private Duration halfLife = Duration.ofDays(30);
+
+    // как часто накопленные приращения пишутся в базу одной пачкой
+    private Duration flushInterval = Duration.ofSeconds(10);
+
+    private double bookingWeight = 1.0;
+
+    private double commentWeight = 0.5;
+}
@@ -1,11 +1,28 @@
 package ru.practicum.shareit.item.repository;
 
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import ru.practicum.shareit.item.model.Comment;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface CommentRepository extends JpaRepository<Comment, Long> {
 
+    @EntityGraph(attributePaths = "author")
     List<Comment> findAllByItemId(Long itemId);
+
+    @EntityGraph(attributePaths = "author")
+    List<Comment> findAllByItemIdIn(Collection<Long> itemIds);
+
+    // комментарии к вещам владельца: диапазоны индекса (item_id, updated_at, id) по каждой его вещи
+    @EntityGraph(attributePaths = "author")
+    @Query("select c from Comment c " +
+            "where c.item.id in (select i.id from Item i where i.owner.id = ?1) " +
+            "and (c.updatedAt, c.id) > (?2, ?3) and c.updatedAt < ?4 " +
+            "order by c.updatedAt, c.id")
+    List<Comment> findOwnerChanges(Long ownerId, LocalDateTime since, long afterId, LocalDateTime until, Limit limit);
 }
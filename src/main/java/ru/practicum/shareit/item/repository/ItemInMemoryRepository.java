@@ -1,78 +1,261 @@
 package ru.practicum.shareit.item.repository;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Repository;
 import ru.practicum.shareit.exceptions.DataNotFoundException;
+import ru.practicum.shareit.item.model.Comment;
 import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.storage.JournalRecord;
+import ru.practicum.shareit.storage.StorageJournal;
 import ru.practicum.shareit.user.model.User;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
-@Deprecated
+/**
+ * Потокобезопасное хранилище вещей и комментариев для профиля inmemory.
+ * Вещи владельца берутся из индекса owner -> ids, поиск идет по индексу слов в нижнем регистре.
+ * Обновление вещи заменяет объект целиком, поэтому читатели никогда не видят его наполовину измененным.
+ */
 @Slf4j
 @Repository
+@Profile("inmemory")
+@RequiredArgsConstructor
 public class ItemInMemoryRepository {
 
-    private final Map<Long, Item> itemStorage = new HashMap<>();
+    private static final String ITEM_SEQUENCE = "items";
+    private static final String COMMENT_SEQUENCE = "comments";
 
-    private long generatedId = 0;
+    private final Map<Long, Item> itemStorage = new ConcurrentHashMap<>();
+
+    private final Map<Long, Set<Long>> ownerIndex = new ConcurrentHashMap<>();
+
+    // слово из названия или описания -> id вещей, в которых оно встречается
+    private final Map<String, Set<Long>> searchIndex = new ConcurrentHashMap<>();
+
+    private final Map<Long, ConcurrentLinkedQueue<Comment>> commentStorage = new ConcurrentHashMap<>();
+
+    private final AtomicLong generatedId = new AtomicLong();
+
+    private final AtomicLong generatedCommentId = new AtomicLong();
+
+    private final StorageJournal journal;
 
 
     public Item addNewItem(User user, Item item) {
-        item.setId(++generatedId);
-        item.setOwner(user);
-        itemStorage.put(item.getId(), item);
+        long id = generatedId.incrementAndGet();
+        Item newItem = journal.write(id, () -> {
+            Item created = copy(item);
+            created.setId(id);
+            created.setOwner(user);
+            put(created);
+            return created;
+        }, this::toRecord);
         log.debug("Объект предмета добавлен в хранилище");
-        return item;
+        return newItem;
     }
 
 
     public Item updateItem(Long userId, Item item) {
-        log.debug("Обновляем те поля, которые пришли не null, если null, то не обновляем");
-        if (item.getName() != null) {
-            itemStorage.get(item.getId()).setName(item.getName());
-        }
-        if (item.getDescription() != null) {
-            itemStorage.get(item.getId()).setDescription(item.getDescription());
-        }
-        if (item.getAvailable() != null) {
-            itemStorage.get(item.getId()).setAvailable(item.getAvailable());
-        }
+        Item updated = journal.write(item.getId(), () -> {
+            Item newItem = copy(getItem(item.getId()));
+            log.debug("Обновляем те поля, которые пришли не null, если null, то не обновляем");
+            if (item.getName() != null) {
+                newItem.setName(item.getName());
+            }
+            if (item.getDescription() != null) {
+                newItem.setDescription(item.getDescription());
+            }
+            if (item.getAvailable() != null) {
+                newItem.setAvailable(item.getAvailable());
+            }
+            put(newItem);
+            return newItem;
+        }, this::toRecord);
         log.debug("Предмет найден и обновлен в хранилище");
-        return itemStorage.get(item.getId());
+        return updated;
     }
 
 
     public Item getItem(Long itemId) {
-        if (itemId == null || !itemStorage.containsKey(itemId)) {
+        Item item = itemId == null ? null : itemStorage.get(itemId);
+        if (item == null) {
             log.debug("Запрашиваемый предмет не найден в хранилище");
             throw new DataNotFoundException("Запрашиваемый предмет c id: " + itemId + " не найден");
         }
-        log.debug("Возвращаем предмет по его Id {} пользователю {}", itemId);
-        return itemStorage.get(itemId);
+        log.debug("Возвращаем предмет по его Id {}", itemId);
+        return item;
     }
 
 
     public List<Item> getItems(Long userId) {
         log.debug("Возвращаем все предметы пользователя из репозитория");
-        return itemStorage.values().stream()
+        return ownerIndex.getOrDefault(userId, Collections.emptySet()).stream()
+                .map(itemStorage::get)
                 .filter(Objects::nonNull)
-                .filter(item -> item.getOwner().getId().equals(userId))
+                .sorted((a, b) -> Long.compare(a.getId(), b.getId()))
                 .toList();
     }
 
 
     public List<Item> findItems(Long userId, String text) {
-        String searchedText = text.toLowerCase();
-        log.debug("Начат поиск вещи в репозитории по тексту {} пользователем {}", text, userId);
-        return itemStorage.values().stream()
+        String searchedText = text.toLowerCase(Locale.ROOT);
+        log.atDebug().addArgument(text).addArgument(userId)
+                .log("Начат поиск вещи в репозитории по тексту {} пользователем {}");
+        String longestToken = tokens(searchedText).stream()
+                .max((a, b) -> Integer.compare(a.length(), b.length()))
+                .orElse(null);
+        Set<Long> candidates = new HashSet<>();
+        if (longestToken == null) {
+            log.debug("В тексте поиска нет слов - проверяем все вещи");
+            candidates.addAll(itemStorage.keySet());
+        } else {
+            searchIndex.forEach((token, ids) -> {
+                if (token.contains(longestToken)) {
+                    candidates.addAll(ids);
+                }
+            });
+        }
+        return candidates.stream()
+                .map(itemStorage::get)
                 .filter(Objects::nonNull)
                 .filter(Item::getAvailable)
-                .filter(item -> item.getName().toLowerCase().contains(searchedText) ||
-                        item.getDescription().toLowerCase().contains(searchedText))
+                .filter(item -> item.getName().toLowerCase(Locale.ROOT).contains(searchedText) ||
+                        item.getDescription().toLowerCase(Locale.ROOT).contains(searchedText))
+                .sorted((a, b) -> Long.compare(a.getId(), b.getId()))
                 .toList();
     }
+
+    public Comment addComment(Comment comment) {
+        long id = generatedCommentId.incrementAndGet();
+        journal.write(id, () -> {
+            comment.setId(id);
+            commentStorage.computeIfAbsent(comment.getItem().getId(), itemId -> new ConcurrentLinkedQueue<>())
+                    .add(comment);
+            return comment;
+        }, this::toRecord);
+        log.debug("Комментарий добавлен в хранилище");
+        return comment;
+    }
+
+    public List<Comment> getComments(Long itemId) {
+        return new ArrayList<>(commentStorage.getOrDefault(itemId, new ConcurrentLinkedQueue<>()));
+    }
+
+    public void restore(JournalRecord record) {
+        switch (record) {
+            case JournalRecord.ItemPut put -> {
+                put(Item.builder()
+                        .id(put.id())
+                        .name(put.name())
+                        .description(put.description())
+                        .available(put.available())
+                        .owner(User.builder().id(put.ownerId()).build())
+                        .build());
+                generatedId.accumulateAndGet(put.id(), Math::max);
+            }
+            case JournalRecord.CommentPut put -> {
+                Comment comment = Comment.builder()
+                        .id(put.id())
+                        .text(put.text())
+                        .item(Item.builder().id(put.itemId()).build())
+                        .author(User.builder().id(put.authorId()).name(put.authorName()).build())
+                        .created(put.created())
+                        .build();
+                commentStorage.computeIfAbsent(put.itemId(), id -> new ConcurrentLinkedQueue<>()).add(comment);
+                generatedCommentId.accumulateAndGet(put.id(), Math::max);
+            }
+            case JournalRecord.SequenceValue sequence -> {
+                if (ITEM_SEQUENCE.equals(sequence.name())) {
+                    generatedId.accumulateAndGet(sequence.value(), Math::max);
+                } else if (COMMENT_SEQUENCE.equals(sequence.name())) {
+                    generatedCommentId.accumulateAndGet(sequence.value(), Math::max);
+                }
+            }
+            default -> throw new IllegalArgumentException("Запись журнала не относится к вещам: " + record);
+        }
+    }
+
+    public void snapshot(Consumer<JournalRecord> consumer) {
+        consumer.accept(new JournalRecord.SequenceValue(ITEM_SEQUENCE, generatedId.get()));
+        consumer.accept(new JournalRecord.SequenceValue(COMMENT_SEQUENCE, generatedCommentId.get()));
+        itemStorage.values().forEach(item -> consumer.accept(toRecord(item)));
+        commentStorage.values().forEach(comments -> comments.forEach(comment -> consumer.accept(toRecord(comment))));
+    }
+
+    // новые слова индексируются до замены объекта, устаревшие удаляются после
+    private void put(Item item) {
+        index(item);
+        Item oldItem = itemStorage.put(item.getId(), item);
+        if (oldItem != null) {
+            unindexStale(oldItem, item);
+        }
+        ownerIndex.computeIfAbsent(item.getOwner().getId(), id -> ConcurrentHashMap.newKeySet()).add(item.getId());
+    }
+
+    private JournalRecord toRecord(Item item) {
+        return new JournalRecord.ItemPut(item.getId(), item.getName(), item.getDescription(), item.getAvailable(),
+                item.getOwner().getId());
+    }
+
+    private JournalRecord toRecord(Comment comment) {
+        return new JournalRecord.CommentPut(comment.getId(), comment.getItem().getId(), comment.getAuthor().getId(),
+                comment.getAuthor().getName(), comment.getText(), comment.getCreated());
+    }
+
+    private void index(Item item) {
+        for (String token : tokens(item)) {
+            searchIndex.computeIfAbsent(token, t -> ConcurrentHashMap.newKeySet()).add(item.getId());
+        }
+    }
+
+    private void unindexStale(Item oldItem, Item newItem) {
+        Set<String> stale = tokens(oldItem);
+        stale.removeAll(tokens(newItem));
+        for (String token : stale) {
+            searchIndex.computeIfPresent(token, (t, ids) -> {
+                ids.remove(oldItem.getId());
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    private Set<String> tokens(Item item) {
+        Set<String> tokens = tokens(item.getName().toLowerCase(Locale.ROOT));
+        tokens.addAll(tokens(item.getDescription().toLowerCase(Locale.ROOT)));
+        return tokens;
+    }
+
+    private Set<String> tokens(String text) {
+        Set<String> tokens = new HashSet<>();
+        for (String token : text.split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private Item copy(Item item) {
+        return Item.builder()
+                .id(item.getId())
+                .name(item.getName())
+                .description(item.getDescription())
+                .available(item.getAvailable())
+                .owner(item.getOwner())
+                .request(item.getRequest())
+                .build();
+    }
 }
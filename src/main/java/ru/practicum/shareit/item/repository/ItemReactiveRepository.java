@@ -0,0 +1,85 @@
+package ru.practicum.shareit.item.repository;
+
+import io.r2dbc.spi.Readable;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import ru.practicum.shareit.item.dto.CommentDto;
+import ru.practicum.shareit.item.dto.ItemWithBookingDto;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Потоковое чтение вещей владельца вместе с датами последнего и ближайшего бронирования и комментариями.
+ * Комментарии приходят отдельными строками LEFT JOIN, отсортированными по вещи, и склеиваются в одну вещь
+ * без накопления всего результата.
+ */
+@Repository
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "shareit.reactive", name = "enabled")
+public class ItemReactiveRepository {
+
+    // lastBooking - конец завершенного бронирования с самым поздним началом, как в ItemServiceImpl.getItems
+    private static final String SELECT = "SELECT i.id, i.name, i.description, i.is_available, " +
+            "i.last_booking, i.next_booking, " +
+            "c.id AS comment_id, c.text AS comment_text, a.name AS author_name, c.created AS comment_created " +
+            "FROM (SELECT it.id, it.name, it.description, it.is_available, " +
+            "(SELECT b.end_date FROM bookings b WHERE b.item_id = it.id AND b.end_date < :now " +
+            "ORDER BY b.start_date DESC LIMIT 1) AS last_booking, " +
+            "(SELECT MIN(b.start_date) FROM bookings b WHERE b.item_id = it.id AND b.start_date > :now) " +
+            "AS next_booking " +
+            "FROM items it WHERE it.owner_id = :ownerId) i " +
+            "LEFT JOIN comments c ON c.item_id = i.id " +
+            "LEFT JOIN users a ON a.id = c.author_id " +
+            "ORDER BY i.id, c.id";
+
+    private final DatabaseClient reactiveDatabaseClient;
+
+    public Flux<ItemWithBookingDto> findAllByOwnerId(Long ownerId) {
+        return reactiveDatabaseClient.sql(SELECT)
+                .bind("ownerId", ownerId)
+                .bind("now", LocalDateTime.now())
+                .map(ItemReactiveRepository::toRow)
+                .all()
+                .bufferUntilChanged(row -> row.item().getId())
+                .map(ItemReactiveRepository::toItemWithBookingDto);
+    }
+
+    private static ItemRow toRow(Readable row) {
+        ItemWithBookingDto item = ItemWithBookingDto.builder()
+                .id(row.get("id", Long.class))
+                .name(row.get("name", String.class))
+                .description(row.get("description", String.class))
+                .available(row.get("is_available", Boolean.class))
+                .lastBooking(row.get("last_booking", LocalDateTime.class))
+                .nextBooking(row.get("next_booking", LocalDateTime.class))
+                .build();
+        Long commentId = row.get("comment_id", Long.class);
+        CommentDto comment = commentId == null ? null : CommentDto.builder()
+                .id(commentId)
+                .text(row.get("comment_text", String.class))
+                .authorName(row.get("author_name", String.class))
+                .created(row.get("comment_created", LocalDateTime.class))
+                .build();
+        return new ItemRow(item, comment);
+    }
+
+    private static ItemWithBookingDto toItemWithBookingDto(List<ItemRow> rows) {
+        ItemWithBookingDto item = rows.getFirst().item();
+        List<CommentDto> comments = new ArrayList<>(rows.size());
+        for (ItemRow row : rows) {
+            if (row.comment() != null) {
+                comments.add(row.comment());
+            }
+        }
+        item.setComments(comments);
+        return item;
+    }
+
+    private record ItemRow(ItemWithBookingDto item, CommentDto comment) {
+    }
+}
@@ -1,17 +1,75 @@
 package ru.practicum.shareit.item.repository;
 
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.model.ItemAnswer;
+import ru.practicum.shareit.item.model.ItemLocation;
+import ru.practicum.shareit.item.model.ItemSearchHit;
+import ru.practicum.shareit.item.model.ItemShort;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface ItemRepository extends JpaRepository<Item, Long> {
     List<Item> findByOwnerId(Long ownerId);
 
-    @Query(" select i from Item i " +
+    // список вещей владельца читает только запрошенные колонки, а не сущность целиком
+    List<ItemShort> findShortByOwnerId(Long ownerId);
+
+    // остальные геттеры этой проекции не заполнены: маппер обращается только к запрошенным полям
+    @Query("select i.id as id from Item i where i.owner.id = ?1")
+    List<ItemShort> findIdsByOwnerId(Long ownerId);
+
+    // строка вещи блокируется до конца транзакции: бронирования одной вещи с разных узлов идут по очереди
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select i from Item i where i.id = ?1")
+    Optional<Item> findByIdForUpdate(Long id);
+
+    @Query("select i from Item i where i.id = ?1 and i.owner.deletedAt is null")
+    Optional<Item> findActiveById(Long id);
+
+    // популярные выше: сортировка по готовому рейтингу из item_popularity, без подсчета бронирований
+    @Query(" select new ru.practicum.shareit.item.model.ItemSearchHit(i, coalesce(p.score, 0.0)) " +
+            "from Item i left join ItemPopularity p on p.itemId = i.id " +
             "where (upper(i.name) like upper(concat('%', ?1, '%')) " +
             " or upper(i.description) like upper(concat('%', ?1, '%')))" +
-            "and i.available = true")
-    List<Item> search(String text);
+            "and i.available = true and i.owner.deletedAt is null " +
+            "order by coalesce(p.score, 0) desc, i.id")
+    List<ItemSearchHit> search(String text);
+
+    // ответы сразу на всю страницу запросов одним IN, а не по запросу к базе на каждый запрос
+    @Query("select i.id as id, i.name as name, i.owner.id as ownerId, i.request.id as requestId " +
+            "from Item i " +
+            "where i.request.id in ?1 " +
+            "order by i.id")
+    List<ItemAnswer> findAnswersByRequestIdIn(Collection<Long> requestIds);
+
+    @Query("select i.id as id, i.latitude as latitude, i.longitude as longitude " +
+            "from Item i " +
+            "where i.latitude is not null and i.id > ?1 " +
+            "order by i.id")
+    List<ItemLocation> findLocatedAfter(Long afterId, Limit limit);
+
+    // дочитывание кандидатов поиска рядом: только id из индекса, без просмотра всей таблицы
+    @Query("select i from Item i where i.id in ?1 and i.available = true and i.owner.deletedAt is null")
+    List<Item> findAvailableByIdIn(Collection<Long> ids);
+
+    @Query(" select i from Item i " +
+            "where i.id in ?1 " +
+            "and (upper(i.name) like upper(concat('%', ?2, '%')) " +
+            " or upper(i.description) like upper(concat('%', ?2, '%')))" +
+            "and i.available = true and i.owner.deletedAt is null")
+    List<Item> searchByIdIn(Collection<Long> ids, String text);
+
+    // лента изменений владельца: ключ (updated_at, id) после водяного знака, см. SyncCursor
+    @Query("select i from Item i " +
+            "where i.owner.id = ?1 and (i.updatedAt, i.id) > (?2, ?3) and i.updatedAt < ?4 " +
+            "order by i.updatedAt, i.id")
+    List<Item> findOwnerChanges(Long ownerId, LocalDateTime since, long afterId, LocalDateTime until, Limit limit);
 }
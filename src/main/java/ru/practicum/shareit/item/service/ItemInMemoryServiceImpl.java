@@ -0,0 +1,172 @@
+package ru.practicum.shareit.item.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.repository.BookingInMemoryRepository;
+import ru.practicum.shareit.exceptions.DataNotFoundException;
+import ru.practicum.shareit.exceptions.MissedSmthException;
+import ru.practicum.shareit.exceptions.WrongDateValidationException;
+import ru.practicum.shareit.item.dto.*;
+import ru.practicum.shareit.item.mapper.ItemMapper;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.model.ItemField;
+import ru.practicum.shareit.item.repository.ItemInMemoryRepository;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserInMemoryRepository;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+@Slf4j
+@Service
+@Profile("inmemory")
+@RequiredArgsConstructor
+public class ItemInMemoryServiceImpl implements ItemService {
+
+    private final ItemInMemoryRepository itemRepository;
+    private final UserInMemoryRepository userRepository;
+    private final BookingInMemoryRepository bookingRepository;
+
+    @Override
+    public ItemDto addNewItem(Long userId, CreateItemDto item) {
+        log.debug("Проверяем, что пользователь с userId {} существует", userId);
+        User user = userRepository.getUser(userId);
+        // запросов вещей в хранилище в памяти нет, ответить можно только на запрос из базы
+        if (item.getRequestId() != null) {
+            throw new DataNotFoundException("Запрос с id " + item.getRequestId() + " не найден");
+        }
+        checkNoCoordinates(item.getLatitude(), item.getLongitude());
+        log.debug("Предмет отправлен в хранилище");
+        return ItemMapper.toItemDto(itemRepository.addNewItem(user, ItemMapper.toItemCreate(item)));
+    }
+
+    @Override
+    public ItemDto updateItem(Long userId, UpdateItemDto item) {
+        isUserExist(userId);
+        if (item.getId() == null) {
+            log.debug("У запрашиваемой на обновление вещи не указан id");
+            throw new DataNotFoundException("У запрашиваемой на обновление вещи не указан id: вещь не найдена");
+        }
+        checkNoCoordinates(item.getLatitude(), item.getLongitude());
+        Item existingItem = itemRepository.getItem(item.getId());
+        if (!existingItem.getOwner().getId().equals(userId)) {
+            throw new DataNotFoundException("Пользователь с id " + userId + " не может редактировать вещь " +
+                    item + " так как не является ее владельцем");
+        }
+        log.debug("Предмет отправлен на обновление");
+        return ItemMapper.toItemDto(itemRepository.updateItem(userId, ItemMapper.toItemUpdate(item)));
+    }
+
+    @Override
+    public ItemWithBookingDto getItem(Long userId, Long itemId) {
+        isUserExist(userId);
+        log.debug("Возвращаем предмет");
+        Item item = itemRepository.getItem(itemId);
+        List<Booking> bookings = item.getOwner().getId().equals(userId)
+                ? bookingRepository.findByItem(itemId)
+                : Collections.emptyList();
+        ItemWithBookingDto dto = toItemWithBookingDto(item, bookings, EnumSet.allOf(ItemField.class));
+        dto.setComments(toCommentDtos(itemId));
+        return dto;
+    }
+
+    @Override
+    public List<ItemWithBookingDto> getItems(Long userId, Set<ItemField> fields) {
+        isUserExist(userId);
+        log.debug("Возвращаем все предметы пользователя");
+        return itemRepository.getItems(userId).stream()
+                .map(item -> {
+                    List<Booking> bookings = ItemField.needsBookings(fields)
+                            ? bookingRepository.findByItem(item.getId())
+                            : Collections.emptyList();
+                    ItemWithBookingDto dto = toItemWithBookingDto(item, bookings, fields);
+                    if (fields.contains(ItemField.COMMENTS)) {
+                        dto.setComments(toCommentDtos(item.getId()));
+                    }
+                    return dto;
+                })
+                .toList();
+    }
+
+    @Override
+    public List<ItemDto> findItems(Long userId, String text) {
+        isUserExist(userId);
+        if (text == null || text.isBlank()) {
+            log.debug("query = null или пустой, возвращаем пустой список");
+            return Collections.emptyList();
+        }
+        return itemRepository.findItems(userId, text).stream()
+                .map(ItemMapper::toItemDto)
+                .toList();
+    }
+
+    @Override
+    public List<ItemDto> findItemsNearby(Long userId, String text, double latitude, double longitude,
+                                         double radiusKm, int from, int size) {
+        throw new MissedSmthException("Поиск вещей рядом доступен только при хранении данных в базе");
+    }
+
+    @Override
+    public ItemChangesDto getItemChanges(Long userId, String since, int size) {
+        throw new MissedSmthException("Синхронизация изменений доступна только при хранении данных в базе");
+    }
+
+    // журнал хранилища в памяти не хранит координаты: молча терять их хуже, чем отказать
+    private void checkNoCoordinates(Double latitude, Double longitude) {
+        if (latitude != null || longitude != null) {
+            throw new MissedSmthException("Координаты вещей доступны только при хранении данных в базе");
+        }
+    }
+
+    @Override
+    public CommentDto addComment(Long userId, Long itemId, CreateCommentDto comment) {
+        log.debug("Проверяем, что автор комментария с userId {} существует", userId);
+        User author = userRepository.getUser(userId);
+        log.debug("Проверяем, что предмет {} существует", itemId);
+        Item item = itemRepository.getItem(itemId);
+        log.atDebug().addArgument(userId).addArgument(itemId)
+                .log("Проверяем, что пользователь {} действительно брал предмет {} в аренду");
+        if (!bookingRepository.existsFinishedBooking(userId, itemId, BookingStatus.APPROVED, LocalDateTime.now())) {
+            throw new WrongDateValidationException("У пользователя нет подтвержденных букингов на данную вещь");
+        }
+        log.debug("Сохраняем комментарий в хранилище");
+        return ItemMapper.toCommentDto(itemRepository.addComment(ItemMapper.toComment(comment, item, author)));
+    }
+
+    private void isUserExist(Long userId) {
+        log.debug("Проверяем, что пользователь с userId {} существует", userId);
+        if (!userRepository.exists(userId)) {
+            throw new DataNotFoundException("Пользователь не найден");
+        }
+    }
+
+    private ItemWithBookingDto toItemWithBookingDto(Item item, List<Booking> bookingsStartDesc,
+                                                    Set<ItemField> fields) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime lastBooking = null;
+        LocalDateTime nextBooking = null;
+        for (int i = bookingsStartDesc.size() - 1; i >= 0; i--) {
+            Booking booking = bookingsStartDesc.get(i);
+            if (booking.getEnd().isBefore(now)) {
+                lastBooking = booking.getEnd();
+            } else if (booking.getStart().isAfter(now)) {
+                nextBooking = booking.getStart();
+                break;
+            }
+        }
+        return ItemMapper.toItemWithBookingDto(item, lastBooking, nextBooking, fields);
+    }
+
+    private List<CommentDto> toCommentDtos(Long itemId) {
+        return itemRepository.getComments(itemId).stream()
+                .map(ItemMapper::toCommentDto)
+                .toList();
+    }
+}
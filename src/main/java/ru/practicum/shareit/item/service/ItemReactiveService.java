@@ -0,0 +1,29 @@
+package ru.practicum.shareit.item.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import ru.practicum.shareit.exceptions.DataNotFoundException;
+import ru.practicum.shareit.item.dto.ItemWithBookingDto;
+import ru.practicum.shareit.item.repository.ItemReactiveRepository;
+import ru.practicum.shareit.user.repository.UserReactiveRepository;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "shareit.reactive", name = "enabled")
+public class ItemReactiveService {
+
+    private final ItemReactiveRepository itemReactiveRepository;
+    private final UserReactiveRepository userReactiveRepository;
+
+    public Flux<ItemWithBookingDto> getItems(Long userId) {
+        log.debug("Проверяем, что пользователь с userId {} существует", userId);
+        return userReactiveRepository.existsById(userId)
+                .flatMapMany(exists -> exists
+                        ? itemReactiveRepository.findAllByOwnerId(userId)
+                        : Flux.error(new DataNotFoundException("Пользователь не найден")));
+    }
+}
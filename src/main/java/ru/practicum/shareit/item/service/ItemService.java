@@ -1,8 +1,10 @@
 package ru.practicum.shareit.item.service;
 
 import ru.practicum.shareit.item.dto.*;
+import ru.practicum.shareit.item.model.ItemField;
 
 import java.util.List;
+import java.util.Set;
 
 public interface ItemService {
 
@@ -12,9 +14,14 @@ public interface ItemService {
 
     ItemWithBookingDto getItem(Long userId, Long itemId);
 
-    List<ItemWithBookingDto> getItems(Long userId);
+    List<ItemWithBookingDto> getItems(Long userId, Set<ItemField> fields);
 
     List<ItemDto> findItems(Long userId, String text);
 
+    List<ItemDto> findItemsNearby(Long userId, String text, double latitude, double longitude, double radiusKm,
+                                  int from, int size);
+
+    ItemChangesDto getItemChanges(Long userId, String since, int size);
+
     CommentDto addComment(Long userId, Long itemId, CreateCommentDto comment);
 }
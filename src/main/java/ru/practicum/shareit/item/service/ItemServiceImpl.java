@@ -3,62 +3,108 @@ package ru.practicum.shareit.item.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.shareit.booking.model.BookingOnlyDates;
 import ru.practicum.shareit.booking.model.BookingStatus;
 import ru.practicum.shareit.booking.repository.BookingRepository;
 import ru.practicum.shareit.exceptions.DataNotFoundException;
+import ru.practicum.shareit.exceptions.MissedSmthException;
 import ru.practicum.shareit.exceptions.WrongDateValidationException;
+import ru.practicum.shareit.fanout.ReadOnlyFanOut;
 import ru.practicum.shareit.item.dto.*;
+import ru.practicum.shareit.item.geo.GeoIndexProperties;
+import ru.practicum.shareit.item.geo.ItemGeoIndex;
 import ru.practicum.shareit.item.mapper.ItemMapper;
 import ru.practicum.shareit.item.model.Comment;
 import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.model.ItemField;
+import ru.practicum.shareit.item.model.ItemSearchHit;
+import ru.practicum.shareit.item.model.ItemShort;
+import ru.practicum.shareit.item.popularity.ItemPopularityTracker;
 import ru.practicum.shareit.item.repository.CommentRepository;
 import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.request.repository.ItemRequestRepository;
+import ru.practicum.shareit.sharding.Shards;
+import ru.practicum.shareit.sync.Change;
+import ru.practicum.shareit.sync.ChangeFeed;
+import ru.practicum.shareit.sync.ChangeKind;
+import ru.practicum.shareit.sync.ChangePage;
+import ru.practicum.shareit.sync.SyncCursor;
 import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.repository.UserRepository;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Slf4j
 @Service
+@Profile("!inmemory")
 @RequiredArgsConstructor
 @Transactional(readOnly = true)
 public class ItemServiceImpl implements ItemService {
 
+    private static final int NEARBY_BATCH_SIZE = 200;
+
     private final ItemRepository itemRepository;
     private final UserRepository userRepository;
     private final BookingRepository bookingRepository;
     private final CommentRepository commentRepository;
+    private final ItemRequestRepository itemRequestRepository;
+    private final ReadOnlyFanOut fanOut;
+    private final ItemGeoIndex geoIndex;
+    private final GeoIndexProperties geoProperties;
+    private final ItemPopularityTracker popularityTracker;
+    private final Shards shards;
+    private final ChangeFeed changeFeed;
 
 
     @Override
     @Transactional
     public ItemDto addNewItem(Long userId, CreateItemDto item) {
+        shards.bindUser(userId);
         log.debug("Проверяем, что пользователь с userId {} существует", userId);
-        User user = userRepository.findById(userId).orElseThrow(
+        User user = userRepository.findActiveById(userId).orElseThrow(
                 () -> new DataNotFoundException("Пользователь не найден"));
+        checkCoordinates(item.getLatitude(), item.getLongitude());
         Item newItem = ItemMapper.toItemCreate(item);
         log.debug("Добавляем предмету владельца");
         newItem.setOwner(user);
+        if (item.getRequestId() != null) {
+            log.debug("Привязываем предмет к запросу с id {}", item.getRequestId());
+            newItem.setRequest(itemRequestRepository.findById(item.getRequestId()).orElseThrow(
+                    () -> new DataNotFoundException("Запрос с id " + item.getRequestId() + " не найден")));
+        }
         log.debug("Предмет отправлен в хранилище");
-        return ItemMapper.toItemDto(itemRepository.save(newItem));
+        Item saved = itemRepository.save(newItem);
+        if (saved.getLatitude() != null) {
+            geoIndex.putAfterCommit(saved.getId(), saved.getLatitude(), saved.getLongitude());
+        }
+        return ItemMapper.toItemDto(saved);
     }
 
     @Override
     @Transactional
     public ItemDto updateItem(Long userId, UpdateItemDto item) {
-        isUserExist(userId);
         if (item.getId() == null) {
             log.debug("У запрашиваемой на обновление вещи не указан id");
             throw new DataNotFoundException("У запрашиваемой на обновление вещи не указан id: вещь не найдена");
         }
+        shards.bindId(item.getId());
+        isUserExist(userId);
         Item existingItem = itemRepository.findById(item.getId())
                 .orElseThrow(() -> new DataNotFoundException("Вещь не найдена"));
         if (!existingItem.getOwner().getId().equals(userId)) {
@@ -75,23 +121,44 @@ public class ItemServiceImpl implements ItemService {
         if (item.getAvailable() != null) {
             existingItem.setAvailable(item.getAvailable());
         }
+        checkCoordinates(item.getLatitude(), item.getLongitude());
+        if (item.getLatitude() != null) {
+            existingItem.setLatitude(item.getLatitude());
+            existingItem.setLongitude(item.getLongitude());
+            geoIndex.putAfterCommit(existingItem.getId(), item.getLatitude(), item.getLongitude());
+        }
         log.debug("Предмет отправлен на обновление");
         return ItemMapper.toItemDto(itemRepository.save(existingItem));
     }
 
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public ItemWithBookingDto getItem(Long userId, Long itemId) {
-        isUserExist(userId);
-        log.debug("Возвращаем предмет");
-        Item item = itemRepository.findById(itemId).orElseThrow(
-                () -> new DataNotFoundException("Предмет не найден"));
-        log.debug("Находим даты бронирований");
-        LocalDateTime lastBooking = null;
-        LocalDateTime nextBooking = null;
-        if (item.getOwner().getId().equals(userId)) {
+        log.debug("Параллельно проверяем пользователя, загружаем предмет, даты бронирований и комментарии");
+        int shard = shards.ofId(itemId);
+        try (ReadOnlyFanOut.Scope scope = fanOut.open()) {
+            Supplier<Boolean> userExists = scope.fork(() -> userRepository.existsActiveById(userId));
+            Supplier<Optional<Item>> foundItem = scope.fork(() -> shards.on(shard,
+                    () -> itemRepository.findActiveById(itemId)));
+            Supplier<List<BookingOnlyDates>> bookingsOfItem = scope.fork(() -> shards.on(shard,
+                    () -> bookingRepository.findAllBookingsByItemIdAndOwnerIdOrderByStartAsc(itemId, userId)));
+            Supplier<List<CommentDto>> commentsByItem = scope.fork(() -> shards.on(shard,
+                    () -> commentRepository.findAllByItemId(itemId)
+                            .stream()
+                            .map(ItemMapper::toCommentDto)
+                            .toList()));
+            scope.join();
+
+            if (!userExists.get()) {
+                throw new DataNotFoundException("Пользователь не найден");
+            }
+            Item item = foundItem.get().orElseThrow(
+                    () -> new DataNotFoundException("Предмет не найден"));
+            log.debug("Находим даты бронирований");
+            LocalDateTime lastBooking = null;
+            LocalDateTime nextBooking = null;
             LocalDateTime now = LocalDateTime.now();
-            List<BookingOnlyDates> allBookingsOfItem = bookingRepository.findAllBookingsByItemId(itemId);
-            for (BookingOnlyDates booking : allBookingsOfItem) {
+            for (BookingOnlyDates booking : bookingsOfItem.get()) {
                 if (booking.getEnd().isBefore(now)) {
                     lastBooking = booking.getEnd();
                 } else if (booking.getStart().isAfter(now)) {
@@ -99,95 +166,197 @@ public class ItemServiceImpl implements ItemService {
                     break;
                 }
             }
+            ItemWithBookingDto dto = ItemMapper.toItemWithBookingDto(item, lastBooking, nextBooking);
+            log.debug("Возвращаем предмет");
+            dto.setComments(commentsByItem.get());
+            return dto;
         }
-        ItemWithBookingDto dto = ItemMapper.toItemWithBookingDto(item, lastBooking, nextBooking);
-        log.debug("Находим все комментарии к предмету");
-        List<CommentDto> commentsByItem = commentRepository.findAllByItemId(itemId).stream()
-                .map(ItemMapper::toCommentDto)
-                .toList();
-        log.debug("Возвращаем предмет");
-        dto.setComments(commentsByItem);
-        return dto;
     }
 
     @Override
-    public List<ItemWithBookingDto> getItems(Long userId) {
+    public List<ItemWithBookingDto> getItems(Long userId, Set<ItemField> fields) {
+        shards.bindUser(userId);
         isUserExist(userId);
         log.debug("Получаем все предметы пользователя");
-        List<Item> items = itemRepository.findByOwnerId(userId);
+        List<ItemShort> items;
+        if (ItemField.needsColumns(fields)) {
+            items = itemRepository.findShortByOwnerId(userId);
+        } else {
+            log.debug("Колонки вещи не запрошены - читаем только id");
+            items = itemRepository.findIdsByOwnerId(userId);
+        }
 
-        log.debug("Получаем все бронирования для всех вещей пользователя и группируем в мапу по предметам");
-        List<BookingOnlyDates> allBookings = bookingRepository.findAllBookingsByOwnerId(userId);
-        Map<Long, List<BookingOnlyDates>> bookingsByItem = allBookings.stream()
-                .collect(Collectors.groupingBy(BookingOnlyDates::getItemId));
-        log.debug("Получаем все комментарии для всех вещей и группируем в мапу по предметам");
-        List<Comment> allComments = commentRepository.findAll();
-        Map<Long, List<Comment>> commentsByItem = allComments.stream()
-                .collect(Collectors.groupingBy(comment -> comment.getItem().getId()));
+        Map<Long, List<BookingOnlyDates>> bookingsByItem = Collections.emptyMap();
+        if (ItemField.needsBookings(fields)) {
+            log.debug("Получаем все бронирования для всех вещей пользователя и группируем в мапу по предметам");
+            List<BookingOnlyDates> allBookings = bookingRepository.findAllBookingsByOwnerId(userId);
+            bookingsByItem = allBookings.stream()
+                    .collect(Collectors.groupingBy(BookingOnlyDates::getItemId));
+        }
+        Map<Long, List<Comment>> commentsByItem = Collections.emptyMap();
+        if (fields.contains(ItemField.COMMENTS)) {
+            log.debug("Получаем комментарии только к вещам пользователя и группируем в мапу по предметам");
+            List<Comment> allComments = commentRepository.findAllByItemIdIn(items.stream()
+                    .map(ItemShort::getId)
+                    .toList());
+            commentsByItem = allComments.stream()
+                    .collect(Collectors.groupingBy(comment -> comment.getItem().getId()));
+        }
 
         LocalDateTime now = LocalDateTime.now();
         log.debug("Возвращаем все предметы пользователя");
-        return items.stream()
-                .map(item -> {
-                    List<BookingOnlyDates> itemBookings = bookingsByItem.getOrDefault(
-                            item.getId(),
-                            Collections.emptyList());
-
-                    LocalDateTime lastBooking = null;
-                    LocalDateTime nextBooking = null;
-
-                    for (BookingOnlyDates booking : itemBookings) {
-                        if (booking.getEnd().isBefore(now)) {
-                            lastBooking = booking.getEnd();
-                        } else if (booking.getStart().isAfter(now)) {
-                            nextBooking = booking.getStart();
-                            break;
-                        }
-                    }
-
-                    List<CommentDto> commentDtos = commentsByItem.getOrDefault(item.getId(),
-                                    Collections.emptyList()).stream()
-                            .map(ItemMapper::toCommentDto)
-                            .toList();
+        List<ItemWithBookingDto> result = new ArrayList<>(items.size());
+        for (ItemShort item : items) {
+            List<BookingOnlyDates> itemBookings = bookingsByItem.getOrDefault(
+                    item.getId(),
+                    Collections.emptyList());
+
+            LocalDateTime lastBooking = null;
+            LocalDateTime nextBooking = null;
+
+            for (BookingOnlyDates booking : itemBookings) {
+                if (booking.getEnd().isBefore(now)) {
+                    lastBooking = booking.getEnd();
+                } else if (booking.getStart().isAfter(now)) {
+                    nextBooking = booking.getStart();
+                    break;
+                }
+            }
 
-                    ItemWithBookingDto dto = ItemMapper.toItemWithBookingDto(item, lastBooking, nextBooking);
-                    dto.setComments(commentDtos);
-                    return dto;
-                })
-                .collect(Collectors.toList());
+            ItemWithBookingDto dto = ItemMapper.toItemWithBookingDto(item, lastBooking, nextBooking, fields);
+            if (fields.contains(ItemField.COMMENTS)) {
+                dto.setComments(commentsByItem.getOrDefault(item.getId(), Collections.emptyList()).stream()
+                        .map(ItemMapper::toCommentDto)
+                        .toList());
+            }
+            result.add(dto);
+        }
+        return result;
     }
 
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public List<ItemDto> findItems(Long userId, String text) {
         isUserExist(userId);
         if (text == null || text.isBlank()) {
             log.debug("query = null или пустой, возвращаем пустой список");
             return Collections.emptyList();
         }
-        return itemRepository.search(text).stream()
+        return shards.scatter(() -> itemRepository.search(text),
+                        Comparator.comparing(ItemSearchHit::score).reversed()
+                                .thenComparing(hit -> hit.item().getId())).stream()
+                .map(ItemSearchHit::item)
                 .filter(Objects::nonNull)
                 .map(ItemMapper::toItemDto)
                 .toList();
     }
 
+    /**
+     * Кандидаты в радиусе берутся из сетки в памяти уже отсортированными по расстоянию, база дочитывает их
+     * порциями по id и отсеивает недоступные и не подходящие по тексту, пока не наберется страница.
+     * Порция дочитывается с шардов ее вещей, поэтому метод работает без общей транзакции.
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public List<ItemDto> findItemsNearby(Long userId, String text, double latitude, double longitude,
+                                         double radiusKm, int from, int size) {
+        isUserExist(userId);
+        if (radiusKm > geoProperties.getMaxRadiusKm()) {
+            throw new MissedSmthException("Радиус поиска не может быть больше " + geoProperties.getMaxRadiusKm()
+                    + " км");
+        }
+        List<ItemGeoIndex.Nearby> candidates = geoIndex.within(latitude, longitude, radiusKm);
+        String query = text == null || text.isBlank() ? null : text;
+        log.atDebug().addArgument(radiusKm).addArgument(latitude).addArgument(longitude).addArgument(candidates.size())
+                .log("В радиусе {} км от ({}, {}) найдено {} вещей с координатами");
+        int batchSize = Math.max(from + size, NEARBY_BATCH_SIZE);
+        int skip = from;
+        List<ItemDto> page = new ArrayList<>(size);
+        for (int start = 0; start < candidates.size() && page.size() < size; start += batchSize) {
+            List<ItemGeoIndex.Nearby> batch = candidates.subList(start, Math.min(start + batchSize,
+                    candidates.size()));
+            Map<Integer, List<Long>> idsByShard = batch.stream()
+                    .map(ItemGeoIndex.Nearby::itemId)
+                    .collect(Collectors.groupingBy(shards::ofId));
+            Map<Long, Item> found = new HashMap<>();
+            idsByShard.forEach((shard, ids) -> shards.on(shard, () -> query == null
+                            ? itemRepository.findAvailableByIdIn(ids)
+                            : itemRepository.searchByIdIn(ids, query))
+                    .forEach(item -> found.put(item.getId(), item)));
+            for (ItemGeoIndex.Nearby nearby : batch) {
+                Item item = found.get(nearby.itemId());
+                // вещь могли передвинуть на другом узле, а сетка этого узла еще не перезагружена
+                if (item == null || item.getLatitude() == null || ItemGeoIndex.distanceKm(latitude, longitude,
+                        item.getLatitude(), item.getLongitude()) > radiusKm) {
+                    continue;
+                }
+                if (skip > 0) {
+                    skip--;
+                    continue;
+                }
+                page.add(ItemMapper.toItemDto(item, nearby.distanceKm()));
+                if (page.size() == size) {
+                    break;
+                }
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Вещи владельца, комментарии к ним и удаленные из них после водяного знака since. Все это лежит
+     * на шарде владельца.
+     */
+    @Override
+    public ItemChangesDto getItemChanges(Long userId, String since, int size) {
+        shards.bindUser(userId);
+        isUserExist(userId);
+        SyncCursor after = changeFeed.cursor(since);
+        LocalDateTime until = changeFeed.until();
+        Limit limit = Limit.of(size + 1);
+        List<Change> changes = new ArrayList<>();
+        for (Item item : itemRepository.findOwnerChanges(userId, after.since(), after.afterId(ChangeKind.ITEM),
+                until, limit)) {
+            changes.add(new Change(item.getUpdatedAt(), ChangeKind.ITEM, item.getId(), item));
+        }
+        for (Comment comment : commentRepository.findOwnerChanges(userId, after.since(),
+                after.afterId(ChangeKind.COMMENT), until, limit)) {
+            changes.add(new Change(comment.getUpdatedAt(), ChangeKind.COMMENT, comment.getId(), comment));
+        }
+        changes.addAll(changeFeed.deletedForOwner(userId, ChangeKind.ITEM_DELETED, after, until, limit));
+        changes.addAll(changeFeed.deletedForOwner(userId, ChangeKind.COMMENT_DELETED, after, until, limit));
+        ChangePage page = ChangePage.of(changes, size, after, until);
+        log.atDebug().addArgument(userId).addArgument(since).addArgument(page.changes().size())
+                .log("В ленте вещей пользователя {} после {} выдано {} изменений");
+        return ItemMapper.toItemChangesDto(page);
+    }
+
+    private void checkCoordinates(Double latitude, Double longitude) {
+        if ((latitude == null) != (longitude == null)) {
+            throw new MissedSmthException("Координаты вещи задаются парой: latitude и longitude");
+        }
+    }
+
     private void isUserExist(Long userId) {
         log.debug("Проверяем, что пользователь с userId {} существует", userId);
-        if (!userRepository.existsById(userId)) {
+        if (!userRepository.existsActiveById(userId)) {
             throw new DataNotFoundException("Пользователь не найден");
         }
     }
 
     @Transactional
     public CommentDto addComment(Long userId, Long itemId, CreateCommentDto comment) {
+        shards.bindId(itemId);
         log.debug("Проверяем, что автор комментария с userId {} существует", userId);
-        User author = userRepository.findById(userId).orElseThrow(
+        User author = userRepository.findActiveById(userId).orElseThrow(
                 () -> new DataNotFoundException("Пользователь с userId " + userId + " не найден")
         );
         log.debug("Проверяем, что предмет {} существует", itemId);
-        Item item = itemRepository.findById(itemId).orElseThrow(
+        Item item = itemRepository.findActiveById(itemId).orElseThrow(
                 () -> new DataNotFoundException("Предмет с itemId " + itemId + " не найден")
         );
-        log.debug("Проверяем, что пользователь {} действительно брал предмет {} в аренду", userId, itemId);
+        log.atDebug().addArgument(userId).addArgument(itemId)
+                .log("Проверяем, что пользователь {} действительно брал предмет {} в аренду");
         boolean hasValidBooking = bookingRepository.existsByBookerIdAndItemIdAndStatusAndEndBefore(
                 userId, itemId, BookingStatus.APPROVED, LocalDateTime.now());
         if (!hasValidBooking) {
@@ -195,6 +364,8 @@ public class ItemServiceImpl implements ItemService {
         }
         Comment newComment = ItemMapper.toComment(comment, item, author);
         log.info("Сохраняем комментарий в репозиторий");
-        return ItemMapper.toCommentDto(commentRepository.save(newComment));
+        CommentDto saved = ItemMapper.toCommentDto(commentRepository.save(newComment));
+        popularityTracker.recordComment(itemId);
+        return saved;
     }
 }
@@ -0,0 +1,33 @@
+package ru.practicum.shareit.logging;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Бросает жребий семплирования DEBUG один раз на HTTP-запрос и хранит его в потоке на время обработки.
+ * SamplingTurboFilter сравнивает с ним долю логгера, поэтому запрос попадает в лог целиком или не попадает,
+ * а не отдельными строками; при меньшей доле логгера его строки - подмножество строк логгеров с большей.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class LogSamplingFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        SamplingTurboFilter.drawForRequest();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            SamplingTurboFilter.clearRequestDraw();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package ru.practicum.shareit.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * Пропускает в лог только долю DEBUG и TRACE сообщений выбранных логгеров.
+ * Правила задаются строкой "префикс=доля,префикс=доля", для логгера берется правило с самым длинным префиксом.
+ * Решение принимается до создания события, поэтому отброшенное сообщение не форматируется и не попадает в очередь.
+ * Сообщения INFO и выше не семплируются никогда.
+ * В HTTP-запросе жребий один на весь запрос (его ставит LogSamplingFilter), чтобы в логе оставались
+ * запросы целиком, а не случайные строки разных запросов; вне запроса жребий бросается на каждое сообщение.
+ * Без правил (по умолчанию) фильтр ничего не отбрасывает.
+ */
+public class SamplingTurboFilter extends TurboFilter {
+
+    private static final Double ALWAYS = 1.0;
+
+    // жребий хранится числом, а не строкой в MDC, чтобы не разбирать его на каждом сообщении
+    private static final ThreadLocal<Double> REQUEST_DRAW = new ThreadLocal<>();
+
+    private final List<Rule> rules = new ArrayList<>();
+
+    // доля для каждого логгера вычисляется один раз, дальше это один get без аллокаций
+    private final Map<Logger, Double> rates = new ConcurrentHashMap<>();
+
+    private final Function<Logger, Double> resolver = this::resolve;
+
+    public static void drawForRequest() {
+        REQUEST_DRAW.set(ThreadLocalRandom.current().nextDouble());
+    }
+
+    public static void clearRequestDraw() {
+        REQUEST_DRAW.remove();
+    }
+
+    public void setRates(String spec) {
+        rules.clear();
+        rates.clear();
+        if (spec == null || spec.isBlank()) {
+            return;
+        }
+        for (String entry : spec.trim().split("\\s*,\\s*")) {
+            String[] parts = entry.split("=");
+            if (parts.length != 2) {
+                addError("Правило семплирования должно иметь вид логгер=доля: " + entry);
+                continue;
+            }
+            double rate;
+            try {
+                rate = Double.parseDouble(parts[1].trim());
+            } catch (NumberFormatException e) {
+                addError("Доля семплирования должна быть числом: " + entry);
+                continue;
+            }
+            if (!(rate >= 0 && rate <= 1)) {
+                addError("Доля семплирования должна быть от 0 до 1: " + entry);
+                continue;
+            }
+            rules.add(new Rule(parts[0].trim(), rate));
+        }
+        rules.sort(Comparator.comparingInt((Rule rule) -> rule.prefix().length()).reversed());
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params,
+                              Throwable t) {
+        if (rules.isEmpty() || level == null || level.levelInt > Level.DEBUG_INT ||
+                !level.isGreaterOrEqual(logger.getEffectiveLevel())) {
+            return FilterReply.NEUTRAL;
+        }
+        double rate = rates.computeIfAbsent(logger, resolver);
+        if (rate >= 1) {
+            return FilterReply.NEUTRAL;
+        }
+        Double sample = REQUEST_DRAW.get();
+        double draw = sample == null ? ThreadLocalRandom.current().nextDouble() : sample;
+        return draw < rate ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    private Double resolve(Logger logger) {
+        for (Rule rule : rules) {
+            if (logger.getName().equals(rule.prefix()) || logger.getName().startsWith(rule.prefix() + ".")) {
+                return rule.rate();
+            }
+        }
+        return ALWAYS;
+    }
+
+    private record Rule(String prefix, double rate) {
+    }
+}
@@ -0,0 +1,97 @@
+package ru.practicum.shareit.monitoring;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Статистика SQL, выполненного в рамках одного HTTP-запроса. Живет в ThreadLocal потока, обрабатывающего запрос.
+ * Считается только SQL Hibernate (через StatementInspector и события сессии): запросы JdbcTemplate, например
+ * в UserDeletionRepository или IdempotencyStore, сюда не попадают.
+ */
+public final class RequestStatements {
+
+    private static final ThreadLocal<RequestStatements> CURRENT = new ThreadLocal<>();
+
+    private final String handler;
+
+    private final Map<String, Integer> countBySql = new HashMap<>();
+
+    private int statements;
+
+    private long jdbcNanos;
+
+    private long executionStartedAt;
+
+    private RequestStatements(String handler) {
+        this.handler = handler;
+    }
+
+    public static void begin(String handler) {
+        CURRENT.set(new RequestStatements(handler));
+    }
+
+    /**
+     * Продолжает учет, начатый в другом потоке до асинхронной обработки запроса.
+     */
+    public static void resume(RequestStatements statements) {
+        CURRENT.set(statements);
+    }
+
+    public static RequestStatements end() {
+        RequestStatements current = CURRENT.get();
+        CURRENT.remove();
+        return current;
+    }
+
+    public static RequestStatements current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Добавляет статистику, собранную в другом потоке для того же HTTP-запроса.
+     */
+    public void merge(RequestStatements other) {
+        statements += other.statements;
+        jdbcNanos += other.jdbcNanos;
+        other.countBySql.forEach((sql, count) -> countBySql.merge(sql, count, Integer::sum));
+    }
+
+    static void statementPrepared(String sql) {
+        RequestStatements current = CURRENT.get();
+        if (current != null) {
+            current.statements++;
+            current.countBySql.merge(sql, 1, Integer::sum);
+        }
+    }
+
+    static void executionStarted() {
+        RequestStatements current = CURRENT.get();
+        if (current != null) {
+            current.executionStartedAt = System.nanoTime();
+        }
+    }
+
+    static void executionFinished() {
+        RequestStatements current = CURRENT.get();
+        if (current != null && current.executionStartedAt != 0) {
+            current.jdbcNanos += System.nanoTime() - current.executionStartedAt;
+            current.executionStartedAt = 0;
+        }
+    }
+
+    public String getHandler() {
+        return handler;
+    }
+
+    public int getStatements() {
+        return statements;
+    }
+
+    public long getJdbcNanos() {
+        return jdbcNanos;
+    }
+
+    public Map<String, Integer> getCountBySql() {
+        return countBySql;
+    }
+}
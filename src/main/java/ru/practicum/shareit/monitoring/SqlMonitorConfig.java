@@ -0,0 +1,43 @@
+package ru.practicum.shareit.monitoring;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Учет SQL по HTTP-запросам: вместо show-sql, который просто печатает все подряд,
+ * считает запросы и время JDBC по каждому методу контроллера и предупреждает о N+1.
+ */
+@Configuration
+@EnableConfigurationProperties(SqlMonitorProperties.class)
+@ConditionalOnProperty(prefix = "shareit.sql-monitor", name = "enabled", matchIfMissing = true)
+public class SqlMonitorConfig implements WebMvcConfigurer {
+
+    private final SqlMonitorProperties properties;
+    private final MeterRegistry registry;
+
+    public SqlMonitorConfig(SqlMonitorProperties properties, MeterRegistry registry) {
+        this.properties = properties;
+        this.registry = registry;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer sqlMonitorCustomizer() {
+        return hibernateProperties -> {
+            hibernateProperties.put(AvailableSettings.STATEMENT_INSPECTOR, new StatementTrackingInspector());
+            hibernateProperties.put(AvailableSettings.AUTO_SESSION_EVENTS_LISTENER,
+                    StatementTimingListener.class.getName());
+        };
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new StatementTrackingInterceptor(properties, this.registry));
+    }
+}
@@ -0,0 +1,22 @@
+package ru.practicum.shareit.monitoring;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "shareit.sql-monitor")
+public class SqlMonitorProperties {
+
+    private boolean enabled = true;
+
+    // больше стольких запросов за один HTTP-запрос - предупреждение
+    private int maxStatements = 20;
+
+    // суммарное время JDBC за один HTTP-запрос, после которого запрос считается медленным
+    private Duration maxJdbcTime = Duration.ofMillis(300);
+
+    // сколько раз один и тот же SQL должен повториться, чтобы считать это N+1
+    private int repeatThreshold = 3;
+}
@@ -0,0 +1,29 @@
+package ru.practicum.shareit.monitoring;
+
+import org.hibernate.SessionEventListener;
+
+/**
+ * Замеряет время выполнения JDBC-запросов и пакетов. Hibernate создает экземпляр на каждую сессию.
+ */
+public class StatementTimingListener implements SessionEventListener {
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        RequestStatements.executionStarted();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        RequestStatements.executionFinished();
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        RequestStatements.executionStarted();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        RequestStatements.executionFinished();
+    }
+}
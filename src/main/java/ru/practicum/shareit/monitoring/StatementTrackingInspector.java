@@ -0,0 +1,15 @@
+package ru.practicum.shareit.monitoring;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Видит текст каждого SQL, который Hibernate готовит к выполнению, и учитывает его в текущем HTTP-запросе.
+ */
+public class StatementTrackingInspector implements StatementInspector {
+
+    @Override
+    public String inspect(String sql) {
+        RequestStatements.statementPrepared(sql);
+        return sql;
+    }
+}
@@ -0,0 +1,105 @@
+package ru.practicum.shareit.monitoring;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Открывает учет SQL на время обработки запроса контроллером (включая сериализацию ответа,
+ * когда при open-in-view догружаются ленивые связи) и по завершении публикует метрики по методу контроллера.
+ * При асинхронной обработке (SSE, Callable) поток запроса возвращается в пул до завершения: учет снимается
+ * с потока в атрибут запроса и продолжается в асинхронном dispatch, метрики публикуются один раз в его конце.
+ * SQL через JdbcTemplate не учитывается, см. RequestStatements.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class StatementTrackingInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String ASYNC_STATEMENTS = StatementTrackingInterceptor.class.getName() + ".statements";
+
+    private final SqlMonitorProperties properties;
+    private final MeterRegistry registry;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (handler instanceof HandlerMethod method) {
+            if (request.getAttribute(ASYNC_STATEMENTS) instanceof RequestStatements started) {
+                request.removeAttribute(ASYNC_STATEMENTS);
+                RequestStatements.resume(started);
+            } else {
+                RequestStatements.begin(method.getBeanType().getSimpleName() + "." + method.getMethod().getName());
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        RequestStatements statements = RequestStatements.end();
+        if (statements != null) {
+            request.setAttribute(ASYNC_STATEMENTS, statements);
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        RequestStatements statements = RequestStatements.end();
+        if (statements == null) {
+            return;
+        }
+        String handlerName = statements.getHandler();
+        DistributionSummary.builder("shareit.sql.statements")
+                .description("Число SQL-запросов на один HTTP-запрос")
+                .tag("handler", handlerName)
+                .register(registry)
+                .record(statements.getStatements());
+        Duration jdbcTime = Duration.ofNanos(statements.getJdbcNanos());
+        Timer.builder("shareit.sql.time")
+                .description("Суммарное время JDBC на один HTTP-запрос")
+                .tag("handler", handlerName)
+                .register(registry)
+                .record(jdbcTime);
+
+        if (statements.getStatements() > properties.getMaxStatements() ||
+                jdbcTime.compareTo(properties.getMaxJdbcTime()) > 0) {
+            Counter.builder("shareit.sql.slow.requests")
+                    .tag("handler", handlerName)
+                    .register(registry)
+                    .increment();
+            log.atWarn()
+                    .addKeyValue("handler", handlerName)
+                    .addKeyValue("uri", request.getRequestURI())
+                    .addKeyValue("statements", statements.getStatements())
+                    .addKeyValue("jdbcMs", jdbcTime.toMillis())
+                    .log("Тяжелый запрос: {} выполнил {} SQL за {} мс", handlerName, statements.getStatements(),
+                            jdbcTime.toMillis());
+        }
+        for (Map.Entry<String, Integer> entry : statements.getCountBySql().entrySet()) {
+            if (entry.getValue() >= properties.getRepeatThreshold()) {
+                Counter.builder("shareit.sql.repeated.statements")
+                        .description("Повторы одного и того же SQL в рамках HTTP-запроса (N+1)")
+                        .tag("handler", handlerName)
+                        .register(registry)
+                        .increment();
+                log.atWarn()
+                        .addKeyValue("handler", handlerName)
+                        .addKeyValue("uri", request.getRequestURI())
+                        .addKeyValue("repeats", entry.getValue())
+                        .addKeyValue("sql", entry.getKey())
+                        .log("Похоже на N+1: {} выполнил один и тот же SQL {} раз", handlerName, entry.getValue());
+            }
+        }
+    }
+}
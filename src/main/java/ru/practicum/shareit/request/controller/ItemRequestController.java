@@ -0,0 +1,65 @@
+package ru.practicum.shareit.request.controller;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Positive;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.*;
+import ru.practicum.shareit.request.dto.CreateItemRequestDto;
+import ru.practicum.shareit.request.dto.ItemRequestDto;
+import ru.practicum.shareit.request.service.ItemRequestService;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Slf4j
+@RestController
+@Profile("!inmemory")
+@RequestMapping(path = "/requests")
+@RequiredArgsConstructor
+public class ItemRequestController {
+
+    private final ItemRequestService itemRequestService;
+
+    @PostMapping
+    public ItemRequestDto addRequest(@RequestHeader("X-Sharer-User-Id") Long userId,
+                                     @Valid @RequestBody CreateItemRequestDto request) {
+        log.atDebug().addArgument(request).addArgument(userId)
+                .log("Начато создание запроса вещи. Получен объект {} от пользователя {}");
+        return itemRequestService.addRequest(userId, request);
+    }
+
+    @GetMapping
+    public List<ItemRequestDto> getOwnRequests(@RequestHeader("X-Sharer-User-Id") Long userId) {
+        log.debug("Начат возврат запросов пользователя с id {}", userId);
+        return itemRequestService.getOwnRequests(userId);
+    }
+
+    /**
+     * Лента запросов других пользователей от новых к старым. Следующая страница - с created и id
+     * последнего полученного запроса в beforeCreated и beforeId.
+     */
+    @GetMapping("/all")
+    public List<ItemRequestDto> getOtherUsersRequests(@RequestHeader("X-Sharer-User-Id") Long userId,
+                                                      @RequestParam(required = false)
+                                                      @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+                                                      LocalDateTime beforeCreated,
+                                                      @RequestParam(required = false) Long beforeId,
+                                                      @RequestParam(defaultValue = "10") @Positive @Max(100)
+                                                      int size) {
+        log.atDebug().addArgument(size).addArgument(userId)
+                .log("Начат возврат {} запросов других пользователей для пользователя с id {}");
+        return itemRequestService.getOtherUsersRequests(userId, beforeCreated, beforeId, size);
+    }
+
+    @GetMapping("/{requestId}")
+    public ItemRequestDto getRequest(@RequestHeader("X-Sharer-User-Id") Long userId,
+                                     @PathVariable @Positive Long requestId) {
+        log.atDebug().addArgument(requestId).addArgument(userId)
+                .log("Начат просмотр запроса с id {} пользователем с id {}");
+        return itemRequestService.getRequest(userId, requestId);
+    }
+}
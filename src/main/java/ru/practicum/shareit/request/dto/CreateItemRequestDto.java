@@ -0,0 +1,18 @@
+package ru.practicum.shareit.request.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CreateItemRequestDto {
+    @NotBlank(message = "Описание запроса обязательно для заполнения")
+    @Size(max = 1000, message = "Описание запроса не может быть длиннее 1000 символов")
+    private String description;
+}
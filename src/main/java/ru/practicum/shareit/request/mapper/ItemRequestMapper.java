@@ -0,0 +1,38 @@
+package ru.practicum.shareit.request.mapper;
+
+import ru.practicum.shareit.item.model.ItemAnswer;
+import ru.practicum.shareit.request.dto.CreateItemRequestDto;
+import ru.practicum.shareit.request.dto.ItemAnswerDto;
+import ru.practicum.shareit.request.dto.ItemRequestDto;
+import ru.practicum.shareit.request.model.ItemRequest;
+import ru.practicum.shareit.user.model.User;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class ItemRequestMapper {
+    public static ItemRequest toItemRequest(CreateItemRequestDto request, User requestor, LocalDateTime created) {
+        return ItemRequest.builder()
+                .description(request.getDescription())
+                .requestor(requestor)
+                .created(created)
+                .build();
+    }
+
+    public static ItemRequestDto toItemRequestDto(ItemRequest request, List<ItemAnswer> answers) {
+        return ItemRequestDto.builder()
+                .id(request.getId())
+                .description(request.getDescription())
+                .created(request.getCreated())
+                .items(answers.stream().map(ItemRequestMapper::toItemAnswerDto).toList())
+                .build();
+    }
+
+    public static ItemAnswerDto toItemAnswerDto(ItemAnswer answer) {
+        return ItemAnswerDto.builder()
+                .id(answer.getId())
+                .name(answer.getName())
+                .ownerId(answer.getOwnerId())
+                .build();
+    }
+}
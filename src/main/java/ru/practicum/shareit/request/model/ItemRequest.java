@@ -1,4 +1,4 @@
-package ru.practicum.shareit.request;
+package ru.practicum.shareit.request.model;
 
 import jakarta.persistence.*;
 import lombok.*;
@@ -6,10 +6,6 @@ import ru.practicum.shareit.user.model.User;
 
 import java.time.LocalDateTime;
 
-/**
- * TODO Sprint add-item-requests.
- */
-
 @Entity
 @Table(name = "requests")
 @Data
@@ -32,6 +28,7 @@ public class ItemRequest {
     private User requestor;
     // пользователь, создавший запрос
 
+    // хранится с точностью до секунд, как отдается в JSON: клиент передает его обратно курсором ленты запросов
     @Column(name = "created", nullable = false, updatable = false)
-    private LocalDateTime created = LocalDateTime.now();
+    private LocalDateTime created;
 }
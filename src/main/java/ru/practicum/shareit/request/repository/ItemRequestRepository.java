@@ -0,0 +1,27 @@
+package ru.practicum.shareit.request.repository;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import ru.practicum.shareit.request.model.ItemRequest;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface ItemRequestRepository extends JpaRepository<ItemRequest, Long> {
+    List<ItemRequest> findAllByRequestorIdOrderByCreatedDescIdDesc(Long requestorId);
+
+    List<ItemRequest> findAllByRequestorIdNotOrderByCreatedDescIdDesc(Long requestorId, Limit limit);
+
+    // следующая страница ленты: строки строго после последней показанной в порядке (created, id) по убыванию,
+    // чтение идет по индексу с нужного места без OFFSET
+    @Query("SELECT r FROM ItemRequest r " +
+            "WHERE r.requestor.id <> :requestorId " +
+            "AND (r.created, r.id) < (:created, :id) " +
+            "ORDER BY r.created DESC, r.id DESC")
+    List<ItemRequest> findAllOfOthersBefore(@Param("requestorId") Long requestorId,
+                                            @Param("created") LocalDateTime created,
+                                            @Param("id") Long id,
+                                            Limit limit);
+}
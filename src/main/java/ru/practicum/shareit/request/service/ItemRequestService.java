@@ -0,0 +1,18 @@
+package ru.practicum.shareit.request.service;
+
+import ru.practicum.shareit.request.dto.CreateItemRequestDto;
+import ru.practicum.shareit.request.dto.ItemRequestDto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface ItemRequestService {
+
+    ItemRequestDto addRequest(Long userId, CreateItemRequestDto request);
+
+    List<ItemRequestDto> getOwnRequests(Long userId);
+
+    List<ItemRequestDto> getOtherUsersRequests(Long userId, LocalDateTime beforeCreated, Long beforeId, int size);
+
+    ItemRequestDto getRequest(Long userId, Long requestId);
+}
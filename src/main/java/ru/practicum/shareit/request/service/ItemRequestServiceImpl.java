@@ -0,0 +1,112 @@
+package ru.practicum.shareit.request.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.shareit.exceptions.DataNotFoundException;
+import ru.practicum.shareit.exceptions.MissedSmthException;
+import ru.practicum.shareit.item.model.ItemAnswer;
+import ru.practicum.shareit.item.repository.ItemRepository;
+import ru.practicum.shareit.request.dto.CreateItemRequestDto;
+import ru.practicum.shareit.request.dto.ItemRequestDto;
+import ru.practicum.shareit.request.mapper.ItemRequestMapper;
+import ru.practicum.shareit.request.model.ItemRequest;
+import ru.practicum.shareit.request.repository.ItemRequestRepository;
+import ru.practicum.shareit.sharding.Shards;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserRepository;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Service
+@Profile("!inmemory")
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class ItemRequestServiceImpl implements ItemRequestService {
+
+    private final ItemRequestRepository itemRequestRepository;
+    private final ItemRepository itemRepository;
+    private final UserRepository userRepository;
+    private final Shards shards;
+
+    @Override
+    @Transactional
+    public ItemRequestDto addRequest(Long userId, CreateItemRequestDto request) {
+        log.debug("Проверяем, что пользователь с userId {} существует", userId);
+        User user = userRepository.findActiveById(userId).orElseThrow(
+                () -> new DataNotFoundException("Пользователь c userId " + userId + " не найден"));
+        ItemRequest newRequest = ItemRequestMapper.toItemRequest(request, user,
+                LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS));
+        log.debug("Запрос отправлен в хранилище");
+        ItemRequest saved = itemRequestRepository.save(newRequest);
+        shards.requestCreated(saved);
+        return ItemRequestMapper.toItemRequestDto(saved, List.of());
+    }
+
+    @Override
+    public List<ItemRequestDto> getOwnRequests(Long userId) {
+        isUserExist(userId);
+        log.debug("Выдадим запросы пользователя {} вместе с ответами", userId);
+        return withAnswers(itemRequestRepository.findAllByRequestorIdOrderByCreatedDescIdDesc(userId));
+    }
+
+    @Override
+    public List<ItemRequestDto> getOtherUsersRequests(Long userId, LocalDateTime beforeCreated, Long beforeId,
+                                                      int size) {
+        isUserExist(userId);
+        if ((beforeCreated == null) != (beforeId == null)) {
+            throw new MissedSmthException("Для следующей страницы нужны оба параметра: beforeCreated и beforeId");
+        }
+        log.atDebug().addArgument(size).addArgument(beforeCreated).addArgument(beforeId)
+                .log("Выдадим {} запросов других пользователей, раньше чем ({}, {})");
+        List<ItemRequest> requests = beforeCreated == null
+                ? itemRequestRepository.findAllByRequestorIdNotOrderByCreatedDescIdDesc(userId, Limit.of(size))
+                : itemRequestRepository.findAllOfOthersBefore(userId, beforeCreated, beforeId, Limit.of(size));
+        return withAnswers(requests);
+    }
+
+    @Override
+    public ItemRequestDto getRequest(Long userId, Long requestId) {
+        isUserExist(userId);
+        ItemRequest request = itemRequestRepository.findById(requestId).orElseThrow(
+                () -> new DataNotFoundException("Запрос с id " + requestId + " не найден"));
+        return ItemRequestMapper.toItemRequestDto(request, findAnswers(List.of(requestId)));
+    }
+
+    private List<ItemRequestDto> withAnswers(List<ItemRequest> requests) {
+        if (requests.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, List<ItemAnswer>> answers = findAnswers(requests.stream().map(ItemRequest::getId).toList())
+                .stream()
+                .collect(Collectors.groupingBy(ItemAnswer::getRequestId));
+        log.atDebug().addArgument(requests.size()).addArgument(answers.size())
+                .log("Для {} запросов найдено ответов на {} из них");
+        return requests.stream()
+                .map(request -> ItemRequestMapper.toItemRequestDto(request,
+                        answers.getOrDefault(request.getId(), List.of())))
+                .toList();
+    }
+
+    // запросы лежат на шарде 0 с копиями на остальных, а ответившие вещи - на шардах своих владельцев
+    private List<ItemAnswer> findAnswers(List<Long> requestIds) {
+        return shards.scatter(() -> itemRepository.findAnswersByRequestIdIn(requestIds),
+                Comparator.comparing(ItemAnswer::getId));
+    }
+
+    private void isUserExist(Long userId) {
+        log.debug("Проверяем, что пользователь с userId {} существует", userId);
+        if (!userRepository.existsActiveById(userId)) {
+            throw new DataNotFoundException("Пользователь c userId " + userId + " не найден");
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package ru.practicum.shareit.sharding;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * Шард, с которым работает текущий поток. Соединение берется лениво, при первом SQL-запросе, поэтому шард
+ * достаточно выбрать до первого запроса транзакции. Привязка к транзакции снимается при ее завершении
+ * и на время ее приостановки.
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    static Integer current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Выполняет action на шарде shard. Для кода вне транзакции и для начала новой транзакции.
+     */
+    public static <T> T call(int shard, Supplier<T> action) {
+        Integer previous = CURRENT.get();
+        if (previous != null && previous != shard && TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Транзакция уже работает с шардом " + previous + ", а не " + shard);
+        }
+        CURRENT.set(shard);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Привязывает текущую транзакцию к шарду. Вызывается до первого SQL-запроса транзакции.
+     */
+    static void bindUntilCompletion(int shard) {
+        Integer bound = CURRENT.get();
+        if (bound != null) {
+            if (!Objects.equals(bound, shard)) {
+                throw new IllegalStateException("Транзакция уже работает с шардом " + bound + ", а не " + shard);
+            }
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Шард привязывается только внутри транзакции");
+        }
+        CURRENT.set(shard);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void suspend() {
+                CURRENT.remove();
+            }
+
+            @Override
+            public void resume() {
+                CURRENT.set(shard);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                CURRENT.remove();
+            }
+        });
+    }
+}
@@ -0,0 +1,36 @@
+package ru.practicum.shareit.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * Пулы соединений шардов по номерам. Напрямую, минуя маршрутизацию, ими пользуются только справочник
+ * пользователей, репликация таблицы users и канал событий бронирований на шарде 0.
+ */
+public class ShardDataSources implements AutoCloseable {
+
+    private final List<HikariDataSource> dataSources;
+
+    ShardDataSources(List<HikariDataSource> dataSources) {
+        this.dataSources = List.copyOf(dataSources);
+    }
+
+    public int size() {
+        return dataSources.size();
+    }
+
+    public DataSource get(int shard) {
+        return dataSources.get(shard);
+    }
+
+    List<HikariDataSource> all() {
+        return dataSources;
+    }
+
+    @Override
+    public void close() {
+        dataSources.forEach(HikariDataSource::close);
+    }
+}
@@ -0,0 +1,168 @@
+package ru.practicum.shareit.sharding;
+
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.stream.Collectors;
+
+/**
+ * Справочник user_shards на шарде 0 и копии таблиц users и requests на остальных шардах. Копии нужны
+ * внешним ключам: автор бронирования, комментария или запроса живет на своем шарде, а строки пишутся
+ * на шард владельца вещи. Дом пользователя не меняется, поэтому найденный шард кэшируется без срока.
+ * Копии пишутся вставкой с разрешением конфликта по id: ту же строку может одновременно копировать
+ * другой узел при сверке или повтор после фиксации.
+ */
+class ShardDirectory {
+
+    private static final int COPY_BATCH_SIZE = 1000;
+    private static final String USER_COLUMNS = "id, name, email, deleted_at";
+    private static final String REQUEST_COLUMNS = "id, description, requestor_id, created";
+
+    private final ShardDataSources dataSources;
+    private final JdbcTemplate directory;
+    private final Map<Long, Integer> homes = new ConcurrentHashMap<>();
+    private final boolean postgres;
+
+    ShardDirectory(ShardDataSources dataSources) {
+        this.dataSources = dataSources;
+        this.directory = new JdbcTemplate(dataSources.get(Shards.DIRECTORY));
+        this.postgres = "PostgreSQL".equals(directory.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName()));
+    }
+
+    int homeOf(Long userId) {
+        Integer home = homes.get(userId);
+        if (home != null) {
+            return home;
+        }
+        List<Integer> found = directory.queryForList("SELECT shard FROM user_shards WHERE user_id = ?",
+                Integer.class, userId);
+        if (found.isEmpty()) {
+            // пользователи, созданные до шардирования, и несуществующие id; промах не кэшируется
+            return Shards.DIRECTORY;
+        }
+        homes.put(userId, found.get(0));
+        return found.get(0);
+    }
+
+    /**
+     * Строка справочника пишется через jdbcTemplate вызывающего, в одной транзакции с созданием пользователя.
+     */
+    void register(JdbcTemplate jdbcTemplate, Long userId, int shard) {
+        jdbcTemplate.update("INSERT INTO user_shards (user_id, shard) VALUES (?, ?)", userId, shard);
+    }
+
+    void copyUser(Long id, String name, String email) {
+        for (int shard = 1; shard < dataSources.size(); shard++) {
+            new JdbcTemplate(dataSources.get(shard)).update(upsert("users", "id, name, email", true), id, name,
+                    email);
+        }
+    }
+
+    void markUserDeleted(Long id, String email, LocalDateTime deletedAt) {
+        for (int shard = 1; shard < dataSources.size(); shard++) {
+            new JdbcTemplate(dataSources.get(shard)).update("UPDATE users SET email = ?, deleted_at = ? WHERE id = ?",
+                    email, Timestamp.valueOf(deletedAt), id);
+        }
+    }
+
+    void deleteUser(Long id) {
+        homes.remove(id);
+        for (int shard = 1; shard < dataSources.size(); shard++) {
+            new JdbcTemplate(dataSources.get(shard)).update("DELETE FROM users WHERE id = ?", id);
+        }
+        directory.update("DELETE FROM user_shards WHERE user_id = ?", id);
+    }
+
+    void copyRequest(Long id, String description, Long requestorId, LocalDateTime created) {
+        for (int shard = 1; shard < dataSources.size(); shard++) {
+            new JdbcTemplate(dataSources.get(shard)).update(upsert("requests", REQUEST_COLUMNS, false), id,
+                    description, requestorId, Timestamp.valueOf(created));
+        }
+    }
+
+    /**
+     * Сверяет копии пользователей и запросов с шардом 0 и переписывает те, которых нет или которые отличаются
+     * хотя бы одним столбцом: созданные до включения шардирования и те, чья копия, изменение или отметка
+     * удаления после фиксации не записались. Возвращает число исправленных строк, id исправленных
+     * пользователей передает в userFixed. Изменение, зафиксированное
+     * между чтением шарда 0 и записью копии, может быть перезаписано прежним значением; следующая сверка
+     * его вернет.
+     */
+    int reconcile(LongConsumer userFixed) {
+        int fixed = 0;
+        for (int shard = 1; shard < dataSources.size(); shard++) {
+            JdbcTemplate replica = new JdbcTemplate(dataSources.get(shard));
+            fixed += reconcile(replica, "users", USER_COLUMNS, userFixed);
+            fixed += reconcile(replica, "requests", REQUEST_COLUMNS, id -> { });
+        }
+        return fixed;
+    }
+
+    private int reconcile(JdbcTemplate replica, String table, String columns, LongConsumer fixedId) {
+        int fixed = 0;
+        long afterId = 0;
+        List<Object[]> batch;
+        do {
+            batch = directory.query("SELECT " + columns + " FROM " + table + " WHERE id > ? ORDER BY id LIMIT ?",
+                    ShardDirectory::row, afterId, COPY_BATCH_SIZE);
+            if (batch.isEmpty()) {
+                break;
+            }
+            long firstId = id(batch.get(0));
+            afterId = id(batch.get(batch.size() - 1));
+            Map<Long, Object[]> copies = replica.query("SELECT " + columns + " FROM " + table +
+                            " WHERE id BETWEEN ? AND ?", ShardDirectory::row, firstId, afterId).stream()
+                    .collect(Collectors.toMap(ShardDirectory::id, Function.identity()));
+            List<Object[]> stale = batch.stream()
+                    .filter(row -> !Arrays.equals(row, copies.get(id(row))))
+                    .toList();
+            if (!stale.isEmpty()) {
+                replica.batchUpdate(upsert(table, columns, true), stale);
+                stale.forEach(row -> fixedId.accept(id(row)));
+                fixed += stale.size();
+            }
+        } while (batch.size() == COPY_BATCH_SIZE);
+        return fixed;
+    }
+
+    private static Object[] row(ResultSet rs, int rowNum) throws SQLException {
+        Object[] row = new Object[rs.getMetaData().getColumnCount()];
+        for (int column = 0; column < row.length; column++) {
+            row[column] = rs.getObject(column + 1);
+        }
+        return row;
+    }
+
+    private static long id(Object[] row) {
+        return ((Number) row[0]).longValue();
+    }
+
+    /**
+     * Вставка копии строки с первым столбцом id. Уже существующая строка остается как есть или, при update,
+     * получает остальные столбцы. В H2 тестов MERGE по ключу id всегда перезаписывает строку значениями копии.
+     */
+    private String upsert(String table, String columns, boolean update) {
+        List<String> names = Arrays.stream(columns.split(",")).map(String::trim).toList();
+        String placeholders = String.join(", ", Collections.nCopies(names.size(), "?"));
+        if (!postgres) {
+            return "MERGE INTO " + table + " (" + columns + ") KEY (id) VALUES (" + placeholders + ")";
+        }
+        String conflict = !update ? "DO NOTHING" : "DO UPDATE SET " + names.stream().skip(1)
+                .map(name -> name + " = EXCLUDED." + name)
+                .collect(Collectors.joining(", "));
+        return "INSERT INTO " + table + " (" + columns + ") VALUES (" + placeholders + ") ON CONFLICT (id) "
+                + conflict;
+    }
+}
@@ -0,0 +1,24 @@
+package ru.practicum.shareit.sharding;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Выбирает шард по ShardContext в момент получения физического соединения. Транзакция, не выбравшая шард
+ * до первого запроса, закрепляется за шардом 0, и попытка позже перейти на другой шард завершится ошибкой,
+ * а не молча уйдет не в ту базу.
+ */
+class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Integer shard = ShardContext.current();
+        if (shard != null) {
+            return shard;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            ShardContext.bindUntilCompletion(Shards.DIRECTORY);
+        }
+        return Shards.DIRECTORY;
+    }
+}
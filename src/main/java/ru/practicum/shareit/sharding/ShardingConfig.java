@@ -0,0 +1,108 @@
+package ru.practicum.shareit.sharding;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Шардирование по владельцу: вещи пользователя, бронирования и комментарии к ним лежат в базе его домашнего
+ * шарда. Основной DataSource маршрутизирует соединения по ShardContext, ленивый прокси откладывает выбор
+ * шарда до первого SQL-запроса транзакции. Таблица users копируется на все шарды, чтобы внешние ключи
+ * на автора бронирования и комментария работали в любой базе.
+ * Требует spring.jpa.open-in-view=false: Hibernate держит соединение до закрытия EntityManager, и с открытым
+ * на весь HTTP-запрос EntityManager вторая транзакция запроса ушла бы на шард первой.
+ */
+@Slf4j
+@Configuration
+@Profile("!inmemory")
+@EnableConfigurationProperties(ShardingProperties.class)
+@ConditionalOnProperty(prefix = "shareit.sharding", name = "enabled", havingValue = "true")
+public class ShardingConfig {
+
+    private static final List<String> SHARDED_TABLES = List.of("items", "bookings", "comments");
+
+    @Bean(destroyMethod = "close")
+    public ShardDataSources shardDataSources(ShardingProperties properties, ResourceLoader resourceLoader,
+                                             @Value("${spring.sql.init.mode:embedded}") String initMode,
+                                             @Value("${spring.sql.init.schema-locations:classpath:schema.sql}")
+                                             List<String> schemaLocations,
+                                             @Value("${spring.jpa.open-in-view:true}") boolean openInView) {
+        if (openInView) {
+            throw new IllegalStateException("Шардирование требует spring.jpa.open-in-view=false");
+        }
+        if (properties.getShards().size() < 2) {
+            throw new IllegalStateException("Для шардирования нужно указать хотя бы два шарда");
+        }
+        List<HikariDataSource> pools = new ArrayList<>();
+        for (int shard = 0; shard < properties.getShards().size(); shard++) {
+            ShardingProperties.Shard config = properties.getShards().get(shard);
+            HikariDataSource pool = new HikariDataSource();
+            pool.setPoolName("shard-" + shard);
+            pool.setJdbcUrl(config.getUrl());
+            pool.setUsername(config.getUsername());
+            pool.setPassword(config.getPassword());
+            pool.setMaximumPoolSize(properties.getMaxPoolSize());
+            pools.add(pool);
+        }
+        // схему шарда 0 создает обычная инициализация Spring Boot через основной DataSource
+        for (int shard = 1; shard < pools.size(); shard++) {
+            if (!"never".equalsIgnoreCase(initMode)) {
+                ResourceDatabasePopulator populator = new ResourceDatabasePopulator();
+                schemaLocations.forEach(location -> populator.addScript(resourceLoader.getResource(location)));
+                populator.execute(pools.get(shard));
+            }
+            moveIdentities(new JdbcTemplate(pools.get(shard)), shard);
+        }
+        log.info("Шардирование включено, шардов: {}", pools.size());
+        return new ShardDataSources(pools);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardDataSources shards) {
+        Map<Object, Object> targets = new HashMap<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            targets.put(shard, shards.get(shard));
+        }
+        ShardRoutingDataSource routing = new ShardRoutingDataSource();
+        routing.setTargetDataSources(targets);
+        routing.setLenientFallback(false);
+        routing.afterPropertiesSet();
+        LazyConnectionDataSourceProxy lazy = new LazyConnectionDataSourceProxy(routing);
+        // без явных значений прокси открыл бы пробное соединение, и оно ушло бы на случайный шард
+        lazy.setDefaultAutoCommit(true);
+        lazy.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        return lazy;
+    }
+
+    /**
+     * id вещей, бронирований и комментариев шарда k начинаются с k << ID_SHIFT: по id сразу виден шард.
+     * Данные, созданные до шардирования, остаются на шарде 0 с прежними id.
+     */
+    private void moveIdentities(JdbcTemplate jdbcTemplate, int shard) {
+        long base = (long) shard << Shards.ID_SHIFT;
+        for (String table : SHARDED_TABLES) {
+            Long max = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + table, Long.class);
+            if (max == null || max < base) {
+                jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN id RESTART WITH " + (base + 1));
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package ru.practicum.shareit.sharding;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@ConfigurationProperties(prefix = "shareit.sharding")
+public class ShardingProperties {
+
+    private boolean enabled = false;
+
+    // шард 0 - справочник: пользователи, user_shards, запросы вещей и все данные, созданные до шардирования
+    private List<Shard> shards = new ArrayList<>();
+
+    private int maxPoolSize = 10;
+
+    // как часто копии users и requests на шардах сверяются с шардом 0
+    private Duration reconcileInterval = Duration.ofMinutes(5);
+
+    @Data
+    public static class Shard {
+        private String url;
+        private String username;
+        private String password;
+    }
+}
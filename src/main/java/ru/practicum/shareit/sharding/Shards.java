@@ -0,0 +1,270 @@
+package ru.practicum.shareit.sharding;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.shareit.fanout.ReadOnlyFanOut;
+import ru.practicum.shareit.request.model.ItemRequest;
+import ru.practicum.shareit.user.model.User;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Выбор шарда для операций сервисов. Вещи, бронирования и комментарии живут на шарде владельца вещи:
+ * операции владельца привязываются к его шарду, операции над существующей строкой - к шарду из ее id.
+ * Запросы со стороны арендатора (его бронирования, поиск) опрашивают все шарды параллельно и сливают ответы.
+ * Без shareit.sharding.enabled шард один, привязка ничего не делает, а scatter - обычный вызов.
+ */
+@Slf4j
+@Component
+@Profile("!inmemory")
+public class Shards {
+
+    // справочник пользователей, запросы вещей и все данные, созданные до шардирования
+    public static final int DIRECTORY = 0;
+
+    // старшие биты id вещи, бронирования и комментария - номер шарда (см. ShardingConfig)
+    public static final int ID_SHIFT = 48;
+
+    private final ShardDirectory directory;
+    private final ReadOnlyFanOut fanOut;
+    private final JdbcTemplate jdbcTemplate;
+    private final int count;
+    private final ShardingProperties properties;
+    private final ObjectProvider<EntityManagerFactory> entityManagerFactory;
+
+    private ScheduledExecutorService reconciler;
+
+    public Shards(ObjectProvider<ShardDataSources> dataSources, ObjectProvider<ShardingProperties> properties,
+                  ObjectProvider<EntityManagerFactory> entityManagerFactory, ReadOnlyFanOut fanOut,
+                  JdbcTemplate jdbcTemplate) {
+        ShardDataSources shards = dataSources.getIfAvailable();
+        this.directory = shards == null ? null : new ShardDirectory(shards);
+        this.count = shards == null ? 1 : shards.size();
+        this.properties = properties.getIfAvailable(ShardingProperties::new);
+        this.entityManagerFactory = entityManagerFactory;
+        this.fanOut = fanOut;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Копии пользователей и запросов сверяются при старте и затем каждые reconcile-interval: так чинятся
+     * копии, изменения и отметки удаления, которые не записались после фиксации.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startReconciling() {
+        if (directory == null) {
+            return;
+        }
+        reconcileSafely();
+        long interval = properties.getReconcileInterval().toMillis();
+        reconciler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "shard-reconcile");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reconciler.scheduleWithFixedDelay(this::reconcileSafely, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (reconciler != null) {
+            reconciler.shutdown();
+            reconciler.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * Один проход сверки копий; возвращает число исправленных строк.
+     */
+    public int reconcile() {
+        return directory == null ? 0 : directory.reconcile(this::evictUser);
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public int ofId(Long id) {
+        int shard = (int) (id >>> ID_SHIFT);
+        // такого id нет ни на одном шарде: пусть его не найдет шард 0
+        return shard < count ? shard : DIRECTORY;
+    }
+
+    public int ofUser(Long userId) {
+        return directory == null ? DIRECTORY : directory.homeOf(userId);
+    }
+
+    /**
+     * Привязывает текущую транзакцию к шарду пользователя. Вызывается до первого SQL-запроса транзакции.
+     */
+    public void bindUser(Long userId) {
+        if (count > 1) {
+            ShardContext.bindUntilCompletion(ofUser(userId));
+        }
+    }
+
+    /**
+     * Привязывает текущую транзакцию к шарду вещи, бронирования или комментария с этим id.
+     */
+    public void bindId(Long id) {
+        if (count > 1) {
+            ShardContext.bindUntilCompletion(ofId(id));
+        }
+    }
+
+    /**
+     * Выполняет action на шарде shard. Внутри action каждый вызов репозитория идет в свою транзакцию
+     * на этом шарде, если action не открывает общую.
+     */
+    public <T> T on(int shard, Supplier<T> action) {
+        return count > 1 ? ShardContext.call(shard, action) : action.get();
+    }
+
+    /**
+     * Выполняет action на каждом шарде по очереди и складывает результаты.
+     */
+    public int sumOverShards(IntSupplier action) {
+        int total = 0;
+        for (int shard = 0; shard < count; shard++) {
+            total += on(shard, action::getAsInt);
+        }
+        return total;
+    }
+
+    /**
+     * Выполняет query на всех шардах параллельно, каждый в своей read-only транзакции, и сливает ответы
+     * в порядке order. Результаты должны быть готовы к использованию вне транзакции.
+     */
+    public <T> List<T> scatter(Supplier<List<T>> query, Comparator<? super T> order) {
+        if (count == 1) {
+            return query.get();
+        }
+        List<Supplier<List<T>>> parts = new ArrayList<>(count);
+        try (ReadOnlyFanOut.Scope scope = fanOut.open()) {
+            for (int shard = 0; shard < count; shard++) {
+                int target = shard;
+                parts.add(scope.fork(() -> ShardContext.call(target, query)));
+            }
+            scope.join();
+        }
+        List<T> merged = new ArrayList<>();
+        parts.forEach(part -> merged.addAll(part.get()));
+        if (order != null) {
+            merged.sort(order);
+        }
+        return merged;
+    }
+
+    /**
+     * Записывает в справочник дом нового пользователя в транзакции его создания (она идет на шарде 0),
+     * после фиксации копирует пользователя на остальные шарды.
+     */
+    public void userCreated(User user) {
+        if (count == 1) {
+            return;
+        }
+        directory.register(jdbcTemplate, user.getId(), (int) Math.floorMod(user.getId(), (long) count));
+        userUpdated(user);
+    }
+
+    public void userUpdated(User user) {
+        if (count == 1) {
+            return;
+        }
+        Long id = user.getId();
+        String name = user.getName();
+        String email = user.getEmail();
+        afterCommit(() -> {
+            directory.copyUser(id, name, email);
+            evictUser(id);
+        }, "Не удалось скопировать пользователя " + id);
+    }
+
+    /**
+     * Мягкое удаление: после фиксации на шарде 0 отметка и освобожденный email переносятся на копии, чтобы
+     * проверки пользователя на шардах владельцев тоже его не находили, а новый владелец адреса копировался.
+     */
+    public void userDeleted(User user) {
+        if (count == 1) {
+            return;
+        }
+        Long id = user.getId();
+        String email = user.getEmail();
+        LocalDateTime deletedAt = user.getDeletedAt();
+        afterCommit(() -> {
+            directory.markUserDeleted(id, email, deletedAt);
+            evictUser(id);
+        }, "Не удалось отметить удаление копий пользователя " + id);
+    }
+
+    /**
+     * Удаляет копии пользователя и строку справочника, когда его данных на шардах уже нет.
+     */
+    public void userPurged(Long userId) {
+        if (count > 1) {
+            directory.deleteUser(userId);
+        }
+    }
+
+    public void requestCreated(ItemRequest request) {
+        if (count == 1) {
+            return;
+        }
+        Long id = request.getId();
+        String description = request.getDescription();
+        Long requestorId = request.getRequestor().getId();
+        afterCommit(() -> directory.copyRequest(id, description, requestorId, request.getCreated()),
+                "Не удалось скопировать запрос " + id);
+    }
+
+    // копии пишутся мимо Hibernate, а кэш второго уровня один на все шарды: пользователь, прочитанный
+    // с устаревшей копии, иначе остался бы в кэше
+    private void evictUser(Long id) {
+        entityManagerFactory.ifAvailable(factory -> factory.getCache().evict(User.class, id));
+    }
+
+    private void reconcileSafely() {
+        try {
+            int fixed = reconcile();
+            if (fixed > 0) {
+                log.info("На шардах исправлено копий пользователей и запросов: {}", fixed);
+            }
+        } catch (RuntimeException e) {
+            log.error("Ошибка сверки копий пользователей и запросов", e);
+        }
+    }
+
+    /**
+     * Копии пишутся после фиксации на шарде 0. Ошибку копии не возвращаем клиенту: исходная строка уже
+     * сохранена, а пропущенную или устаревшую копию исправит ближайшая сверка.
+     */
+    private void afterCommit(Runnable action, String error) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    action.run();
+                } catch (RuntimeException e) {
+                    log.error(error, e);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,167 @@
+package ru.practicum.shareit.storage;
+
+import ru.practicum.shareit.booking.model.BookingStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Двоичный формат записи: [int длина][int crc32][байт типа + поля].
+ * Чтение останавливается на первой неполной или поврежденной записи - это оборванный хвост после сбоя.
+ */
+public final class JournalCodec {
+
+    private static final byte USER_PUT = 1;
+    private static final byte USER_DELETED = 2;
+    private static final byte ITEM_PUT = 3;
+    private static final byte COMMENT_PUT = 4;
+    private static final byte BOOKING_PUT = 5;
+    private static final byte SEQUENCE_VALUE = 6;
+
+    private static final int HEADER_SIZE = Integer.BYTES * 2;
+
+    private JournalCodec() {
+    }
+
+    public static byte[] encode(JournalRecord record) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0);
+            out.writeInt(0);
+            switch (record) {
+                case JournalRecord.UserPut user -> {
+                    out.writeByte(USER_PUT);
+                    out.writeLong(user.id());
+                    writeString(out, user.name());
+                    writeString(out, user.email());
+                }
+                case JournalRecord.UserDeleted user -> {
+                    out.writeByte(USER_DELETED);
+                    out.writeLong(user.id());
+                }
+                case JournalRecord.ItemPut item -> {
+                    out.writeByte(ITEM_PUT);
+                    out.writeLong(item.id());
+                    writeString(out, item.name());
+                    writeString(out, item.description());
+                    out.writeBoolean(item.available());
+                    out.writeLong(item.ownerId());
+                }
+                case JournalRecord.CommentPut comment -> {
+                    out.writeByte(COMMENT_PUT);
+                    out.writeLong(comment.id());
+                    out.writeLong(comment.itemId());
+                    out.writeLong(comment.authorId());
+                    writeString(out, comment.authorName());
+                    writeString(out, comment.text());
+                    writeDate(out, comment.created());
+                }
+                case JournalRecord.BookingPut booking -> {
+                    out.writeByte(BOOKING_PUT);
+                    out.writeLong(booking.id());
+                    writeDate(out, booking.start());
+                    writeDate(out, booking.end());
+                    out.writeLong(booking.itemId());
+                    out.writeLong(booking.ownerId());
+                    out.writeLong(booking.bookerId());
+                    out.writeByte(booking.status().ordinal());
+                }
+                case JournalRecord.SequenceValue sequence -> {
+                    out.writeByte(SEQUENCE_VALUE);
+                    writeString(out, sequence.name());
+                    out.writeLong(sequence.value());
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] frame = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(frame, HEADER_SIZE, frame.length - HEADER_SIZE);
+        ByteBuffer.wrap(frame)
+                .putInt(frame.length - HEADER_SIZE)
+                .putInt((int) crc.getValue());
+        return frame;
+    }
+
+    /**
+     * Читает записи из буфера до конца или до первой поврежденной записи.
+     *
+     * @return позиция сразу за последней целой записью
+     */
+    public static int decodeAll(ByteBuffer buffer, Consumer<JournalRecord> consumer) {
+        int valid = buffer.position();
+        CRC32 crc = new CRC32();
+        while (buffer.remaining() >= HEADER_SIZE) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                break;
+            }
+            ByteBuffer payload = buffer.slice(buffer.position(), length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            try {
+                consumer.accept(decode(payload));
+            } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+                break;
+            }
+            buffer.position(buffer.position() + length);
+            valid = buffer.position();
+        }
+        return valid;
+    }
+
+    private static JournalRecord decode(ByteBuffer in) {
+        byte type = in.get();
+        return switch (type) {
+            case USER_PUT -> new JournalRecord.UserPut(in.getLong(), readString(in), readString(in));
+            case USER_DELETED -> new JournalRecord.UserDeleted(in.getLong());
+            case ITEM_PUT -> new JournalRecord.ItemPut(in.getLong(), readString(in), readString(in),
+                    in.get() != 0, in.getLong());
+            case COMMENT_PUT -> new JournalRecord.CommentPut(in.getLong(), in.getLong(), in.getLong(),
+                    readString(in), readString(in), readDate(in));
+            case BOOKING_PUT -> new JournalRecord.BookingPut(in.getLong(), readDate(in), readDate(in),
+                    in.getLong(), in.getLong(), in.getLong(), BookingStatus.values()[in.get()]);
+            case SEQUENCE_VALUE -> new JournalRecord.SequenceValue(readString(in), in.getLong());
+            default -> throw new IllegalArgumentException("Неизвестный тип записи журнала: " + type);
+        };
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0 || length > in.remaining()) {
+            throw new IllegalArgumentException("Некорректная длина строки в журнале: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeDate(DataOutputStream out, LocalDateTime value) throws IOException {
+        out.writeLong(value.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(value.getNano());
+    }
+
+    private static LocalDateTime readDate(ByteBuffer in) {
+        return LocalDateTime.ofEpochSecond(in.getLong(), in.getInt(), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,34 @@
+package ru.practicum.shareit.storage;
+
+import ru.practicum.shareit.booking.model.BookingStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Записи журнала изменений in-memory хранилища. Каждая запись несет полное состояние сущности,
+ * поэтому одни и те же записи используются и в журнале, и в снимке.
+ */
+public sealed interface JournalRecord {
+
+    record UserPut(long id, String name, String email) implements JournalRecord {
+    }
+
+    record UserDeleted(long id) implements JournalRecord {
+    }
+
+    record ItemPut(long id, String name, String description, boolean available, long ownerId)
+            implements JournalRecord {
+    }
+
+    record CommentPut(long id, long itemId, long authorId, String authorName, String text, LocalDateTime created)
+            implements JournalRecord {
+    }
+
+    record BookingPut(long id, LocalDateTime start, LocalDateTime end, long itemId, long ownerId, long bookerId,
+                      BookingStatus status) implements JournalRecord {
+    }
+
+    // последний выданный id, пишется только в снимок: удаленные id не должны выдаваться повторно
+    record SequenceValue(String name, long value) implements JournalRecord {
+    }
+}
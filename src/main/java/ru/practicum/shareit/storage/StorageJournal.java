@@ -0,0 +1,234 @@
+package ru.practicum.shareit.storage;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Журнал изменений (write-ahead log) in-memory хранилища.
+ * Изменения пишутся в сегмент wal-N.log одним потоком: все записи, накопившиеся за время предыдущего fsync,
+ * сбрасываются следующим (group commit), а вызывающий поток ждет, пока его запись окажется на диске.
+ * Изменение одной и той же сущности сериализуется по полосе блокировок, поэтому порядок записей в журнале
+ * совпадает с порядком изменений в памяти.
+ */
+@Slf4j
+@Component
+@Profile("inmemory")
+@EnableConfigurationProperties(StorageJournalProperties.class)
+public class StorageJournal {
+
+    private static final int STRIPES = 64;
+
+    private final StorageJournalProperties properties;
+
+    private final Object[] stripes = new Object[STRIPES];
+
+    // изменения идут под read-lock, снимок переключает сегмент под write-lock
+    private final ReadWriteLock segmentLock = new ReentrantReadWriteLock();
+
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+
+    private final AtomicLong recordsInSegment = new AtomicLong();
+
+    private volatile boolean running;
+
+    private Thread flusher;
+
+    private FileChannel channel;
+
+    public StorageJournal(StorageJournalProperties properties) {
+        this.properties = properties;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    public Path segment(long generation) {
+        return properties.getDirectory().resolve(String.format("wal-%020d.log", generation));
+    }
+
+    public Path snapshot(long generation) {
+        return properties.getDirectory().resolve(String.format("snapshot-%020d.bin", generation));
+    }
+
+    /**
+     * Выполняет изменение хранилища и дожидается, пока соответствующая запись будет сброшена на диск.
+     *
+     * @param key    id изменяемой сущности - изменения с одним ключом не переупорядочиваются
+     * @param record запись журнала, построенная по результату изменения
+     */
+    public <T> T write(long key, Supplier<T> mutation, Function<T, JournalRecord> record) {
+        if (!isEnabled()) {
+            synchronized (stripe(key)) {
+                return mutation.get();
+            }
+        }
+        T result;
+        CompletableFuture<Void> done;
+        segmentLock.readLock().lock();
+        try {
+            synchronized (stripe(key)) {
+                result = mutation.get();
+                done = enqueue(new Pending(JournalCodec.encode(record.apply(result)), 0));
+            }
+        } finally {
+            segmentLock.readLock().unlock();
+        }
+        await(done);
+        return result;
+    }
+
+    public synchronized void start(long generation) throws IOException {
+        channel = open(generation);
+        running = true;
+        flusher = new Thread(this::flushLoop, "storage-journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("Журнал хранилища открыт: {}", segment(generation));
+    }
+
+    /**
+     * Переключает журнал на новый сегмент и под той же блокировкой снимает состояние хранилища:
+     * снимок содержит ровно те изменения, что записаны в сегменты до нового.
+     */
+    public <T> T rotate(long generation, Supplier<T> capture) {
+        segmentLock.writeLock().lock();
+        try {
+            await(enqueue(new Pending(null, generation)));
+            recordsInSegment.set(0);
+            return capture.get();
+        } finally {
+            segmentLock.writeLock().unlock();
+        }
+    }
+
+    public long recordsInSegment() {
+        return recordsInSegment.get();
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException, InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        flusher.join();
+        channel.close();
+        log.info("Журнал хранилища закрыт");
+    }
+
+    private CompletableFuture<Void> enqueue(Pending pending) {
+        if (!running) {
+            throw new IllegalStateException("Журнал хранилища не запущен");
+        }
+        queue.add(pending);
+        return pending.done();
+    }
+
+    private void await(CompletableFuture<Void> done) {
+        try {
+            done.join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Не удалось записать изменение в журнал хранилища", e.getCause());
+        }
+    }
+
+    private Object stripe(long key) {
+        return stripes[Long.hashCode(key) & (STRIPES - 1)];
+    }
+
+    private void flushLoop() {
+        List<Pending> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, properties.getMaxBatchSize() - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Pending> batch) {
+        List<Pending> written = new ArrayList<>(batch.size());
+        try {
+            for (Pending pending : batch) {
+                if (pending.frame() == null) {
+                    force(written);
+                    channel.close();
+                    channel = open(pending.generation());
+                    pending.done().complete(null);
+                    log.debug("Журнал переключен на сегмент {}", pending.generation());
+                } else {
+                    ByteBuffer buffer = ByteBuffer.wrap(pending.frame());
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                    written.add(pending);
+                }
+            }
+            force(written);
+        } catch (IOException e) {
+            log.error("Ошибка записи журнала хранилища", e);
+            for (Pending pending : batch) {
+                pending.done().completeExceptionally(e);
+            }
+        }
+    }
+
+    private void force(List<Pending> written) throws IOException {
+        if (written.isEmpty()) {
+            return;
+        }
+        channel.force(false);
+        recordsInSegment.addAndGet(written.size());
+        for (Pending pending : written) {
+            pending.done().complete(null);
+        }
+        written.clear();
+    }
+
+    private FileChannel open(long generation) throws IOException {
+        return FileChannel.open(segment(generation), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    // frame == null - маркер переключения на сегмент generation
+    private record Pending(byte[] frame, long generation, CompletableFuture<Void> done) {
+        Pending(byte[] frame, long generation) {
+            this(frame, generation, new CompletableFuture<>());
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package ru.practicum.shareit.storage;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "shareit.storage.journal")
+public class StorageJournalProperties {
+
+    private boolean enabled = false;
+
+    private Path directory = Path.of("data", "journal");
+
+    // как часто сворачивать журнал в снимок: время восстановления ограничено этим интервалом
+    private Duration snapshotInterval = Duration.ofMinutes(5);
+
+    // сколько записей максимум сбрасывается на диск одним fsync
+    private int maxBatchSize = 1024;
+}
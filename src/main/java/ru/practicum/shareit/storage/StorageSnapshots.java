@@ -0,0 +1,199 @@
+package ru.practicum.shareit.storage;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.practicum.shareit.booking.repository.BookingInMemoryRepository;
+import ru.practicum.shareit.item.repository.ItemInMemoryRepository;
+import ru.practicum.shareit.user.repository.UserInMemoryRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Восстанавливает in-memory хранилище при старте и периодически сворачивает журнал в снимок.
+ * При старте читается последний снимок (через отображение файла в память) и только те сегменты журнала,
+ * что записаны после него, поэтому время восстановления ограничено интервалом между снимками.
+ */
+@Slf4j
+@Component
+@Profile("inmemory")
+@ConditionalOnProperty(prefix = "shareit.storage.journal", name = "enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class StorageSnapshots {
+
+    private static final Pattern SEGMENT = Pattern.compile("wal-(\\d{20})\\.log");
+    private static final Pattern SNAPSHOT = Pattern.compile("snapshot-(\\d{20})\\.bin");
+
+    private final StorageJournalProperties properties;
+    private final StorageJournal journal;
+    private final UserInMemoryRepository userRepository;
+    private final ItemInMemoryRepository itemRepository;
+    private final BookingInMemoryRepository bookingRepository;
+
+    private ScheduledExecutorService scheduler;
+
+    private long generation;
+
+    @PostConstruct
+    public void recover() throws IOException {
+        Files.createDirectories(properties.getDirectory());
+        long snapshotGeneration = latest(SNAPSHOT);
+        if (snapshotGeneration > 0) {
+            int records = read(journal.snapshot(snapshotGeneration), false);
+            log.info("Загружен снимок хранилища {}: {} записей", snapshotGeneration, records);
+        }
+        generation = snapshotGeneration;
+        for (long segment : generations(SEGMENT)) {
+            if (segment < snapshotGeneration) {
+                continue;
+            }
+            int records = read(journal.segment(segment), true);
+            log.info("Из журнала {} повторено {} изменений", segment, records);
+            generation = Math.max(generation, segment);
+        }
+        generation++;
+        journal.start(generation);
+
+        long interval = properties.getSnapshotInterval().toMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "storage-snapshots");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::snapshotIfChanged, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        snapshotIfChanged();
+    }
+
+    public synchronized void snapshot() {
+        long next = generation + 1;
+        List<JournalRecord> state = journal.rotate(next, () -> {
+            List<JournalRecord> records = new ArrayList<>();
+            userRepository.snapshot(records::add);
+            itemRepository.snapshot(records::add);
+            bookingRepository.snapshot(records::add);
+            return records;
+        });
+        generation = next;
+        try {
+            write(journal.snapshot(next), state);
+            deleteOlderThan(next);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось записать снимок хранилища", e);
+        }
+        log.info("Записан снимок хранилища {}: {} записей", next, state.size());
+    }
+
+    private void snapshotIfChanged() {
+        try {
+            if (journal.recordsInSegment() > 0) {
+                snapshot();
+            }
+        } catch (RuntimeException e) {
+            log.error("Ошибка при создании снимка хранилища", e);
+        }
+    }
+
+    private void apply(JournalRecord record) {
+        switch (record) {
+            case JournalRecord.UserPut user -> userRepository.restore(user);
+            case JournalRecord.UserDeleted user -> userRepository.restore(user);
+            case JournalRecord.ItemPut item -> itemRepository.restore(item);
+            case JournalRecord.CommentPut comment -> itemRepository.restore(comment);
+            case JournalRecord.BookingPut booking -> bookingRepository.restore(booking);
+            case JournalRecord.SequenceValue sequence -> {
+                userRepository.restore(sequence);
+                itemRepository.restore(sequence);
+                bookingRepository.restore(sequence);
+            }
+        }
+    }
+
+    private int read(Path file, boolean truncateTail) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            if (size == 0) {
+                return 0;
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int[] records = {0};
+            int valid = JournalCodec.decodeAll(buffer, record -> {
+                apply(record);
+                records[0]++;
+            });
+            if (valid < size && truncateTail) {
+                log.warn("Журнал {} оборван после {} байт из {} - хвост отброшен", file, valid, size);
+                channel.truncate(valid);
+            }
+            return records[0];
+        }
+    }
+
+    private void write(Path target, List<JournalRecord> state) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (JournalRecord record : state) {
+                ByteBuffer buffer = ByteBuffer.wrap(JournalCodec.encode(record));
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void deleteOlderThan(long generation) throws IOException {
+        for (long segment : generations(SEGMENT)) {
+            if (segment < generation) {
+                Files.deleteIfExists(journal.segment(segment));
+            }
+        }
+        for (long snapshot : generations(SNAPSHOT)) {
+            if (snapshot < generation) {
+                Files.deleteIfExists(journal.snapshot(snapshot));
+            }
+        }
+    }
+
+    private long latest(Pattern pattern) throws IOException {
+        List<Long> generations = generations(pattern);
+        return generations.isEmpty() ? 0 : generations.getLast();
+    }
+
+    private List<Long> generations(Pattern pattern) throws IOException {
+        try (Stream<Path> files = Files.list(properties.getDirectory())) {
+            return files
+                    .map(file -> pattern.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(matcher -> Long.parseLong(matcher.group(1)))
+                    .sorted()
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package ru.practicum.shareit.sync;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+
+/**
+ * Строка ленты изменений: измененная сущность или надгробие удаленной. Ленты упорядочены по (at, kind, id).
+ */
+public record Change(LocalDateTime at, ChangeKind kind, long id, Object row) {
+
+    public static final Comparator<Change> ORDER = Comparator.comparing(Change::at)
+            .thenComparing(Change::kind)
+            .thenComparingLong(Change::id);
+}
@@ -0,0 +1,146 @@
+package ru.practicum.shareit.sync;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.exceptions.SyncWatermarkExpiredException;
+import ru.practicum.shareit.sharding.Shards;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Общая часть лент изменений вещей и бронирований: разбор водяного знака, верхняя граница выборки,
+ * надгробия удаленных строк и их очистка по сроку хранения.
+ * Сами ленты выбирают строки по индексам (владелец или арендатор, updated_at, id) от водяного знака, поэтому
+ * объем синхронизации зависит от числа изменений, а не от числа строк пользователя.
+ */
+@Slf4j
+@Component
+@Profile("!inmemory")
+@EnableConfigurationProperties(SyncProperties.class)
+public class ChangeFeed {
+
+    private final SyncProperties properties;
+    private final TombstoneRepository tombstoneRepository;
+    private final Shards shards;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter purged;
+
+    private ScheduledExecutorService scheduler;
+
+    public ChangeFeed(SyncProperties properties, TombstoneRepository tombstoneRepository, Shards shards,
+                      PlatformTransactionManager transactionManager, MeterRegistry registry) {
+        this.properties = properties;
+        this.tombstoneRepository = tombstoneRepository;
+        this.shards = shards;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.purged = Counter.builder("shareit.sync.tombstones.purged")
+                .description("Надгробия, удаленные по сроку хранения")
+                .register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        long interval = properties.getPurgeInterval().toMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tombstone-purge");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::purgeSafely, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Курсор из водяного знака клиента. Знак старше срока хранения надгробий отклоняется: удаления,
+     * случившиеся после него, могли уже стереться.
+     */
+    public SyncCursor cursor(String since) {
+        SyncCursor cursor = SyncCursor.parse(since);
+        if (cursor != SyncCursor.START
+                && cursor.since().isBefore(LocalDateTime.now().minus(properties.getTombstoneRetention()))) {
+            throw new SyncWatermarkExpiredException("Водяной знак " + since + " устарел, загрузите списки " +
+                    "заново и синхронизируйтесь без since");
+        }
+        return cursor;
+    }
+
+    // с точностью водяного знака: граница последней страницы становится следующим since
+    public LocalDateTime until() {
+        return LocalDateTime.now().minus(properties.getSettleLag()).truncatedTo(ChronoUnit.MICROS);
+    }
+
+    public List<Change> deletedForOwner(Long userId, ChangeKind kind, SyncCursor after, LocalDateTime until,
+                                        Limit limit) {
+        return tombstoneRepository.findOwnerChanges(userId, kind, after.since(), after.afterId(kind), until, limit)
+                .stream()
+                .map(ChangeFeed::toChange)
+                .toList();
+    }
+
+    public List<Change> deletedForBooker(Long userId, ChangeKind kind, SyncCursor after, LocalDateTime until,
+                                         Limit limit) {
+        return tombstoneRepository.findBookerChanges(userId, kind, after.since(), after.afterId(kind), until, limit)
+                .stream()
+                .map(ChangeFeed::toChange)
+                .toList();
+    }
+
+    /**
+     * Удаляет надгробия старше срока хранения на всех шардах порциями по purgeChunkSize, каждая в своей
+     * транзакции. Возвращает число удаленных.
+     */
+    public int purge() {
+        LocalDateTime before = LocalDateTime.now().minus(properties.getTombstoneRetention());
+        int total = shards.sumOverShards(() -> purgeShard(before));
+        if (total > 0) {
+            log.info("Удалено {} надгробий старше {}", total, before);
+        }
+        return total;
+    }
+
+    private int purgeShard(LocalDateTime before) {
+        int total = 0;
+        Integer deleted;
+        do {
+            deleted = transactionTemplate.execute(status -> {
+                List<Long> ids = tombstoneRepository.findIdsDeletedBefore(before,
+                        Limit.of(properties.getPurgeChunkSize()));
+                return ids.isEmpty() ? 0 : tombstoneRepository.deleteByIds(ids);
+            });
+            deleted = deleted == null ? 0 : deleted;
+            purged.increment(deleted);
+            total += deleted;
+        } while (deleted == properties.getPurgeChunkSize());
+        return total;
+    }
+
+    private void purgeSafely() {
+        try {
+            purge();
+        } catch (RuntimeException e) {
+            log.error("Ошибка при очистке надгробий", e);
+        }
+    }
+
+    private static Change toChange(Tombstone tombstone) {
+        return new Change(tombstone.getDeletedAt(), tombstone.getKind(), tombstone.getEntityId(), tombstone);
+    }
+}
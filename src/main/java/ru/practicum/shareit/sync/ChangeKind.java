@@ -0,0 +1,14 @@
+package ru.practicum.shareit.sync;
+
+/**
+ * Виды строк в лентах изменений. Порядок констант - порядок строк с одинаковым моментом изменения,
+ * поэтому новые виды добавляются только в конец.
+ */
+public enum ChangeKind {
+    ITEM,
+    COMMENT,
+    BOOKING,
+    ITEM_DELETED,
+    COMMENT_DELETED,
+    BOOKING_DELETED
+}
@@ -0,0 +1,58 @@
+package ru.practicum.shareit.sync;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Страница ленты изменений. Собирается из выборок по видам строк: каждая выборка - не больше size + 1 строк
+ * после курсора в порядке ключа, поэтому первые size + 1 строк объединения в них точно попали.
+ * На последней странице водяной знак сдвигается к верхней границе выборки until: иначе у пользователя
+ * без свежих изменений знак оставался бы старым и через срок хранения надгробий отклонялся бы.
+ */
+public record ChangePage(List<Change> changes, String watermark, boolean hasMore) {
+
+    public static ChangePage of(Collection<Change> candidates, int size, SyncCursor after, LocalDateTime until) {
+        List<Change> sorted = new ArrayList<>(candidates);
+        sorted.sort(Change.ORDER);
+        List<Change> page = new ArrayList<>(Math.min(size, sorted.size()));
+        Change previous = null;
+        boolean hasMore = false;
+        for (Change change : sorted) {
+            // бронирование приходит и из выборки арендатора, и из выборки владельца
+            if (previous != null && previous.kind() == change.kind() && previous.id() == change.id()) {
+                continue;
+            }
+            if (page.size() == size) {
+                hasMore = true;
+                break;
+            }
+            page.add(change);
+            previous = change;
+        }
+        SyncCursor next;
+        if (hasMore) {
+            next = SyncCursor.of(page.get(page.size() - 1));
+        } else if (until.isAfter(after.since())) {
+            next = SyncCursor.upTo(until);
+        } else {
+            next = after;
+        }
+        return new ChangePage(page, next.toString(), hasMore);
+    }
+
+    public <T> List<T> rows(ChangeKind kind, Class<T> type) {
+        return changes.stream()
+                .filter(change -> change.kind() == kind)
+                .map(change -> type.cast(change.row()))
+                .toList();
+    }
+
+    public List<Long> ids(ChangeKind kind) {
+        return changes.stream()
+                .filter(change -> change.kind() == kind)
+                .map(Change::id)
+                .toList();
+    }
+}
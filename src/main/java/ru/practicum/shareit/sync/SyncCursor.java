@@ -0,0 +1,68 @@
+package ru.practicum.shareit.sync;
+
+import ru.practicum.shareit.exceptions.MissedSmthException;
+
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Locale;
+
+/**
+ * Водяной знак синхронизации - позиция последней выданной строки ленты или, после последней страницы,
+ * верхняя граница просмотренного диапазона. Клиент получает его строкой
+ * вида микросекунды.вид.id и без изменений передает в since следующего запроса.
+ */
+public record SyncCursor(LocalDateTime since, ChangeKind kind, long id) {
+
+    private static final long MICROS_PER_SECOND = 1_000_000L;
+
+    // первая синхронизация: все строки ленты
+    public static final SyncCursor START = new SyncCursor(LocalDateTime.of(1970, 1, 1, 0, 0), ChangeKind.ITEM,
+            Long.MIN_VALUE);
+
+    public static SyncCursor of(Change change) {
+        return new SyncCursor(change.at(), change.kind(), change.id());
+    }
+
+    // выданы все строки раньше until, строки в самый момент until - еще нет
+    public static SyncCursor upTo(LocalDateTime until) {
+        return new SyncCursor(until, ChangeKind.ITEM, Long.MIN_VALUE);
+    }
+
+    public static SyncCursor parse(String value) {
+        if (value == null || value.isBlank()) {
+            return START;
+        }
+        String[] parts = value.split("\\.");
+        try {
+            if (parts.length != 3) {
+                throw new IllegalArgumentException();
+            }
+            long micros = Long.parseLong(parts[0]);
+            LocalDateTime since = LocalDateTime.ofEpochSecond(Math.floorDiv(micros, MICROS_PER_SECOND),
+                    (int) Math.floorMod(micros, MICROS_PER_SECOND) * 1000, ZoneOffset.UTC);
+            return new SyncCursor(since, ChangeKind.valueOf(parts[1].toUpperCase(Locale.ROOT)),
+                    Long.parseLong(parts[2]));
+        } catch (IllegalArgumentException | DateTimeException e) {
+            throw new MissedSmthException("Некорректный водяной знак синхронизации: " + value);
+        }
+    }
+
+    /**
+     * Нижняя граница id для ключа (updated_at, id) строк вида kind: виды раньше курсора в том же моменте
+     * уже выданы целиком, позже - еще не выдавались.
+     */
+    public long afterId(ChangeKind kind) {
+        int order = kind.compareTo(this.kind);
+        if (order < 0) {
+            return Long.MAX_VALUE;
+        }
+        return order == 0 ? id : Long.MIN_VALUE;
+    }
+
+    @Override
+    public String toString() {
+        long micros = since.toEpochSecond(ZoneOffset.UTC) * MICROS_PER_SECOND + since.getNano() / 1000;
+        return micros + "." + kind.name().toLowerCase(Locale.ROOT) + "." + id;
+    }
+}
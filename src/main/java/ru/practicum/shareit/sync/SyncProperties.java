@@ -0,0 +1,23 @@
+package ru.practicum.shareit.sync;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "shareit.sync")
+public class SyncProperties {
+
+    // ленты отдают только строки старше этого запаса: транзакция, начатая раньше, успевает зафиксироваться,
+    // и строка с более ранним updated_at не появится позади уже выданного водяного знака
+    private Duration settleLag = Duration.ofSeconds(5);
+
+    // сколько хранятся надгробия; клиент с более старым водяным знаком загружает списки заново
+    private Duration tombstoneRetention = Duration.ofDays(30);
+
+    private Duration purgeInterval = Duration.ofHours(1);
+
+    // надгробий в одной транзакции очистки
+    private int purgeChunkSize = 1000;
+}
@@ -0,0 +1,42 @@
+package ru.practicum.shareit.sync;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * След удаленной вещи, комментария или бронирования для лент изменений. Лежит на шарде удаленной строки
+ * и хранится shareit.sync.tombstone-retention.
+ */
+@Entity
+@Table(name = "tombstones")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@EqualsAndHashCode(of = "id")
+public class Tombstone {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "kind", nullable = false, length = 20)
+    private ChangeKind kind;
+
+    @Column(name = "entity_id", nullable = false)
+    private Long entityId;
+
+    // владелец вещи: его лента вещей и бронирований
+    @Column(name = "owner_id", nullable = false)
+    private Long ownerId;
+
+    // автор удаленного бронирования, у вещей и комментариев пусто
+    @Column(name = "booker_id")
+    private Long bookerId;
+
+    @Column(name = "deleted_at", nullable = false)
+    private LocalDateTime deletedAt;
+}
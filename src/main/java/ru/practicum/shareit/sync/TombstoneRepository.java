@@ -0,0 +1,43 @@
+package ru.practicum.shareit.sync;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface TombstoneRepository extends JpaRepository<Tombstone, Long> {
+
+    @Query("SELECT t FROM Tombstone t " +
+            "WHERE t.ownerId = :userId AND t.kind = :kind " +
+            "AND (t.deletedAt, t.entityId) > (:since, :afterId) AND t.deletedAt < :until " +
+            "ORDER BY t.deletedAt, t.entityId")
+    List<Tombstone> findOwnerChanges(@Param("userId") Long userId,
+                                     @Param("kind") ChangeKind kind,
+                                     @Param("since") LocalDateTime since,
+                                     @Param("afterId") long afterId,
+                                     @Param("until") LocalDateTime until,
+                                     Limit limit);
+
+    @Query("SELECT t FROM Tombstone t " +
+            "WHERE t.bookerId = :userId AND t.kind = :kind " +
+            "AND (t.deletedAt, t.entityId) > (:since, :afterId) AND t.deletedAt < :until " +
+            "ORDER BY t.deletedAt, t.entityId")
+    List<Tombstone> findBookerChanges(@Param("userId") Long userId,
+                                      @Param("kind") ChangeKind kind,
+                                      @Param("since") LocalDateTime since,
+                                      @Param("afterId") long afterId,
+                                      @Param("until") LocalDateTime until,
+                                      Limit limit);
+
+    @Query("SELECT t.id FROM Tombstone t WHERE t.deletedAt < :before ORDER BY t.id")
+    List<Long> findIdsDeletedBefore(@Param("before") LocalDateTime before, Limit limit);
+
+    @Modifying
+    @Query("DELETE FROM Tombstone t WHERE t.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+}
@@ -7,6 +7,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
 import ru.practicum.shareit.user.dto.CreateUserDto;
 import ru.practicum.shareit.user.dto.UpdateUserDto;
+import ru.practicum.shareit.user.dto.UserDeletionDto;
 import ru.practicum.shareit.user.dto.UserDto;
 import ru.practicum.shareit.user.service.UserService;
 
@@ -30,7 +31,8 @@ public class UserController {
     @PatchMapping("/{userId}")
     public UpdateUserDto update(@PathVariable @Positive Long userId,
                                 @Valid @RequestBody UpdateUserDto user) {
-        log.debug("Начато обновление объекта пользователя. Получен объект {} c id {}", user, userId);
+        log.atDebug().addArgument(user).addArgument(userId)
+                .log("Начато обновление объекта пользователя. Получен объект {} c id {}");
         user.setId(userId);
         return userService.update(user);
     }
@@ -46,4 +48,10 @@ public class UserController {
         log.debug("Начато удаление пользователя с id {}", userId);
         return userService.delete(userId);
     }
+
+    @GetMapping("/{userId}/deletion")
+    public UserDeletionDto getDeletion(@PathVariable @Positive Long userId) {
+        log.debug("Начат возврат хода удаления пользователя с id {}", userId);
+        return userService.getDeletion(userId);
+    }
 }
@@ -0,0 +1,191 @@
+package ru.practicum.shareit.user.deletion;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.sharding.Shards;
+import ru.practicum.shareit.user.model.User;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Удаляет данные мягко удаленных пользователей. Шаги идут в порядке внешних ключей, каждый на всех шардах;
+ * порция - короткая транзакция не больше чем на chunkSize строк, поэтому тяжелый пользователь не держит
+ * блокировки на горячих таблицах. Шаги повторяемы: после сбоя или исчерпания maxChunksPerRun следующий
+ * запуск начинает сначала, а уже пройденные шаги находят пустые выборки по индексам.
+ * Счетчики удаленных строк копятся в user_deletions, там же видно завершение.
+ */
+@Slf4j
+@Component
+@Profile("!inmemory")
+@EnableConfigurationProperties(UserDeletionProperties.class)
+public class UserDeletionJob {
+
+    private enum Step {
+        COMMENTS_BY_USER,
+        COMMENTS_ON_ITEMS,
+        BOOKINGS_BY_USER,
+        BOOKINGS_ON_ITEMS,
+        ANSWERS,
+        ITEMS,
+        REQUESTS
+    }
+
+    private final UserDeletionProperties properties;
+    private final UserDeletionRepository repository;
+    private final Shards shards;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+    private final Counter chunks;
+    private final Counter completed;
+
+    private ScheduledExecutorService scheduler;
+
+    public UserDeletionJob(UserDeletionProperties properties, UserDeletionRepository repository, Shards shards,
+                           PlatformTransactionManager transactionManager, EntityManagerFactory entityManagerFactory,
+                           MeterRegistry registry) {
+        this.properties = properties;
+        this.repository = repository;
+        this.shards = shards;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.entityManagerFactory = entityManagerFactory;
+        this.chunks = Counter.builder("shareit.users.deletion.chunks")
+                .description("Порции, обработанные задачей удаления данных пользователей")
+                .register(registry);
+        this.completed = Counter.builder("shareit.users.deletion.completed")
+                .description("Пользователи, чьи данные удалены полностью")
+                .register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        long interval = properties.getInterval().toMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-deletion");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::runSafely, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Один запуск: не больше usersPerRun пользователей, на каждого не больше maxChunksPerRun непустых порций.
+     * Возвращает число пользователей, удаление которых завершилось.
+     */
+    public int run() {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> pending = shards.on(Shards.DIRECTORY, () -> repository.findPending(now,
+                properties.getUsersPerRun()));
+        int done = 0;
+        for (Long userId : pending) {
+            boolean leased = shards.on(Shards.DIRECTORY, () -> repository.lease(userId, now,
+                    now.plus(properties.getLease())));
+            if (leased && purge(userId)) {
+                done++;
+            }
+        }
+        return done;
+    }
+
+    private boolean purge(Long userId) {
+        Map<Step, Integer> removed = new EnumMap<>(Step.class);
+        int chunksLeft = properties.getMaxChunksPerRun();
+        try {
+            for (Step step : Step.values()) {
+                for (int shard = 0; shard < shards.count(); shard++) {
+                    int target = shard;
+                    List<Long> ids;
+                    do {
+                        if (chunksLeft == 0) {
+                            log.debug("Удаление данных пользователя {} продолжится в следующем запуске", userId);
+                            return false;
+                        }
+                        ids = shards.on(target, () -> transactionTemplate.execute(status -> chunk(step, userId)));
+                        if (ids.isEmpty()) {
+                            // пустая выборка по индексу ничего не меняет и бюджет не тратит, иначе повторные
+                            // проходы по уже пройденным шагам съедали бы его целиком
+                            break;
+                        }
+                        chunksLeft--;
+                        chunks.increment();
+                        removed.merge(step, ids.size(), Integer::sum);
+                        // кэш второго уровня чистится после фиксации, иначе параллельное чтение вернет в него строку
+                        if (step == Step.ANSWERS || step == Step.ITEMS) {
+                            ids.forEach(id -> entityManagerFactory.getCache().evict(Item.class, id));
+                        }
+                    } while (ids.size() == properties.getChunkSize());
+                }
+            }
+            shards.on(Shards.DIRECTORY, () -> transactionTemplate.execute(status -> {
+                repository.deleteUser(userId);
+                repository.complete(userId, LocalDateTime.now());
+                return null;
+            }));
+            shards.userPurged(userId);
+            entityManagerFactory.getCache().evict(User.class, userId);
+            completed.increment();
+            log.info("Данные пользователя {} удалены", userId);
+            return true;
+        } finally {
+            shards.on(Shards.DIRECTORY, () -> {
+                repository.release(userId, removed(removed, Step.COMMENTS_BY_USER, Step.COMMENTS_ON_ITEMS),
+                        removed(removed, Step.BOOKINGS_BY_USER, Step.BOOKINGS_ON_ITEMS),
+                        removed(removed, Step.ITEMS), removed(removed, Step.REQUESTS));
+                return null;
+            });
+        }
+    }
+
+    // момент удаления берется на каждую порцию: надгробие не должно оказаться позади выданного водяного знака
+    private List<Long> chunk(Step step, Long userId) {
+        int size = properties.getChunkSize();
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        return switch (step) {
+            case COMMENTS_BY_USER -> repository.deleteCommentsByAuthor(userId, size, now);
+            case COMMENTS_ON_ITEMS -> repository.deleteCommentsOnItemsOf(userId, size, now);
+            case BOOKINGS_BY_USER -> repository.deleteBookingsByBooker(userId, size, now);
+            case BOOKINGS_ON_ITEMS -> repository.deleteBookingsOnItemsOf(userId, size, now);
+            case ANSWERS -> repository.detachAnswers(userId, size, now);
+            case ITEMS -> repository.deleteItems(userId, size);
+            case REQUESTS -> repository.deleteRequests(userId, size);
+        };
+    }
+
+    private static long removed(Map<Step, Integer> removed, Step... steps) {
+        long total = 0;
+        for (Step step : steps) {
+            total += removed.getOrDefault(step, 0);
+        }
+        return total;
+    }
+
+    private void runSafely() {
+        try {
+            run();
+        } catch (RuntimeException e) {
+            log.error("Ошибка при удалении данных пользователей", e);
+        }
+    }
+}
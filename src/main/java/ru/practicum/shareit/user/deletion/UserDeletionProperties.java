@@ -0,0 +1,24 @@
+package ru.practicum.shareit.user.deletion;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties(prefix = "shareit.user-deletion")
+public class UserDeletionProperties {
+
+    private Duration interval = Duration.ofSeconds(10);
+
+    // строк в одной транзакции
+    private int chunkSize = 500;
+
+    // порций на одного пользователя за запуск, остаток удалится в следующий
+    private int maxChunksPerRun = 200;
+
+    private int usersPerRun = 10;
+
+    // на это время узел забирает удаление себе; упавший узел отпускает его по истечении срока
+    private Duration lease = Duration.ofMinutes(5);
+}
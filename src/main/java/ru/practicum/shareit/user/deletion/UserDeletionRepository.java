@@ -0,0 +1,170 @@
+package ru.practicum.shareit.user.deletion;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.practicum.shareit.user.dto.UserDeletionDto;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Таблица user_deletions и порции удаления данных пользователя. Каждая порция выбирает не больше limit id
+ * по индексу, пишет надгробия для лент синхронизации других пользователей и удаляет строки по id.
+ * Порядок внутри выборки не важен: выбранные строки удаляются или отвязываются, следующая порция берет оставшиеся,
+ * поэтому сортировки нет и база не упорядочивает весь остаток пользователя на каждой порции.
+ * Запросы идут на шард, к которому привязан текущий поток.
+ */
+@Repository
+@Profile("!inmemory")
+@RequiredArgsConstructor
+public class UserDeletionRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void create(Long userId, LocalDateTime requestedAt) {
+        jdbcTemplate.update("INSERT INTO user_deletions (user_id, requested_at) VALUES (?, ?)", userId,
+                Timestamp.valueOf(requestedAt));
+    }
+
+    public Optional<UserDeletionDto> find(Long userId) {
+        return jdbcTemplate.query("SELECT user_id, requested_at, completed_at, comments, bookings, items, requests " +
+                        "FROM user_deletions WHERE user_id = ?",
+                (rs, rowNum) -> {
+                    Timestamp completed = rs.getTimestamp(3);
+                    return UserDeletionDto.builder()
+                            .userId(rs.getLong(1))
+                            .requestedAt(rs.getTimestamp(2).toLocalDateTime())
+                            .completedAt(completed == null ? null : completed.toLocalDateTime())
+                            .deletedComments(rs.getLong(4))
+                            .deletedBookings(rs.getLong(5))
+                            .deletedItems(rs.getLong(6))
+                            .deletedRequests(rs.getLong(7))
+                            .build();
+                }, userId).stream().findFirst();
+    }
+
+    List<Long> findPending(LocalDateTime now, int limit) {
+        return jdbcTemplate.queryForList("SELECT user_id FROM user_deletions WHERE completed_at IS NULL " +
+                        "AND (leased_until IS NULL OR leased_until < ?) ORDER BY requested_at, user_id LIMIT ?",
+                Long.class, Timestamp.valueOf(now), limit);
+    }
+
+    // false, если удаление уже забрал другой узел
+    boolean lease(Long userId, LocalDateTime now, LocalDateTime until) {
+        return jdbcTemplate.update("UPDATE user_deletions SET leased_until = ? WHERE user_id = ? " +
+                        "AND completed_at IS NULL AND (leased_until IS NULL OR leased_until < ?)",
+                Timestamp.valueOf(until), userId, Timestamp.valueOf(now)) == 1;
+    }
+
+    // дописывает счетчики запуска и отпускает аренду, чтобы незавершенное удаление продолжилось в следующем запуске
+    void release(Long userId, long comments, long bookings, long items, long requests) {
+        jdbcTemplate.update("UPDATE user_deletions SET comments = comments + ?, bookings = bookings + ?, " +
+                "items = items + ?, requests = requests + ?, leased_until = NULL WHERE user_id = ?", comments,
+                bookings, items, requests, userId);
+    }
+
+    void complete(Long userId, LocalDateTime completedAt) {
+        jdbcTemplate.update("UPDATE user_deletions SET completed_at = ? WHERE user_id = ?",
+                Timestamp.valueOf(completedAt), userId);
+    }
+
+    List<Long> deleteCommentsByAuthor(Long userId, int limit, LocalDateTime deletedAt) {
+        return deleteComments("c.author_id = ?", userId, limit, deletedAt);
+    }
+
+    List<Long> deleteCommentsOnItemsOf(Long userId, int limit, LocalDateTime deletedAt) {
+        return deleteComments("c.item_id IN (SELECT i.id FROM items i WHERE i.owner_id = ?)", userId, limit,
+                deletedAt);
+    }
+
+    List<Long> deleteBookingsByBooker(Long userId, int limit, LocalDateTime deletedAt) {
+        return deleteBookings("booker_id = ?", userId, limit, deletedAt);
+    }
+
+    List<Long> deleteBookingsOnItemsOf(Long userId, int limit, LocalDateTime deletedAt) {
+        return deleteBookings("owner_id = ?", userId, limit, deletedAt);
+    }
+
+    // вещи других пользователей, ответившие на запросы удаляемого, остаются, но без ссылки на запрос
+    List<Long> detachAnswers(Long userId, int limit, LocalDateTime updatedAt) {
+        List<Long> ids = jdbcTemplate.queryForList("SELECT i.id FROM items i WHERE i.request_id IN " +
+                        "(SELECT r.id FROM requests r WHERE r.requestor_id = ?) LIMIT ?", Long.class,
+                userId, limit);
+        if (!ids.isEmpty()) {
+            jdbcTemplate.update("UPDATE items SET request_id = NULL, updated_at = ? WHERE id IN (" + in(ids) + ")",
+                    args(Timestamp.valueOf(updatedAt), ids));
+        }
+        return ids;
+    }
+
+    // к этому шагу бронирования и комментарии вещей уже удалены, остаются рейтинг и посуточные итоги
+    List<Long> deleteItems(Long userId, int limit) {
+        List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM items WHERE owner_id = ? LIMIT ?",
+                Long.class, userId, limit);
+        if (!ids.isEmpty()) {
+            String in = in(ids);
+            jdbcTemplate.update("DELETE FROM item_popularity WHERE item_id IN (" + in + ")", ids.toArray());
+            jdbcTemplate.update("DELETE FROM booking_daily_rollup WHERE item_id IN (" + in + ")", ids.toArray());
+            jdbcTemplate.update("DELETE FROM items WHERE id IN (" + in + ")", ids.toArray());
+        }
+        return ids;
+    }
+
+    List<Long> deleteRequests(Long userId, int limit) {
+        List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM requests WHERE requestor_id = ? LIMIT ?",
+                Long.class, userId, limit);
+        if (!ids.isEmpty()) {
+            jdbcTemplate.update("DELETE FROM requests WHERE id IN (" + in(ids) + ")", ids.toArray());
+        }
+        return ids;
+    }
+
+    void deleteUser(Long userId) {
+        jdbcTemplate.update("DELETE FROM users WHERE id = ?", userId);
+    }
+
+    // надгробие уходит в ленту владельца вещи
+    private List<Long> deleteComments(String condition, Long userId, int limit, LocalDateTime deletedAt) {
+        List<Long> ids = jdbcTemplate.queryForList("SELECT c.id FROM comments c WHERE " + condition +
+                " LIMIT ?", Long.class, userId, limit);
+        if (!ids.isEmpty()) {
+            String in = in(ids);
+            jdbcTemplate.update("INSERT INTO tombstones (kind, entity_id, owner_id, deleted_at) " +
+                    "SELECT 'COMMENT_DELETED', c.id, i.owner_id, ? FROM comments c JOIN items i ON i.id = c.item_id " +
+                    "WHERE c.id IN (" + in + ")", args(Timestamp.valueOf(deletedAt), ids));
+            jdbcTemplate.update("DELETE FROM comments WHERE id IN (" + in + ")", ids.toArray());
+        }
+        return ids;
+    }
+
+    // надгробие уходит в ленты и владельца вещи, и арендатора
+    private List<Long> deleteBookings(String condition, Long userId, int limit, LocalDateTime deletedAt) {
+        List<Long> ids = jdbcTemplate.queryForList("SELECT id FROM bookings WHERE " + condition +
+                " LIMIT ?", Long.class, userId, limit);
+        if (!ids.isEmpty()) {
+            String in = in(ids);
+            jdbcTemplate.update("INSERT INTO tombstones (kind, entity_id, owner_id, booker_id, deleted_at) " +
+                    "SELECT 'BOOKING_DELETED', id, owner_id, booker_id, ? FROM bookings WHERE id IN (" + in + ")",
+                    args(Timestamp.valueOf(deletedAt), ids));
+            jdbcTemplate.update("DELETE FROM bookings WHERE id IN (" + in + ")", ids.toArray());
+        }
+        return ids;
+    }
+
+    private static String in(List<Long> ids) {
+        return String.join(", ", Collections.nCopies(ids.size(), "?"));
+    }
+
+    private static Object[] args(Object first, List<Long> ids) {
+        List<Object> args = new ArrayList<>(ids.size() + 1);
+        args.add(first);
+        args.addAll(ids);
+        return args.toArray();
+    }
+}
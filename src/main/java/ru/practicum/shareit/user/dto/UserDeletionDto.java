@@ -0,0 +1,22 @@
+package ru.practicum.shareit.user.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ход удаления данных пользователя: completedAt пуст, пока фоновая задача не удалит все строки.
+ */
+@Data
+@Builder
+public class UserDeletionDto {
+
+    private Long userId;
+    private LocalDateTime requestedAt;
+    private LocalDateTime completedAt;
+    private long deletedComments;
+    private long deletedBookings;
+    private long deletedItems;
+    private long deletedRequests;
+}
@@ -2,12 +2,18 @@ package ru.practicum.shareit.user.model;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import ru.practicum.shareit.config.EntityCacheConfig;
+
+import java.time.LocalDateTime;
 
 /**
  * TODO Sprint add-controllers.
  */
 
 @Entity
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = EntityCacheConfig.USERS_REGION)
 @Table(name = "users")
 @Data
 @NoArgsConstructor
@@ -25,4 +31,12 @@ public class User {
 
     @Column(name = "email", nullable = false, unique = true, length = 512)
     private String email;
+
+    @Column(name = "deleted_at")
+    private LocalDateTime deletedAt;
+    //момент мягкого удаления: пользователь уже не виден сервисам, его данные удаляет UserDeletionJob
+
+    public boolean isDeleted() {
+        return deletedAt != null;
+    }
 }
@@ -1,88 +1,159 @@
 package ru.practicum.shareit.user.repository;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Repository;
 import ru.practicum.shareit.exceptions.DataNotFoundException;
 import ru.practicum.shareit.exceptions.DuplicateEmailException;
+import ru.practicum.shareit.storage.JournalRecord;
+import ru.practicum.shareit.storage.StorageJournal;
 import ru.practicum.shareit.user.model.User;
 
-import java.util.HashMap;
 import java.util.Map;
-import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
-@Deprecated
+/**
+ * Потокобезопасное хранилище пользователей для профиля inmemory.
+ * Уникальность email проверяется по индексу email -> id за O(1), в хранилище лежат копии объектов.
+ */
 @Slf4j
 @Repository
+@Profile("inmemory")
+@RequiredArgsConstructor
 public class UserInMemoryRepository {
 
-    private final Map<Long, User> userStorage = new HashMap<>();
+    private static final String SEQUENCE = "users";
 
-    private long generatedId = 0;
+    private final Map<Long, User> userStorage = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> emailIndex = new ConcurrentHashMap<>();
+
+    private final AtomicLong generatedId = new AtomicLong();
+
+    private final StorageJournal journal;
 
 
     public User create(User user) {
-        user.setId(++generatedId);
-        userStorage.put(user.getId(), user);
+        long id = generatedId.incrementAndGet();
+        User newUser = journal.write(id, () -> {
+            reserveEmail(user.getEmail(), id);
+            User created = copy(user);
+            created.setId(id);
+            userStorage.put(id, created);
+            return created;
+        }, this::toRecord);
         log.debug("Объект пользователя добавлен в хранилище");
-        return user;
+        return copy(newUser);
     }
 
 
     public User update(User user) {
-        log.debug("Проверяем, что пользовательский email уникален");
-        emailValidation(user.getEmail());
-        if (user.getEmail() == null) {
-            log.debug("Отсутствует почта - обновляем только имя");
-            userStorage.get(user.getId()).setName(user.getName());
-            return userStorage.get(user.getId());
-        }
-        if (user.getName() == null) {
-            log.debug("Отсутствует имя - обновляем только почту");
-            //Данный функционал на мой взгляд более верный, чем тот, что ожидает Постман.
-            //log.debug("Проверяем, что пользователь указал тот же email, а если он отличается, то проверим на уникальность");
-            //updatedEmailValidation(user);
-            userStorage.get(user.getId()).setEmail(user.getEmail());
-            return userStorage.get(user.getId());
-        }
-        userStorage.put(user.getId(), user);
+        User updated = journal.write(user.getId(), () -> {
+            User oldUser = getUser(user.getId());
+            if (user.getEmail() != null && !user.getEmail().equals(oldUser.getEmail())) {
+                log.debug("Проверяем, что новый email пользователя уникален");
+                reserveEmail(user.getEmail(), user.getId());
+                emailIndex.remove(oldUser.getEmail(), user.getId());
+            }
+            if (user.getName() != null) {
+                oldUser.setName(user.getName());
+            }
+            if (user.getEmail() != null) {
+                oldUser.setEmail(user.getEmail());
+            }
+            userStorage.put(user.getId(), oldUser);
+            return oldUser;
+        }, this::toRecord);
         log.debug("Пользователь найден и обновлен в хранилище");
-        return user;
+        return copy(updated);
     }
 
 
     public User getUser(Long userId) {
-        if (!userStorage.containsKey(userId)) {
+        User user = userId == null ? null : userStorage.get(userId);
+        if (user == null) {
             log.debug("Запрашиваемый пользователь не найден в хранилище");
             throw new DataNotFoundException("Запрашиваемый пользователь с ID: " + userId + " не найден");
         }
         log.debug("Возвращаем пользователя по его Id");
-        return userStorage.get(userId);
+        return copy(user);
+    }
+
+    public boolean exists(Long userId) {
+        return userId != null && userStorage.containsKey(userId);
     }
 
 
     public User delete(Long userId) {
-        User userToDelete = userStorage.get(userId);
-        userStorage.remove(userId);
+        User userToDelete = journal.write(userId, () -> {
+            User removed = userStorage.remove(userId);
+            if (removed == null) {
+                throw new DataNotFoundException("Запрашиваемый пользователь с ID: " + userId + " не найден");
+            }
+            emailIndex.remove(removed.getEmail(), userId);
+            return removed;
+        }, removed -> new JournalRecord.UserDeleted(removed.getId()));
         log.debug("Пользователь найден и Удален из хранилища");
         return userToDelete;
     }
 
     public void emailValidation(String email) {
-        userStorage.values().stream()
-                .filter(Objects::nonNull)
-                .map(User::getEmail)
-                .filter(e -> e.equals(email))
-                .findFirst()
-                .ifPresent(e -> {
-                    throw new DuplicateEmailException("Пользователь с email " + email +
-                            " уже существует");
-                });
+        if (emailIndex.containsKey(email)) {
+            throw new DuplicateEmailException("Пользователь с email " + email +
+                    " уже существует");
+        }
     }
 
-    public void updatedEmailValidation(User user) {
-        User oldUser = userStorage.get(user.getId());
-        if (!oldUser.getEmail().equals(user.getEmail())) {
-            emailValidation(user.getEmail());
+    public void restore(JournalRecord record) {
+        switch (record) {
+            case JournalRecord.UserPut put -> {
+                User old = userStorage.put(put.id(), new User(put.id(), put.name(), put.email(), null));
+                if (old != null) {
+                    emailIndex.remove(old.getEmail(), put.id());
+                }
+                emailIndex.put(put.email(), put.id());
+                generatedId.accumulateAndGet(put.id(), Math::max);
+            }
+            case JournalRecord.UserDeleted deleted -> {
+                User old = userStorage.remove(deleted.id());
+                if (old != null) {
+                    emailIndex.remove(old.getEmail(), deleted.id());
+                }
+            }
+            case JournalRecord.SequenceValue sequence -> {
+                if (SEQUENCE.equals(sequence.name())) {
+                    generatedId.accumulateAndGet(sequence.value(), Math::max);
+                }
+            }
+            default -> throw new IllegalArgumentException("Запись журнала не относится к пользователям: " + record);
         }
     }
+
+    public void snapshot(Consumer<JournalRecord> consumer) {
+        consumer.accept(new JournalRecord.SequenceValue(SEQUENCE, generatedId.get()));
+        userStorage.values().forEach(user -> consumer.accept(toRecord(user)));
+    }
+
+    private void reserveEmail(String email, long userId) {
+        Long owner = emailIndex.putIfAbsent(email, userId);
+        if (owner != null && owner != userId) {
+            throw new DuplicateEmailException("Пользователь с email " + email +
+                    " уже существует");
+        }
+    }
+
+    private JournalRecord toRecord(User user) {
+        return new JournalRecord.UserPut(user.getId(), user.getName(), user.getEmail());
+    }
+
+    private User copy(User user) {
+        return User.builder()
+                .id(user.getId())
+                .name(user.getName())
+                .email(user.getEmail())
+                .build();
+    }
 }
@@ -0,0 +1,22 @@
+package ru.practicum.shareit.user.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+@Repository
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "shareit.reactive", name = "enabled")
+public class UserReactiveRepository {
+
+    private final DatabaseClient reactiveDatabaseClient;
+
+    public Mono<Boolean> existsById(Long userId) {
+        return reactiveDatabaseClient.sql("SELECT COUNT(*) FROM users WHERE id = :userId AND deleted_at IS NULL")
+                .bind("userId", userId)
+                .map(row -> row.get(0, Long.class) > 0)
+                .one();
+    }
+}
@@ -3,5 +3,18 @@ package ru.practicum.shareit.user.repository;
 import org.springframework.data.jpa.repository.JpaRepository;
 import ru.practicum.shareit.user.model.User;
 
+import java.util.Optional;
+
 public interface UserRepository extends JpaRepository<User, Long> {
+
+    // мягко удаленный пользователь для сервисов не существует; чтение по id идет через кэш второго уровня
+    default Optional<User> findActiveById(Long id) {
+        return findById(id).filter(user -> !user.isDeleted());
+    }
+
+    boolean existsByIdAndDeletedAtIsNull(Long id);
+
+    default boolean existsActiveById(Long id) {
+        return existsByIdAndDeletedAtIsNull(id);
+    }
 }
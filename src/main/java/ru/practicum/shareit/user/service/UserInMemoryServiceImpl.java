@@ -0,0 +1,56 @@
+package ru.practicum.shareit.user.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import ru.practicum.shareit.exceptions.DataNotFoundException;
+import ru.practicum.shareit.exceptions.MissedSmthException;
+import ru.practicum.shareit.user.dto.CreateUserDto;
+import ru.practicum.shareit.user.dto.UpdateUserDto;
+import ru.practicum.shareit.user.dto.UserDeletionDto;
+import ru.practicum.shareit.user.dto.UserDto;
+import ru.practicum.shareit.user.mapper.UserMapper;
+import ru.practicum.shareit.user.repository.UserInMemoryRepository;
+
+@Slf4j
+@Service
+@Profile("inmemory")
+@RequiredArgsConstructor
+public class UserInMemoryServiceImpl implements UserService {
+
+    private final UserInMemoryRepository repository;
+
+    @Override
+    public CreateUserDto create(CreateUserDto user) {
+        log.debug("Пользователь отправлен в хранилище");
+        return UserMapper.toUserDtoCreate(repository.create(UserMapper.toUserCreate(user)));
+    }
+
+    @Override
+    public UpdateUserDto update(UpdateUserDto user) {
+        if (user.getId() == null) {
+            log.debug("У запрашиваемого пользователя не указан id");
+            throw new DataNotFoundException("У запрашиваемого пользователя не указан id");
+        }
+        log.debug("Пользователь отправлен на обновление");
+        return UserMapper.toUserDtoUpdate(repository.update(UserMapper.toUserUpdate(user)));
+    }
+
+    @Override
+    public UserDto getUser(Long userId) {
+        log.debug("Возвращаем пользователя");
+        return UserMapper.toUserDto(repository.getUser(userId));
+    }
+
+    @Override
+    public UserDto delete(Long userId) {
+        log.debug("Удаляем пользователя");
+        return UserMapper.toUserDto(repository.delete(userId));
+    }
+
+    @Override
+    public UserDeletionDto getDeletion(Long userId) {
+        throw new MissedSmthException("Ход удаления пользователя доступен только при хранении данных в базе");
+    }
+}
@@ -2,6 +2,7 @@ package ru.practicum.shareit.user.service;
 
 import ru.practicum.shareit.user.dto.CreateUserDto;
 import ru.practicum.shareit.user.dto.UpdateUserDto;
+import ru.practicum.shareit.user.dto.UserDeletionDto;
 import ru.practicum.shareit.user.dto.UserDto;
 
 public interface UserService {
@@ -12,4 +13,6 @@ public interface UserService {
     UserDto getUser(Long userId);
 
     UserDto delete(Long userId);
+
+    UserDeletionDto getDeletion(Long userId);
 }
@@ -2,31 +2,42 @@ package ru.practicum.shareit.user.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.practicum.shareit.exceptions.DataNotFoundException;
 import ru.practicum.shareit.exceptions.DuplicateEmailException;
+import ru.practicum.shareit.sharding.Shards;
+import ru.practicum.shareit.user.deletion.UserDeletionRepository;
 import ru.practicum.shareit.user.dto.CreateUserDto;
 import ru.practicum.shareit.user.dto.UpdateUserDto;
+import ru.practicum.shareit.user.dto.UserDeletionDto;
 import ru.practicum.shareit.user.dto.UserDto;
 import ru.practicum.shareit.user.mapper.UserMapper;
 import ru.practicum.shareit.user.model.User;
 import ru.practicum.shareit.user.repository.UserRepository;
 
+import java.time.LocalDateTime;
+
 @Slf4j
 @Service
+@Profile("!inmemory")
 @RequiredArgsConstructor
 @Transactional
 public class UserServiceImpl implements UserService {
 
     private final UserRepository repository;
+    private final Shards shards;
+    private final UserDeletionRepository deletionRepository;
 
     @Override
     public CreateUserDto create(CreateUserDto user) {
         try {
             log.debug("Пользователь отправлен в хранилище");
-            return UserMapper.toUserDtoCreate(repository.save(UserMapper.toUserCreate(user)));
+            User saved = repository.save(UserMapper.toUserCreate(user));
+            shards.userCreated(saved);
+            return UserMapper.toUserDtoCreate(saved);
         } catch (DataIntegrityViolationException e) {
             throw new DuplicateEmailException("Пользователь с email " + user.getEmail() +
                     " уже существует");
@@ -41,11 +52,11 @@ public class UserServiceImpl implements UserService {
         }
         if (user.getEmail() == null && user.getName() == null) {
             log.debug("Изменения отсутствуют - вернем тот же объект");
-            return UserMapper.toUserDtoUpdate(repository.findById(user.getId()).orElseThrow(
+            return UserMapper.toUserDtoUpdate(repository.findActiveById(user.getId()).orElseThrow(
                     () -> new DataNotFoundException("Пользователь не найден")
             ));
         }
-        User existingUser = repository.findById(user.getId())
+        User existingUser = repository.findActiveById(user.getId())
                 .orElseThrow(() -> new DataNotFoundException("Пользователь не найден"));
         if (user.getEmail() != null) {
             existingUser.setEmail(user.getEmail());
@@ -54,24 +65,43 @@ public class UserServiceImpl implements UserService {
             existingUser.setName(user.getName());
         }
         log.debug("Пользователь отправлен на обновление");
-        return UserMapper.toUserDtoUpdate(repository.save(existingUser));
+        User saved = repository.save(existingUser);
+        shards.userUpdated(saved);
+        return UserMapper.toUserDtoUpdate(saved);
     }
 
     @Override
     @Transactional(readOnly = true)
     public UserDto getUser(Long userId) {
         log.debug("Возвращаем пользователя");
-        return UserMapper.toUserDto(repository.findById(userId).orElseThrow(
+        return UserMapper.toUserDto(repository.findActiveById(userId).orElseThrow(
                 () -> new DataNotFoundException("Пользователь не найден")
         ));
     }
 
     @Override
     public UserDto delete(Long userId) {
-        User user = repository.findById(userId)
+        User user = repository.findActiveById(userId)
                 .orElseThrow(() -> new DataNotFoundException("Пользователь не найден"));
-        log.debug("Удаляем пользователя");
-        repository.delete(user);
-        return UserMapper.toUserDto(user);
+        log.debug("Помечаем пользователя удаленным, данные удалит фоновая задача");
+        LocalDateTime now = LocalDateTime.now();
+        UserDto deleted = UserMapper.toUserDto(user);
+        user.setDeletedAt(now);
+        // строка живет до фоновой задачи, а UQ_USER_EMAIL про deleted_at не знает: адрес освобождается сразу.
+        // Замена без @ не пройдет проверку @Email, поэтому не совпадет с адресом живого пользователя
+        user.setEmail("deleted:" + userId);
+        User saved = repository.save(user);
+        deletionRepository.create(userId, now);
+        shards.userDeleted(saved);
+        return deleted;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public UserDeletionDto getDeletion(Long userId) {
+        log.debug("Возвращаем ход удаления пользователя");
+        return deletionRepository.find(userId).orElseThrow(
+                () -> new DataNotFoundException("Удаление пользователя " + userId + " не запрашивалось")
+        );
     }
 }
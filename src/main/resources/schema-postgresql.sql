@@ -0,0 +1,14 @@
+--смена владельца вещи переносится на ее бронирования и посуточные итоги, чтобы owner_id не расходился с items.owner_id
+--тело функции в одинарных кавычках: разделитель ; внутри строки не разбивает скрипт при инициализации схемы
+CREATE OR REPLACE FUNCTION bookings_follow_item_owner() RETURNS trigger LANGUAGE plpgsql AS
+'BEGIN
+  UPDATE bookings SET owner_id = NEW.owner_id, updated_at = LOCALTIMESTAMP WHERE item_id = NEW.id;
+  UPDATE booking_daily_rollup SET owner_id = NEW.owner_id WHERE item_id = NEW.id;
+  RETURN NULL;
+END';
+
+DROP TRIGGER IF EXISTS items_owner_to_bookings ON items;
+
+CREATE TRIGGER items_owner_to_bookings AFTER UPDATE OF owner_id ON items
+  FOR EACH ROW WHEN (OLD.owner_id IS DISTINCT FROM NEW.owner_id)
+  EXECUTE FUNCTION bookings_follow_item_owner();
@@ -17,6 +17,10 @@ CREATE TABLE IF NOT EXISTS requests (
   CONSTRAINT fk_requests_to_users FOREIGN KEY(requestor_id) REFERENCES users(id)
 );
 
+--запросы пользователя и лента запросов других пользователей по убыванию (created, id)
+CREATE INDEX IF NOT EXISTS ix_requests_requestor_created ON requests (requestor_id, created);
+CREATE INDEX IF NOT EXISTS ix_requests_created_id ON requests (created, id);
+
 --создание таблицы вещей
 CREATE TABLE IF NOT EXISTS items (
   id BIGINT GENERATED ALWAYS AS IDENTITY,
@@ -30,19 +34,50 @@ CREATE TABLE IF NOT EXISTS items (
   CONSTRAINT fk_items_to_requests FOREIGN KEY(request_id) REFERENCES requests(id)
 );
 
+--ответы на страницу запросов одним запросом с IN по request_id
+CREATE INDEX IF NOT EXISTS ix_items_request ON items (request_id);
+
+--координаты для поиска рядом; сам поиск идет по сетке в памяти, база дочитывает только найденные id
+ALTER TABLE items ADD COLUMN IF NOT EXISTS latitude DOUBLE PRECISION;
+ALTER TABLE items ADD COLUMN IF NOT EXISTS longitude DOUBLE PRECISION;
+
+--рейтинг популярности вещей для сортировки поиска; ведется приращениями, см. ItemPopularityTracker
+CREATE TABLE IF NOT EXISTS item_popularity (
+  item_id BIGINT NOT NULL,
+  score DOUBLE PRECISION NOT NULL,
+  CONSTRAINT pk_item_popularity PRIMARY KEY (item_id),
+  CONSTRAINT fk_item_popularity_to_items FOREIGN KEY(item_id) REFERENCES items(id)
+);
+
 --создание таблицы бронирований
 CREATE TABLE IF NOT EXISTS bookings (
   id BIGINT GENERATED ALWAYS AS IDENTITY,
   start_date TIMESTAMP WITHOUT TIME ZONE NOT NULL,
   end_date TIMESTAMP WITHOUT TIME ZONE NOT NULL,
   item_id BIGINT NOT NULL,
+  owner_id BIGINT NOT NULL,
   booker_id BIGINT NOT NULL,
   status VARCHAR(50) NOT NULL,
+  created TIMESTAMP WITHOUT TIME ZONE,
   CONSTRAINT pk_booking PRIMARY KEY (id),
   CONSTRAINT fk_bookings_to_items FOREIGN KEY(item_id) REFERENCES items(id),
-  CONSTRAINT fk_bookings_to_users FOREIGN KEY(booker_id) REFERENCES users(id)
+  CONSTRAINT fk_bookings_to_users FOREIGN KEY(booker_id) REFERENCES users(id),
+  CONSTRAINT fk_bookings_owner_to_users FOREIGN KEY(owner_id) REFERENCES users(id)
 );
 
+--момент создания бронирования для баз, созданных до появления колонки; у старых строк он пустой
+ALTER TABLE bookings ADD COLUMN IF NOT EXISTS created TIMESTAMP WITHOUT TIME ZONE;
+
+--владелец вещи на бронировании для баз, созданных до появления колонки; заполняет ее порциями, ставит NOT NULL
+--и внешний ключ разовая задача BookingOwnerBackfillJob, а не каждый старт
+ALTER TABLE bookings ADD COLUMN IF NOT EXISTS owner_id BIGINT;
+
+--списки бронирований владельца по состояниям: диапазон по индексу без соединения с items
+CREATE INDEX IF NOT EXISTS ix_bookings_owner_start ON bookings (owner_id, start_date);
+
+--поиск просроченных WAITING фоновой задачей BookingExpiryJob
+CREATE INDEX IF NOT EXISTS ix_bookings_status_start ON bookings (status, start_date);
+
 --создание таблицы комментариев
 CREATE TABLE IF NOT EXISTS comments (
   id BIGINT GENERATED ALWAYS AS IDENTITY,
@@ -53,4 +88,105 @@ CREATE TABLE IF NOT EXISTS comments (
   CONSTRAINT pk_comment PRIMARY KEY (id),
   CONSTRAINT fk_comments_to_items FOREIGN KEY(item_id) REFERENCES items(id),
   CONSTRAINT fk_comments_to_users FOREIGN KEY(author_id) REFERENCES users(id)
-);
\ No newline at end of file
+);
+
+--ответы на запросы создания с заголовком Idempotency-Key, id = пользователь:операция:ключ
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+  id VARCHAR(400) NOT NULL,
+  request_hash VARCHAR(64) NOT NULL,
+  status VARCHAR(20) NOT NULL,
+  response TEXT,
+  created TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+  expires_at TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+  CONSTRAINT pk_idempotency_key PRIMARY KEY (id)
+);
+
+CREATE INDEX IF NOT EXISTS ix_idempotency_keys_expires_at ON idempotency_keys (expires_at);
+
+--посуточные итоги бронирований по вещам для отчетов владельцев, строки пишет BookingRollupJob;
+--booked - день занят подтвержденным бронированием, остальные счетчики - по бронированиям, начавшимся в этот день
+CREATE TABLE IF NOT EXISTS booking_daily_rollup (
+  item_id BIGINT NOT NULL,
+  owner_id BIGINT NOT NULL,
+  usage_date DATE NOT NULL,
+  booked BOOLEAN NOT NULL,
+  bookings INT NOT NULL,
+  approved INT NOT NULL,
+  rejected INT NOT NULL,
+  lead_seconds BIGINT NOT NULL,
+  lead_count INT NOT NULL,
+  CONSTRAINT pk_booking_daily_rollup PRIMARY KEY (item_id, usage_date)
+);
+
+CREATE INDEX IF NOT EXISTS ix_booking_daily_rollup_owner ON booking_daily_rollup (owner_id, usage_date);
+
+--день, до которого (не включая) итоги посчитаны; одна строка с id = 1
+CREATE TABLE IF NOT EXISTS booking_rollup_watermark (
+  id INT NOT NULL,
+  rolled_until DATE NOT NULL,
+  CONSTRAINT pk_booking_rollup_watermark PRIMARY KEY (id)
+);
+
+--выборки BookingRollupJob по порции дней: подтвержденные, закончившиеся после ее начала, - по end_date,
+--начавшиеся внутри порции - по start_date; объем чтения зависит от порции и будущих бронирований, не от истории
+CREATE INDEX IF NOT EXISTS ix_bookings_status_end ON bookings (status, end_date);
+CREATE INDEX IF NOT EXISTS ix_bookings_start ON bookings (start_date);
+
+--справочник шардов: на каком шарде лежат вещи пользователя, бронирования и комментарии к ним;
+--ведется только на шарде 0, пользователь без строки живет на шарде 0
+CREATE TABLE IF NOT EXISTS user_shards (
+  user_id BIGINT NOT NULL,
+  shard INT NOT NULL,
+  CONSTRAINT pk_user_shards PRIMARY KEY (user_id)
+);
+
+--момент последнего изменения строки для лент синхронизации /items/changes и /bookings/changes;
+--приложение ставит его при каждой записи, значение по умолчанию - для вставок в обход JPA и старых строк
+ALTER TABLE items ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP WITHOUT TIME ZONE DEFAULT LOCALTIMESTAMP NOT NULL;
+ALTER TABLE bookings ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP WITHOUT TIME ZONE DEFAULT LOCALTIMESTAMP NOT NULL;
+ALTER TABLE comments ADD COLUMN IF NOT EXISTS updated_at TIMESTAMP WITHOUT TIME ZONE DEFAULT LOCALTIMESTAMP NOT NULL;
+
+--ленты читают диапазон индекса после водяного знака (updated_at, id) и не трогают остальные строки пользователя
+CREATE INDEX IF NOT EXISTS ix_items_owner_updated ON items (owner_id, updated_at, id);
+CREATE INDEX IF NOT EXISTS ix_bookings_booker_updated ON bookings (booker_id, updated_at, id);
+CREATE INDEX IF NOT EXISTS ix_bookings_owner_updated ON bookings (owner_id, updated_at, id);
+CREATE INDEX IF NOT EXISTS ix_comments_item_updated ON comments (item_id, updated_at, id);
+
+--надгробия удаленных вещей, комментариев и бронирований для лент синхронизации; лежат на шарде удаленной строки
+--и удаляются через shareit.sync.tombstone-retention
+CREATE TABLE IF NOT EXISTS tombstones (
+  id BIGINT GENERATED BY DEFAULT AS IDENTITY NOT NULL,
+  kind VARCHAR(20) NOT NULL,
+  entity_id BIGINT NOT NULL,
+  owner_id BIGINT NOT NULL,
+  booker_id BIGINT,
+  deleted_at TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+  CONSTRAINT pk_tombstone PRIMARY KEY (id)
+);
+
+CREATE INDEX IF NOT EXISTS ix_tombstones_owner ON tombstones (owner_id, kind, deleted_at, entity_id);
+CREATE INDEX IF NOT EXISTS ix_tombstones_booker ON tombstones (booker_id, kind, deleted_at, entity_id);
+CREATE INDEX IF NOT EXISTS ix_tombstones_deleted_at ON tombstones (deleted_at);
+
+--мягкое удаление пользователя: строка остается, пока UserDeletionJob порциями удаляет его данные, а email
+--в ней сразу заменяется на deleted:<id>, чтобы UQ_USER_EMAIL не держал адрес до конца удаления
+ALTER TABLE users ADD COLUMN IF NOT EXISTS deleted_at TIMESTAMP WITHOUT TIME ZONE;
+
+--ход удаления данных пользователя на шарде 0: счетчики удаленных строк, аренда задачи узлом; строка остается
+--после завершения, чтобы клиент мог узнать итог
+CREATE TABLE IF NOT EXISTS user_deletions (
+  user_id BIGINT NOT NULL,
+  requested_at TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+  completed_at TIMESTAMP WITHOUT TIME ZONE,
+  leased_until TIMESTAMP WITHOUT TIME ZONE,
+  comments BIGINT DEFAULT 0 NOT NULL,
+  bookings BIGINT DEFAULT 0 NOT NULL,
+  items BIGINT DEFAULT 0 NOT NULL,
+  requests BIGINT DEFAULT 0 NOT NULL,
+  CONSTRAINT pk_user_deletions PRIMARY KEY (user_id)
+);
+
+CREATE INDEX IF NOT EXISTS ix_user_deletions_pending ON user_deletions (completed_at, requested_at);
+
+--комментарии автора для порций удаления; по вещам владельца их находит ix_comments_item_updated
+CREATE INDEX IF NOT EXISTS ix_comments_author ON comments (author_id);
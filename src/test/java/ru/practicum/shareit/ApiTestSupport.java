@@ -0,0 +1,54 @@
+package ru.practicum.shareit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Общие помощники тестов через MockMvc: заголовок пользователя, разбор ответа и заготовка данных через API.
+ * Контекст наследник описывает сам: {@link SharedContextTest} или собственные свойства.
+ */
+public abstract class ApiTestSupport {
+
+    protected static final String USER_HEADER = "X-Sharer-User-Id";
+
+    @Autowired
+    protected MockMvc mvc;
+
+    @Autowired
+    protected ObjectMapper objectMapper;
+
+    @Autowired
+    protected JdbcTemplate jdbcTemplate;
+
+    protected long user(String name) throws Exception {
+        return json(post("/users").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"" + name + "\",\"email\":\"" + name + "@mail.ru\"}"))
+                .get("id").asLong();
+    }
+
+    protected long item(long ownerId, String name) throws Exception {
+        return json(post("/items").header(USER_HEADER, ownerId).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"" + name + "\",\"description\":\"Для дачи\",\"available\":true}"))
+                .get("id").asLong();
+    }
+
+    protected long count(String sql, Object... args) {
+        return jdbcTemplate.queryForObject(sql, Long.class, args);
+    }
+
+    protected JsonNode json(MockHttpServletRequestBuilder request) throws Exception {
+        return objectMapper.readTree(mvc.perform(request)
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,74 @@
+package ru.practicum.shareit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.dto.CreateBookingDto;
+import ru.practicum.shareit.booking.model.BookingField;
+import ru.practicum.shareit.booking.model.BookingState;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.service.BookingService;
+import ru.practicum.shareit.exceptions.DuplicateEmailException;
+import ru.practicum.shareit.item.dto.CreateItemDto;
+import ru.practicum.shareit.item.dto.ItemDto;
+import ru.practicum.shareit.item.dto.UpdateItemDto;
+import ru.practicum.shareit.item.model.ItemField;
+import ru.practicum.shareit.item.service.ItemService;
+import ru.practicum.shareit.user.dto.CreateUserDto;
+import ru.practicum.shareit.user.dto.UpdateUserDto;
+import ru.practicum.shareit.user.service.UserService;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest
+@ActiveProfiles("inmemory")
+class InMemoryStorageTests {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private ItemService itemService;
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Test
+    void storesUsersItemsAndBookingsWithoutDatabase() {
+        Long ownerId = userService.create(CreateUserDto.builder().name("owner").email("owner@mail.ru").build())
+                .getId();
+        Long bookerId = userService.create(CreateUserDto.builder().name("booker").email("booker@mail.ru").build())
+                .getId();
+        assertThrows(DuplicateEmailException.class, () -> userService.create(
+                CreateUserDto.builder().name("copy").email("owner@mail.ru").build()));
+        assertThrows(DuplicateEmailException.class, () -> userService.update(
+                UpdateUserDto.builder().id(bookerId).email("owner@mail.ru").build()));
+
+        ItemDto item = itemService.addNewItem(ownerId, new CreateItemDto("Дрель", "Аккумуляторная дрель", true, null,
+                null, null));
+        itemService.updateItem(ownerId, new UpdateItemDto(item.getId(), null, "Ударная дрель", null, null, null));
+        assertEquals(List.of(item.getId()), itemService.findItems(bookerId, "УДАРНАЯ").stream()
+                .map(ItemDto::getId).toList());
+        assertEquals(0, itemService.findItems(bookerId, "аккумулятор").size());
+        assertEquals(1, itemService.getItems(ownerId, ItemField.parse(null)).size());
+
+        LocalDateTime start = LocalDateTime.now().plusDays(1);
+        BookingDto booking = bookingService.addBooking(bookerId,
+                new CreateBookingDto(item.getId(), start, start.plusDays(1)));
+        bookingService.approvingOfBooking(ownerId, booking.getId(), true);
+
+        List<BookingDto> future = bookingService.getBookingsForAllItemsOfOwner(ownerId, BookingState.FUTURE,
+                BookingField.parse(null));
+        assertEquals(1, future.size());
+        assertEquals(BookingStatus.APPROVED, future.getFirst().getStatus());
+        assertEquals("Ударная дрель", future.getFirst().getItem().getDescription());
+        assertEquals(0, bookingService.getBookingsByUserAndState(bookerId, BookingState.WAITING,
+                BookingField.parse(null)).size());
+    }
+}
@@ -0,0 +1,154 @@
+package ru.practicum.shareit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Потоковые NDJSON-эндпоинты на R2DBC должны отдавать ровно то же, что обычные JSON-эндпоинты на JPA.
+ * JDBC и R2DBC смотрят в одну базу H2 в памяти.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.datasource.url=jdbc:h2:mem:reactive-read;DB_CLOSE_DELAY=-1",
+        "shareit.reactive.enabled=true",
+        "shareit.reactive.url=r2dbc:h2:mem:///reactive-read;DB_CLOSE_DELAY=-1",
+        "shareit.reactive.username=sa",
+        "shareit.reactive.password=password"
+})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ReactiveReadTests {
+
+    private static final String NDJSON = "application/x-ndjson";
+    private static final String[] STATES = {"ALL", "CURRENT", "PAST", "FUTURE", "WAITING", "REJECTED"};
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeAll
+    void seed() {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        for (int i = 1; i <= 4; i++) {
+            jdbcTemplate.update("INSERT INTO users (name, email) VALUES (?, ?)", "user" + i, "user" + i + "@mail.ru");
+        }
+        for (int i = 1; i <= 3; i++) {
+            jdbcTemplate.update("INSERT INTO items (name, description, is_available, owner_id) VALUES (?, ?, ?, 1)",
+                    "вещь " + i, "описание " + i, i != 3);
+        }
+        int shift = 0;
+        for (long item = 1; item <= 3; item++) {
+            for (long booker = 2; booker <= 4; booker++) {
+                shift++;
+                // прошлые, текущие и будущие бронирования с разными статусами и неповторяющимся началом
+                booking(now.minusDays(40 - shift), now.minusDays(30 - shift), item, booker, "APPROVED");
+                booking(now.minusHours(shift), now.plusHours(shift), item, booker, shift % 2 == 0 ? "APPROVED" :
+                        "REJECTED");
+                booking(now.plusDays(shift), now.plusDays(shift + 1), item, booker, shift % 3 == 0 ? "REJECTED" :
+                        "WAITING");
+            }
+        }
+        for (long item = 1; item <= 2; item++) {
+            for (long author = 2; author <= 3; author++) {
+                jdbcTemplate.update("INSERT INTO comments (text, item_id, author_id, created) VALUES (?, ?, ?, ?)",
+                        "отзыв " + author + " о " + item, item, author, Timestamp.valueOf(now.minusDays(1)));
+            }
+        }
+    }
+
+    @Test
+    void bookingStreamsMatchJsonEndpoints() throws Exception {
+        for (String state : STATES) {
+            for (long user = 1; user <= 4; user++) {
+                assertEquals(json("/bookings?state=" + state, user), ndjson("/bookings?state=" + state, user),
+                        "GET /bookings state=" + state + " user=" + user);
+                assertEquals(json("/bookings/owner?state=" + state, user),
+                        ndjson("/bookings/owner?state=" + state, user),
+                        "GET /bookings/owner state=" + state + " user=" + user);
+            }
+        }
+        assertFalse(ndjson("/bookings?state=ALL", 2).isEmpty());
+        assertFalse(ndjson("/bookings/owner?state=CURRENT", 1).isEmpty());
+    }
+
+    @Test
+    void itemStreamMatchesJsonEndpoint() throws Exception {
+        List<JsonNode> items = ndjson("/items", 1);
+        assertEquals(3, items.size());
+        assertEquals(byId(json("/items", 1)), byId(items));
+        assertEquals(2, items.getFirst().get("comments").size());
+        assertTrue(items.getLast().get("comments").isEmpty());
+    }
+
+    @Test
+    void unknownUserIsNotFound() throws Exception {
+        assertEquals(404, send("/bookings", 99, NDJSON).statusCode());
+        assertEquals(404, send("/items", 99, NDJSON).statusCode());
+    }
+
+    private void booking(LocalDateTime start, LocalDateTime end, long item, long booker, String status) {
+        jdbcTemplate.update("INSERT INTO bookings (start_date, end_date, item_id, booker_id, status, owner_id) " +
+                "VALUES (?, ?, ?, ?, ?, 1)", Timestamp.valueOf(start), Timestamp.valueOf(end), item, booker, status);
+    }
+
+    private List<JsonNode> json(String path, long userId) throws Exception {
+        HttpResponse<String> response = send(path, userId, "application/json");
+        assertEquals(200, response.statusCode(), response.body());
+        List<JsonNode> nodes = new ArrayList<>();
+        objectMapper.readTree(response.body()).forEach(nodes::add);
+        return nodes;
+    }
+
+    private List<JsonNode> ndjson(String path, long userId) throws Exception {
+        HttpResponse<String> response = send(path, userId, NDJSON);
+        assertEquals(200, response.statusCode(), response.body());
+        assertTrue(response.headers().firstValue("Content-Type").orElse("").startsWith(NDJSON));
+        List<JsonNode> nodes = new ArrayList<>();
+        for (String line : response.body().split("\n")) {
+            if (!line.isBlank()) {
+                nodes.add(objectMapper.readTree(line));
+            }
+        }
+        return nodes;
+    }
+
+    private HttpResponse<String> send(String path, long userId, String accept) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .header("X-Sharer-User-Id", String.valueOf(userId))
+                .header("Accept", accept)
+                .GET()
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static List<JsonNode> byId(List<JsonNode> nodes) {
+        return nodes.stream().sorted(Comparator.comparingLong(node -> node.get("id").asLong())).toList();
+    }
+}
@@ -0,0 +1,38 @@
+package ru.practicum.shareit;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.extension.BeforeAllCallback;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import ru.practicum.shareit.idempotency.IdempotentRequests;
+import ru.practicum.shareit.item.geo.ItemGeoIndex;
+import ru.practicum.shareit.item.popularity.ItemPopularityTracker;
+
+/**
+ * Возвращает общий контекст {@link SharedContextTest} к состоянию после запуска: пустые таблицы со счетчиками
+ * id с единицы, пустой кеш второго уровня и структуры в памяти, построенные по пустой базе.
+ */
+public class SharedContextReset implements BeforeAllCallback {
+
+    @Override
+    public void beforeAll(ExtensionContext extensionContext) {
+        ApplicationContext context = SpringExtension.getApplicationContext(extensionContext);
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY FALSE");
+        try {
+            // приращения популярности прошлого класса иначе попадут в рейтинг следующего
+            context.getBean(ItemPopularityTracker.class).flush();
+            for (String table : jdbcTemplate.queryForList("SELECT table_name FROM information_schema.tables " +
+                    "WHERE table_schema = 'PUBLIC' AND table_type = 'BASE TABLE'", String.class)) {
+                jdbcTemplate.execute("TRUNCATE TABLE " + table + " RESTART IDENTITY");
+            }
+        } finally {
+            jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY TRUE");
+        }
+        context.getBean(EntityManagerFactory.class).getCache().evictAll();
+        context.getBean(IdempotentRequests.class).clearLocal();
+        context.getBean(ItemGeoIndex.class).reload();
+    }
+}
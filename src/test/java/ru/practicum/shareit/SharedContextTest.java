@@ -0,0 +1,46 @@
+package ru.practicum.shareit;
+
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Один контекст на H2 для всех тестовых классов с этой аннотацией: свойства фоновых задач собраны здесь,
+ * а не в каждом классе, поэтому Spring берет контекст из кеша, а не поднимает новый. Интервалы задач
+ * большие, тесты запускают их сами. Перед каждым классом {@link SharedContextReset} очищает базу
+ * и состояние в памяти, так что классы по-прежнему начинают с пустой базы и id с единицы.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:shared",
+        "shareit.booking-events.heartbeat-interval=200ms",
+        "shareit.booking-events.max-streams-per-user=1",
+        "shareit.booking-expiry.enabled=true",
+        "shareit.booking-expiry.interval=1h",
+        "shareit.booking-expiry.approval-timeout=2d",
+        "shareit.booking-expiry.chunk-size=3",
+        "shareit.booking-rollup.enabled=true",
+        "shareit.booking-rollup.interval=1h",
+        "shareit.booking-rollup.settle-days=2",
+        "shareit.booking-rollup.chunk-days=7",
+        "shareit.booking-owner-backfill.enabled=true",
+        "shareit.booking-owner-backfill.interval=1h",
+        "shareit.booking-owner-backfill.chunk-size=2",
+        "shareit.booking-owner-backfill.max-chunks-per-run=2",
+        "shareit.user-deletion.interval=1h",
+        "shareit.user-deletion.chunk-size=1",
+        "shareit.user-deletion.max-chunks-per-run=4",
+        "shareit.popularity.flush-interval=1h",
+        "shareit.fan-out.deadline=1s",
+        "shareit.sync.settle-lag=0s"
+})
+@AutoConfigureMockMvc
+@ExtendWith(SharedContextReset.class)
+public @interface SharedContextTest {
+}
@@ -0,0 +1,307 @@
+package ru.practicum.shareit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.MethodExecutionContext;
+import net.ttddyy.dsproxy.listener.MethodExecutionListener;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import javax.sql.DataSource;
+import java.lang.management.ManagementFactory;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Бюджеты на число SQL-запросов, прочитанных строк и выделенной памяти для каждого эндпоинта.
+ * Кэш второго уровня выключен, чтобы N+1 и неограниченные findAll() не прятались за теплым кэшем:
+ * тест падает, как только количество запросов начинает расти вместе с размером данных.
+ * Запросы считаются по всем потокам, поэтому фоновые задачи на время теста отложены.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:statement-budget",
+        "shareit.cache.enabled=false",
+        "shareit.popularity.flush-interval=1h",
+        "shareit.booking-expiry.interval=1h",
+        "shareit.user-deletion.interval=1h"
+})
+@AutoConfigureMockMvc
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class StatementBudgetTests extends ApiTestSupport {
+
+    private static final long MB = 1024 * 1024;
+
+    private static final long POWER_OWNER = 1;
+    private static final long SMALL_OWNER = 2;
+    private static final long HEAVY_BOOKER = 6;
+    private static final int USERS = 30;
+    private static final int POWER_OWNER_ITEMS = 40;
+    private static final int SMALL_OWNER_ITEMS = 5;
+    private static final int REQUESTS = 20;
+
+    private static final AtomicInteger STATEMENTS = new AtomicInteger();
+    private static final AtomicInteger ROWS = new AtomicInteger();
+    private static final List<String> QUERIES = new CopyOnWriteArrayList<>();
+
+    private long pastApprovedBookingItem;
+
+    private long commentedItem;
+
+    @BeforeAll
+    void seed() {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        List<Object[]> users = new ArrayList<>();
+        for (int i = 1; i <= USERS; i++) {
+            users.add(new Object[]{"user" + i, "user" + i + "@mail.ru"});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO users (name, email) VALUES (?, ?)", users);
+
+        List<Object[]> items = new ArrayList<>();
+        for (int i = 1; i <= POWER_OWNER_ITEMS; i++) {
+            items.add(new Object[]{"Дрель " + i, "Мощная дрель номер " + i, true, POWER_OWNER});
+        }
+        for (long owner = SMALL_OWNER; owner <= 5; owner++) {
+            for (int i = 1; i <= SMALL_OWNER_ITEMS; i++) {
+                items.add(new Object[]{"Пила " + owner + "-" + i, "Ручная пила", i % 2 == 0, owner});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO items (name, description, is_available, owner_id) VALUES (?, ?, ?, ?)",
+                items);
+        List<Long> itemIds = jdbcTemplate.queryForList("SELECT id FROM items ORDER BY id", Long.class);
+
+        List<Object[]> requests = new ArrayList<>();
+        for (int i = 1; i <= REQUESTS; i++) {
+            requests.add(new Object[]{"Нужна вещь " + i, SMALL_OWNER + i % 4, Timestamp.valueOf(now.minusHours(i))});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO requests (description, requestor_id, created) VALUES (?, ?, ?)",
+                requests);
+        // на каждый запрос отвечают две вещи крупного владельца
+        jdbcTemplate.update("UPDATE items SET request_id = (SELECT MIN(r.id) FROM requests r) + MOD(id, ?) " +
+                "WHERE owner_id = ?", REQUESTS, POWER_OWNER);
+
+        List<Object[]> bookings = new ArrayList<>();
+        List<Object[]> comments = new ArrayList<>();
+        String[] statuses = {"APPROVED", "APPROVED", "WAITING", "REJECTED", "APPROVED"};
+        long[] offsets = {-30, -2, 3, 10, 20};
+        for (int i = 0; i < itemIds.size(); i++) {
+            long itemId = itemIds.get(i);
+            for (int j = 0; j < offsets.length; j++) {
+                long booker = j == 0 ? HEAVY_BOOKER : 7 + (i + j) % (USERS - 7);
+                LocalDateTime start = now.plusDays(offsets[j]);
+                bookings.add(new Object[]{Timestamp.valueOf(start), Timestamp.valueOf(start.plusDays(j == 1 ? 4 : 1)),
+                        itemId, booker, statuses[j], itemId});
+            }
+            for (int j = 0; j < 3; j++) {
+                comments.add(new Object[]{"Отличная вещь " + j, itemId, HEAVY_BOOKER,
+                        Timestamp.valueOf(now.minusDays(20 - j))});
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO bookings (start_date, end_date, item_id, booker_id, status, owner_id) " +
+                "SELECT ?, ?, ?, ?, ?, owner_id FROM items WHERE id = ?", bookings);
+        jdbcTemplate.batchUpdate("INSERT INTO comments (text, item_id, author_id, created) VALUES (?, ?, ?, ?)",
+                comments);
+        pastApprovedBookingItem = itemIds.getFirst();
+        commentedItem = itemIds.get(1);
+    }
+
+    @Test
+    void userEndpoints() throws Exception {
+        within(2, 0, 24 * MB, post("/users").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"new\",\"email\":\"new@mail.ru\"}"));
+        within(2, 1, 24 * MB, patch("/users/" + USERS).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"renamed\"}"));
+        within(1, 1, 24 * MB, get("/users/" + SMALL_OWNER));
+        long lonely = jdbcTemplate.queryForObject("SELECT id FROM users WHERE email = 'new@mail.ru'", Long.class);
+        // мягкое удаление: чтение, отметка deleted_at и строка в user_deletions, данные удаляет фоновая задача
+        within(3, 1, 24 * MB, delete("/users/" + lonely));
+    }
+
+    @Test
+    void itemEndpoints() throws Exception {
+        within(2, 1, 24 * MB, post("/items").header(USER_HEADER, SMALL_OWNER)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"Молоток\",\"description\":\"Тяжелый\",\"available\":true}"));
+        within(3, 2, 24 * MB, patch("/items/" + pastApprovedBookingItem).header(USER_HEADER, POWER_OWNER)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"description\":\"Мощная ударная дрель\"}"));
+        within(4, 2 + 5 + 3 + 2, 24 * MB, get("/items/" + pastApprovedBookingItem).header(USER_HEADER, POWER_OWNER));
+        within(4, POWER_OWNER_ITEMS * (1 + 5 + 3) + 1 + 2, 32 * MB, get("/items").header(USER_HEADER, POWER_OWNER));
+        JsonNode named = objectMapper.readTree(within(2, POWER_OWNER_ITEMS + 1, 24 * MB, get("/items")
+                .header(USER_HEADER, POWER_OWNER).param("fields", "id,name")));
+        assertTrue(QUERIES.stream().noneMatch(sql -> sql.contains("latitude")), QUERIES.toString());
+        assertEquals(List.of("id", "name"), fieldNames(named.get(0)));
+        JsonNode dates = objectMapper.readTree(within(3, POWER_OWNER_ITEMS * (1 + 5) + 1, 24 * MB, get("/items")
+                .header(USER_HEADER, POWER_OWNER).param("fields", "id,lastBooking")));
+        assertTrue(QUERIES.stream().noneMatch(sql -> sql.contains("description")), QUERIES.toString());
+        // незапрошенные даты бронирований не выводятся как null
+        for (JsonNode item : dates) {
+            assertTrue(List.of("id", "lastBooking").containsAll(fieldNames(item)), item.toString());
+        }
+        within(2, POWER_OWNER_ITEMS + 1, 32 * MB, get("/items/search").header(USER_HEADER, HEAVY_BOOKER)
+                .param("text", "дрель"));
+        within(4, 4, 24 * MB, post("/items/" + commentedItem + "/comment").header(USER_HEADER, HEAVY_BOOKER)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"text\":\"Пользовался месяц назад\"}"));
+    }
+
+    @Test
+    void bookingEndpoints() throws Exception {
+        String created = within(3, 2, 24 * MB, post("/bookings").header(USER_HEADER, HEAVY_BOOKER)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"itemId\":" + pastApprovedBookingItem + ",\"start\":\"" +
+                        LocalDateTime.now().plusDays(40).truncatedTo(ChronoUnit.SECONDS) + "\",\"end\":\"" +
+                        LocalDateTime.now().plusDays(41).truncatedTo(ChronoUnit.SECONDS) + "\"}"));
+        String bookingId = created.replaceAll("^\\{\"id\":(\\d+).*", "$1");
+        // id вещи читается до транзакции, чтобы взять ее полосу, дальше бронирование, блокировка вещи, проверка
+        // пересечения и обновление
+        within(5, 4, 24 * MB, patch("/bookings/" + bookingId).header(USER_HEADER, POWER_OWNER)
+                .param("approved", "true"));
+        within(1, 1, 24 * MB, get("/bookings/" + bookingId).header(USER_HEADER, HEAVY_BOOKER));
+
+        int ownerBookings = POWER_OWNER_ITEMS * 5 + 1;
+        for (String state : List.of("ALL", "CURRENT", "PAST", "FUTURE", "WAITING", "REJECTED")) {
+            within(2, ownerBookings + 1, 32 * MB, get("/bookings/owner").header(USER_HEADER, POWER_OWNER)
+                    .param("state", state));
+            within(2, POWER_OWNER_ITEMS + SMALL_OWNER_ITEMS * 4 + 2, 32 * MB, get("/bookings")
+                    .header(USER_HEADER, HEAVY_BOOKER).param("state", state));
+        }
+        within(2, ownerBookings + 1, 32 * MB, get("/bookings/owner").header(USER_HEADER, POWER_OWNER)
+                .param("fields", "id,start,end"));
+        within(2, 2, 24 * MB, get("/bookings/owner/summary").header(USER_HEADER, POWER_OWNER));
+        within(2, 2, 24 * MB, get("/bookings/summary").header(USER_HEADER, HEAVY_BOOKER));
+    }
+
+    @Test
+    void bookingSummaryMatchesStateLists() throws Exception {
+        JsonNode ownerSummary = json(get("/bookings/owner/summary").header(USER_HEADER, POWER_OWNER));
+        JsonNode bookerSummary = json(get("/bookings/summary").header(USER_HEADER, HEAVY_BOOKER));
+        for (String state : List.of("ALL", "CURRENT", "PAST", "FUTURE", "WAITING", "REJECTED")) {
+            String field = state.toLowerCase(Locale.ROOT);
+            assertEquals(json(get("/bookings/owner").header(USER_HEADER, POWER_OWNER).param("state", state)).size(),
+                    ownerSummary.get(field).asInt(), "владелец, " + state);
+            assertEquals(json(get("/bookings").header(USER_HEADER, HEAVY_BOOKER).param("state", state)).size(),
+                    bookerSummary.get(field).asInt(), "арендатор, " + state);
+        }
+        assertTrue(ownerSummary.get("all").asInt() > 0);
+    }
+
+    @Test
+    void requestEndpoints() throws Exception {
+        within(2, 1, 24 * MB, post("/requests").header(USER_HEADER, HEAVY_BOOKER)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"description\":\"Нужна стремянка\"}"));
+        // пользователь, страница запросов, ответы на всю страницу одним IN
+        JsonNode page = objectMapper.readTree(within(3, 1 + 10 + 2 * 10, 24 * MB, get("/requests/all")
+                .header(USER_HEADER, HEAVY_BOOKER).param("size", "10")));
+        JsonNode last = page.get(page.size() - 1);
+        within(3, 1 + 10 + 2 * 10, 24 * MB, get("/requests/all").header(USER_HEADER, HEAVY_BOOKER)
+                .param("size", "10")
+                .param("beforeCreated", last.get("created").asText())
+                .param("beforeId", last.get("id").asText()));
+        within(3, 1 + REQUESTS / 4 + 2 * REQUESTS / 4, 24 * MB, get("/requests").header(USER_HEADER, SMALL_OWNER));
+        within(3, 1 + 1 + 2, 24 * MB, get("/requests/" + last.get("id").asText()).header(USER_HEADER, SMALL_OWNER));
+        within(3, 2, 24 * MB, post("/items").header(USER_HEADER, SMALL_OWNER)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"Стремянка\",\"description\":\"Трехметровая\",\"available\":true," +
+                        "\"requestId\":" + last.get("id").asText() + "}"));
+    }
+
+    private List<String> fieldNames(JsonNode node) {
+        List<String> names = new ArrayList<>();
+        node.fieldNames().forEachRemaining(names::add);
+        return names;
+    }
+
+    private String within(int maxStatements, int maxRows, long maxBytes, MockHttpServletRequestBuilder request)
+            throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        STATEMENTS.set(0);
+        ROWS.set(0);
+        QUERIES.clear();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        String body = mvc.perform(request)
+                .andExpect(status().is2xxSuccessful())
+                .andReturn().getResponse().getContentAsString();
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        String endpoint = request.buildRequest(null).getMethod() + " " + request.buildRequest(null).getRequestURI();
+        assertTrue(STATEMENTS.get() <= maxStatements, endpoint + ": выполнено SQL-запросов " + STATEMENTS.get() +
+                ", допустимо " + maxStatements);
+        assertTrue(ROWS.get() <= maxRows, endpoint + ": прочитано строк " + ROWS.get() + ", допустимо " + maxRows);
+        assertTrue(allocated <= maxBytes, endpoint + ": выделено байт " + allocated + ", допустимо " + maxBytes);
+        return body;
+    }
+
+    @TestConfiguration
+    static class CountingDataSourceConfig {
+
+        @Bean
+        static BeanPostProcessor countingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (!(bean instanceof DataSource dataSource)) {
+                        return bean;
+                    }
+                    QueryExecutionListener statements = new QueryExecutionListener() {
+                        @Override
+                        public void beforeQuery(ExecutionInfo execInfo,
+                                                List<QueryInfo> queryInfoList) {
+                        }
+
+                        @Override
+                        public void afterQuery(ExecutionInfo execInfo,
+                                               List<QueryInfo> queryInfoList) {
+                            STATEMENTS.incrementAndGet();
+                            queryInfoList.forEach(query -> QUERIES.add(query.getQuery()));
+                        }
+                    };
+                    MethodExecutionListener rows = new MethodExecutionListener() {
+                        @Override
+                        public void beforeMethod(MethodExecutionContext executionContext) {
+                        }
+
+                        @Override
+                        public void afterMethod(MethodExecutionContext context) {
+                            if (context.getTarget() instanceof ResultSet &&
+                                    "next".equals(context.getMethod().getName()) &&
+                                    Boolean.TRUE.equals(context.getResult())) {
+                                ROWS.incrementAndGet();
+                            }
+                        }
+                    };
+                    return ProxyDataSourceBuilder.create(dataSource)
+                            .listener(statements)
+                            .methodListener(rows)
+                            .proxyResultSet()
+                            .build();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package ru.practicum.shareit.booking;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.shareit.booking.dto.BookingDto;
+import ru.practicum.shareit.booking.dto.CreateBookingDto;
+import ru.practicum.shareit.booking.service.BookingService;
+import ru.practicum.shareit.datagen.SkewedSampler;
+import ru.practicum.shareit.exceptions.WrongDateValidationException;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Конкурентное создание и подтверждение бронирований: часть вещей популярна (Zipf), часть почти не бронируется.
+ * Замеряется пропускная способность при равномерном и перекошенном выборе вещей, а в конце проверяется,
+ * что у одной вещи нет пересекающихся подтвержденных бронирований. Пересекающиеся заявки создаются,
+ * отклоняется только подтверждение второй из них.
+ */
+@Slf4j
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:booking-contention;LOCK_TIMEOUT=10000",
+        "shareit.booking-locks.stripes=64"
+})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class BookingContentionTests {
+
+    private static final int USERS = 20;
+    private static final int ITEMS = 50;
+    private static final int WORKERS = 8;
+    private static final Duration PHASE = Duration.ofMillis(1500);
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final LocalDateTime base = LocalDateTime.now().plusDays(1).truncatedTo(ChronoUnit.HOURS);
+
+    @BeforeAll
+    void seed() {
+        for (int i = 1; i <= USERS; i++) {
+            jdbcTemplate.update("INSERT INTO users (name, email) VALUES (?, ?)", "user" + i, "user" + i + "@mail.ru");
+        }
+        for (int i = 1; i <= ITEMS; i++) {
+            jdbcTemplate.update("INSERT INTO items (name, description, is_available, owner_id) VALUES (?, ?, true, 1)",
+                    "вещь " + i, "описание " + i);
+        }
+    }
+
+    @Test
+    void keepsApprovedBookingsDisjointUnderSkewedContention() throws Exception {
+        Phase uniform = run(null, 1);
+        Phase skewed = run(new SkewedSampler(ITEMS, 1.2), 2);
+        log.info("Равномерно:   {}", uniform);
+        log.info("Zipf s=1.2:   {}", skewed);
+
+        assertEquals(0, uniform.failures.get() + skewed.failures.get(), "Неожиданные ошибки при бронировании");
+        assertTrue(skewed.conflicts.get() > 0, "Популярные вещи не дали ни одного пересечения");
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM bookings a JOIN bookings b " +
+                "ON a.item_id = b.item_id AND a.id < b.id " +
+                "WHERE a.status = 'APPROVED' AND b.status = 'APPROVED' " +
+                "AND a.start_date < b.end_date AND b.start_date < a.end_date", Long.class));
+    }
+
+    @Test
+    void acceptsOverlappingRequestsAndRejectsOnlyTheSecondApproval() {
+        // период далеко за пределами нагрузочного теста, чтобы не пересечься с его бронированиями
+        LocalDateTime start = base.plusYears(1);
+        CreateBookingDto request = CreateBookingDto.builder().itemId(1L).start(start).end(start.plusDays(2)).build();
+        BookingDto first = bookingService.addBooking(2L, request);
+        BookingDto second = bookingService.addBooking(3L, request);
+
+        bookingService.approvingOfBooking(1L, first.getId(), true);
+        assertThrows(WrongDateValidationException.class,
+                () -> bookingService.approvingOfBooking(1L, second.getId(), true));
+        assertEquals("WAITING", jdbcTemplate.queryForObject("SELECT status FROM bookings WHERE id = ?",
+                String.class, second.getId()));
+    }
+
+    private Phase run(SkewedSampler sampler, long seed) throws Exception {
+        Phase phase = new Phase();
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Future<?>> workers = new ArrayList<>();
+        long started = System.nanoTime();
+        try (ExecutorService executor = Executors.newFixedThreadPool(WORKERS)) {
+            for (int worker = 0; worker < WORKERS; worker++) {
+                SplittableRandom random = new SplittableRandom(seed * 1000 + worker);
+                workers.add(executor.submit(() -> {
+                    while (running.get()) {
+                        long itemId = 1 + (sampler == null ? random.nextInt(ITEMS) : sampler.next(random));
+                        book(phase, itemId, 2 + random.nextInt(USERS - 1), random);
+                    }
+                    return null;
+                }));
+            }
+            Thread.sleep(PHASE.toMillis());
+            running.set(false);
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        }
+        phase.seconds = (System.nanoTime() - started) / 1e9;
+        return phase;
+    }
+
+    private void book(Phase phase, long itemId, long bookerId, SplittableRandom random) {
+        LocalDateTime start = base.plusHours(random.nextInt(24 * 60));
+        CreateBookingDto request = CreateBookingDto.builder()
+                .itemId(itemId)
+                .start(start)
+                .end(start.plusHours(1 + random.nextInt(72)))
+                .build();
+        try {
+            BookingDto booking = bookingService.addBooking(bookerId, request);
+            phase.created.incrementAndGet();
+            bookingService.approvingOfBooking(1L, booking.getId(), true);
+            phase.approved.incrementAndGet();
+        } catch (WrongDateValidationException e) {
+            phase.conflicts.incrementAndGet();
+        } catch (RuntimeException e) {
+            log.error("Ошибка при бронировании вещи {}", itemId, e);
+            phase.failures.incrementAndGet();
+        }
+    }
+
+    private static class Phase {
+        final AtomicLong created = new AtomicLong();
+        final AtomicLong approved = new AtomicLong();
+        final AtomicLong conflicts = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        double seconds;
+
+        @Override
+        public String toString() {
+            return String.format("%.0f операций/с, создано %d, подтверждено %d, пересечений %d",
+                    (created.get() + approved.get()) / seconds, created.get(), approved.get(), conflicts.get());
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package ru.practicum.shareit.booking;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import ru.practicum.shareit.ApiTestSupport;
+import ru.practicum.shareit.SharedContextTest;
+import ru.practicum.shareit.booking.expiry.BookingExpiryJob;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SharedContextTest
+class BookingEventsTests extends ApiTestSupport {
+
+    @Autowired
+    private BookingExpiryJob expiryJob;
+
+    @Test
+    void pushesBookingChangesToOwnerAndBooker() throws Exception {
+        user("owner");
+        user("booker");
+        jdbcTemplate.update("INSERT INTO items (name, description, is_available, owner_id) " +
+                "VALUES ('Дрель', 'Ударная', true, 1)");
+        MockHttpServletResponse owner = subscribe(1);
+        MockHttpServletResponse booker = subscribe(2);
+        awaitContains(owner, "event:ready");
+
+        LocalDateTime start = LocalDateTime.now().plusDays(1).truncatedTo(ChronoUnit.SECONDS);
+        long bookingId = json(post("/bookings").header(USER_HEADER, 2).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"itemId\":1,\"start\":\"" + start + "\",\"end\":\"" + start.plusDays(1) + "\"}"))
+                .get("id").asLong();
+        awaitContains(owner, "event:created");
+        awaitContains(booker, "event:created");
+
+        json(patch("/bookings/" + bookingId).header(USER_HEADER, 1).param("approved", "true"));
+        awaitContains(booker, "event:approved");
+        // событие пишется в ответ по частям: ждем и строку data с ним
+        awaitContains(booker, "\"status\":\"APPROVED\"");
+        String approved = booker.getContentAsString(StandardCharsets.UTF_8);
+        JsonNode data = objectMapper.readTree(approved.substring(approved.indexOf("data:",
+                approved.indexOf("event:approved")) + "data:".length()).lines().findFirst().orElseThrow());
+        assertEquals(bookingId, data.get("id").asLong());
+        assertEquals("APPROVED", data.get("status").asText());
+
+        // пустой поток получает heartbeat, второй поток того же пользователя закрывает первый
+        awaitContains(owner, ":heartbeat");
+        MockHttpServletResponse ownerAgain = subscribe(1);
+        awaitContains(ownerAgain, "event:ready");
+        json(post("/bookings").header(USER_HEADER, 2).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"itemId\":1,\"start\":\"" + start.plusDays(5) + "\",\"end\":\"" + start.plusDays(6)
+                        + "\"}"));
+        awaitContains(ownerAgain, "event:created");
+        String closed = owner.getContentAsString(StandardCharsets.UTF_8);
+        assertEquals(closed.indexOf("event:created"), closed.lastIndexOf("event:created"));
+
+        // истечение фоновой задачей тоже доходит до подписчиков
+        jdbcTemplate.update("INSERT INTO bookings (start_date, end_date, item_id, owner_id, booker_id, status) " +
+                "VALUES (?, ?, 1, 1, 2, 'WAITING')", start.minusDays(3), start.plusDays(8));
+        assertEquals(1, expiryJob.expire());
+        awaitContains(booker, "event:expired");
+        awaitContains(ownerAgain, "event:expired");
+
+        mvc.perform(get("/bookings/events").header(USER_HEADER, 99).accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(status().isNotFound());
+    }
+
+    private MockHttpServletResponse subscribe(long userId) throws Exception {
+        return mvc.perform(get("/bookings/events").header(USER_HEADER, userId).accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn().getResponse();
+    }
+
+    private void awaitContains(MockHttpServletResponse response, String text) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!response.getContentAsString(StandardCharsets.UTF_8).contains(text)) {
+            assertTrue(System.currentTimeMillis() < deadline, "В потоке нет " + text + ": "
+                    + response.getContentAsString(StandardCharsets.UTF_8));
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package ru.practicum.shareit.booking;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import ru.practicum.shareit.ApiTestSupport;
+import ru.practicum.shareit.SharedContextTest;
+import ru.practicum.shareit.booking.expiry.BookingExpiryJob;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SharedContextTest
+class BookingExpiryJobTests extends ApiTestSupport {
+
+    @Autowired
+    private BookingExpiryJob job;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Test
+    void expiresStaleWaitingBookingsInChunks() throws Exception {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        user("owner");
+        user("booker");
+        jdbcTemplate.update("INSERT INTO items (name, description, is_available, owner_id) " +
+                "VALUES ('дрель', 'аккумуляторная', true, 1)");
+        for (int i = 1; i <= 10; i++) {
+            // начало уже прошло, владелец так и не ответил
+            booking(now.minusDays(i), now.plusDays(1), "WAITING", null);
+        }
+        for (int i = 1; i <= 2; i++) {
+            booking(now.plusDays(10), now.plusDays(11), "WAITING", now.minusDays(3));
+        }
+        for (int i = 1; i <= 3; i++) {
+            booking(now.plusDays(10), now.plusDays(11), "WAITING", now.minusHours(1));
+        }
+        booking(now.minusDays(5), now.minusDays(4), "APPROVED", now.minusDays(6));
+        booking(now.minusDays(5), now.minusDays(4), "REJECTED", now.minusDays(6));
+
+        // счетчики общие для всех классов контекста: сравниваем приращения
+        double expired = registry.counter("shareit.bookings.expired").count();
+        double chunks = registry.counter("shareit.bookings.expiry.chunks").count();
+        assertEquals(12, job.expire());
+
+        assertEquals(12, bookings("EXPIRED"));
+        assertEquals(3, bookings("WAITING"));
+        assertEquals(1, bookings("APPROVED"));
+        assertEquals(1, bookings("REJECTED"));
+        assertEquals(12, registry.counter("shareit.bookings.expired").count() - expired);
+        assertEquals(4, registry.counter("shareit.bookings.expiry.chunks").count() - chunks);
+        assertEquals(0, job.expire());
+    }
+
+    private void booking(LocalDateTime start, LocalDateTime end, String status, LocalDateTime created) {
+        jdbcTemplate.update("INSERT INTO bookings (start_date, end_date, item_id, booker_id, status, created, " +
+                        "owner_id) VALUES (?, ?, 1, 2, ?, ?, 1)", Timestamp.valueOf(start), Timestamp.valueOf(end),
+                status, created == null ? null : Timestamp.valueOf(created));
+    }
+
+    private long bookings(String status) {
+        return count("SELECT COUNT(*) FROM bookings WHERE status = ?", status);
+    }
+}
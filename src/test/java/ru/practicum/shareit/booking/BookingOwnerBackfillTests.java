@@ -0,0 +1,73 @@
+package ru.practicum.shareit.booking;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import ru.practicum.shareit.ApiTestSupport;
+import ru.practicum.shareit.SharedContextTest;
+import ru.practicum.shareit.booking.migration.BookingOwnerBackfillJob;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SharedContextTest
+class BookingOwnerBackfillTests extends ApiTestSupport {
+
+    @Autowired
+    private BookingOwnerBackfillJob job;
+
+    @Test
+    void fillsOwnersInChunksThenRestoresConstraints() throws Exception {
+        // новая база: колонка и ключ уже созданы schema.sql
+        assertTrue(job.run());
+
+        // база до появления колонки: owner_id пустой, без NOT NULL и внешнего ключа
+        jdbcTemplate.execute("ALTER TABLE bookings DROP CONSTRAINT fk_bookings_owner_to_users");
+        jdbcTemplate.execute("ALTER TABLE bookings ALTER COLUMN owner_id DROP NOT NULL");
+        user("owner");
+        user("other");
+        user("booker");
+        jdbcTemplate.update("INSERT INTO items (name, description, is_available, owner_id) " +
+                "VALUES ('дрель', 'аккумуляторная', true, 1)");
+        jdbcTemplate.update("INSERT INTO items (name, description, is_available, owner_id) " +
+                "VALUES ('пила', 'дисковая', true, 2)");
+        for (int i = 0; i < 7; i++) {
+            booking(1 + i % 2);
+        }
+
+        // бюджет в 2 порции по 2 строки: обход растягивается на несколько запусков
+        assertFalse(job.run());
+        assertEquals(3, missing());
+        // узел старой версии пишет бронирование без владельца позади курсора: обход начнется заново
+        jdbcTemplate.update("UPDATE bookings SET owner_id = NULL WHERE id = (SELECT MIN(id) FROM bookings)");
+        int runs = 1;
+        while (!job.run()) {
+            runs++;
+            assertTrue(runs < 10, "Миграция не завершилась");
+        }
+
+        assertEquals(0, missing());
+        assertEquals(4, count("SELECT COUNT(*) FROM bookings WHERE owner_id = 1"));
+        assertEquals(3, count("SELECT COUNT(*) FROM bookings WHERE owner_id = 2"));
+        assertThrows(DataIntegrityViolationException.class, () -> jdbcTemplate.update(
+                "UPDATE bookings SET owner_id = NULL WHERE item_id = 1"));
+        assertThrows(DataIntegrityViolationException.class, () -> jdbcTemplate.update(
+                "UPDATE bookings SET owner_id = 100 WHERE item_id = 1"));
+        assertTrue(job.run());
+    }
+
+    private void booking(long itemId) {
+        LocalDateTime start = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS).plusDays(1);
+        jdbcTemplate.update("INSERT INTO bookings (start_date, end_date, item_id, booker_id, status) " +
+                "VALUES (?, ?, ?, 3, 'WAITING')", start, start.plusDays(1), itemId);
+    }
+
+    private long missing() {
+        return count("SELECT COUNT(*) FROM bookings WHERE owner_id IS NULL");
+    }
+}
@@ -0,0 +1,83 @@
+package ru.practicum.shareit.booking;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import ru.practicum.shareit.ApiTestSupport;
+import ru.practicum.shareit.SharedContextTest;
+import ru.practicum.shareit.booking.analytics.BookingRollupJob;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SharedContextTest
+class BookingRollupTests extends ApiTestSupport {
+
+    @Autowired
+    private BookingRollupJob job;
+
+    @Test
+    void reportsUtilizationFromIncrementalDailyRollup() throws Exception {
+        LocalDate base = LocalDate.now().minusMonths(2).withDayOfMonth(1);
+        user("owner");
+        user("booker");
+        jdbcTemplate.update("INSERT INTO items (name, description, is_available, owner_id) " +
+                "VALUES ('дрель', 'аккумуляторная', true, 1)");
+        jdbcTemplate.update("INSERT INTO items (name, description, is_available, owner_id) " +
+                "VALUES ('пила', 'ручная', true, 1)");
+        // занимает дни 0, 1 и 2, создано за 58 часов до начала
+        booking(base.atTime(10, 0), base.plusDays(2).atTime(12, 0), "APPROVED", 58);
+        // окончание в полночь: заняты дни 5 и 6, простой между бронированиями - дни 3 и 4
+        booking(base.plusDays(5).atStartOfDay(), base.plusDays(7).atStartOfDay(), "APPROVED", 24);
+        booking(base.plusDays(10).atTime(9, 0), base.plusDays(11).atTime(9, 0), "REJECTED", 48);
+
+        int days = (int) ChronoUnit.DAYS.between(base, LocalDate.now());
+        int rolled = 0;
+        for (int run = 0; run < 10 && rolled < days; run++) {
+            rolled += job.rollup();
+        }
+        assertEquals(days, rolled);
+        // следующий запуск пересчитывает только последние settle-days дней
+        assertEquals(2, job.rollup());
+
+        JsonNode report = json(get("/bookings/owner/utilization").header(USER_HEADER, 1)
+                .param("from", base.toString())
+                .param("to", base.plusDays(27).toString()));
+        assertEquals(LocalDate.now().minusDays(1).toString(), report.get("rolledUpTo").asText());
+        assertEquals(2, report.get("items").size());
+
+        JsonNode drill = report.get("items").get(0);
+        assertEquals(5, drill.get("bookedDays").asInt());
+        assertEquals(5.0 / 28, drill.get("utilization").asDouble(), 1e-9);
+        assertEquals(3, drill.get("bookings").asInt());
+        assertEquals(1.0 / 3, drill.get("rejectionRate").asDouble(), 1e-9);
+        assertEquals((58 + 24 + 48) / 3.0, drill.get("averageLeadTimeHours").asDouble(), 1e-9);
+        assertEquals(1, drill.get("gaps").asInt());
+        assertEquals(2, drill.get("maxGapDays").asInt());
+        assertEquals(1, drill.get("months").size());
+        assertEquals(base.toString().substring(0, 7), drill.get("months").get(0).get("month").asText());
+
+        JsonNode saw = report.get("items").get(1);
+        assertEquals(0, saw.get("bookedDays").asInt());
+        assertNull(saw.get("rejectionRate"));
+
+        mvc.perform(get("/bookings/owner/utilization")
+                        .header(USER_HEADER, 1)
+                        .param("from", base.plusDays(1).toString())
+                        .param("to", base.toString()))
+                .andExpect(status().isBadRequest());
+    }
+
+    private void booking(LocalDateTime start, LocalDateTime end, String status, long leadHours) {
+        jdbcTemplate.update("INSERT INTO bookings (start_date, end_date, item_id, booker_id, status, created, " +
+                        "owner_id) VALUES (?, ?, 1, 2, ?, ?, 1)", Timestamp.valueOf(start), Timestamp.valueOf(end),
+                status, Timestamp.valueOf(start.minusHours(leadHours)));
+    }
+}
@@ -0,0 +1,52 @@
+package ru.practicum.shareit.datagen;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:datagen",
+        "shareit.datagen.enabled=true",
+        "shareit.datagen.users=200",
+        "shareit.datagen.requests=20",
+        "shareit.datagen.items=1000",
+        "shareit.datagen.bookings=20000",
+        "shareit.datagen.comments=2000",
+        "shareit.datagen.batch-size=500",
+        "shareit.datagen.anchor=2026-01-01T00:00:00"
+})
+class DatasetGeneratorTests {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void generatesSkewedConsistentDataset() {
+        assertEquals(200, count("SELECT COUNT(*) FROM users"));
+        assertEquals(20, count("SELECT COUNT(*) FROM requests"));
+        assertEquals(1000, count("SELECT COUNT(*) FROM items"));
+        assertEquals(20000, count("SELECT COUNT(*) FROM bookings"));
+        long comments = count("SELECT COUNT(*) FROM comments");
+        assertTrue(comments > 1500 && comments <= 2000, "Комментариев сгенерировано " + comments);
+
+        long topOwnerItems = count("SELECT MAX(c) FROM (SELECT COUNT(*) c FROM items GROUP BY owner_id)");
+        assertTrue(topOwnerItems > 10 * 1000 / 200, "У самого крупного владельца всего " + topOwnerItems + " вещей");
+        long hotItemBookings = count("SELECT MAX(c) FROM (SELECT COUNT(*) c FROM bookings GROUP BY item_id)");
+        assertTrue(hotItemBookings > 50 * 20000 / 1000, "У самой популярной вещи всего " + hotItemBookings +
+                " бронирований");
+
+        assertEquals(0, count("SELECT COUNT(*) FROM bookings b JOIN items i ON i.id = b.item_id " +
+                "WHERE b.booker_id = i.owner_id OR b.owner_id <> i.owner_id"));
+        assertEquals(0, count("SELECT COUNT(*) FROM comments c WHERE NOT EXISTS (SELECT 1 FROM bookings b " +
+                "WHERE b.item_id = c.item_id AND b.booker_id = c.author_id AND b.status = 'APPROVED' " +
+                "AND b.end_date < c.created)"));
+    }
+
+    private long count(String sql) {
+        return jdbcTemplate.queryForObject(sql, Long.class);
+    }
+}
@@ -0,0 +1,146 @@
+package ru.practicum.shareit.fanout;
+
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.shareit.SharedContextTest;
+import ru.practicum.shareit.exceptions.DataNotFoundException;
+import ru.practicum.shareit.exceptions.DeadlineExceededException;
+import ru.practicum.shareit.monitoring.RequestStatements;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SharedContextTest
+class ReadOnlyFanOutTests {
+
+    @Autowired
+    private ReadOnlyFanOut fanOut;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void runsQueriesConcurrentlyInSeparateReadOnlyTransactions() {
+        long started = System.nanoTime();
+        try (ReadOnlyFanOut.Scope scope = fanOut.open()) {
+            List<Supplier<Connection>> connections = List.of(
+                    scope.fork(this::slowQuery), scope.fork(this::slowQuery), scope.fork(this::slowQuery));
+            scope.join();
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+            assertTrue(elapsed < 600, "Три запроса по 300 мс заняли " + elapsed + " мс");
+            assertEquals(3, connections.stream().map(Supplier::get).distinct().count());
+        }
+    }
+
+    @Test
+    void cancelsQueriesAfterDeadline() throws InterruptedException {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        long started = System.nanoTime();
+        try (ReadOnlyFanOut.Scope scope = fanOut.open()) {
+            scope.fork(() -> {
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+                return null;
+            });
+            assertThrows(DeadlineExceededException.class, scope::join);
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        assertTrue(elapsed < 2000, "Срок в 1 с, а ожидание заняло " + elapsed + " мс");
+        assertTrue(interrupted.await(1, TimeUnit.SECONDS), "Запрос после срока не был отменен");
+    }
+
+    @Test
+    void reportsFirstFailureInForkOrder() {
+        try (ReadOnlyFanOut.Scope scope = fanOut.open()) {
+            scope.fork(() -> {
+                sleep(200);
+                throw new DataNotFoundException("Пользователь не найден");
+            });
+            scope.fork(() -> {
+                throw new IllegalStateException("Предмет не найден");
+            });
+            DataNotFoundException e = assertThrows(DataNotFoundException.class, scope::join);
+            assertEquals("Пользователь не найден", e.getMessage());
+        }
+    }
+
+    @Test
+    void holdsAtMostHalfOfPoolAndRunsNestedForksInline() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        try (ReadOnlyFanOut.Scope scope = fanOut.open()) {
+            List<Supplier<Boolean>> nestedInline = new ArrayList<>();
+            for (int fork = 0; fork < 8; fork++) {
+                nestedInline.add(scope.fork(() -> {
+                    peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    sleep(100);
+                    running.decrementAndGet();
+                    Thread parent = Thread.currentThread();
+                    try (ReadOnlyFanOut.Scope nested = fanOut.open()) {
+                        Supplier<Thread> thread = nested.fork(Thread::currentThread);
+                        nested.join();
+                        return thread.get() == parent;
+                    }
+                }));
+            }
+            scope.join();
+
+            // пул в тестах - 10 соединений
+            assertTrue(peak.get() <= 5, "Одновременно держали соединение " + peak.get() + " запросов");
+            assertTrue(nestedInline.stream().allMatch(Supplier::get));
+        }
+    }
+
+    @Test
+    void countsStatementsOfCancelledQueries() {
+        RequestStatements.begin("GET /items/{itemId}");
+        try {
+            try (ReadOnlyFanOut.Scope scope = fanOut.open()) {
+                scope.fork(() -> {
+                    entityManager.createNativeQuery("SELECT 1").getSingleResult();
+                    sleep(10_000);
+                    return null;
+                });
+                assertThrows(DeadlineExceededException.class, scope::join);
+            }
+        } finally {
+            assertEquals(1, RequestStatements.end().getStatements());
+        }
+    }
+
+    private Connection slowQuery() {
+        assertTrue(Thread.currentThread().isVirtual());
+        assertTrue(TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        sleep(300);
+        return connection;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package ru.practicum.shareit.idempotency;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.practicum.shareit.ApiTestSupport;
+import ru.practicum.shareit.SharedContextTest;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+@SharedContextTest
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class IdempotentRequestsTests extends ApiTestSupport {
+
+    private static final String ITEM = "{\"name\":\"Дрель\",\"description\":\"Простая дрель\",\"available\":true}";
+
+    @Autowired
+    private IdempotentRequests idempotentRequests;
+
+    private long itemId;
+
+    @BeforeAll
+    void seed() throws Exception {
+        user("owner");
+        user("booker");
+        itemId = item(1, "Отвертка");
+    }
+
+    @Test
+    void repeatedKeyReturnsOriginalResponse() throws Exception {
+        long before = count("SELECT COUNT(*) FROM items");
+        JsonNode first = create("/items", 1, "item-1", ITEM, 200);
+        JsonNode second = create("/items", 1, "item-1", ITEM, 200);
+
+        assertEquals(first, second);
+        assertEquals(before + 1, count("SELECT COUNT(*) FROM items"));
+
+        // после вытеснения из памяти ответ берется из таблицы
+        idempotentRequests.clearLocal();
+        assertEquals(first, create("/items", 1, "item-1", ITEM, 200));
+        assertEquals(before + 1, count("SELECT COUNT(*) FROM items"));
+
+        // тот же ключ другого пользователя - другой запрос
+        create("/items", 2, "item-1", ITEM, 200);
+        assertEquals(before + 2, count("SELECT COUNT(*) FROM items"));
+    }
+
+    @Test
+    void keyReusedWithAnotherBodyIsConflict() throws Exception {
+        create("/items", 1, "item-2", ITEM, 200);
+        create("/items", 1, "item-2", ITEM.replace("Дрель", "Пила"), 409);
+    }
+
+    @Test
+    void failedRequestIsNotRemembered() throws Exception {
+        String booking = booking(LocalDateTime.now().minusDays(2));
+        create("/bookings", 2, "booking-failed", booking, 400);
+        assertEquals(0, count("SELECT COUNT(*) FROM idempotency_keys WHERE id LIKE ?", "%booking-failed"));
+    }
+
+    @Test
+    void concurrentDuplicatesCreateOneBooking() throws Exception {
+        long before = count("SELECT COUNT(*) FROM bookings");
+        String booking = booking(LocalDateTime.now().plusDays(1));
+        int clients = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<JsonNode>> responses = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(clients)) {
+            for (int i = 0; i < clients; i++) {
+                responses.add(executor.submit(() -> {
+                    start.await();
+                    return create("/bookings", 2, "booking-1", booking, 200);
+                }));
+            }
+            start.countDown();
+            JsonNode first = responses.getFirst().get();
+            for (Future<JsonNode> response : responses) {
+                assertEquals(first.get("id"), response.get().get("id"));
+            }
+        }
+        assertEquals(before + 1, count("SELECT COUNT(*) FROM bookings"));
+    }
+
+    @Test
+    void expiredKeysAreDeleted() {
+        jdbcTemplate.update("INSERT INTO idempotency_keys (id, request_hash, status, response, created, expires_at) " +
+                "VALUES ('1:POST /items:old', 'hash', 'COMPLETED', '{}', ?, ?)",
+                LocalDateTime.now().minusDays(2), LocalDateTime.now().minusDays(1));
+        idempotentRequests.deleteExpired();
+        assertEquals(0, count("SELECT COUNT(*) FROM idempotency_keys WHERE id = ?", "1:POST /items:old"));
+    }
+
+    private String booking(LocalDateTime start) {
+        LocalDateTime truncated = start.truncatedTo(ChronoUnit.SECONDS);
+        return "{\"itemId\":" + itemId + ",\"start\":\"" + truncated + "\",\"end\":\"" + truncated.plusDays(1) + "\"}";
+    }
+
+    private JsonNode create(String path, long userId, String key, String body, int expectedStatus) throws Exception {
+        MvcResult result = mvc.perform(post(path)
+                        .header(USER_HEADER, userId)
+                        .header("Idempotency-Key", key)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andReturn();
+        assertEquals(expectedStatus, result.getResponse().getStatus(), result.getResponse().getContentAsString());
+        return objectMapper.readTree(result.getResponse().getContentAsString());
+    }
+}
@@ -0,0 +1,99 @@
+package ru.practicum.shareit.item;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import ru.practicum.shareit.ApiTestSupport;
+import ru.practicum.shareit.SharedContextTest;
+import ru.practicum.shareit.item.geo.ItemGeoIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SharedContextTest
+class ItemGeoSearchTests extends ApiTestSupport {
+
+    private static final double LAT = 55.7558;
+    private static final double LON = 37.6173;
+    private static final double KM_PER_DEGREE = 111.195;
+
+    @Autowired
+    private ItemGeoIndex geoIndex;
+
+    @Test
+    void findsAvailableItemsNearbySortedByDistance() throws Exception {
+        user("owner");
+        user("neighbour");
+        long far = item("Дрель", true, 4.0);
+        long near = item("Дрель ударная", true, 0.5);
+        long middle = item("Пила", true, 2.0);
+        item("Дрель старая", false, 1.0);
+        long outside = item("Дрель дальняя", true, 8.0);
+        json(post("/items").header(USER_HEADER, 1).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"Дрель без адреса\",\"description\":\"Ничья\",\"available\":true}"));
+
+        List<Long> seen = new ArrayList<>();
+        for (int from = 0; from < 6; from += 2) {
+            JsonNode page = json(search().param("size", "2").param("from", String.valueOf(from)));
+            page.forEach(found -> seen.add(found.get("id").asLong()));
+        }
+        assertEquals(List.of(near, middle, far), seen);
+
+        JsonNode drills = json(search().param("text", "дрель"));
+        assertEquals(2, drills.size());
+        assertEquals(near, drills.get(0).get("id").asLong());
+        assertEquals(0.5, drills.get(0).get("distanceKm").asDouble(), 0.01);
+        assertEquals(LAT + 0.5 / KM_PER_DEGREE, drills.get(0).get("latitude").asDouble(), 1e-7);
+
+        // перенос вещи виден в индексе сразу после фиксации, без перезагрузки
+        mvc.perform(patch("/items/" + outside).header(USER_HEADER, 1).contentType(MediaType.APPLICATION_JSON)
+                        .content(coordinates(3.0)))
+                .andExpect(status().isOk());
+        assertEquals(List.of(near, middle, outside, far), ids(json(search())));
+
+        geoIndex.reload();
+        assertEquals(5, geoIndex.size());
+        assertEquals(List.of(near, middle, outside, far), ids(json(search())));
+
+        mvc.perform(post("/items").header(USER_HEADER, 1).contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Пила\",\"description\":\"Ручная\",\"available\":true,\"latitude\":55.7}"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(get("/items/search").header(USER_HEADER, 2)
+                        .param("lat", String.valueOf(LAT)).param("lon", String.valueOf(LON)).param("radius", "500"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private long item(String name, boolean available, double kmNorth) throws Exception {
+        String body = "{\"name\":\"" + name + "\",\"description\":\"Рядом с домом\",\"available\":" + available + ","
+                + coordinates(kmNorth).substring(1);
+        return json(post("/items").header(USER_HEADER, 1).contentType(MediaType.APPLICATION_JSON).content(body))
+                .get("id").asLong();
+    }
+
+    private String coordinates(double kmNorth) {
+        return String.format(Locale.ROOT, "{\"latitude\":%.8f,\"longitude\":%.8f}", LAT + kmNorth / KM_PER_DEGREE,
+                LON);
+    }
+
+    private MockHttpServletRequestBuilder search() {
+        return get("/items/search").header(USER_HEADER, 2)
+                .param("lat", String.valueOf(LAT))
+                .param("lon", String.valueOf(LON))
+                .param("radius", "5");
+    }
+
+    private List<Long> ids(JsonNode items) {
+        List<Long> ids = new ArrayList<>();
+        items.forEach(item -> ids.add(item.get("id").asLong()));
+        return ids;
+    }
+}
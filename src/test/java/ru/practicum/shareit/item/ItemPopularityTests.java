@@ -0,0 +1,83 @@
+package ru.practicum.shareit.item;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import ru.practicum.shareit.ApiTestSupport;
+import ru.practicum.shareit.SharedContextTest;
+import ru.practicum.shareit.item.popularity.ItemPopularityTracker;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SharedContextTest
+class ItemPopularityTests extends ApiTestSupport {
+
+    @Autowired
+    private ItemPopularityTracker tracker;
+
+    @Test
+    void ranksSearchByDecayedBookingAndCommentCounts() throws Exception {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        user("owner");
+        user("booker");
+        for (String name : List.of("Велосипед детский", "Велосипед горный", "Велосипед шоссейный")) {
+            jdbcTemplate.update("INSERT INTO items (name, description, is_available, owner_id) " +
+                    "VALUES (?, 'на выходные', true, 1)", name);
+        }
+        // история до запуска: свежие бронирования третьего и давнее второго
+        pastBooking(3, now.minusDays(10));
+        pastBooking(3, now.minusDays(12));
+        pastBooking(2, now.minusDays(200));
+        tracker.rebuildIfEmpty();
+        assertEquals(List.of(3L, 2L, 1L), search());
+
+        for (int i = 1; i <= 3; i++) {
+            long bookingId = json(post("/bookings").header(USER_HEADER, 2).contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"itemId\":1,\"start\":\"" + now.plusDays(i * 2) + "\",\"end\":\"" +
+                            now.plusDays(i * 2 + 1) + "\"}")).get("id").asLong();
+            json(patch("/bookings/" + bookingId).header(USER_HEADER, 1).param("approved", "true"));
+        }
+        long rejected = json(post("/bookings").header(USER_HEADER, 2).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"itemId\":2,\"start\":\"" + now.plusDays(2) + "\",\"end\":\"" + now.plusDays(3) + "\"}"))
+                .get("id").asLong();
+        json(patch("/bookings/" + rejected).header(USER_HEADER, 1).param("approved", "false"));
+
+        // до записи приращений порядок прежний, отклонение бронирования рейтинг не меняет
+        assertEquals(List.of(3L, 2L, 1L), search());
+        assertEquals(1, tracker.flush());
+        assertEquals(List.of(1L, 3L, 2L), search());
+
+        json(post("/items/2/comment").header(USER_HEADER, 2).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"text\":\"Отличный велосипед\"}"));
+        assertEquals(1, tracker.flush());
+        assertEquals(0, tracker.flush());
+        double score = jdbcTemplate.queryForObject("SELECT score FROM item_popularity WHERE item_id = 2",
+                Double.class);
+        double currentWeight = Math.pow(2, ChronoUnit.SECONDS.between(LocalDateTime.of(2024, 1, 1, 0, 0), now)
+                / (30.0 * 24 * 3600));
+        assertEquals(0.5 + Math.pow(2, -200 / 30.0), score / currentWeight, 1e-3);
+    }
+
+    private List<Long> search() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        json(get("/items/search").header(USER_HEADER, 2).param("text", "велосипед"))
+                .forEach(item -> ids.add(item.get("id").asLong()));
+        return ids;
+    }
+
+    private void pastBooking(long itemId, LocalDateTime created) {
+        jdbcTemplate.update("INSERT INTO bookings (start_date, end_date, item_id, booker_id, status, created, " +
+                        "owner_id) VALUES (?, ?, ?, 2, 'APPROVED', ?, 1)", Timestamp.valueOf(created.plusDays(1)),
+                Timestamp.valueOf(created.plusDays(2)), itemId, Timestamp.valueOf(created));
+    }
+}
@@ -0,0 +1,106 @@
+package ru.practicum.shareit.load;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Задержки одного прогона по сценариям в HDR-гистограммах (микросекунды, 3 значащие цифры).
+ * В каталог прогона пишется summary.csv для сравнения прогонов и полный .hgrm по каждому сценарию.
+ */
+class LoadReport {
+
+    static final String SUMMARY = "summary.csv";
+
+    private static final String HEADER = "scenario,requests,errors,throughput,p50_ms,p90_ms,p99_ms,p999_ms,max_ms";
+    private static final long HIGHEST_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final Map<String, Histogram> histograms = new LinkedHashMap<>();
+    private final Map<String, AtomicLong> errors = new LinkedHashMap<>();
+    private final AtomicLong serverErrors = new AtomicLong();
+
+    LoadReport(List<String> scenarios) {
+        for (String scenario : scenarios) {
+            histograms.put(scenario, new ConcurrentHistogram(HIGHEST_MICROS, 3));
+            errors.put(scenario, new AtomicLong());
+        }
+    }
+
+    void record(String scenario, long nanos, int status) {
+        histograms.get(scenario).recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), HIGHEST_MICROS));
+        if (status >= 400) {
+            errors.get(scenario).incrementAndGet();
+        }
+        if (status >= 500) {
+            serverErrors.incrementAndGet();
+        }
+    }
+
+    long serverErrors() {
+        return serverErrors.get();
+    }
+
+    Map<String, Row> summary(Duration measured) {
+        Map<String, Row> rows = new LinkedHashMap<>();
+        histograms.forEach((scenario, histogram) -> rows.put(scenario, new Row(
+                histogram.getTotalCount(),
+                errors.get(scenario).get(),
+                histogram.getTotalCount() * 1000.0 / measured.toMillis(),
+                millis(histogram.getValueAtPercentile(50)),
+                millis(histogram.getValueAtPercentile(90)),
+                millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)),
+                millis(histogram.getMaxValue()))));
+        return rows;
+    }
+
+    void write(Path directory, Duration measured) throws IOException {
+        Files.createDirectories(directory);
+        StringBuilder csv = new StringBuilder(HEADER).append('\n');
+        summary(measured).forEach((scenario, row) -> csv.append(scenario).append(',').append(row.toCsv()).append('\n'));
+        Files.writeString(directory.resolve(SUMMARY), csv);
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve(entry.getKey() + ".hgrm")),
+                    false, StandardCharsets.UTF_8)) {
+                entry.getValue().outputPercentileDistribution(out, 1000.0);
+            }
+        }
+    }
+
+    static Map<String, Row> read(Path directory) throws IOException {
+        Map<String, Row> rows = new LinkedHashMap<>();
+        List<String> lines = Files.readAllLines(directory.resolve(SUMMARY));
+        for (String line : lines.subList(1, lines.size())) {
+            String[] values = line.split(",");
+            rows.put(values[0], new Row(Long.parseLong(values[1]), Long.parseLong(values[2]),
+                    Double.parseDouble(values[3]), Double.parseDouble(values[4]), Double.parseDouble(values[5]),
+                    Double.parseDouble(values[6]), Double.parseDouble(values[7]), Double.parseDouble(values[8])));
+        }
+        return rows;
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    record Row(long requests, long errors, double throughput, double p50, double p90, double p99, double p999,
+               double max) {
+
+        String toCsv() {
+            return String.format(Locale.ROOT, "%d,%d,%.1f,%.3f,%.3f,%.3f,%.3f,%.3f",
+                    requests, errors, throughput, p50, p90, p99, p999, max);
+        }
+    }
+}
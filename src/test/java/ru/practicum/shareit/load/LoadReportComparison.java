@@ -0,0 +1,88 @@
+package ru.practicum.shareit.load;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Сравнение двух нагрузочных прогонов: mvn -Pload-compare test.
+ * По умолчанию сравнивает два последних каталога в load-reports, конкретные прогоны задаются
+ * через -Dload.baseline=... -Dload.candidate=.... Рост p99 больше load.threshold процентов помечается как регрессия,
+ * с -Dload.fail-on-regression=true сборка при этом падает.
+ */
+public class LoadReportComparison {
+
+    public static void main(String[] args) throws IOException {
+        Path reportDir = Path.of(System.getProperty("load.report-dir", "load-reports"));
+        double threshold = Double.parseDouble(System.getProperty("load.threshold", "10"));
+        Path baseline;
+        Path candidate;
+        if (System.getProperty("load.baseline") != null && System.getProperty("load.candidate") != null) {
+            baseline = Path.of(System.getProperty("load.baseline"));
+            candidate = Path.of(System.getProperty("load.candidate"));
+        } else {
+            List<Path> runs = runs(reportDir);
+            if (runs.size() < 2) {
+                throw new IllegalStateException("Для сравнения нужно два прогона в " + reportDir.toAbsolutePath() +
+                        ", найдено " + runs.size());
+            }
+            baseline = runs.get(runs.size() - 2);
+            candidate = runs.getLast();
+        }
+
+        Map<String, LoadReport.Row> before = LoadReport.read(baseline);
+        Map<String, LoadReport.Row> after = LoadReport.read(candidate);
+        System.out.printf("Базовый прогон: %s%nНовый прогон:   %s%n%n", baseline, candidate);
+        System.out.printf("%-16s %32s %30s %30s %14s%n", "сценарий", "запросов/с", "p50, мс", "p99, мс", "ошибки");
+        int regressions = 0;
+        for (Map.Entry<String, LoadReport.Row> entry : after.entrySet()) {
+            LoadReport.Row old = before.get(entry.getKey());
+            LoadReport.Row current = entry.getValue();
+            if (old == null) {
+                System.out.printf("%-16s нет в базовом прогоне%n", entry.getKey());
+                continue;
+            }
+            double p99Change = change(old.p99(), current.p99());
+            boolean regression = p99Change > threshold;
+            if (regression) {
+                regressions++;
+            }
+            System.out.printf(Locale.ROOT, "%-16s %9.1f -> %9.1f %s %8.2f -> %8.2f %s %8.2f -> %8.2f %s %5d -> %5d%s%n",
+                    entry.getKey(),
+                    old.throughput(), current.throughput(), percent(change(old.throughput(), current.throughput())),
+                    old.p50(), current.p50(), percent(change(old.p50(), current.p50())),
+                    old.p99(), current.p99(), percent(p99Change),
+                    old.errors(), current.errors(),
+                    regression ? "  РЕГРЕССИЯ" : "");
+        }
+        System.out.printf("%nРегрессий p99 (порог %.0f%%): %d%n", threshold, regressions);
+        if (regressions > 0 && Boolean.getBoolean("load.fail-on-regression")) {
+            throw new IllegalStateException("p99 вырос больше чем на " + threshold + "% в " + regressions +
+                    " сценариях");
+        }
+    }
+
+    private static List<Path> runs(Path reportDir) throws IOException {
+        if (!Files.isDirectory(reportDir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(reportDir)) {
+            return files
+                    .filter(directory -> Files.exists(directory.resolve(LoadReport.SUMMARY)))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static double change(double before, double after) {
+        return before == 0 ? 0 : (after - before) * 100 / before;
+    }
+
+    private static String percent(double change) {
+        return String.format(Locale.ROOT, "(%+6.1f%%)", change);
+    }
+}
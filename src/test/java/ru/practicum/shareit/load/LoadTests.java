@@ -0,0 +1,259 @@
+package ru.practicum.shareit.load;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import ru.practicum.shareit.datagen.SkewedSampler;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Нагрузочный прогон: mvn -Pload test.
+ * Поднимает приложение на H2 (или на базе из spring.datasource.url), заливает синтетические данные
+ * и гоняет смешанную нагрузку чтения и записи из load.concurrency потоков с закрытым циклом.
+ * X-Sharer-User-Id выбирается по Zipf среди реальных владельцев и арендаторов, отсортированных по активности.
+ * Результат - каталог load-reports/<время запуска>, сравнение двух прогонов: mvn -Pload-compare test.
+ */
+@Slf4j
+@Tag("load")
+@ActiveProfiles("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class LoadTests {
+
+    private static final String USER_HEADER = "X-Sharer-User-Id";
+    private static final DateTimeFormatter RUN_NAME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final String[] STATES = {"ALL", "CURRENT", "PAST", "FUTURE", "WAITING", "REJECTED"};
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${load.duration}")
+    private Duration duration;
+
+    @Value("${load.warmup}")
+    private Duration warmup;
+
+    @Value("${load.concurrency}")
+    private int concurrency;
+
+    @Value("${load.seed}")
+    private long seed;
+
+    @Value("${load.report-dir}")
+    private Path reportDir;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .build();
+
+    @Test
+    void mixedWorkload() throws Exception {
+        Traffic traffic = new Traffic(jdbcTemplate);
+        List<Scenario> scenarios = scenarios(traffic);
+        int totalWeight = scenarios.stream().mapToInt(Scenario::weight).sum();
+
+        log.info("Прогрев {} на {} потоках", warmup, concurrency);
+        run(scenarios, totalWeight, warmup, null);
+        LoadReport report = new LoadReport(scenarios.stream().map(Scenario::name).toList());
+        log.info("Замер {} на {} потоках", duration, concurrency);
+        run(scenarios, totalWeight, duration, report);
+
+        Path directory = reportDir.resolve(LocalDateTime.now().format(RUN_NAME));
+        report.write(directory, duration);
+        log.info("Отчет нагрузочного прогона записан в {}", directory.toAbsolutePath());
+        for (Map.Entry<String, LoadReport.Row> row : report.summary(duration).entrySet()) {
+            log.info("{}: {}", String.format("%-16s", row.getKey()), row.getValue());
+        }
+        assertEquals(0, report.serverErrors(), "Во время прогона сервер отвечал 5xx");
+    }
+
+    private void run(List<Scenario> scenarios, int totalWeight, Duration period, LoadReport report)
+            throws Exception {
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Future<?>> workers = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(concurrency)) {
+            for (int worker = 0; worker < concurrency; worker++) {
+                SplittableRandom random = new SplittableRandom(seed + worker);
+                workers.add(executor.submit(() -> {
+                    while (running.get()) {
+                        Scenario scenario = pick(scenarios, totalWeight, random);
+                        HttpRequest request = scenario.request().apply(random);
+                        long started = System.nanoTime();
+                        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (report != null) {
+                            report.record(scenario.name(), System.nanoTime() - started, response.statusCode());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            Thread.sleep(period.toMillis());
+            running.set(false);
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        }
+    }
+
+    private Scenario pick(List<Scenario> scenarios, int totalWeight, SplittableRandom random) {
+        int roll = random.nextInt(totalWeight);
+        for (Scenario scenario : scenarios) {
+            roll -= scenario.weight();
+            if (roll < 0) {
+                return scenario;
+            }
+        }
+        return scenarios.getLast();
+    }
+
+    private List<Scenario> scenarios(Traffic traffic) {
+        return List.of(
+                new Scenario("items", 20, random -> get("/items", traffic.owner(random))),
+                new Scenario("item", 15, random -> get("/items/" + traffic.item(random), traffic.user(random))),
+                new Scenario("items-search", 10, random -> get("/items/search?text=" +
+                        URLEncoder.encode("вещь " + random.nextInt(1000), StandardCharsets.UTF_8),
+                        traffic.user(random))),
+                new Scenario("bookings", 15, random -> get("/bookings?state=" + STATES[random.nextInt(STATES.length)],
+                        traffic.booker(random))),
+                new Scenario("bookings-owner", 15, random -> get("/bookings/owner?state=" +
+                        STATES[random.nextInt(STATES.length)], traffic.owner(random))),
+                new Scenario("user", 10, random -> get("/users/" + traffic.user(random), null)),
+                new Scenario("booking-create", 8, random -> {
+                    long[] item = traffic.availableItem(random);
+                    long booker = traffic.booker(random);
+                    if (booker == item[1]) {
+                        booker = traffic.user(random);
+                    }
+                    LocalDateTime start = LocalDateTime.now().plusDays(1 + random.nextInt(60))
+                            .truncatedTo(ChronoUnit.SECONDS);
+                    return post("/bookings", booker, "{\"itemId\":" + item[0] + ",\"start\":\"" + start +
+                            "\",\"end\":\"" + start.plusDays(1 + random.nextInt(7)) + "\"}");
+                }),
+                new Scenario("item-update", 5, random -> {
+                    long[] item = traffic.ownedItem(random);
+                    return send("PATCH", "/items/" + item[0], item[1],
+                            "{\"description\":\"Обновленное описание " + random.nextInt() + "\"}");
+                }),
+                new Scenario("user-create", 2, random -> post("/users", null,
+                        "{\"name\":\"load\",\"email\":\"load-" + System.nanoTime() + "-" + random.nextInt() +
+                                "@shareit.test\"}"))
+        );
+    }
+
+    private HttpRequest get(String path, Long userId) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri(path)).GET();
+        if (userId != null) {
+            builder.header(USER_HEADER, userId.toString());
+        }
+        return builder.build();
+    }
+
+    private HttpRequest post(String path, Long userId, String body) {
+        return send("POST", path, userId, body);
+    }
+
+    private HttpRequest send(String method, String path, Long userId, String body) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri(path))
+                .header("Content-Type", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofString(body));
+        if (userId != null) {
+            builder.header(USER_HEADER, userId.toString());
+        }
+        return builder.build();
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + port + path);
+    }
+
+    private record Scenario(String name, int weight, Function<SplittableRandom, HttpRequest> request) {
+    }
+
+    /**
+     * Реальные id из базы, упорядоченные по активности: первые в списке выбираются чаще всего.
+     */
+    private static class Traffic {
+
+        private final long[] owners;
+        private final long[] bookers;
+        private final long[] users;
+        private final long[] items;
+        private final List<long[]> ownedItems;
+        private final List<long[]> availableItems;
+        private final SkewedSampler ownerSampler;
+        private final SkewedSampler bookerSampler;
+        private final SkewedSampler itemSampler;
+
+        Traffic(JdbcTemplate jdbcTemplate) {
+            owners = ids(jdbcTemplate, "SELECT owner_id FROM items GROUP BY owner_id ORDER BY COUNT(*) DESC");
+            bookers = ids(jdbcTemplate, "SELECT booker_id FROM bookings GROUP BY booker_id ORDER BY COUNT(*) DESC");
+            users = ids(jdbcTemplate, "SELECT id FROM users");
+            items = ids(jdbcTemplate, "SELECT item_id FROM bookings GROUP BY item_id ORDER BY COUNT(*) DESC");
+            ownedItems = jdbcTemplate.query("SELECT id, owner_id FROM items",
+                    (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)});
+            availableItems = jdbcTemplate.query("SELECT id, owner_id FROM items WHERE is_available",
+                    (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)});
+            ownerSampler = new SkewedSampler(owners.length, 1.0);
+            bookerSampler = new SkewedSampler(bookers.length, 1.0);
+            itemSampler = new SkewedSampler(items.length, 1.0);
+        }
+
+        long owner(SplittableRandom random) {
+            return owners[ownerSampler.next(random)];
+        }
+
+        long booker(SplittableRandom random) {
+            return bookers[bookerSampler.next(random)];
+        }
+
+        long user(SplittableRandom random) {
+            return users[random.nextInt(users.length)];
+        }
+
+        long item(SplittableRandom random) {
+            return items[itemSampler.next(random)];
+        }
+
+        long[] ownedItem(SplittableRandom random) {
+            return ownedItems.get(random.nextInt(ownedItems.size()));
+        }
+
+        long[] availableItem(SplittableRandom random) {
+            return availableItems.get(random.nextInt(availableItems.size()));
+        }
+
+        private static long[] ids(JdbcTemplate jdbcTemplate, String sql) {
+            return jdbcTemplate.queryForList(sql, Long.class).stream().mapToLong(Long::longValue).toArray();
+        }
+    }
+}
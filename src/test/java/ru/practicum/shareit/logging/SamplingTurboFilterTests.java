@@ -0,0 +1,106 @@
+package ru.practicum.shareit.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.spi.FilterReply;
+import ch.qos.logback.core.status.Status;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SamplingTurboFilterTests {
+
+    private final LoggerContext context = new LoggerContext();
+
+    @Test
+    void samplesDebugByLongestLoggerPrefix() {
+        SamplingTurboFilter filter = filter("ru.practicum.shareit.booking=0, ru.practicum.shareit.booking.service=1");
+
+        assertEquals(FilterReply.DENY, decide(filter, "ru.practicum.shareit.booking.controller.BookingController",
+                Level.DEBUG));
+        assertEquals(FilterReply.NEUTRAL, decide(filter, "ru.practicum.shareit.booking.service.BookingServiceImpl",
+                Level.DEBUG));
+        assertEquals(FilterReply.NEUTRAL, decide(filter, "ru.practicum.shareit.bookingx.Other", Level.DEBUG));
+        assertEquals(FilterReply.NEUTRAL, decide(filter, "ru.practicum.shareit.booking.controller.BookingController",
+                Level.WARN));
+    }
+
+    @Test
+    void passesRoughlyConfiguredShare() {
+        SamplingTurboFilter filter = filter("ru.practicum.shareit.item=0.2");
+        int passed = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (decide(filter, "ru.practicum.shareit.item.service.ItemServiceImpl", Level.DEBUG) == FilterReply.NEUTRAL) {
+                passed++;
+            }
+        }
+        assertTrue(passed > 1_500 && passed < 2_500, "Пропущено " + passed + " сообщений из 10000");
+    }
+
+    @Test
+    void decidesOncePerRequest() {
+        SamplingTurboFilter filter = filter("ru.practicum.shareit.item=0.2, ru.practicum.shareit.booking=0.6");
+        SamplingTurboFilter.drawForRequest();
+        try {
+            FilterReply item = decide(filter, "ru.practicum.shareit.item.service.ItemServiceImpl", Level.DEBUG);
+            FilterReply booking = decide(filter, "ru.practicum.shareit.booking.service.BookingServiceImpl",
+                    Level.DEBUG);
+            for (int i = 0; i < 100; i++) {
+                assertEquals(item, decide(filter, "ru.practicum.shareit.item.service.ItemServiceImpl", Level.DEBUG));
+                assertEquals(booking, decide(filter, "ru.practicum.shareit.booking.service.BookingServiceImpl",
+                        Level.DEBUG));
+            }
+            // строки логгера с меньшей долей - подмножество строк логгера с большей
+            assertFalse(item == FilterReply.NEUTRAL && booking == FilterReply.DENY);
+        } finally {
+            SamplingTurboFilter.clearRequestDraw();
+        }
+    }
+
+    @Test
+    void skipsMalformedRatesAndReportsThem() {
+        SamplingTurboFilter filter = filter("ru.practicum.shareit.item=0.1x, ru.practicum.shareit.booking=NaN, " +
+                "ru.practicum.shareit.request, ru.practicum.shareit.user=0");
+
+        assertEquals(FilterReply.NEUTRAL, decide(filter, "ru.practicum.shareit.item.service.ItemServiceImpl",
+                Level.DEBUG));
+        assertEquals(FilterReply.NEUTRAL, decide(filter, "ru.practicum.shareit.booking.service.BookingServiceImpl",
+                Level.DEBUG));
+        assertEquals(FilterReply.DENY, decide(filter, "ru.practicum.shareit.user.service.UserServiceImpl",
+                Level.DEBUG));
+        List<String> errors = context.getStatusManager().getCopyOfStatusList().stream()
+                .filter(status -> status.getLevel() == Status.ERROR)
+                .map(Status::getMessage)
+                .toList();
+        assertEquals(List.of("Доля семплирования должна быть числом: ru.practicum.shareit.item=0.1x",
+                "Доля семплирования должна быть от 0 до 1: ru.practicum.shareit.booking=NaN",
+                "Правило семплирования должно иметь вид логгер=доля: ru.practicum.shareit.request"), errors);
+    }
+
+    @Test
+    void passesEverythingWithoutRules() {
+        SamplingTurboFilter filter = filter("");
+
+        assertEquals(FilterReply.NEUTRAL, decide(filter, "ru.practicum.shareit.booking.service.BookingServiceImpl",
+                Level.DEBUG));
+    }
+
+    private SamplingTurboFilter filter(String rates) {
+        SamplingTurboFilter filter = new SamplingTurboFilter();
+        filter.setContext(context);
+        filter.setRates(rates);
+        filter.start();
+        return filter;
+    }
+
+    private FilterReply decide(SamplingTurboFilter filter, String loggerName, Level level) {
+        Logger logger = context.getLogger(loggerName);
+        logger.setLevel(Level.DEBUG);
+        return filter.decide(null, logger, level, "сообщение", null, null);
+    }
+}
@@ -0,0 +1,42 @@
+package ru.practicum.shareit.monitoring;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class StatementTrackingInterceptorTests {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private final StatementTrackingInterceptor interceptor =
+            new StatementTrackingInterceptor(new SqlMonitorProperties(), registry);
+
+    @Test
+    void carriesStatementsAcrossAsyncDispatch() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        HandlerMethod handler = new HandlerMethod(this, getClass().getMethod("toString"));
+
+        interceptor.preHandle(request, response, handler);
+        RequestStatements started = RequestStatements.current();
+        RequestStatements.statementPrepared("select 1");
+        // поток запроса уходит в пул и не должен унести с собой учет
+        interceptor.afterConcurrentHandlingStarted(request, response, handler);
+        assertNull(RequestStatements.current());
+
+        interceptor.preHandle(request, response, handler);
+        assertSame(started, RequestStatements.current());
+        RequestStatements.statementPrepared("select 2");
+        interceptor.afterCompletion(request, response, handler, null);
+
+        assertNull(RequestStatements.current());
+        assertEquals(1, registry.get("shareit.sql.statements").summary().count());
+        assertEquals(2, registry.get("shareit.sql.statements").summary().totalAmount());
+    }
+}
@@ -0,0 +1,67 @@
+package ru.practicum.shareit.request;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import ru.practicum.shareit.ApiTestSupport;
+import ru.practicum.shareit.SharedContextTest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SharedContextTest
+class ItemRequestTests extends ApiTestSupport {
+
+    @Test
+    void pagesOtherUsersRequestsWithBatchedAnswers() throws Exception {
+        user("requestor");
+        user("owner");
+        List<Long> requestIds = new ArrayList<>();
+        // созданы в одну секунду: порядок внутри нее задает id
+        for (int i = 1; i <= 5; i++) {
+            requestIds.add(json(post("/requests").header(USER_HEADER, 1).contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"description\":\"Нужна дрель " + i + "\"}")).get("id").asLong());
+        }
+        long answered = requestIds.get(2);
+        for (String name : List.of("Дрель", "Перфоратор")) {
+            mvc.perform(post("/items").header(USER_HEADER, 2).contentType(MediaType.APPLICATION_JSON)
+                            .content("{\"name\":\"" + name + "\",\"description\":\"Ударная\",\"available\":true," +
+                                    "\"requestId\":" + answered + "}"))
+                    .andExpect(status().isOk());
+        }
+        mvc.perform(post("/items").header(USER_HEADER, 2).contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\":\"Пила\",\"description\":\"Ручная\",\"available\":true,\"requestId\":999}"))
+                .andExpect(status().isNotFound());
+
+        List<Long> seen = new ArrayList<>();
+        JsonNode page = json(get("/requests/all").header(USER_HEADER, 2).param("size", "2"));
+        while (!page.isEmpty()) {
+            assertTrue(page.size() <= 2);
+            for (JsonNode request : page) {
+                seen.add(request.get("id").asLong());
+                assertEquals(request.get("id").asLong() == answered ? 2 : 0, request.get("items").size());
+            }
+            JsonNode last = page.get(page.size() - 1);
+            page = json(get("/requests/all").header(USER_HEADER, 2).param("size", "2")
+                    .param("beforeCreated", last.get("created").asText())
+                    .param("beforeId", last.get("id").asText()));
+        }
+        assertEquals(requestIds.reversed(), seen);
+
+        assertEquals(0, json(get("/requests/all").header(USER_HEADER, 1)).size());
+        JsonNode own = json(get("/requests").header(USER_HEADER, 1));
+        assertEquals(5, own.size());
+        JsonNode request = json(get("/requests/" + answered).header(USER_HEADER, 2));
+        assertEquals("Дрель", request.get("items").get(0).get("name").asText());
+        assertEquals(2, request.get("items").get(0).get("ownerId").asLong());
+
+        mvc.perform(get("/requests/all").header(USER_HEADER, 2).param("beforeId", "3"))
+                .andExpect(status().isBadRequest());
+    }
+}
@@ -0,0 +1,133 @@
+package ru.practicum.shareit.sharding;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.practicum.shareit.ApiTestSupport;
+import ru.practicum.shareit.user.model.User;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+@SpringBootTest(properties = {
+        "shareit.sharding.enabled=true",
+        "spring.jpa.open-in-view=false",
+        "spring.jpa.hibernate.ddl-auto=none",
+        "shareit.sharding.shards[0].url=jdbc:h2:mem:sharding-0",
+        "shareit.sharding.shards[0].username=sa",
+        "shareit.sharding.shards[1].url=jdbc:h2:mem:sharding-1",
+        "shareit.sharding.shards[1].username=sa",
+        "shareit.sharding.shards[2].url=jdbc:h2:mem:sharding-2",
+        "shareit.sharding.shards[2].username=sa"
+})
+@AutoConfigureMockMvc
+class ShardingTests extends ApiTestSupport {
+
+    @Autowired
+    private ShardDataSources dataSources;
+
+    @Autowired
+    private Shards shards;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void routesOwnerDataToHomeShardAndGathersBookerQueries() throws Exception {
+        // дом пользователя - id % 3: владельцы 1 и 2 на шардах 1 и 2, арендатор 3 на шарде 0
+        user("first");
+        user("second");
+        user("booker");
+        long drill = item(1, "Дрель");
+        long saw = item(2, "Пила");
+        assertEquals(1, drill >>> Shards.ID_SHIFT);
+        assertEquals(2, saw >>> Shards.ID_SHIFT);
+        assertEquals(List.of(0, 1, 1), countOnShards("SELECT COUNT(*) FROM items"));
+        assertEquals(List.of(3, 3, 3), countOnShards("SELECT COUNT(*) FROM users"));
+        assertEquals(3, shard(0).queryForObject("SELECT COUNT(*) FROM user_shards", Integer.class));
+
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        long drillBooking = booking(drill, now.plusDays(1));
+        long sawBooking = booking(saw, now.plusDays(3));
+        assertEquals(1, drillBooking >>> Shards.ID_SHIFT);
+        assertEquals(2, sawBooking >>> Shards.ID_SHIFT);
+        json(patch("/bookings/" + sawBooking).header(USER_HEADER, 2).param("approved", "true"));
+        assertEquals("APPROVED", json(get("/bookings/" + sawBooking).header(USER_HEADER, 3))
+                .get("status").asText());
+
+        assertEquals(List.of(sawBooking, drillBooking), ids(json(get("/bookings").header(USER_HEADER, 3))));
+        assertEquals(List.of(drillBooking), ids(json(get("/bookings").header(USER_HEADER, 3)
+                .param("state", "WAITING").param("fields", "id,start"))));
+        assertEquals(List.of(drillBooking), ids(json(get("/bookings/owner").header(USER_HEADER, 1))));
+        JsonNode summary = json(get("/bookings/summary").header(USER_HEADER, 3));
+        assertEquals(2, summary.get("all").asLong());
+        assertEquals(1, summary.get("waiting").asLong());
+
+        assertEquals(List.of(drill), ids(json(get("/items").header(USER_HEADER, 1))));
+        assertEquals("Пила", json(get("/items/" + saw).header(USER_HEADER, 3)).get("name").asText());
+        assertEquals(2, json(get("/items/search").header(USER_HEADER, 3).param("text", "для дачи")).size());
+
+        // смена имени доходит до копий на всех шардах
+        json(patch("/users/1").contentType(MediaType.APPLICATION_JSON).content("{\"name\":\"renamed\"}"));
+        assertEquals(List.of(1, 1, 1), countOnShards("SELECT COUNT(*) FROM users WHERE name = 'renamed'"));
+
+        // email удаленного пользователя освобождается и на копиях: новый владелец адреса копируется на все шарды
+        json(delete("/users/2"));
+        user("second");
+        assertEquals(List.of(1, 1, 1), countOnShards(
+                "SELECT COUNT(*) FROM users WHERE email = 'second@mail.ru' AND deleted_at IS NULL"));
+
+        // копия, пропустившая изменение и отметку удаления, и пропавшая копия чинятся сверкой
+        shard(1).update("UPDATE users SET name = 'stale', deleted_at = NULL WHERE id = 2");
+        shard(2).update("UPDATE users SET name = 'stale' WHERE id = 1");
+        json(get("/users/1"));
+        assertTrue(entityManagerFactory.getCache().contains(User.class, 1L));
+        shard(2).update("DELETE FROM users WHERE id = 4");
+        assertEquals(3, shards.reconcile());
+        assertEquals(0, shards.reconcile());
+        // исправленный мимо Hibernate пользователь вытеснен из кэша второго уровня
+        assertFalse(entityManagerFactory.getCache().contains(User.class, 1L));
+        assertEquals(List.of(0, 0, 0), countOnShards("SELECT COUNT(*) FROM users WHERE name = 'stale'"));
+        assertEquals(List.of(1, 1, 1), countOnShards("SELECT COUNT(*) FROM users WHERE deleted_at IS NOT NULL"));
+        assertEquals(List.of(4, 4, 4), countOnShards("SELECT COUNT(*) FROM users"));
+    }
+
+    private long booking(long itemId, LocalDateTime start) throws Exception {
+        return json(post("/bookings").header(USER_HEADER, 3).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"itemId\":" + itemId + ",\"start\":\"" + start + "\",\"end\":\"" + start.plusDays(1)
+                        + "\"}")).get("id").asLong();
+    }
+
+    private List<Integer> countOnShards(String sql) {
+        List<Integer> counts = new ArrayList<>();
+        for (int shard = 0; shard < dataSources.size(); shard++) {
+            counts.add(shard(shard).queryForObject(sql, Integer.class));
+        }
+        return counts;
+    }
+
+    private JdbcTemplate shard(int shard) {
+        return new JdbcTemplate(dataSources.get(shard));
+    }
+
+    private List<Long> ids(JsonNode nodes) {
+        List<Long> ids = new ArrayList<>();
+        nodes.forEach(node -> ids.add(node.get("id").asLong()));
+        return ids;
+    }
+}
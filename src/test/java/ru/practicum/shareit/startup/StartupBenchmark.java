@@ -0,0 +1,123 @@
+package ru.practicum.shareit.startup;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарк старта: mvn -Pfast-startup verify -Dstartup.benchmark.skip=false.
+ * Каждый вариант запускается startup.runs раз отдельным процессом, замеряется время от запуска процесса
+ * до первого успешного ответа на startup.path. Сравниваются обычный jar, AOT + CDS и нативный образ, если он собран.
+ * Приложению нужна база: по умолчанию из compose.yaml, другая задается через -Dstartup.args="--spring.datasource.url=...".
+ */
+public class StartupBenchmark {
+
+    private static final Duration TIMEOUT = Duration.ofMinutes(2);
+
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(200)).build();
+    private final String path = System.getProperty("startup.path", "/actuator/health");
+    private final int runs = Integer.getInteger("startup.runs", 5);
+    private final List<String> appArgs = split(System.getProperty("startup.args", ""));
+
+    public static void main(String[] args) throws Exception {
+        new StartupBenchmark().run();
+    }
+
+    private void run() throws Exception {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        Path jar = Path.of(System.getProperty("startup.jar"));
+        Path directory = Path.of(System.getProperty("startup.directory"));
+        Path nativeImage = Path.of(System.getProperty("startup.native"));
+
+        Map<String, Variant> variants = new LinkedHashMap<>();
+        variants.put("jar", new Variant(List.of(java, "-jar", jar.toString()), jar.getParent()));
+        variants.put("aot+cds", new Variant(List.of(java, "-XX:SharedArchiveFile=application.jsa",
+                "-Dspring.aot.enabled=true", "-jar", jar.getFileName().toString()), directory));
+        if (Files.isExecutable(nativeImage)) {
+            variants.put("native", new Variant(List.of(nativeImage.toString()), nativeImage.getParent()));
+        }
+
+        Map<String, long[]> results = new LinkedHashMap<>();
+        for (Map.Entry<String, Variant> variant : variants.entrySet()) {
+            long[] millis = new long[runs];
+            for (int i = 0; i < runs; i++) {
+                millis[i] = timeToFirstRequest(variant.getValue());
+                System.out.printf("%-8s запуск %d: %d мс%n", variant.getKey(), i + 1, millis[i]);
+            }
+            Arrays.sort(millis);
+            results.put(variant.getKey(), millis);
+        }
+
+        long baseline = median(results.get("jar"));
+        System.out.printf("%nВремя до первого ответа на %s, %d запусков%n", path, runs);
+        System.out.printf("%-8s %8s %8s %8s %10s%n", "вариант", "медиана", "мин", "макс", "ускорение");
+        results.forEach((name, millis) -> System.out.printf(Locale.ROOT, "%-8s %8d %8d %8d %9.2fx%n",
+                name, median(millis), millis[0], millis[millis.length - 1], (double) baseline / median(millis)));
+    }
+
+    private long timeToFirstRequest(Variant variant) throws Exception {
+        int port = freePort();
+        List<String> command = new ArrayList<>(variant.command());
+        command.add("--server.port=" + port);
+        command.addAll(appArgs);
+        long started = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .directory(variant.directory().toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).GET().build();
+            while (System.nanoTime() - started < TIMEOUT.toNanos()) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("Приложение завершилось при старте с кодом " + process.exitValue() +
+                            ": " + String.join(" ", command));
+                }
+                try {
+                    if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+                    }
+                } catch (IOException e) {
+                    // порт еще не слушается
+                }
+                Thread.sleep(5);
+            }
+            throw new IllegalStateException("Приложение не ответило за " + TIMEOUT + ": " + String.join(" ", command));
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private static long median(long[] sorted) {
+        return sorted[sorted.length / 2];
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static List<String> split(String args) {
+        return args.isBlank() ? List.of() : List.of(args.trim().split("\\s+"));
+    }
+
+    private record Variant(List<String> command, Path directory) {
+    }
+}
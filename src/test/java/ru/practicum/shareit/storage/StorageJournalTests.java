@@ -0,0 +1,96 @@
+package ru.practicum.shareit.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.practicum.shareit.booking.model.Booking;
+import ru.practicum.shareit.booking.model.BookingStatus;
+import ru.practicum.shareit.booking.repository.BookingInMemoryRepository;
+import ru.practicum.shareit.item.model.Item;
+import ru.practicum.shareit.item.repository.ItemInMemoryRepository;
+import ru.practicum.shareit.user.model.User;
+import ru.practicum.shareit.user.repository.UserInMemoryRepository;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class StorageJournalTests {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void restoresStateFromSnapshotAndJournalAfterRestart() throws Exception {
+        Node node = new Node(directory);
+        User owner = node.users.create(User.builder().name("owner").email("owner@mail.ru").build());
+        User booker = node.users.create(User.builder().name("booker").email("booker@mail.ru").build());
+        Item item = node.items.addNewItem(owner, Item.builder().name("Дрель").description("Ударная")
+                .available(true).build());
+        node.snapshots.snapshot();
+        LocalDateTime start = LocalDateTime.now().plusDays(1).truncatedTo(ChronoUnit.SECONDS);
+        Booking booking = node.bookings.addBooking(Booking.builder().start(start).end(start.plusDays(1))
+                .item(item).booker(booker).build());
+        node.bookings.changeStatus(booking.getId(), BookingStatus.WAITING, BookingStatus.APPROVED);
+        node.users.delete(booker.getId());
+        node.crash();
+
+        Node restarted = new Node(directory);
+        assertEquals("owner@mail.ru", restarted.users.getUser(owner.getId()).getEmail());
+        assertFalse(restarted.users.exists(booker.getId()));
+        assertEquals(1, restarted.items.findItems(owner.getId(), "удар").size());
+        assertEquals(BookingStatus.APPROVED, restarted.bookings.getBooking(booking.getId()).getStatus());
+        assertEquals(start, restarted.bookings.getBooking(booking.getId()).getStart());
+        User next = restarted.users.create(User.builder().name("new").email("new@mail.ru").build());
+        assertEquals(booker.getId() + 1, next.getId());
+        restarted.crash();
+    }
+
+    @Test
+    void dropsTornTailOfJournal() throws Exception {
+        Node node = new Node(directory);
+        node.users.create(User.builder().name("first").email("first@mail.ru").build());
+        node.users.create(User.builder().name("second").email("second@mail.ru").build());
+        node.crash();
+        Path segment = node.journal.segment(1);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(segment) - 3);
+        }
+
+        Node restarted = new Node(directory);
+        assertEquals("first", restarted.users.getUser(1L).getName());
+        assertFalse(restarted.users.exists(2L));
+        restarted.crash();
+    }
+
+    private static class Node {
+        final StorageJournal journal;
+        final UserInMemoryRepository users;
+        final ItemInMemoryRepository items;
+        final BookingInMemoryRepository bookings;
+        final StorageSnapshots snapshots;
+
+        Node(Path directory) throws IOException {
+            StorageJournalProperties properties = new StorageJournalProperties();
+            properties.setEnabled(true);
+            properties.setDirectory(directory);
+            journal = new StorageJournal(properties);
+            users = new UserInMemoryRepository(journal);
+            items = new ItemInMemoryRepository(journal);
+            bookings = new BookingInMemoryRepository(journal);
+            snapshots = new StorageSnapshots(properties, journal, users, items, bookings);
+            snapshots.recover();
+        }
+
+        // остановка без финального снимка: при следующем старте данные берутся из журнала
+        void crash() throws IOException, InterruptedException {
+            journal.close();
+        }
+    }
+}
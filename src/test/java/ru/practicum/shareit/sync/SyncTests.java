@@ -0,0 +1,129 @@
+package ru.practicum.shareit.sync;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import ru.practicum.shareit.ApiTestSupport;
+import ru.practicum.shareit.SharedContextTest;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SharedContextTest
+class SyncTests extends ApiTestSupport {
+
+    @Autowired
+    private TombstoneRepository tombstoneRepository;
+
+    @Test
+    void returnsOnlyRowsChangedSinceWatermark() throws Exception {
+        user("owner");
+        user("booker");
+        long drill = item(1, "Дрель");
+        long saw = item(1, "Пила");
+
+        JsonNode full = changes("/items/changes", 1, null, 100);
+        assertEquals(List.of(drill, saw), ids(full.get("items")));
+        assertFalse(full.get("hasMore").asBoolean());
+        String watermark = full.get("watermark").asText();
+        JsonNode nothing = changes("/items/changes", 1, watermark, 100);
+        assertEquals(0, nothing.get("items").size());
+        assertTrue(micros(nothing.get("watermark").asText()) > micros(watermark));
+        watermark = nothing.get("watermark").asText();
+
+        // страницы по одной строке, в следующей синхронизации только измененная вещь
+        json(patch("/items/" + saw).header(USER_HEADER, 1).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"Пила цепная\"}"));
+        long axe = item(1, "Топор");
+        JsonNode first = changes("/items/changes", 1, watermark, 1);
+        assertEquals(List.of(saw), ids(first.get("items")));
+        assertEquals("Пила цепная", first.get("items").get(0).get("name").asText());
+        assertTrue(first.get("hasMore").asBoolean());
+        JsonNode second = changes("/items/changes", 1, first.get("watermark").asText(), 1);
+        assertEquals(List.of(axe), ids(second.get("items")));
+        assertFalse(second.get("hasMore").asBoolean());
+        watermark = second.get("watermark").asText();
+
+        // комментарий меняет ленту владельца, а не вещь
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        jdbcTemplate.update("INSERT INTO bookings (start_date, end_date, item_id, owner_id, booker_id, status) " +
+                "VALUES (?, ?, ?, 1, 2, 'APPROVED')", now.minusDays(3), now.minusDays(2), drill);
+        json(post("/items/" + drill + "/comment").header(USER_HEADER, 2).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"text\":\"Отличная дрель\"}"));
+        JsonNode commented = changes("/items/changes", 1, watermark, 100);
+        assertEquals(0, commented.get("items").size());
+        assertEquals(drill, commented.get("comments").get(0).get("itemId").asLong());
+
+        long booking = json(post("/bookings").header(USER_HEADER, 2).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"itemId\":" + axe + ",\"start\":\"" + now.plusDays(1) + "\",\"end\":\""
+                        + now.plusDays(2) + "\"}")).get("id").asLong();
+        JsonNode booker = changes("/bookings/changes", 2, null, 100);
+        assertEquals(List.of(booking), ids(booker.get("bookings")));
+        String bookerWatermark = booker.get("watermark").asText();
+        assertEquals(List.of(booking), ids(changes("/bookings/changes", 1, null, 100).get("bookings")));
+
+        json(patch("/bookings/" + booking).header(USER_HEADER, 1).param("approved", "true"));
+        tombstoneRepository.save(Tombstone.builder().kind(ChangeKind.BOOKING_DELETED).entityId(777L).ownerId(1L)
+                .bookerId(2L).deletedAt(LocalDateTime.now().truncatedTo(ChronoUnit.MICROS)).build());
+        JsonNode approved = changes("/bookings/changes", 2, bookerWatermark, 100);
+        assertEquals("APPROVED", approved.get("bookings").get(0).get("status").asText());
+        assertEquals(List.of(777L), longs(approved.get("deletedBookings")));
+
+        mvc.perform(get("/items/changes").header(USER_HEADER, 1).param("since", "1000000.item.1"))
+                .andExpect(status().isGone());
+        mvc.perform(get("/items/changes").header(USER_HEADER, 1).param("since", "вчера"))
+                .andExpect(status().isBadRequest());
+
+        long quiet = user("quiet");
+        json(post("/items").header(USER_HEADER, quiet).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"Лопата\",\"description\":\"Штыковая\",\"available\":true}"));
+        jdbcTemplate.update("UPDATE items SET updated_at = ? WHERE owner_id = ?",
+                LocalDateTime.now().minusDays(40), quiet);
+
+        // последнее изменение старше срока хранения надгробий, но знак после полной загрузки свежий
+        JsonNode quietFull = changes("/items/changes", quiet, null, 100);
+        assertEquals(1, quietFull.get("items").size());
+        assertFalse(quietFull.get("hasMore").asBoolean());
+        long issued = micros(quietFull.get("watermark").asText());
+        assertTrue(issued > LocalDateTime.now().minusMinutes(1).toEpochSecond(ZoneOffset.UTC) * 1_000_000L);
+        JsonNode next = changes("/items/changes", quiet, quietFull.get("watermark").asText(), 100);
+        assertEquals(0, next.get("items").size());
+    }
+
+    private long micros(String watermark) {
+        return Long.parseLong(watermark.substring(0, watermark.indexOf('.')));
+    }
+
+    private JsonNode changes(String path, long userId, String since, int size) throws Exception {
+        // строки моложе settle-lag не выдаются: даем последней записи стать старше момента запроса
+        Thread.sleep(5);
+        MockHttpServletRequestBuilder request = get(path).header(USER_HEADER, userId)
+                .param("size", String.valueOf(size));
+        return json(since == null ? request : request.param("since", since));
+    }
+
+    private List<Long> ids(JsonNode nodes) {
+        List<Long> ids = new ArrayList<>();
+        nodes.forEach(node -> ids.add(node.get("id").asLong()));
+        return ids;
+    }
+
+    private List<Long> longs(JsonNode nodes) {
+        List<Long> values = new ArrayList<>();
+        nodes.forEach(node -> values.add(node.asLong()));
+        return values;
+    }
+}
@@ -0,0 +1,91 @@
+package ru.practicum.shareit.user;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import ru.practicum.shareit.ApiTestSupport;
+import ru.practicum.shareit.SharedContextTest;
+import ru.practicum.shareit.user.deletion.UserDeletionJob;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SharedContextTest
+class UserDeletionTests extends ApiTestSupport {
+
+    @Autowired
+    private UserDeletionJob job;
+
+    @Test
+    void hidesUserAtOnceAndPurgesDataInChunks() throws Exception {
+        user("owner");
+        user("booker");
+        long request = json(post("/requests").header(USER_HEADER, 1).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"description\":\"Нужна стремянка\"}")).get("id").asLong();
+        long drill = item(1, "Дрель");
+        long saw = item(1, "Пила");
+        long ladder = json(post("/items").header(USER_HEADER, 2).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"Стремянка\",\"description\":\"Для дачи\",\"available\":true," +
+                        "\"requestId\":" + request + "}")).get("id").asLong();
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        jdbcTemplate.update("INSERT INTO bookings (start_date, end_date, item_id, owner_id, booker_id, status) " +
+                "VALUES (?, ?, ?, 1, 2, 'APPROVED')", now.minusDays(3), now.minusDays(2), drill);
+        json(post("/items/" + drill + "/comment").header(USER_HEADER, 2).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"text\":\"Отличная дрель\"}"));
+        json(post("/bookings").header(USER_HEADER, 2).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"itemId\":" + saw + ",\"start\":\"" + now.plusDays(1) + "\",\"end\":\""
+                        + now.plusDays(2) + "\"}"));
+
+        // пользователь и его вещи пропадают сразу, строки остаются до фоновой задачи
+        json(delete("/users/1"));
+        mvc.perform(get("/users/1")).andExpect(status().isNotFound());
+        mvc.perform(get("/items/" + drill).header(USER_HEADER, 2)).andExpect(status().isNotFound());
+        assertEquals(0, json(get("/items/search").header(USER_HEADER, 2).param("text", "дрель")).size());
+        mvc.perform(post("/bookings").header(USER_HEADER, 2).contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"itemId\":" + saw + ",\"start\":\"" + now.plusDays(3) + "\",\"end\":\""
+                                + now.plusDays(4) + "\"}"))
+                .andExpect(status().isNotFound());
+        mvc.perform(delete("/users/1")).andExpect(status().isNotFound());
+        // email свободен сразу, не дожидаясь фоновой задачи
+        long again = user("owner");
+        assertEquals("owner@mail.ru", json(get("/users/" + again)).get("email").asText());
+        assertTrue(json(get("/users/1/deletion")).get("completedAt").isNull());
+        assertEquals(2, count("SELECT COUNT(*) FROM items WHERE owner_id = 1"));
+
+        // бюджет в 4 порции по одной строке: удаление растягивается на несколько запусков
+        int runs = 0;
+        while (job.run() == 0) {
+            runs++;
+            assertTrue(runs < 20, "Удаление не завершилось");
+        }
+        assertTrue(runs >= 1);
+        assertEquals(0, job.run());
+
+        assertEquals(0, count("SELECT COUNT(*) FROM users WHERE id = 1"));
+        assertEquals(1, count("SELECT COUNT(*) FROM users WHERE email = 'owner@mail.ru'"));
+        assertEquals(0, count("SELECT COUNT(*) FROM items WHERE owner_id = 1"));
+        assertEquals(0, count("SELECT COUNT(*) FROM bookings"));
+        assertEquals(0, count("SELECT COUNT(*) FROM comments"));
+        assertEquals(0, count("SELECT COUNT(*) FROM requests"));
+        assertNull(jdbcTemplate.queryForObject("SELECT request_id FROM items WHERE id = ?", Long.class, ladder));
+        assertEquals(2, count("SELECT COUNT(*) FROM tombstones WHERE kind = 'BOOKING_DELETED' AND booker_id = 2"));
+        assertEquals(1, count("SELECT COUNT(*) FROM tombstones WHERE kind = 'COMMENT_DELETED'"));
+
+        JsonNode deletion = json(get("/users/1/deletion"));
+        assertTrue(deletion.get("completedAt").isTextual());
+        assertEquals(1, deletion.get("deletedComments").asLong());
+        assertEquals(2, deletion.get("deletedBookings").asLong());
+        assertEquals(2, deletion.get("deletedItems").asLong());
+        assertEquals(1, deletion.get("deletedRequests").asLong());
+        mvc.perform(get("/users/2/deletion")).andExpect(status().isNotFound());
+    }
+}